@@ -0,0 +1,107 @@
+package net.floodlightcontroller.core.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.projectfloodlight.openflow.exceptions.OFParseError;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFMessageReader;
+import org.projectfloodlight.openflow.protocol.OFPacketInReason;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.protocol.match.MatchField;
+import org.projectfloodlight.openflow.types.OFBufferId;
+import org.projectfloodlight.openflow.types.OFPort;
+
+/**
+ * Time and allocation of the OpenFlow receive path: packet-ins decoded from
+ * a channel read, one or several to a read as when a busy switch's messages
+ * are coalesced. read does the same with the loxi reader alone, which is
+ * the least the receive path can allocate.
+ *
+ * Run with -prof gc for the bytes allocated per read (gc.alloc.rate.norm).
+ * decode should allocate at most 64 bytes per message more than read: the
+ * channel takes 16 for writeInbound's varargs array, and a per-message
+ * List, or anything sized like the payload, goes over. This depends on
+ * the JIT, so it is checked here rather than in the unit tests.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReceivePathBenchmark {
+    /* packet-ins per read */
+    @Param({ "1", "16" })
+    public int batch;
+
+    @Param({ "64", "1500" })
+    public int payload;
+
+    private EmbeddedChannel channel;
+    private OFMessageReader<OFMessage> reader;
+    private byte[] read;
+
+    @Setup
+    public void setUp() {
+        OFFactory factory = OFFactories.getFactory(OFVersion.OF_13);
+        ByteBuf buf = Unpooled.buffer();
+        for (int i = 0; i < batch; i++) {
+            factory.buildPacketIn()
+                    .setXid(i)
+                    .setBufferId(OFBufferId.NO_BUFFER)
+                    .setReason(OFPacketInReason.NO_MATCH)
+                    .setMatch(factory.buildMatch().setExact(MatchField.IN_PORT, OFPort.of(1)).build())
+                    .setData(new byte[payload])
+                    .build()
+                    .writeTo(buf);
+        }
+        read = new byte[buf.readableBytes()];
+        buf.readBytes(read);
+        channel = new EmbeddedChannel(new OFMessageDecoder(OFVersion.OF_13));
+        reader = factory.getReader();
+    }
+
+    @Benchmark
+    public void decode(Blackhole bh) {
+        channel.writeInbound(Unpooled.wrappedBuffer(read));
+        Object m;
+        int count = 0;
+        while ((m = channel.readInbound()) != null) {
+            bh.consume(m);
+            count++;
+        }
+        if (count != batch) {
+            throw new IllegalStateException("Decoded " + count + " of " + batch + " packet-ins");
+        }
+    }
+
+    @Benchmark
+    public void read(Blackhole bh) throws OFParseError {
+        ByteBuf buf = Unpooled.wrappedBuffer(read);
+        for (int i = 0; i < batch; i++) {
+            OFMessage m = reader.readFrom(buf);
+            if (m == null) {
+                throw new IllegalStateException("Read " + i + " of " + batch + " packet-ins");
+            }
+            bh.consume(m);
+        }
+    }
+}
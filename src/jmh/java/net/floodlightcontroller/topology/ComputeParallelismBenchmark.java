@@ -0,0 +1,63 @@
+package net.floodlightcontroller.topology;
+
+import java.util.concurrent.TimeUnit;
+
+import net.floodlightcontroller.core.module.FloodlightModuleException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to compute a topology instance with the paths between all switches
+ * computed up front, on one thread and on several. This is what
+ * computeParallelism is for, so run it before turning that above 1, on
+ * the machine the controller runs on, e.g.
+ *
+ *   mvn -P jmh compile exec:exec -Djmh.args="ComputeParallelism"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xss16m")
+public class ComputeParallelismBenchmark {
+    @Param({ "FAT_TREE", "LEAF_SPINE", "TORUS", "RANDOM" })
+    public SyntheticTopology.Shape shape;
+
+    @Param({ "10", "100", "300" })
+    public int switches;
+
+    /* 0 for one thread per processor */
+    @Param({ "1", "2", "4", "0" })
+    public int computeParallelism;
+
+    private TopologyManager tm;
+
+    @Setup
+    public void setUp() throws FloodlightModuleException {
+        tm = TopologyBenchmark.newTopologyManager(new SyntheticTopology(shape, switches, 1),
+                0, "latency", computeParallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        TopologyManager.shutdownComputePool();
+    }
+
+    @Benchmark
+    public TopologyInstance build() {
+        tm.createNewInstance("benchmark", true);
+        return tm.getCurrentInstance();
+    }
+}
@@ -0,0 +1,109 @@
+package net.floodlightcontroller.topology;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.floodlightcontroller.core.module.FloodlightModuleException;
+import net.floodlightcontroller.routing.Path;
+import net.floodlightcontroller.routing.RoutingManager;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.projectfloodlight.openflow.types.DatapathId;
+
+/**
+ * {@link RoutingBenchmark}'s path queries on topologies of 1,000 and
+ * 10,000 switches, with paths computed on demand only. With 100 pairs the
+ * queries are answered from the path cache after the first round; with
+ * 10,000 most pairs are not in it and are computed on every query. Yen's
+ * algorithm on every query is left to {@link RoutingBenchmark}. Run it on
+ * its own with
+ *
+ *   mvn -P jmh compile exec:exec -Djmh.args="LargeRouting"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xss16m", "-Xmx6g" })
+public class LargeRoutingBenchmark {
+    @Param({ "FAT_TREE", "LEAF_SPINE", "TORUS", "RANDOM" })
+    public SyntheticTopology.Shape shape;
+
+    @Param({ "1000", "10000" })
+    public int switches;
+
+    @Param({ "1000" })
+    public int pathCacheSize;
+
+    @Param({ "latency" })
+    public String pathMetric;
+
+    /* switch pairs queried */
+    @Param({ "100", "10000" })
+    public int pairs;
+
+    private RoutingManager routing;
+    private DatapathId[] src;
+    private DatapathId[] dst;
+    private int next;
+    private long usedBefore;
+
+    @Setup
+    public void setUp() throws FloodlightModuleException {
+        SyntheticTopology topology = new SyntheticTopology(shape, switches, 1);
+        usedBefore = TopologyBenchmark.usedHeap();
+        routing = RoutingBenchmark.newRoutingManager(TopologyBenchmark.newTopologyManager(topology,
+                pathCacheSize, pathMetric, 1));
+        DatapathId[][] p = RoutingBenchmark.pickPairs(topology, pairs);
+        src = p[0];
+        dst = p[1];
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Heap {
+        public long retainedKb;
+
+        @Setup(Level.Iteration)
+        public void setUp(LargeRoutingBenchmark b) {
+            retainedKb = (TopologyBenchmark.usedHeap() - b.usedBefore) / 1024;
+        }
+    }
+
+    private int nextPair() {
+        int i = next;
+        next = i + 1 < pairs ? i + 1 : 0;
+        return i;
+    }
+
+    @Benchmark
+    public Path getPath(Heap h) {
+        int i = nextPair();
+        return routing.getPath(src[i], dst[i]);
+    }
+
+    @Benchmark
+    public List<Path> getPathsFast(Heap h) {
+        int i = nextPair();
+        return routing.getPathsFast(src[i], dst[i]);
+    }
+
+    @Benchmark
+    public boolean pathExists(Heap h) {
+        int i = nextPair();
+        return routing.pathExists(src[i], dst[i]);
+    }
+}
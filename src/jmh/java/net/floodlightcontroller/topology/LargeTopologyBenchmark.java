@@ -0,0 +1,86 @@
+package net.floodlightcontroller.topology;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.floodlightcontroller.core.module.FloodlightModuleException;
+import net.floodlightcontroller.linkdiscovery.Link;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link TopologyBenchmark}'s builds on topologies of 1,000 and 10,000
+ * switches, with paths computed on demand only. The leaf-spine topology
+ * of 10,000 switches has about a million links, so the forks get a 6 GB
+ * heap. Run it on its own with
+ *
+ *   mvn -P jmh compile exec:exec -Djmh.args="LargeTopology"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = { "-Xss16m", "-Xmx6g" })
+public class LargeTopologyBenchmark {
+    @Param({ "FAT_TREE", "LEAF_SPINE", "TORUS", "RANDOM" })
+    public SyntheticTopology.Shape shape;
+
+    @Param({ "1000", "10000" })
+    public int switches;
+
+    @Param({ "1000" })
+    public int pathCacheSize;
+
+    @Param({ "latency" })
+    public String pathMetric;
+
+    private TopologyManager tm;
+    private List<Link> changed;
+    private boolean changedDown;
+    private long usedBefore;
+
+    @Setup
+    public void setUp() throws FloodlightModuleException {
+        SyntheticTopology topology = new SyntheticTopology(shape, switches, 1);
+        changed = TopologyBenchmark.pickChangedLinks(topology);
+        usedBefore = TopologyBenchmark.usedHeap();
+        tm = TopologyBenchmark.newTopologyManager(topology, pathCacheSize, pathMetric, 1);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Heap {
+        public long retainedKb;
+
+        @Setup(Level.Iteration)
+        public void setUp(LargeTopologyBenchmark b) {
+            retainedKb = (TopologyBenchmark.usedHeap() - b.usedBefore) / 1024;
+        }
+    }
+
+    @Benchmark
+    public TopologyInstance build(Heap h) {
+        tm.createNewInstance("benchmark", true);
+        return tm.getCurrentInstance();
+    }
+
+    @Benchmark
+    public TopologyInstance linkDownUp(Heap h) {
+        changedDown = !changedDown;
+        TopologyBenchmark.changeLinks(tm, changed, changedDown);
+        return tm.getCurrentInstance();
+    }
+}
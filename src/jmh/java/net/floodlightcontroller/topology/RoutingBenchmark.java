@@ -0,0 +1,149 @@
+package net.floodlightcontroller.topology;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.floodlightcontroller.core.module.FloodlightModuleContext;
+import net.floodlightcontroller.core.module.FloodlightModuleException;
+import net.floodlightcontroller.routing.Path;
+import net.floodlightcontroller.routing.RoutingManager;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.projectfloodlight.openflow.types.DatapathId;
+
+/**
+ * Time the routing service takes to answer path queries on generated
+ * topologies, over a fixed set of pairs of switches picked at random. With
+ * paths computed on demand, pairs beyond the path cache size are
+ * computed again on every query. The heap retained by the topology
+ * manager, with the paths it cached, is reported as retainedKb next to
+ * the time taken.
+ *
+ * See {@link TopologyBenchmark} for the parameters shared with it, and
+ * {@link LargeRoutingBenchmark} for 1,000 and 10,000 switches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+/* finding clusters recurses once per switch along the way */
+@Fork(value = 1, jvmArgsAppend = "-Xss16m")
+public class RoutingBenchmark {
+    @Param({ "FAT_TREE", "LEAF_SPINE", "TORUS", "RANDOM" })
+    public SyntheticTopology.Shape shape;
+
+    @Param({ "10", "100", "300" })
+    public int switches;
+
+    @Param({ "0", "1000" })
+    public int pathCacheSize;
+
+    @Param({ "latency" })
+    public String pathMetric;
+
+    @Param({ "1" })
+    public int computeParallelism;
+
+    /* switch pairs queried */
+    @Param({ "100" })
+    public int pairs;
+
+    private RoutingManager routing;
+    private DatapathId[] src;
+    private DatapathId[] dst;
+    private int next;
+    private long usedBefore;
+
+    static RoutingManager newRoutingManager(TopologyManager tm) throws FloodlightModuleException {
+        FloodlightModuleContext fmc = new FloodlightModuleContext();
+        fmc.addService(ITopologyService.class, tm);
+        RoutingManager routing = new RoutingManager();
+        routing.init(fmc);
+        return routing;
+    }
+
+    /**
+     * Pick pairs of different switches at random, the same ones every run.
+     * @return the sources and the destinations
+     */
+    static DatapathId[][] pickPairs(SyntheticTopology topology, int pairs) {
+        List<DatapathId> sws = topology.getSwitches();
+        Random random = new Random(1);
+        DatapathId[][] p = new DatapathId[2][pairs];
+        for (int i = 0; i < pairs; i++) {
+            p[0][i] = sws.get(random.nextInt(sws.size()));
+            do {
+                p[1][i] = sws.get(random.nextInt(sws.size()));
+            } while (p[1][i].equals(p[0][i]));
+        }
+        return p;
+    }
+
+    @Setup
+    public void setUp() throws FloodlightModuleException {
+        SyntheticTopology topology = new SyntheticTopology(shape, switches, 1);
+        usedBefore = TopologyBenchmark.usedHeap();
+        routing = newRoutingManager(TopologyBenchmark.newTopologyManager(topology, pathCacheSize,
+                pathMetric, computeParallelism));
+        DatapathId[][] p = pickPairs(topology, pairs);
+        src = p[0];
+        dst = p[1];
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Heap {
+        public long retainedKb;
+
+        /* what the iterations before left behind, outside the time taken */
+        @Setup(Level.Iteration)
+        public void setUp(RoutingBenchmark b) {
+            retainedKb = (TopologyBenchmark.usedHeap() - b.usedBefore) / 1024;
+        }
+    }
+
+    private int nextPair() {
+        int i = next;
+        next = i + 1 < pairs ? i + 1 : 0;
+        return i;
+    }
+
+    @Benchmark
+    public Path getPath(Heap h) {
+        int i = nextPair();
+        return routing.getPath(src[i], dst[i]);
+    }
+
+    @Benchmark
+    public List<Path> getPathsFast(Heap h) {
+        int i = nextPair();
+        return routing.getPathsFast(src[i], dst[i]);
+    }
+
+    /* Yen's algorithm, run on every query */
+    @Benchmark
+    public List<Path> getPathsSlow(Heap h) {
+        int i = nextPair();
+        return routing.getPathsSlow(src[i], dst[i], routing.getMaxPathsToCompute());
+    }
+
+    @Benchmark
+    public boolean pathExists(Heap h) {
+        int i = nextPair();
+        return routing.pathExists(src[i], dst[i]);
+    }
+}
@@ -0,0 +1,200 @@
+package net.floodlightcontroller.topology;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import net.floodlightcontroller.core.types.NodePortTuple;
+import net.floodlightcontroller.linkdiscovery.ILinkDiscovery.LinkType;
+import net.floodlightcontroller.linkdiscovery.Link;
+
+import org.projectfloodlight.openflow.types.DatapathId;
+import org.projectfloodlight.openflow.types.OFPort;
+import org.projectfloodlight.openflow.types.U64;
+
+/**
+ * Generated topologies for benchmarking topology computation. Switches
+ * are numbered from 1 and every pair of neighbours is joined by a link
+ * each way, with a latency of 1 to 20 picked at random.
+ */
+public class SyntheticTopology {
+    public enum Shape {
+        /**
+         * A k-ary fat-tree of 5k^2/4 switches, with k the largest even
+         * number that fits in the requested size.
+         */
+        FAT_TREE {
+            @Override
+            void connect(SyntheticTopology t, int switches) {
+                int k = 2;
+                while (5 * (k + 2) * (k + 2) / 4 <= switches) {
+                    k += 2;
+                }
+                int half = k / 2;
+                int core = half * half;
+                for (int pod = 0; pod < k; pod++) {
+                    for (int a = 0; a < half; a++) {
+                        int agg = core + pod * k + a + 1;
+                        for (int c = 0; c < half; c++) {
+                            t.connect(agg, a * half + c + 1);
+                        }
+                        for (int e = 0; e < half; e++) {
+                            t.connect(agg, core + pod * k + half + e + 1);
+                        }
+                    }
+                }
+            }
+        },
+        /**
+         * Every leaf joined to every spine, with about sqrt(n)/2 spines.
+         */
+        LEAF_SPINE {
+            @Override
+            void connect(SyntheticTopology t, int switches) {
+                int spines = Math.max(2, (int) Math.sqrt(switches) / 2);
+                for (int leaf = spines + 1; leaf <= Math.max(switches, spines + 1); leaf++) {
+                    for (int spine = 1; spine <= spines; spine++) {
+                        t.connect(leaf, spine);
+                    }
+                }
+            }
+        },
+        /**
+         * A two dimensional torus, as near to square as the size allows.
+         */
+        TORUS {
+            @Override
+            void connect(SyntheticTopology t, int switches) {
+                int w = Math.max(2, (int) Math.sqrt(switches));
+                int h = Math.max(2, switches / w);
+                for (int y = 0; y < h; y++) {
+                    for (int x = 0; x < w; x++) {
+                        int sw = y * w + x + 1;
+                        /* in a dimension of two the wrap-around link would repeat the other */
+                        if (x + 1 < w || w > 2) {
+                            t.connect(sw, y * w + (x + 1) % w + 1);
+                        }
+                        if (y + 1 < h || h > 2) {
+                            t.connect(sw, (y + 1) % h * w + x + 1);
+                        }
+                    }
+                }
+            }
+        },
+        /**
+         * A ring, so that all switches are connected, with as many
+         * links again between switches picked at random.
+         */
+        RANDOM {
+            @Override
+            void connect(SyntheticTopology t, int switches) {
+                switches = Math.max(switches, 3);
+                for (int sw = 1; sw <= switches; sw++) {
+                    t.connect(sw, sw % switches + 1);
+                }
+                for (int i = 0; i < switches; i++) {
+                    int a = t.random.nextInt(switches) + 1;
+                    int b = t.random.nextInt(switches) + 1;
+                    if (a != b) {
+                        t.connect(a, b);
+                    }
+                }
+            }
+        };
+
+        abstract void connect(SyntheticTopology t, int switches);
+    }
+
+    private final Random random;
+    private final Map<DatapathId, Integer> lastPort = new HashMap<DatapathId, Integer>();
+    private final List<Link> links = new ArrayList<Link>();
+
+    /**
+     * @param shape how the switches are connected
+     * @param switches about how many switches there should be; the
+     * shape decides how many there are exactly
+     * @param seed for the random choices, so that runs can be compared
+     */
+    public SyntheticTopology(Shape shape, int switches, long seed) {
+        this.random = new Random(seed);
+        shape.connect(this, switches);
+    }
+
+    private void connect(int a, int b) {
+        DatapathId src = DatapathId.of(a);
+        DatapathId dst = DatapathId.of(b);
+        OFPort srcPort = nextPort(src);
+        OFPort dstPort = nextPort(dst);
+        links.add(new Link(src, srcPort, dst, dstPort, U64.of(random.nextInt(20) + 1)));
+        links.add(new Link(dst, dstPort, src, srcPort, U64.of(random.nextInt(20) + 1)));
+    }
+
+    private OFPort nextPort(DatapathId sw) {
+        Integer port = lastPort.get(sw);
+        port = port == null ? 1 : port + 1;
+        lastPort.put(sw, port);
+        return OFPort.of(port);
+    }
+
+    public List<DatapathId> getSwitches() {
+        List<DatapathId> switches = new ArrayList<DatapathId>(lastPort.keySet());
+        Collections.sort(switches);
+        return switches;
+    }
+
+    /**
+     * @return the links, each way, in the order they were made
+     */
+    public List<Link> getLinks() {
+        return Collections.unmodifiableList(links);
+    }
+
+    /**
+     * Add all links to the topology manager, as if discovered directly
+     * between OpenFlow switches.
+     */
+    public void addTo(TopologyManager tm) {
+        for (Link l : links) {
+            tm.addOrUpdateLink(l.getSrc(), l.getSrcPort(), l.getDst(), l.getDstPort(),
+                    l.getLatency(), LinkType.DIRECT_LINK);
+        }
+    }
+
+    /**
+     * @return a topology instance over all links that has not been
+     * computed yet, built the way the topology manager builds one
+     */
+    public TopologyInstance newInstance() {
+        Map<DatapathId, Set<OFPort>> ports = new HashMap<DatapathId, Set<OFPort>>();
+        Map<NodePortTuple, Set<Link>> linksAtPorts = new HashMap<NodePortTuple, Set<Link>>();
+        for (Link l : links) {
+            addPort(ports, linksAtPorts, new NodePortTuple(l.getSrc(), l.getSrcPort()), l);
+            addPort(ports, linksAtPorts, new NodePortTuple(l.getDst(), l.getDstPort()), l);
+        }
+        return new TopologyInstance(ports,
+                Collections.<NodePortTuple>emptySet(),
+                linksAtPorts,
+                Collections.<NodePortTuple>emptySet(),
+                Collections.<NodePortTuple>emptySet(),
+                linksAtPorts,
+                ports,
+                Collections.<NodePortTuple, Set<Link>>emptyMap());
+    }
+
+    private static void addPort(Map<DatapathId, Set<OFPort>> ports,
+            Map<NodePortTuple, Set<Link>> linksAtPorts, NodePortTuple npt, Link l) {
+        if (!ports.containsKey(npt.getNodeId())) {
+            ports.put(npt.getNodeId(), new HashSet<OFPort>());
+        }
+        ports.get(npt.getNodeId()).add(npt.getPortId());
+        if (!linksAtPorts.containsKey(npt)) {
+            linksAtPorts.put(npt, new HashSet<Link>());
+        }
+        linksAtPorts.get(npt).add(l);
+    }
+}
@@ -0,0 +1,183 @@
+package net.floodlightcontroller.topology;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import net.floodlightcontroller.core.module.FloodlightModuleContext;
+import net.floodlightcontroller.core.module.FloodlightModuleException;
+import net.floodlightcontroller.debugcounter.IDebugCounterService;
+import net.floodlightcontroller.debugcounter.MockDebugCounterService;
+import net.floodlightcontroller.linkdiscovery.ILinkDiscovery.LinkType;
+import net.floodlightcontroller.linkdiscovery.Link;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.projectfloodlight.openflow.types.DatapathId;
+import org.projectfloodlight.openflow.types.OFPort;
+
+/**
+ * Time to compute a topology instance on generated topologies: from
+ * scratch, after a link goes down or comes back, and the cluster and
+ * archipelago identification on its own. The heap retained by the
+ * topology manager, with its links and current instance, is reported as
+ * retainedKb next to the time taken.
+ *
+ * This runs on topologies of up to a few hundred switches, with paths
+ * computed between all switches up front and on demand. Computing them up
+ * front takes too long beyond that, so {@link LargeTopologyBenchmark}
+ * covers 1,000 and 10,000 switches with paths computed on demand only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+/* finding clusters recurses once per switch along the way */
+@Fork(value = 1, jvmArgsAppend = "-Xss16m")
+public class TopologyBenchmark {
+    @Param({ "FAT_TREE", "LEAF_SPINE", "TORUS", "RANDOM" })
+    public SyntheticTopology.Shape shape;
+
+    @Param({ "10", "100", "300" })
+    public int switches;
+
+    /* 0 to compute the paths between all switches up front */
+    @Param({ "0", "1000" })
+    public int pathCacheSize;
+
+    @Param({ "latency" })
+    public String pathMetric;
+
+    /* 0 for one thread per processor */
+    @Param({ "1" })
+    public int computeParallelism;
+
+    private SyntheticTopology topology;
+    private TopologyManager tm;
+    private List<Link> changed;
+    private boolean changedDown;
+    private long usedBefore;
+
+    /**
+     * Make a topology manager that knows the links of the topology and
+     * has computed an instance for them.
+     */
+    static TopologyManager newTopologyManager(SyntheticTopology topology, int pathCacheSize,
+            String pathMetric, int computeParallelism) throws FloodlightModuleException {
+        /* there are no switches, so only the ports with links are known */
+        TopologyManager tm = new TopologyManager() {
+            @Override
+            public Set<OFPort> getPorts(DatapathId sw) {
+                Set<OFPort> ports = getPortsPerSwitch().get(sw);
+                return ports == null ? Collections.<OFPort>emptySet() : ports;
+            }
+        };
+        FloodlightModuleContext fmc = new FloodlightModuleContext();
+        fmc.addService(IDebugCounterService.class, new MockDebugCounterService());
+        fmc.addConfigParam(tm, "pathMetric", pathMetric);
+        fmc.addConfigParam(tm, "computeParallelism", String.valueOf(computeParallelism));
+        if (pathCacheSize > 0) {
+            fmc.addConfigParam(tm, "computePathsOnDemand", "true");
+            fmc.addConfigParam(tm, "pathCacheSize", String.valueOf(pathCacheSize));
+        }
+        tm.init(fmc);
+        topology.addTo(tm);
+        tm.createNewInstance("benchmark", true);
+        return tm;
+    }
+
+    static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /* a link and the one back, somewhere in the middle */
+    static List<Link> pickChangedLinks(SyntheticTopology topology) {
+        List<Link> links = topology.getLinks();
+        return links.subList(links.size() / 4 * 2, links.size() / 4 * 2 + 2);
+    }
+
+    /**
+     * Take the links down, or bring them back, and compute the instance
+     * for that.
+     */
+    static void changeLinks(TopologyManager tm, List<Link> links, boolean down) {
+        for (Link l : links) {
+            if (down) {
+                tm.removeLink(l);
+            } else {
+                tm.addOrUpdateLink(l.getSrc(), l.getSrcPort(), l.getDst(), l.getDstPort(),
+                        l.getLatency(), LinkType.DIRECT_LINK);
+            }
+        }
+        tm.createNewInstance("benchmark", false);
+    }
+
+    @Setup
+    public void setUp() throws FloodlightModuleException {
+        topology = new SyntheticTopology(shape, switches, 1);
+        changed = pickChangedLinks(topology);
+        usedBefore = usedHeap();
+        tm = newTopologyManager(topology, pathCacheSize, pathMetric, computeParallelism);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Heap {
+        public long retainedKb;
+
+        /* what the iterations before left behind, outside the time taken */
+        @Setup(Level.Iteration)
+        public void setUp(TopologyBenchmark b) {
+            retainedKb = (usedHeap() - b.usedBefore) / 1024;
+        }
+    }
+
+    @Benchmark
+    public TopologyInstance build(Heap h) {
+        tm.createNewInstance("benchmark", true);
+        return tm.getCurrentInstance();
+    }
+
+    /* a link goes down, then comes back the next time */
+    @Benchmark
+    public TopologyInstance linkDownUp(Heap h) {
+        changedDown = !changedDown;
+        changeLinks(tm, changed, changedDown);
+        return tm.getCurrentInstance();
+    }
+
+    @State(Scope.Thread)
+    public static class Uncomputed {
+        TopologyInstance instance;
+
+        @Setup(Level.Invocation)
+        public void setUp(TopologyBenchmark b) {
+            instance = b.topology.newInstance();
+        }
+    }
+
+    @Benchmark
+    public TopologyInstance identifyClusters(Uncomputed u) {
+        u.instance.identifyClusters();
+        u.instance.identifyIntraClusterLinks();
+        u.instance.identifyArchipelagos();
+        return u.instance;
+    }
+}
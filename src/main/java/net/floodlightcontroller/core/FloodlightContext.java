@@ -17,19 +17,63 @@
 
 package net.floodlightcontroller.core;
 
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This is a context object where floodlight listeners can register 
  * and later retrieve context information associated with an
  * event
+ *
+ * Values are kept in an array indexed by the slot of their
+ * {@link FloodlightContextKey}. Access is not synchronized: a context
+ * belongs to the event being processed and is only used by the thread
+ * processing it.
  * @author readams
  */
 public class FloodlightContext {
-    protected ConcurrentHashMap<String, Object> storage =
-            new ConcurrentHashMap<String, Object>();
+    private static final Object[] EMPTY = new Object[0];
 
+    private Object[] slots = EMPTY;
+    protected ConcurrentHashMap<String, Object> storage;
+
+    /**
+     * Free-form storage for values that are not kept under a
+     * {@link FloodlightContextKey}. Values put through a
+     * {@link FloodlightContextStore} are not in this map.
+     */
     public ConcurrentHashMap<String, Object> getStorage() {
+        if (storage == null) {
+            storage = new ConcurrentHashMap<String, Object>();
+        }
         return storage;
     }
+
+    Object get(int slot) {
+        return slot < slots.length ? slots[slot] : null;
+    }
+
+    void put(int slot, Object value) {
+        if (slot >= slots.length) {
+            slots = Arrays.copyOf(slots,
+                    Math.max(slot + 1, FloodlightContextKey.getSlotCount()));
+        }
+        slots[slot] = value;
+    }
+
+    void remove(int slot) {
+        if (slot < slots.length) {
+            slots[slot] = null;
+        }
+    }
+
+    /**
+     * Remove all values, so that the context can be reused for another event.
+     */
+    public void clear() {
+        Arrays.fill(slots, null);
+        if (storage != null) {
+            storage.clear();
+        }
+    }
 }
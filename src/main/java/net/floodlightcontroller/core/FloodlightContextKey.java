@@ -0,0 +1,86 @@
+package net.floodlightcontroller.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A typed key for a value stored in a {@link FloodlightContext}. Each key
+ * is given a fixed integer slot when it is registered, so that a value can
+ * be read or written with a plain array access instead of a map lookup.
+ *
+ * Keys are meant to be registered once, in a static field of the service
+ * interface that defines them, e.g.
+ * <pre>
+ * public static final FloodlightContextKey&lt;IDevice&gt; CONTEXT_SRC_DEVICE_KEY =
+ *         FloodlightContextKey.register(CONTEXT_SRC_DEVICE);
+ * </pre>
+ * Registering the same name twice returns the same key, so the
+ * String-keyed methods of {@link FloodlightContextStore} and the typed
+ * ones see the same values.
+ *
+ * @param <V> the type of the value stored under this key
+ */
+public final class FloodlightContextKey<V> {
+    private static final ConcurrentHashMap<String, FloodlightContextKey<?>> keys =
+            new ConcurrentHashMap<String, FloodlightContextKey<?>>();
+    private static volatile int slotCount = 0;
+
+    private final String name;
+    private final int slot;
+
+    private FloodlightContextKey(String name, int slot) {
+        this.name = name;
+        this.slot = slot;
+    }
+
+    /**
+     * Register a key, or get the already registered key of that name.
+     * @param name the key's name; by convention a fully qualified name
+     * @return the key
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> FloodlightContextKey<V> register(String name) {
+        if (name == null) {
+            throw new NullPointerException("name must not be null");
+        }
+        FloodlightContextKey<?> key = keys.get(name);
+        if (key == null) {
+            synchronized (FloodlightContextKey.class) {
+                key = keys.get(name);
+                if (key == null) {
+                    key = new FloodlightContextKey<V>(name, slotCount);
+                    keys.put(name, key);
+                    slotCount = slotCount + 1;
+                }
+            }
+        }
+        return (FloodlightContextKey<V>) key;
+    }
+
+    /**
+     * @param name the key's name
+     * @return the key registered under that name, or null if there is none
+     */
+    static FloodlightContextKey<?> lookup(String name) {
+        return keys.get(name);
+    }
+
+    /**
+     * @return the number of slots handed out so far
+     */
+    static int getSlotCount() {
+        return slotCount;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    @Override
+    public String toString() {
+        return "FloodlightContextKey [name=" + name + ", slot=" + slot + "]";
+    }
+}
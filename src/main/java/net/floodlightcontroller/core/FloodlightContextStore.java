@@ -17,18 +17,42 @@
 
 package net.floodlightcontroller.core;
 
+/**
+ * Typed access to values in a {@link FloodlightContext}.
+ *
+ * The {@link FloodlightContextKey} methods are the fast path. The String
+ * methods are kept for compatibility: they resolve the name to its
+ * registered key first, registering it on put if needed.
+ */
 public class FloodlightContextStore<V> {
-    
+
+    @SuppressWarnings("unchecked")
+    public V get(FloodlightContext bc, FloodlightContextKey<V> key) {
+        return (V)bc.get(key.getSlot());
+    }
+
+    public void put(FloodlightContext bc, FloodlightContextKey<V> key, V value) {
+        bc.put(key.getSlot(), value);
+    }
+
+    public void remove(FloodlightContext bc, FloodlightContextKey<V> key) {
+        bc.remove(key.getSlot());
+    }
+
     @SuppressWarnings("unchecked")
     public V get(FloodlightContext bc, String key) {
-        return (V)bc.storage.get(key);
+        FloodlightContextKey<?> k = FloodlightContextKey.lookup(key);
+        return k == null ? null : (V)bc.get(k.getSlot());
     }
     
     public void put(FloodlightContext bc, String key, V value) {
-        bc.storage.put(key, value);
+        bc.put(FloodlightContextKey.register(key).getSlot(), value);
     }
     
     public void remove(FloodlightContext bc, String key) {
-        bc.storage.remove(key);
+        FloodlightContextKey<?> k = FloodlightContextKey.lookup(key);
+        if (k != null) {
+            bc.remove(k.getSlot());
+        }
     }
 }
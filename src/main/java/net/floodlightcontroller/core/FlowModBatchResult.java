@@ -0,0 +1,83 @@
+package net.floodlightcontroller.core;
+
+import java.util.List;
+
+import org.projectfloodlight.openflow.protocol.OFErrorMsg;
+import org.projectfloodlight.openflow.types.DatapathId;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The outcome of a batch of flow-mods written with
+ * {@link net.floodlightcontroller.core.internal.IOFSwitchService#writeFlowModBatch(DatapathId, List)}.
+ *
+ * A batch that was sent as an atomic bundle either took effect as a whole
+ * or, if there are errors, not at all. A batch that was sent with a barrier
+ * may have been applied in part: every message without an error took
+ * effect.
+ */
+public class FlowModBatchResult {
+    private final DatapathId dpid;
+    private final int size;
+    private final boolean bundled;
+    private final List<OFErrorMsg> errors;
+    private final long latencyNs;
+
+    public FlowModBatchResult(DatapathId dpid, int size, boolean bundled,
+            List<OFErrorMsg> errors, long latencyNs) {
+        this.dpid = dpid;
+        this.size = size;
+        this.bundled = bundled;
+        this.errors = ImmutableList.copyOf(errors);
+        this.latencyNs = latencyNs;
+    }
+
+    public DatapathId getDpid() {
+        return dpid;
+    }
+
+    /**
+     * @return the number of messages in the batch
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return true if the batch was sent as an atomic bundle, false if it
+     * was sent with a barrier
+     */
+    public boolean isBundled() {
+        return bundled;
+    }
+
+    /**
+     * @return the error messages the switch sent in reply to the batch, in
+     * the order received; their xids are those of the messages that failed
+     */
+    public List<OFErrorMsg> getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return true if the switch reported no errors
+     */
+    public boolean isSuccess() {
+        return errors.isEmpty();
+    }
+
+    /**
+     * @return nanoseconds from writing the batch to the switch confirming
+     * it had processed the whole batch
+     */
+    public long getLatencyNs() {
+        return latencyNs;
+    }
+
+    @Override
+    public String toString() {
+        return "FlowModBatchResult [dpid=" + dpid + ", size=" + size
+                + ", bundled=" + bundled + ", errors=" + errors.size()
+                + ", latencyUs=" + latencyNs / 1000 + "]";
+    }
+}
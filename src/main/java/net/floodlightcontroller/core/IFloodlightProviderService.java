@@ -22,6 +22,7 @@ import java.util.Map;
 
 import net.floodlightcontroller.core.module.IFloodlightService;
 import net.floodlightcontroller.packet.Ethernet;
+import net.floodlightcontroller.packet.PacketView;
 import net.floodlightcontroller.core.FloodlightContext;
 import net.floodlightcontroller.core.HARole;
 import net.floodlightcontroller.core.IHAListener;
@@ -52,6 +53,8 @@ public interface IFloodlightProviderService extends
      */
     public static final String CONTEXT_PI_PAYLOAD =
             "net.floodlightcontroller.core.IFloodlightProvider.piPayload";
+    public static final FloodlightContextKey<Ethernet> CONTEXT_PI_PAYLOAD_KEY =
+            FloodlightContextKey.register(CONTEXT_PI_PAYLOAD);
 
     /**
      * A FloodlightContextStore object that can be used to retrieve the
@@ -60,6 +63,23 @@ public interface IFloodlightProviderService extends
     public static final FloodlightContextStore<Ethernet> bcStore =
             new FloodlightContextStore<Ethernet>();
 
+    /**
+     * A value stored in the floodlight context containing a lazily decoded,
+     * zero-copy view over the payload of a packet-in message. Present even
+     * when the full Ethernet payload is not deserialized up front.
+     */
+    public static final String CONTEXT_PI_VIEW =
+            "net.floodlightcontroller.core.IFloodlightProvider.piView";
+    public static final FloodlightContextKey<PacketView> CONTEXT_PI_VIEW_KEY =
+            FloodlightContextKey.register(CONTEXT_PI_VIEW);
+
+    /**
+     * A FloodlightContextStore object that can be used to retrieve the
+     * packet-in payload view
+     */
+    public static final FloodlightContextStore<PacketView> pvStore =
+            new FloodlightContextStore<PacketView>();
+
     /**
      * Service name used in the service directory representing
      * the OpenFlow controller-switch channel
@@ -58,4 +58,22 @@ public interface IOFConnection extends IOFMessageWriter {
 	 * @return milliseconds
 	 */
 	public U64 getLatency();
+
+	/**
+	 * @return messages waiting in the outbound queue, indexed by
+	 * {@link OFMessagePriority} ordinal; empty if outbound scheduling is off
+	 */
+	int[] getQueueDepths();
+
+	/**
+	 * @return flow-mods per second the connection is currently paced to;
+	 * 0 if outbound scheduling is off
+	 */
+	double getFlowModRate();
+
+	/**
+	 * @return round trip time of the last barrier sent to pace flow-mods,
+	 * in nanoseconds; 0 if there was none yet or outbound scheduling is off
+	 */
+	long getLastBarrierRttNs();
 }
@@ -20,6 +20,13 @@ public interface IOFConnectionBackend extends IOFConnection {
      */
     boolean isWritable();
 
+    /**
+     * Enable or disable reading from the underlying channel. Used to push
+     * back on a switch when the controller cannot keep up with it.
+     * @param autoRead false to stop reading until re-enabled
+     */
+    void setAutoRead(boolean autoRead);
+
     /** set the message/closing listener for this connection */
     void setListener(IOFConnectionListener listener);
     
@@ -20,6 +20,7 @@ package net.floodlightcontroller.core;
 import java.util.Collection;
 import java.util.List;
 
+import org.projectfloodlight.openflow.protocol.OFErrorMsg;
 import org.projectfloodlight.openflow.protocol.OFMessage;
 import org.projectfloodlight.openflow.protocol.OFRequest;
 import org.projectfloodlight.openflow.protocol.OFStatsReply;
@@ -52,6 +53,29 @@ public interface IOFMessageWriter{
      * @return list of messages that could not be written
      */
     Collection<OFMessage> write(Iterable<OFMessage> msgList);
+
+    /**
+     * Writes the list of messages to the output stream in the given
+     * priority class. The class only matters when outbound scheduling is
+     * enabled; see {@link OFMessagePriority}.
+     *
+     * Any messages that could not be written due to channel disconnect
+     * will be returned.
+     *
+     * @param msglist
+     * @param priority class of all the messages, or null to classify each
+     *        by its type
+     * @return list of messages that could not be written
+     */
+    Collection<OFMessage> write(Iterable<OFMessage> msgList, OFMessagePriority priority);
+
+    /**
+     * Hint that messages written so far should be sent now rather than
+     * held back for write coalescing. Writes are always flushed eventually,
+     * so callers only need this when latency matters more than batching,
+     * e.g. after the last message of a burst sent from a non-I/O thread.
+     */
+    void flush();
     
     /** write an OpenFlow Request message, register for a single corresponding reply message
      *  or error message.
@@ -76,4 +100,37 @@ public interface IOFMessageWriter{
      */
     <REPLY extends OFStatsReply> ListenableFuture<List<REPLY>> writeStatsRequest(
             OFStatsRequest<REPLY> request);
+
+    /** write a Stats (Multipart-) request and hand each corresponding reply
+     * message to the listener as it arrives, rather than collecting them all
+     * in a List first. Use this for replies that can be large, e.g. the flow
+     * table of a big switch, so the parts can be processed and dropped one
+     * at a time.
+     *
+     * @param request stats request
+     * @param listener receives the reply messages
+     * @return Future that completes once the last reply message has been
+     *         handed to the listener. Cancelling it stops further delivery.
+     *         If the connection is not currently connected, will
+     *         return a Future that immediately fails with a @link{SwitchDisconnectedException}.
+     */
+    <REPLY extends OFStatsReply> ListenableFuture<Void> streamStatsRequest(
+            OFStatsRequest<REPLY> request, IOFStatsReplyListener<REPLY> listener);
+
+    /** write a list of messages followed by a barrier request, and collect
+     * the error messages the switch sends in reply to any of them. Since the
+     * switch processes the barrier only after all earlier messages, every
+     * error has arrived by the time the barrier reply does.
+     *
+     * Errors are matched to the messages by xid, so the messages should have
+     * distinct xids. A message whose xid is already waiting for a reply to
+     * another request is still written, but its errors are not collected.
+     *
+     * @param msgList messages to write, in order
+     * @return Future with the error messages received, in order, empty if
+     *         there were none; it completes when the barrier reply arrives.
+     *         If the connection is not currently connected, will
+     *         return a Future that immediately fails with a @link{SwitchDisconnectedException}.
+     */
+    ListenableFuture<List<OFErrorMsg>> writeBatchWithBarrier(List<OFMessage> msgList);
 }
@@ -0,0 +1,21 @@
+package net.floodlightcontroller.core;
+
+import org.projectfloodlight.openflow.protocol.OFStatsReply;
+
+/**
+ * Receives the messages of a multipart stats reply one at a time, as they
+ * arrive from the switch.
+ *
+ * @see IOFMessageWriter#streamStatsRequest(org.projectfloodlight.openflow.protocol.OFStatsRequest, IOFStatsReplyListener)
+ * @param <REPLY> type of the stats reply
+ */
+public interface IOFStatsReplyListener<REPLY extends OFStatsReply> {
+    /**
+     * Called once for each reply message, in the order received. This is
+     * called from the connection's I/O thread and must not block.
+     *
+     * @param reply one part of the reply; the last part does not have
+     *        the REPLY_MORE flag set
+     */
+    void statsReplyReceived(REPLY reply);
+}
@@ -85,6 +85,20 @@ public interface IOFSwitchBackend extends IOFSwitch {
      * conflicting appear before before events adding new ports
      */
     OrderedCollection<PortChangeEvent> processOFPortStatus(OFPortStatus ps);
+
+    /**
+     * Update the ports of this switch with a burst of consecutive port
+     * status messages, e.g. from a port flap.
+     *
+     * Unlike calling {@link #processOFPortStatus(OFPortStatus)} for each
+     * message, the returned changes are the net changes of the whole burst:
+     * a port that went down and came back up unchanged is not reported.
+     *
+     * @param burst the port status messages, in the order received
+     * @return the ordered Collection of changes "applied" to the ports of
+     * the switch before the burst. Delete events come first.
+     */
+    OrderedCollection<PortChangeEvent> processOFPortStatuses(List<OFPortStatus> burst);
     
     /**
      * Add or modify a switch table.
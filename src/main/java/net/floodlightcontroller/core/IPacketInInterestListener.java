@@ -0,0 +1,17 @@
+package net.floodlightcontroller.core;
+
+/**
+ * An {@link IOFMessageListener} that only wants to see some packet-ins.
+ * The controller does not call {@link #receive} with packet-ins outside
+ * the declared interest. Callback ordering among the listeners that are
+ * called is unchanged.
+ *
+ * The interest is read when the PACKET_IN listeners are (re)compiled, i.e.
+ * after listeners are added or removed, so it should not change over time.
+ */
+public interface IPacketInInterestListener extends IOFMessageListener {
+    /**
+     * @return the packet-ins this listener wants, or null for all of them
+     */
+    public PacketInInterest getPacketInInterest();
+}
@@ -0,0 +1,46 @@
+package net.floodlightcontroller.core;
+
+import org.projectfloodlight.openflow.protocol.OFMessage;
+
+/**
+ * Classes of outgoing messages, highest priority first. When outbound
+ * scheduling is enabled, a connection always sends the queued messages of
+ * the highest class first, and flow-mods of any class are paced to the
+ * rate the switch can take.
+ *
+ * Messages written without an explicit priority are classified by
+ * {@link #of(OFMessage)}. Modules that push large amounts of flow-mods
+ * that are not urgent, e.g. reconciliation, should write them as
+ * {@link #BULK} so they do not hold up route setup.
+ */
+public enum OFMessagePriority {
+    /** Role requests, echoes, stats requests and everything else */
+    CONTROL,
+    /** Packet-outs */
+    PACKET_OUT,
+    /** Flow, group, meter, port and table mods and bundles */
+    FLOW_MOD,
+    /** Flow-mods that may wait behind all other traffic */
+    BULK;
+
+    /**
+     * @param m a message
+     * @return the class m is sent in if written without a priority
+     */
+    public static OFMessagePriority of(OFMessage m) {
+        switch (m.getType()) {
+        case PACKET_OUT:
+            return PACKET_OUT;
+        case FLOW_MOD:
+        case GROUP_MOD:
+        case METER_MOD:
+        case PORT_MOD:
+        case TABLE_MOD:
+        case BUNDLE_CONTROL:
+        case BUNDLE_ADD_MESSAGE:
+            return FLOW_MOD;
+        default:
+            return CONTROL;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package net.floodlightcontroller.core;
+
+import java.util.BitSet;
+
+import org.projectfloodlight.openflow.types.EthType;
+import org.projectfloodlight.openflow.types.IpProtocol;
+import org.projectfloodlight.openflow.types.TransportPort;
+
+/**
+ * Describes which packet-ins an {@link IPacketInInterestListener} wants to
+ * see. A packet-in is of interest if it matches every criterion that is
+ * set: one of the ethertypes, one of the IP protocols, and a source or
+ * destination transport port among the ports. A criterion with no values
+ * matches anything.
+ *
+ * The ethertype is the one after any VLAN tags. A packet-in with no
+ * readable IP header never matches an IP protocol criterion, and one with
+ * no readable transport header (including IP fragments) never matches a
+ * port criterion.
+ */
+public final class PacketInInterest {
+    /* Ethertypes and ports are unsigned 16 bit, IP protocols unsigned 8 bit */
+    private final BitSet ethTypes;
+    private final BitSet ipProtocols;
+    private final BitSet transportPorts;
+
+    private PacketInInterest(Builder b) {
+        this.ethTypes = (BitSet) b.ethTypes.clone();
+        this.ipProtocols = (BitSet) b.ipProtocols.clone();
+        this.transportPorts = (BitSet) b.transportPorts.clone();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param ethType an unsigned 16 bit ethertype, or -1 if unknown
+     * @param ipProtocol an IP protocol number, or -1 if not IP
+     * @return true if a packet-in of this class may be of interest; if
+     * {@link #hasTransportPorts()} the ports still need to be checked
+     */
+    public boolean matchesClass(int ethType, int ipProtocol) {
+        if (!ethTypes.isEmpty() && (ethType < 0 || !ethTypes.get(ethType))) {
+            return false;
+        }
+        if (!ipProtocols.isEmpty() && (ipProtocol < 0 || !ipProtocols.get(ipProtocol))) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param srcPort the transport source port, or -1 if none
+     * @param dstPort the transport destination port, or -1 if none
+     * @return true if either port is of interest, or no ports were given
+     */
+    public boolean matchesTransportPorts(int srcPort, int dstPort) {
+        if (transportPorts.isEmpty()) {
+            return true;
+        }
+        return (srcPort >= 0 && transportPorts.get(srcPort))
+                || (dstPort >= 0 && transportPorts.get(dstPort));
+    }
+
+    public boolean hasTransportPorts() {
+        return !transportPorts.isEmpty();
+    }
+
+    /**
+     * @return the ethertypes named, as unsigned 16 bit values
+     */
+    public int[] getEthTypes() {
+        return ethTypes.stream().toArray();
+    }
+
+    /**
+     * @return the IP protocol numbers named
+     */
+    public int[] getIpProtocols() {
+        return ipProtocols.stream().toArray();
+    }
+
+    @Override
+    public String toString() {
+        return "PacketInInterest [ethTypes=" + ethTypes + ", ipProtocols=" + ipProtocols
+                + ", transportPorts=" + transportPorts + "]";
+    }
+
+    public static class Builder {
+        private final BitSet ethTypes = new BitSet();
+        private final BitSet ipProtocols = new BitSet();
+        private final BitSet transportPorts = new BitSet();
+
+        private Builder() { }
+
+        public Builder ethType(EthType... types) {
+            for (EthType t : types) {
+                ethTypes.set(t.getValue() & 0xffff);
+            }
+            return this;
+        }
+
+        public Builder ipProtocol(IpProtocol... protocols) {
+            for (IpProtocol p : protocols) {
+                ipProtocols.set(p.getIpProtocolNumber() & 0xff);
+            }
+            return this;
+        }
+
+        public Builder transportPort(TransportPort... ports) {
+            for (TransportPort p : ports) {
+                transportPorts.set(p.getPort() & 0xffff);
+            }
+            return this;
+        }
+
+        public PacketInInterest build() {
+            return new PacketInInterest(this);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package net.floodlightcontroller.core.internal;
+
+import net.floodlightcontroller.packet.PacketView;
+
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFPacketOut;
+import org.projectfloodlight.openflow.protocol.action.OFAction;
+import org.projectfloodlight.openflow.protocol.action.OFActionOutput;
+import org.projectfloodlight.openflow.types.MacAddress;
+import org.projectfloodlight.openflow.types.OFAuxId;
+import org.projectfloodlight.openflow.types.OFPort;
+
+/**
+ * Policy for spreading writes over a switch's auxiliary connections.
+ *
+ * It applies only to messages written without an explicit
+ * {@link net.floodlightcontroller.core.LogicalOFMessageCategory}, i.e. to
+ * the MAIN category, and only when the switch has auxiliary connections:
+ * <ul>
+ * <li> Packet-outs are spread over the auxiliary connections by a hash of
+ * the packet's flow, so packet-outs of one flow stay in order. A packet-out
+ * that outputs to TABLE stays on the main connection, since it has to be
+ * processed after flow-mods written before it.
+ * <li> Stats requests go to the highest auxiliary connection. If there are
+ * two or more, packet-outs do not use that one.
+ * <li> Everything else, flow-mods and barriers in particular, stays on the
+ * main connection.
+ * </ul>
+ * Which connection a packet-in arrives on is up to the switch.
+ */
+public class AuxConnectionStriping {
+    private static volatile boolean enabled = false;
+
+    private AuxConnectionStriping() { }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        AuxConnectionStriping.enabled = enabled;
+    }
+
+    /**
+     * @param m the message to write
+     * @param auxIds the switch's auxiliary connections, in ascending order
+     * @return the connection m should be written to
+     */
+    static OFAuxId select(OFMessage m, OFAuxId[] auxIds) {
+        if (auxIds.length == 0) {
+            return OFAuxId.MAIN;
+        }
+        switch (m.getType()) {
+        case PACKET_OUT:
+            OFPacketOut po = (OFPacketOut) m;
+            if (outputsToTable(po)) {
+                return OFAuxId.MAIN;
+            }
+            int n = auxIds.length > 1 ? auxIds.length - 1 : 1;
+            return auxIds[(flowHash(po) & Integer.MAX_VALUE) % n];
+        default:
+            return OFAuxId.MAIN;
+        }
+    }
+
+    /**
+     * @param auxIds the switch's auxiliary connections, in ascending order
+     * @return the connection stats requests should be written to
+     */
+    static OFAuxId selectForStats(OFAuxId[] auxIds) {
+        return auxIds.length == 0 ? OFAuxId.MAIN : auxIds[auxIds.length - 1];
+    }
+
+    static boolean outputsToTable(OFPacketOut po) {
+        for (OFAction a : po.getActions()) {
+            if (a instanceof OFActionOutput && OFPort.TABLE.equals(((OFActionOutput) a).getPort())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int flowHash(OFPacketOut po) {
+        byte[] data = po.getData();
+        if (data == null || data.length == 0) {
+            /* buffered on the switch; no flow to keep in order with */
+            return po.getBufferId().hashCode();
+        }
+        PacketView pv = new PacketView(data);
+        MacAddress src = pv.getSourceMACAddress();
+        MacAddress dst = pv.getDestinationMACAddress();
+        int h = pv.getEtherTypeValue();
+        h = 31 * h + (src == null ? 0 : src.hashCode());
+        h = 31 * h + (dst == null ? 0 : dst.hashCode());
+        h = 31 * h + pv.getIpProtocolValue();
+        h = 31 * h + pv.getSourcePortValue();
+        h = 31 * h + pv.getDestinationPortValue();
+        return h ^ (h >>> 16);
+    }
+}
@@ -20,6 +20,7 @@ package net.floodlightcontroller.core.internal;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.RuntimeMXBean;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -29,7 +30,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.Stack;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -56,6 +56,7 @@ import net.floodlightcontroller.core.util.ListenerDispatcher;
 import net.floodlightcontroller.core.web.CoreWebRoutable;
 import net.floodlightcontroller.debugcounter.IDebugCounterService;
 import net.floodlightcontroller.packet.Ethernet;
+import net.floodlightcontroller.packet.PacketView;
 import net.floodlightcontroller.perfmon.IPktInProcessingTimeService;
 import net.floodlightcontroller.restserver.IRestApiService;
 import net.floodlightcontroller.storage.IResultSet;
@@ -86,6 +87,7 @@ public class Controller implements IFloodlightProviderService, IStorageSourceLis
 
     /* OpenFlow message listeners and dispatchers */
     protected static ConcurrentMap<OFType, ListenerDispatcher<OFType,IOFMessageListener>> messageListeners;
+    private volatile PacketInDispatchIndex packetInIndex;
     protected static ConcurrentLinkedQueue<IControllerCompletionListener> completionListeners;
     
     /* 
@@ -162,6 +164,7 @@ public class Controller implements IFloodlightProviderService, IStorageSourceLis
     };
     
     protected static boolean alwaysDecodeEth = true;
+    protected static boolean packetInViews = true;
 
     @Override
     public ModuleLoaderState getModuleLoaderState(){
@@ -293,13 +296,22 @@ public class Controller implements IFloodlightProviderService, IStorageSourceLis
     // Handler for SwitchPortsChanged was here (notifyPortChanged). Handled in OFSwitchManager
 
     /**
-     * flcontext_cache - Keep a thread local stack of contexts
+     * Upper bound on the number of free contexts kept per thread. Contexts
+     * are only nested when a listener re-enters handleMessage, so a handful
+     * is plenty; the bound just keeps a burst of nesting from pinning memory.
      */
-    protected static final ThreadLocal<Stack<FloodlightContext>> flcontext_cache =
-        new ThreadLocal <Stack<FloodlightContext>> () {
+    protected static final int FLCONTEXT_CACHE_SIZE = 16;
+
+    /**
+     * flcontext_cache - Keep a thread local stack of contexts. The stack is
+     * only touched by its own thread, so it does not need the locking
+     * java.util.Stack does on every push and pop.
+     */
+    protected static final ThreadLocal<ArrayDeque<FloodlightContext>> flcontext_cache =
+        new ThreadLocal <ArrayDeque<FloodlightContext>> () {
             @Override
-            protected Stack<FloodlightContext> initialValue() {
-                return new Stack<FloodlightContext>();
+            protected ArrayDeque<FloodlightContext> initialValue() {
+                return new ArrayDeque<FloodlightContext>(FLCONTEXT_CACHE_SIZE);
             }
         };
 
@@ -308,15 +320,10 @@ public class Controller implements IFloodlightProviderService, IStorageSourceLis
      * @return FloodlightContext
      */
     protected static FloodlightContext flcontext_alloc() {
-        FloodlightContext flcontext = null;
-
-        if (flcontext_cache.get().empty()) {
+        FloodlightContext flcontext = flcontext_cache.get().pollFirst();
+        if (flcontext == null) {
             flcontext = new FloodlightContext();
         }
-        else {
-            flcontext = flcontext_cache.get().pop();
-        }
-
         return flcontext;
     }
 
@@ -325,8 +332,11 @@ public class Controller implements IFloodlightProviderService, IStorageSourceLis
      * @param flcontext
      */
     protected void flcontext_free(FloodlightContext flcontext) {
-        flcontext.getStorage().clear();
-        flcontext_cache.get().push(flcontext);
+        ArrayDeque<FloodlightContext> cache = flcontext_cache.get();
+        if (cache.size() < FLCONTEXT_CACHE_SIZE) {
+            flcontext.clear();
+            cache.offerFirst(flcontext);
+        }
     }
 
 
@@ -349,6 +359,7 @@ public class Controller implements IFloodlightProviderService, IStorageSourceLis
     public void handleMessage(IOFSwitch sw, OFMessage m,
                                  FloodlightContext bContext) {
         Ethernet eth = null;
+        PacketView view = null;
         log.trace("Dispatching OFMessage to listeners.");
         if (this.notifiedRole == HARole.STANDBY) {
             counters.dispatchMessageWhileStandby.increment();
@@ -381,6 +392,13 @@ public class Controller implements IFloodlightProviderService, IStorageSourceLis
                     }
 
                 }
+                if (packetInViews) {
+                    /* Cheap: headers are only decoded when a listener reads them */
+                    view = new PacketView(pi.getData());
+                    if (eth != null) {
+                        view.setEthernet(eth);
+                    }
+                }
                 // fall through to default case...
 
             default:
@@ -390,6 +408,18 @@ public class Controller implements IFloodlightProviderService, IStorageSourceLis
                     listeners = messageListeners.get(m.getType()).getOrderedListeners();
                 }
 
+                /* Packet-ins only go to the listeners interested in them */
+                PacketInDispatchIndex.Entry[] piListeners = null;
+                PacketView piClass = null;
+                if (listeners != null && m.getType() == OFType.PACKET_IN) {
+                    PacketInDispatchIndex index = getPacketInIndex(listeners);
+                    if (index.isFiltering()) {
+                        piClass = (view != null) ? view : new PacketView(((OFPacketIn) m).getData());
+                        piListeners = index.getEntries(piClass.getEtherTypeValue(),
+                                piClass.getIpProtocolValue());
+                    }
+                }
+
                 FloodlightContext bc = null;
                 if (listeners != null) {
                     // Check if floodlight context is passed from the calling
@@ -402,27 +432,47 @@ public class Controller implements IFloodlightProviderService, IStorageSourceLis
                     }
                     if (eth != null) {
                         IFloodlightProviderService.bcStore.put(bc,
-                                IFloodlightProviderService.CONTEXT_PI_PAYLOAD,
+                                IFloodlightProviderService.CONTEXT_PI_PAYLOAD_KEY,
                                 eth);
                     }
+                    if (view != null) {
+                        IFloodlightProviderService.pvStore.put(bc,
+                                IFloodlightProviderService.CONTEXT_PI_VIEW_KEY,
+                                view);
+                    }
 
                     // Get the starting time (overall and per-component) of
                     // the processing chain for this packet if performance
                     // monitoring is turned on
                     pktinProcTimeService.bootstrap();
 
-                    for (IOFMessageListener l : listeners) {
-                        pktinProcTimeService.addListener(l);
+                    if (piListeners != null) {
+                        for (PacketInDispatchIndex.Entry e : piListeners) {
+                            pktinProcTimeService.addListener(e.listener);
+                        }
+                    } else {
+                        for (IOFMessageListener l : listeners) {
+                            pktinProcTimeService.addListener(l);
+                        }
                     }
                     pktinProcTimeService.recordStartTimePktIn();
-                    Command cmd;
-                    for (IOFMessageListener listener : listeners) {
-                        pktinProcTimeService.recordStartTimeComp(listener);
-                        cmd = listener.receive(sw, m, bc);
-                        pktinProcTimeService.recordEndTimeComp(listener);
-
-                        if (Command.STOP.equals(cmd)) {
-                            break;
+                    if (piListeners != null) {
+                        for (PacketInDispatchIndex.Entry e : piListeners) {
+                            if (e.portInterest != null
+                                    && !e.portInterest.matchesTransportPorts(
+                                            piClass.getSourcePortValue(),
+                                            piClass.getDestinationPortValue())) {
+                                continue;
+                            }
+                            if (dispatchToListener(e.listener, sw, m, bc)) {
+                                break;
+                            }
+                        }
+                    } else {
+                        for (IOFMessageListener listener : listeners) {
+                            if (dispatchToListener(listener, sw, m, bc)) {
+                                break;
+                            }
                         }
                     }
                     pktinProcTimeService.recordEndTimePktIn(sw, m, bc);
@@ -437,6 +487,33 @@ public class Controller implements IFloodlightProviderService, IStorageSourceLis
         }
     }
     
+    /**
+     * Run one listener in the chain.
+     * @return true if the listener stopped the chain
+     */
+    private boolean dispatchToListener(IOFMessageListener listener, IOFSwitch sw,
+            OFMessage m, FloodlightContext bc) {
+        pktinProcTimeService.recordStartTimeComp(listener);
+        Command cmd = listener.receive(sw, m, bc);
+        pktinProcTimeService.recordEndTimeComp(listener);
+        return Command.STOP.equals(cmd);
+    }
+
+    /**
+     * Get the dispatch index for the current PACKET_IN listeners, compiling
+     * a new one if the listeners changed since the last packet-in. The
+     * ListenerDispatcher replaces its list on every change, so comparing
+     * identity is enough.
+     */
+    private PacketInDispatchIndex getPacketInIndex(List<IOFMessageListener> listeners) {
+        PacketInDispatchIndex index = packetInIndex;
+        if (index == null || index.getSource() != listeners) {
+            index = new PacketInDispatchIndex(listeners);
+            packetInIndex = index;
+        }
+        return index;
+    }
+
     // ***************
     // IFloodlightProvider
     // ***************
@@ -654,6 +731,14 @@ public class Controller implements IFloodlightProviderService, IStorageSourceLis
         		log.error("Could not parse 'deserializeEthPacketIns' of {}. Using default setting of {}", decodeEth, alwaysDecodeEth);
         	}
         }        
+
+        String views = configParams.get("packetInViews");
+        if (!Strings.isNullOrEmpty(views)) {
+            packetInViews = Boolean.parseBoolean(views.trim());
+        }
+        log.info("Controller will {}store a lazily decoded view of packet-in payloads in the context. "
+                + "Set 'packetInViews' to change this", packetInViews ? "" : "not ");
+
         if (alwaysDecodeEth) {
 	        log.warn("Controller will automatically deserialize all Ethernet packet-in messages. "
 	        		+ "Set 'deserializeEthPacketIns' to 'FALSE' if this feature is not "
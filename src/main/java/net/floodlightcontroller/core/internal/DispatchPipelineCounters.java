@@ -0,0 +1,45 @@
+package net.floodlightcontroller.core.internal;
+
+import net.floodlightcontroller.debugcounter.IDebugCounter;
+import net.floodlightcontroller.debugcounter.IDebugCounterService;
+import net.floodlightcontroller.debugcounter.IDebugCounterService.MetaData;
+
+public class DispatchPipelineCounters {
+
+    public final String prefix = OFMessageDispatchPipeline.class.getSimpleName();
+    public final IDebugCounter enqueued;
+    public final IDebugCounter dequeued;
+    public final IDebugCounter queueWaitTimeUs;
+    public final IDebugCounter backpressureOn;
+    public final IDebugCounter backpressureOff;
+    public final IDebugCounter dropped;
+    public final IDebugCounter dispatchError;
+
+    public DispatchPipelineCounters(IDebugCounterService debugCounters) {
+        debugCounters.registerModule(prefix);
+        enqueued = debugCounters.registerCounter(prefix, "enqueued",
+                "Number of messages put on a dispatch queue. The current "
+                        + "queue depth is enqueued minus dequeued");
+        dequeued = debugCounters.registerCounter(prefix, "dequeued",
+                "Number of messages taken off a dispatch queue and run "
+                        + "through the listener chain");
+        queueWaitTimeUs = debugCounters.registerCounter(prefix, "queue-wait-time-us",
+                "Total time in microseconds messages spent waiting in a "
+                        + "dispatch queue. Divide by dequeued for the average");
+        backpressureOn = debugCounters.registerCounter(prefix, "backpressure-on",
+                "Number of times reading from a switch was paused because "
+                        + "its dispatch queue was full",
+                MetaData.WARN);
+        backpressureOff = debugCounters.registerCounter(prefix, "backpressure-off",
+                "Number of times reading from a switch was resumed after "
+                        + "its dispatch queue drained");
+        dropped = debugCounters.registerCounter(prefix, "dropped",
+                "Number of packet-ins dropped because a dispatch queue was "
+                        + "over its hard limit even after pausing reads",
+                MetaData.DROP);
+        dispatchError = debugCounters.registerCounter(prefix, "dispatch-error",
+                "Number of messages whose listener chain threw an exception "
+                        + "on a dispatcher thread",
+                MetaData.ERROR);
+    }
+}
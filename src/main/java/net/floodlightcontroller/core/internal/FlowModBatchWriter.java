@@ -0,0 +1,198 @@
+package net.floodlightcontroller.core.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.floodlightcontroller.core.FlowModBatchResult;
+import net.floodlightcontroller.core.IOFSwitch;
+
+import org.projectfloodlight.openflow.protocol.OFBundleCtrlMsg;
+import org.projectfloodlight.openflow.protocol.OFBundleCtrlType;
+import org.projectfloodlight.openflow.protocol.OFBundleFlags;
+import org.projectfloodlight.openflow.protocol.OFErrorMsg;
+import org.projectfloodlight.openflow.protocol.OFErrorType;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.types.BundleId;
+import org.projectfloodlight.openflow.types.DatapathId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Writes batches of flow-mods for
+ * {@link IOFSwitchService#writeFlowModBatch(DatapathId, List)}.
+ *
+ * To an OpenFlow 1.4+ switch a batch goes as one atomic, ordered bundle:
+ * open, one bundle add per message, commit. To older switches, and to
+ * switches that reject bundles, the messages go as they are. Either way a
+ * barrier follows, so the batch costs one round trip however many messages
+ * it has, and every error the switch sends for it has arrived once the
+ * barrier reply does.
+ *
+ * Outgoing message listeners see the flow-mods of a bundle only once it
+ * has committed, since before that they have not taken effect.
+ */
+public class FlowModBatchWriter {
+    private static final Logger log = LoggerFactory.getLogger(FlowModBatchWriter.class);
+
+    private static final Set<OFBundleFlags> BUNDLE_FLAGS =
+            ImmutableSet.of(OFBundleFlags.ATOMIC, OFBundleFlags.ORDERED);
+
+    private final IOFSwitchManager switchManager;
+    private final SwitchManagerCounters counters;
+    private final boolean useBundles;
+    /* Switches that did not understand a bundle open; they get plain batches */
+    private final Set<DatapathId> noBundles = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger bundleIds = new AtomicInteger();
+
+    public FlowModBatchWriter(IOFSwitchManager switchManager, SwitchManagerCounters counters,
+            boolean useBundles) {
+        this.switchManager = switchManager;
+        this.counters = counters;
+        this.useBundles = useBundles;
+    }
+
+    public ListenableFuture<FlowModBatchResult> write(IOFSwitch sw, List<? extends OFMessage> msgs) {
+        if (msgs.isEmpty()) {
+            return Futures.immediateFuture(new FlowModBatchResult(sw.getId(), 0, false,
+                    Collections.<OFErrorMsg>emptyList(), 0));
+        }
+        List<OFMessage> batch = withDistinctXids(sw.getOFFactory(), msgs);
+        SettableFuture<FlowModBatchResult> result = SettableFuture.create();
+        long start = System.nanoTime();
+        if (useBundles && sw.getOFFactory().getVersion().compareTo(OFVersion.OF_14) >= 0
+                && !noBundles.contains(sw.getId())) {
+            writeBundle(sw, batch, start, result);
+        } else {
+            writePlain(sw, batch, start, result);
+        }
+        return result;
+    }
+
+    /**
+     * Errors are matched to messages by xid, so give any message that
+     * shares its xid with an earlier one of the batch a fresh one.
+     */
+    private static List<OFMessage> withDistinctXids(OFFactory factory, List<? extends OFMessage> msgs) {
+        Set<Long> xids = new HashSet<Long>();
+        List<OFMessage> batch = new ArrayList<OFMessage>(msgs.size());
+        for (OFMessage m : msgs) {
+            if (!xids.add(m.getXid())) {
+                m = m.createBuilder().setXid(factory.nextXid()).build();
+                xids.add(m.getXid());
+            }
+            batch.add(m);
+        }
+        return batch;
+    }
+
+    private void writePlain(final IOFSwitch sw, final List<OFMessage> batch, final long start,
+            final SettableFuture<FlowModBatchResult> result) {
+        Futures.addCallback(sw.writeBatchWithBarrier(batch), new FutureCallback<List<OFErrorMsg>>() {
+            @Override
+            public void onSuccess(List<OFErrorMsg> errors) {
+                result.set(done(sw, batch.size(), false, errors, start));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                failed(sw, t, result);
+            }
+        });
+    }
+
+    private void writeBundle(final IOFSwitch sw, final List<OFMessage> batch, final long start,
+            final SettableFuture<FlowModBatchResult> result) {
+        OFFactory factory = sw.getOFFactory();
+        BundleId id = BundleId.of(bundleIds.incrementAndGet());
+        final OFBundleCtrlMsg open = bundleCtrl(factory, id, OFBundleCtrlType.OPEN_REQUEST);
+        List<OFMessage> bundle = new ArrayList<OFMessage>(batch.size() + 2);
+        bundle.add(open);
+        for (OFMessage m : batch) {
+            /* the add must carry the xid of the message it wraps */
+            bundle.add(factory.buildBundleAddMsg()
+                    .setXid(m.getXid())
+                    .setBundleId(id)
+                    .setFlags(BUNDLE_FLAGS)
+                    .setData(m)
+                    .build());
+        }
+        bundle.add(bundleCtrl(factory, id, OFBundleCtrlType.COMMIT_REQUEST));
+
+        Futures.addCallback(sw.writeBatchWithBarrier(bundle), new FutureCallback<List<OFErrorMsg>>() {
+            @Override
+            public void onSuccess(List<OFErrorMsg> errors) {
+                for (OFErrorMsg e : errors) {
+                    if (e.getXid() == open.getXid()) {
+                        /* the bundle was never opened, so nothing was applied */
+                        if (e.getErrType() == OFErrorType.BAD_REQUEST && noBundles.add(sw.getId())) {
+                            log.info("Switch {} does not support bundles; not using them for flow-mod batches",
+                                    sw.getId());
+                        }
+                        writePlain(sw, batch, start, result);
+                        return;
+                    }
+                }
+                if (errors.isEmpty()) {
+                    for (OFMessage m : batch) {
+                        switchManager.handleOutgoingMessage(sw, m);
+                    }
+                }
+                result.set(done(sw, batch.size(), true, errors, start));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                failed(sw, t, result);
+            }
+        });
+    }
+
+    private static OFBundleCtrlMsg bundleCtrl(OFFactory factory, BundleId id, OFBundleCtrlType type) {
+        return factory.buildBundleCtrlMsg()
+                .setBundleId(id)
+                .setBundleCtrlType(type)
+                .setFlags(BUNDLE_FLAGS)
+                .build();
+    }
+
+    private FlowModBatchResult done(IOFSwitch sw, int size, boolean bundled, List<OFErrorMsg> errors,
+            long start) {
+        FlowModBatchResult r = new FlowModBatchResult(sw.getId(), size, bundled, errors,
+                System.nanoTime() - start);
+        counters.flowModBatches.increment();
+        counters.flowModBatchMessages.add(size);
+        counters.flowModBatchLatencyMs.add(TimeUnit.NANOSECONDS.toMillis(r.getLatencyNs()));
+        if (bundled) {
+            counters.flowModBatchesBundled.increment();
+        }
+        if (!r.isSuccess()) {
+            counters.flowModBatchErrors.increment();
+            log.warn("Switch {} rejected {} of {} messages in a flow-mod batch{}: {}",
+                    new Object[] { sw.getId(), errors.size(), size,
+                            bundled ? " (bundle not committed)" : "", errors });
+        } else if (log.isDebugEnabled()) {
+            log.debug("Flow-mod batch done: {}", r);
+        }
+        return r;
+    }
+
+    private void failed(IOFSwitch sw, Throwable t, SettableFuture<FlowModBatchResult> result) {
+        counters.flowModBatchFailures.increment();
+        log.warn("Flow-mod batch to switch {} failed: {}", sw.getId(), t.getMessage());
+        result.setException(t);
+    }
+}
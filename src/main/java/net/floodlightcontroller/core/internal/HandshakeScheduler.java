@@ -0,0 +1,198 @@
+package net.floodlightcontroller.core.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.projectfloodlight.openflow.types.DatapathId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caps the number of switch handshakes that run at the same time.
+ *
+ * When hundreds of switches reconnect at once (e.g. after a controller
+ * restart or failover) running all of their handshakes concurrently makes
+ * each of them slow enough to hit the handshake timeout. Instead, a main
+ * connection asks for a slot once its OpenFlow channel is up and only
+ * starts the switch handshake when it gets one. The slot is given back when
+ * the handshake completes or the connection goes away.
+ *
+ * Waiting connections are kept in two FIFO queues: one for DPIDs we have
+ * seen complete a handshake before and one for DPIDs we have not. Known
+ * DPIDs are preferred, but after {@link #KNOWN_PER_NEW} known DPIDs in a
+ * row a new one is admitted if any is waiting, so new switches are delayed
+ * but never starved.
+ *
+ * Known DPIDs are only kept in memory, so the preference only applies
+ * within one run of the controller. Right after a restart every switch is
+ * new, and the reconnecting switches are admitted in the order they
+ * connect, still at most maxConcurrent at a time.
+ *
+ * A connection for a DPID that already holds a slot is admitted right away
+ * and shares that slot; the old connection is torn down by the switch
+ * manager as soon as the new one starts its handshake.
+ */
+public class HandshakeScheduler {
+    private static final Logger log = LoggerFactory.getLogger(HandshakeScheduler.class);
+
+    /** Known DPIDs admitted in a row before a waiting new DPID gets a turn */
+    static final int KNOWN_PER_NEW = 3;
+
+    private final int maxConcurrent;
+    private final SwitchManagerCounters counters;
+    private final Set<DatapathId> known = ConcurrentHashMap.newKeySet();
+
+    /* All of the below are guarded by this */
+    private final Map<DatapathId, Integer> active = new HashMap<DatapathId, Integer>();
+    private final ArrayDeque<Ticket> knownQueue = new ArrayDeque<Ticket>();
+    private final ArrayDeque<Ticket> newQueue = new ArrayDeque<Ticket>();
+    private int knownInARow;
+
+    /**
+     * A request for a handshake slot.
+     */
+    public static final class Ticket {
+        private final DatapathId dpid;
+        private final boolean known;
+        private final Runnable onAdmit;
+        private final long queuedNanos;
+        private boolean admitted; /* guarded by the scheduler */
+
+        private Ticket(DatapathId dpid, boolean known, Runnable onAdmit) {
+            this.dpid = dpid;
+            this.known = known;
+            this.onAdmit = onAdmit;
+            this.queuedNanos = System.nanoTime();
+        }
+
+        public DatapathId getDpid() {
+            return dpid;
+        }
+    }
+
+    /**
+     * @param maxConcurrent maximum number of handshakes in progress; must be > 0
+     * @param counters where queued handshakes and waiting time are counted
+     */
+    public HandshakeScheduler(int maxConcurrent, @Nonnull SwitchManagerCounters counters) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("maxConcurrent must be > 0. Was " + maxConcurrent);
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.counters = counters;
+    }
+
+    /**
+     * Ask for a handshake slot for a switch.
+     *
+     * If a slot is free it is taken right away, null is returned and
+     * {@code onAdmit} is never run; the caller goes on with the handshake.
+     * Otherwise a ticket is queued and {@code onAdmit} is run once a slot
+     * is given to it, on whatever thread released that slot. The callee must
+     * then either start the handshake or, if the connection is gone by then,
+     * {@link #release(DatapathId, boolean)} the slot.
+     *
+     * @param dpid the switch
+     * @param onAdmit run when a queued ticket is admitted
+     * @return null if a slot was taken, else the queued ticket
+     */
+    public Ticket request(@Nonnull DatapathId dpid, @Nonnull Runnable onAdmit) {
+        Ticket t = new Ticket(dpid, known.contains(dpid), onAdmit);
+        synchronized (this) {
+            Integer refs = active.get(dpid);
+            if (refs != null) {
+                active.put(dpid, refs + 1);
+                return null;
+            } else if (active.size() < maxConcurrent && knownQueue.isEmpty() && newQueue.isEmpty()) {
+                active.put(dpid, 1);
+                return null;
+            }
+            (t.known ? knownQueue : newQueue).add(t);
+        }
+        counters.handshakeQueued.increment();
+        log.debug("Handshake of {} switch {} queued; {} handshakes already in progress",
+                new Object[] { t.known ? "known" : "new", dpid, maxConcurrent });
+        return t;
+    }
+
+    /**
+     * Withdraw a ticket that is still waiting, e.g. because its connection
+     * was closed.
+     * @return true if the ticket was removed from the queue; false if it had
+     * already been admitted, in which case its slot must be released as usual
+     */
+    public synchronized boolean cancel(@Nonnull Ticket t) {
+        if (t.admitted) {
+            return false;
+        }
+        return (t.known ? knownQueue : newQueue).remove(t);
+    }
+
+    /**
+     * Give back the slot held by a switch and admit waiting switches.
+     * @param dpid the switch
+     * @param completed true if the handshake completed, which makes the DPID
+     * a known one for future connections
+     */
+    public void release(@Nonnull DatapathId dpid, boolean completed) {
+        if (completed) {
+            known.add(dpid);
+        }
+        List<Ticket> admitted = new ArrayList<Ticket>();
+        synchronized (this) {
+            Integer refs = active.get(dpid);
+            if (refs == null) {
+                log.warn("Handshake slot released for switch {} which does not hold one", dpid);
+            } else if (refs > 1) {
+                active.put(dpid, refs - 1);
+            } else {
+                active.remove(dpid);
+            }
+            Ticket t;
+            while (active.size() < maxConcurrent && (t = next()) != null) {
+                Integer r = active.get(t.dpid);
+                active.put(t.dpid, r == null ? 1 : r + 1);
+                t.admitted = true;
+                admitted.add(t);
+            }
+        }
+        long now = System.nanoTime();
+        for (Ticket t : admitted) {
+            counters.handshakeQueueWaitMs.add(TimeUnit.NANOSECONDS.toMillis(now - t.queuedNanos));
+            t.onAdmit.run();
+        }
+    }
+
+    private Ticket next() {
+        if (!knownQueue.isEmpty() && (newQueue.isEmpty() || knownInARow < KNOWN_PER_NEW)) {
+            knownInARow++;
+            return knownQueue.poll();
+        }
+        knownInARow = 0;
+        return newQueue.poll();
+    }
+
+    public boolean isKnown(@Nonnull DatapathId dpid) {
+        return known.contains(dpid);
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public synchronized int getActiveCount() {
+        return active.size();
+    }
+
+    public synchronized int getQueueLength() {
+        return knownQueue.size() + newQueue.size();
+    }
+}
@@ -48,20 +48,43 @@ public class HandshakeTimeoutHandler extends ChannelInboundHandlerAdapter {
     }
 
     @Override
-    public void channelActive(ChannelHandlerContext ctx) throws Exception {
-        if (timeoutNanos > 0) {
-            timeout = timer.newTimeout(new HandshakeTimeoutTask(ctx), timeoutNanos, TimeUnit.NANOSECONDS);
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        /* Added to a connected channel, e.g. when replacing the channel handshake timeout */
+        if (ctx.channel().isActive()) {
+            start(ctx);
         }
+        super.handlerAdded(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        cancel();
+        super.handlerRemoved(ctx);
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        start(ctx);
         super.channelActive(ctx);
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        cancel();
+        super.channelInactive(ctx);
+    }
+
+    private void start(ChannelHandlerContext ctx) {
+        if (timeoutNanos > 0 && timeout == null) {
+            timeout = timer.newTimeout(new HandshakeTimeoutTask(ctx), timeoutNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void cancel() {
         if (timeout != null) {
             timeout.cancel();
             timeout = null;
         }
-        super.channelInactive(ctx);
     }
 
     private final class HandshakeTimeoutTask implements TimerTask {
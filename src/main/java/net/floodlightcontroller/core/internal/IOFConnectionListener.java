@@ -1,12 +1,25 @@
 package net.floodlightcontroller.core.internal;
 
+import java.util.List;
+
 import net.floodlightcontroller.core.IOFConnectionBackend;
 import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFPortStatus;
 
 public interface IOFConnectionListener {
     void connectionClosed(IOFConnectionBackend connection);
 
     void messageReceived(IOFConnectionBackend connection, OFMessage m);
+
+    /**
+     * Called instead of {@link #messageReceived(IOFConnectionBackend, OFMessage)}
+     * when several port status messages arrive back to back in one read,
+     * e.g. during a port flap, so that they can be applied together.
+     *
+     * @param connection
+     * @param burst the port status messages, in the order received
+     */
+    void portStatusBurstReceived(IOFConnectionBackend connection, List<OFPortStatus> burst);
     
     /**
      * Primarily for role requests, we need a way to tell the OFSwitchHandshakeHandler
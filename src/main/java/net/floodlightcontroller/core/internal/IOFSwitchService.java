@@ -4,14 +4,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import net.floodlightcontroller.core.FlowModBatchResult;
 import net.floodlightcontroller.core.IOFSwitch;
 import net.floodlightcontroller.core.IOFSwitchDriver;
 import net.floodlightcontroller.core.IOFSwitchListener;
 import net.floodlightcontroller.core.LogicalOFMessageCategory;
 import net.floodlightcontroller.core.module.IFloodlightService;
 
+import org.projectfloodlight.openflow.protocol.OFMessage;
 import org.projectfloodlight.openflow.types.DatapathId;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 public interface IOFSwitchService extends IFloodlightService {
 
     /**
@@ -103,4 +107,31 @@ public interface IOFSwitchService extends IFloodlightService {
      */
     List<OFSwitchHandshakeHandler> getSwitchHandshakeHandlers();
 
+    /**
+     * Write a group of flow-mods (or group-mods, meter-mods) to a switch as
+     * one batch, and get one result once the switch has processed all of
+     * them. This takes one round trip, however many messages there are.
+     *
+     * To OpenFlow 1.4+ switches the batch is sent as an atomic bundle, so
+     * it takes effect as a whole or not at all; outgoing message listeners
+     * only see its messages once it has committed. To other switches the
+     * messages are sent as they are, followed by a barrier.
+     *
+     * @param dpid the switch to write to
+     * @param msgs the messages, in the order they are to be applied
+     * @return the result, with any errors the switch sent for the batch.
+     * Fails with a {@link net.floodlightcontroller.core.SwitchDisconnectedException}
+     * if the switch is not active or disconnects, and with a
+     * {@link java.util.concurrent.TimeoutException} if it does not answer.
+     */
+    ListenableFuture<FlowModBatchResult> writeFlowModBatch(DatapathId dpid, List<? extends OFMessage> msgs);
+
+    /**
+     * Gets the number of messages from switches waiting to be dispatched
+     * to the message listeners.
+     * @return the number of messages queued, or -1 if messages are
+     * dispatched on the I/O threads and never queued
+     */
+    int getDispatchQueueDepth();
+
 }
@@ -7,9 +7,12 @@ import java.util.Date;
 
 import net.floodlightcontroller.core.IOFConnectionBackend;
 import net.floodlightcontroller.core.IOFMessageWriter;
+import net.floodlightcontroller.core.IOFStatsReplyListener;
+import net.floodlightcontroller.core.OFMessagePriority;
 import net.floodlightcontroller.core.SwitchDisconnectedException;
 import net.floodlightcontroller.util.IterableUtils;
 
+import org.projectfloodlight.openflow.protocol.OFErrorMsg;
 import org.projectfloodlight.openflow.protocol.OFFactories;
 import org.projectfloodlight.openflow.protocol.OFFactory;
 import org.projectfloodlight.openflow.protocol.OFMessage;
@@ -55,6 +58,16 @@ public class NullConnection implements IOFConnectionBackend, IOFMessageWriter {
         return IterableUtils.toCollection(msgList);
     }
 
+    @Override
+    public Collection<OFMessage> write(Iterable<OFMessage> msgList, OFMessagePriority priority) {
+        return write(msgList);
+    }
+
+    @Override
+    public void flush() {
+        // nothing to flush
+    }
+
     @Override
     public SocketAddress getRemoteInetAddress() {
         return null;
@@ -76,6 +89,17 @@ public class NullConnection implements IOFConnectionBackend, IOFMessageWriter {
         return Futures.immediateFailedFuture(new SwitchDisconnectedException(getDatapathId()));
     }
 
+    @Override
+    public <REPLY extends OFStatsReply> ListenableFuture<Void> streamStatsRequest(
+            OFStatsRequest<REPLY> request, IOFStatsReplyListener<REPLY> listener) {
+        return Futures.immediateFailedFuture(new SwitchDisconnectedException(getDatapathId()));
+    }
+
+    @Override
+    public ListenableFuture<List<OFErrorMsg>> writeBatchWithBarrier(List<OFMessage> msgList) {
+        return Futures.immediateFailedFuture(new SwitchDisconnectedException(getDatapathId()));
+    }
+
     @Override
     public void cancelAllPendingRequests() {
         // noop
@@ -100,6 +124,11 @@ public class NullConnection implements IOFConnectionBackend, IOFMessageWriter {
         return false;
     }
 
+    @Override
+    public void setAutoRead(boolean autoRead) {
+        // no channel to read from
+    }
+
     @Override
     public DatapathId getDatapathId() {
         return DatapathId.NONE;
@@ -119,6 +148,21 @@ public class NullConnection implements IOFConnectionBackend, IOFMessageWriter {
 		return U64.ZERO;
 	}
 
+	@Override
+	public int[] getQueueDepths() {
+		return new int[0];
+	}
+
+	@Override
+	public double getFlowModRate() {
+		return 0;
+	}
+
+	@Override
+	public long getLastBarrierRttNs() {
+		return 0;
+	}
+
 	@Override
 	public void updateLatency(U64 latency) {
 		// noop
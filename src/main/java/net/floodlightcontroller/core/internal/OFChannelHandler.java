@@ -54,7 +54,7 @@ import com.google.common.base.Preconditions;
  *  messages to the higher orders of control.
  * @author Jason Parraga <Jason.Parraga@Bigswitch.com>
  */
-class OFChannelHandler extends SimpleChannelInboundHandler<Iterable<OFMessage>> {
+class OFChannelHandler extends SimpleChannelInboundHandler<OFMessage> {
 
 	private static final Logger log = LoggerFactory.getLogger(OFChannelHandler.class);
 
@@ -81,6 +81,12 @@ class OFChannelHandler extends SimpleChannelInboundHandler<Iterable<OFMessage>>
 	private volatile long echoSendTime;
 	private volatile long featuresLatency;
 
+	/* Set if the channel handshake timeout was taken out while waiting for a handshake slot */
+	private boolean channelHandshakeTimeoutRemoved = false;
+
+	/* Port status messages of the current read not yet passed to the connection */
+	private final List<OFPortStatus> portStatusBurst = new ArrayList<OFPortStatus>();
+
 	/**
 	 * Default implementation for message handlers in any OFChannelState.
 	 *
@@ -279,6 +285,10 @@ class OFChannelHandler extends SimpleChannelInboundHandler<Iterable<OFMessage>>
 				case ECHO_REQUEST:
 					processOFEchoRequest((OFEchoRequest)m);
 					break;
+					// Held back until the end of the read, so that a burst is applied at once
+				case PORT_STATUS:
+					portStatusBurst.add((OFPortStatus)m);
+					break;
 					// Send to SwitchManager and thus higher orders of control
 				default:
 					sendMessageToConnection(m);
@@ -377,8 +387,14 @@ class OFChannelHandler extends SimpleChannelInboundHandler<Iterable<OFMessage>>
 
 			featuresLatency = (System.nanoTime()/1000000 - featuresLatency) / 2;
 
-			// Mark handshake as completed
-			setState(new CompleteState());
+			// Main connections may have to wait before starting the switch handshake
+			HandshakeScheduler scheduler = OFSwitchManager.getHandshakeScheduler();
+			if (scheduler != null && isMainConnection()) {
+				setState(new WaitHandshakeSlotState(scheduler));
+			} else {
+				// Mark handshake as completed
+				setState(new CompleteState());
+			}
 
 		}
 
@@ -428,6 +444,78 @@ class OFChannelHandler extends SimpleChannelInboundHandler<Iterable<OFMessage>>
 		}
 	};
 
+	/**
+	 * We have the features reply of a main connection, but the maximum
+	 * number of switch handshakes is already in progress. Wait in the
+	 * handshake scheduler's queue, answering echos so the connection stays
+	 * up, until we get a slot.
+	 * Next state is CompleteState
+	 */
+	class WaitHandshakeSlotState extends OFChannelState {
+		private final HandshakeScheduler scheduler;
+		private HandshakeScheduler.Ticket ticket;
+
+		WaitHandshakeSlotState(HandshakeScheduler scheduler) {
+			super(false);
+			this.scheduler = scheduler;
+		}
+
+		@Override
+		void enterState() throws IOException {
+			ticket = scheduler.request(featuresReply.getDatapathId(), new Runnable() {
+				@Override
+				public void run() {
+					channel.eventLoop().execute(new Runnable() {
+						@Override
+						public void run() {
+							slotGranted();
+						}
+					});
+				}
+			});
+			if (ticket == null) {
+				setState(new CompleteState());
+			} else {
+				// Time spent in the queue must not count against the handshake
+				pipeline.remove(PipelineHandler.CHANNEL_HANDSHAKE_TIMEOUT);
+				channelHandshakeTimeoutRemoved = true;
+			}
+		}
+
+		private void slotGranted() {
+			if (state != this || !channel.isActive()) {
+				scheduler.release(featuresReply.getDatapathId(), false);
+				return;
+			}
+			try {
+				setState(new CompleteState());
+			} catch (Exception ex) {
+				pipeline.fireExceptionCaught(ex);
+			}
+		}
+
+		void channelClosed() {
+			if (ticket != null) {
+				/* If already granted, slotGranted() gives the slot back */
+				scheduler.cancel(ticket);
+			}
+		}
+
+		@Override
+		void processOFPortStatus(OFPortStatus m) {
+			log.debug("Ignoring PORT_STATUS message from {} while waiting for a handshake slot.", channel.remoteAddress());
+		}
+
+		@Override
+		void processOFMessage(OFMessage m) throws IOException {
+			if (m.getType().equals(OFType.PACKET_IN)) {
+				log.debug("Ignoring PACKET_IN message from {} while waiting for a handshake slot.", channel.remoteAddress());
+			} else {
+				super.processOFMessage(m);
+			}
+		}
+	};
+
 	/**
 	 * This state denotes that the channel handshaking is complete.
 	 * An OF connection is generated and passed to the switch manager
@@ -576,9 +664,35 @@ class OFChannelHandler extends SimpleChannelInboundHandler<Iterable<OFMessage>>
 	 * Notifies the channel listener that we have a valid baseline connection
 	 */
 	private final void sendMessageToConnection(OFMessage m) {
+		// Keep the order of messages: port status messages held back go first
+		flushPortStatusBurst();
 		connection.messageReceived(m);
 	}
 
+	/**
+	 * Pass on the port status messages held back during this read. A single
+	 * one is passed on like any other message.
+	 */
+	private void flushPortStatusBurst() {
+		if (portStatusBurst.isEmpty()) {
+			return;
+		}
+		if (portStatusBurst.size() == 1) {
+			OFPortStatus ps = portStatusBurst.remove(0);
+			connection.messageReceived(ps);
+		} else {
+			List<OFPortStatus> burst = new ArrayList<OFPortStatus>(portStatusBurst);
+			portStatusBurst.clear();
+			connection.portStatusBurstReceived(burst);
+		}
+	}
+
+	@Override
+	public void channelReadComplete(ChannelHandlerContext ctx) {
+		// We are the last handler, so there is no one to pass this on to
+		flushPortStatusBurst();
+	}
+
 	@Override
 	public void channelActive(ChannelHandlerContext ctx) throws Exception {
 		log.debug("channelConnected on OFChannelHandler {}", String.format("%08x", System.identityHashCode(this)));
@@ -590,8 +704,12 @@ class OFChannelHandler extends SimpleChannelInboundHandler<Iterable<OFMessage>>
 
 	@Override
 	public void channelInactive(ChannelHandlerContext ctx) {
+		if (state instanceof WaitHandshakeSlotState) {
+			((WaitHandshakeSlotState) state).channelClosed();
+		}
 		// Only handle cleanup connection is even known
 		if (this.connection != null) {
+			flushPortStatusBurst();
 			// Alert the connection object that the channel has been disconnected
 			this.connection.disconnected();
 			// Punt the cleanup to the Switch Manager
@@ -600,6 +718,16 @@ class OFChannelHandler extends SimpleChannelInboundHandler<Iterable<OFMessage>>
 		log.info("[{}] Disconnected connection", getConnectionInfoString());
 	}
 
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		OFConnection c = this.connection;
+		if (c != null && ctx.channel().isWritable()) {
+			// Let the connection write what it held back while the channel was full
+			c.channelWritable();
+		}
+		super.channelWritabilityChanged(ctx);
+	}
+
 	@Override
 	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
 			throws Exception {
@@ -689,18 +817,16 @@ class OFChannelHandler extends SimpleChannelInboundHandler<Iterable<OFMessage>>
 	}
 
 	@Override
-	public void channelRead0(ChannelHandlerContext ctx, Iterable<OFMessage> msgList) throws Exception {
-		for (OFMessage ofm : msgList) {
-			try {
-				// Do the actual packet processing
-				state.processOFMessage(ofm);
-			}
-			catch (Exception ex) {
-				// We are the last handler in the stream, so run the
-				// exception through the channel again by passing in
-				// ctx.getChannel().
-				ctx.fireExceptionCaught(ex);
-			}
+	public void channelRead0(ChannelHandlerContext ctx, OFMessage ofm) throws Exception {
+		try {
+			// Do the actual packet processing
+			state.processOFMessage(ofm);
+		}
+		catch (Exception ex) {
+			// We are the last handler in the stream, so run the
+			// exception through the channel again by passing in
+			// ctx.getChannel().
+			ctx.fireExceptionCaught(ex);
 		}
 	}
 
@@ -729,8 +855,21 @@ class OFChannelHandler extends SimpleChannelInboundHandler<Iterable<OFMessage>>
 				this.timer,
 				PipelineHandshakeTimeout.SWITCH);
 
-		pipeline.replace(PipelineHandler.CHANNEL_HANDSHAKE_TIMEOUT,
-				PipelineHandler.SWITCH_HANDSHAKE_TIMEOUT, handler);
+		if (channelHandshakeTimeoutRemoved) {
+			pipeline.addBefore(PipelineHandler.CHANNEL_HANDLER,
+					PipelineHandler.SWITCH_HANDSHAKE_TIMEOUT, handler);
+		} else {
+			pipeline.replace(PipelineHandler.CHANNEL_HANDSHAKE_TIMEOUT,
+					PipelineHandler.SWITCH_HANDSHAKE_TIMEOUT, handler);
+		}
+	}
+
+	/**
+	 * @return true if the features reply is from a switch's main connection
+	 */
+	private boolean isMainConnection() {
+		return featuresReply.getVersion().compareTo(OFVersion.OF_13) < 0
+				|| featuresReply.getAuxiliaryId().equals(OFAuxId.MAIN);
 	}
 
 	/**
@@ -21,6 +21,7 @@ import java.net.SocketAddress;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -31,6 +32,7 @@ import java.util.concurrent.TimeoutException;
 import javax.annotation.Nonnull;
 
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.util.Timeout;
 import io.netty.util.Timer;
 import io.netty.util.TimerTask;
@@ -41,18 +43,24 @@ import net.floodlightcontroller.core.Deliverable;
 import net.floodlightcontroller.core.DeliverableListenableFuture;
 import net.floodlightcontroller.core.IOFConnection;
 import net.floodlightcontroller.core.IOFConnectionBackend;
+import net.floodlightcontroller.core.IOFStatsReplyListener;
+import net.floodlightcontroller.core.OFMessagePriority;
 import net.floodlightcontroller.core.SwitchDisconnectedException;
 import net.floodlightcontroller.debugcounter.IDebugCounterService;
 import net.floodlightcontroller.util.IterableUtils;
 import net.floodlightcontroller.util.OFMessageUtils;
 
+import org.projectfloodlight.openflow.protocol.OFBarrierReply;
+import org.projectfloodlight.openflow.protocol.OFBarrierRequest;
 import org.projectfloodlight.openflow.protocol.OFErrorMsg;
 import org.projectfloodlight.openflow.protocol.OFFactory;
 import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFPortStatus;
 import org.projectfloodlight.openflow.protocol.OFRequest;
 import org.projectfloodlight.openflow.protocol.OFStatsReply;
 import org.projectfloodlight.openflow.protocol.OFStatsReplyFlags;
 import org.projectfloodlight.openflow.protocol.OFStatsRequest;
+import org.projectfloodlight.openflow.protocol.OFType;
 import org.projectfloodlight.openflow.types.DatapathId;
 import org.projectfloodlight.openflow.types.OFAuxId;
 import org.projectfloodlight.openflow.types.U64;
@@ -102,6 +110,28 @@ public class OFConnection implements IOFConnection, IOFConnectionBackend{
 
 	private volatile U64 latency;
 
+	/*
+	 * Flush consolidation. When enabled, a WriteMessageTask only writes into
+	 * the channel and a single FlushTask, queued on the EventLoop behind it,
+	 * flushes everything written in the meantime. Writes issued in the same
+	 * EventLoop tick (e.g. a route pushed to several switches sharing a loop,
+	 * or a large batch of flows) then cost one syscall instead of one each.
+	 * A flush is done right away once flushMaxMessages messages or
+	 * flushMaxBytes bytes are waiting in the channel.
+	 */
+	private static volatile boolean flushConsolidation = false;
+	private static volatile int flushMaxMessages = 256;
+	private static volatile int flushMaxBytes = 65536;
+
+	/* Only accessed on the channel's EventLoop */
+	private int unflushedMessages;
+	private boolean flushScheduled;
+	private final FlushTask flushTask = new FlushTask();
+
+	/* Queues writes by priority and paces flow-mods; null unless OFWriteScheduler is enabled */
+	private final OFWriteScheduler scheduler;
+	private final DrainTask drainTask = new DrainTask();
+
 	/**
 	 * Used to write messages to ensure order w/Netty4.
 	 * It also ensures we do not reuse the array, since
@@ -116,15 +146,87 @@ public class OFConnection implements IOFConnection, IOFConnectionBackend{
 
 		@Override
 		public void run() {
+			int count = 0;
 			for (OFMessage m : msglist) {
 				if (logger.isTraceEnabled())
 					logger.trace("{}: send {}", this, m);
 				counters.updateWriteStats(m);
+				count++;
+			}
+			if (!flushConsolidation) {
+				channel.writeAndFlush(msglist);
+				counters.updateFlushStats(count);
+				return;
+			}
+
+			channel.write(msglist);
+			unflushedMessages += count;
+			if (unflushedMessages >= flushMaxMessages
+					|| (flushMaxBytes > 0 && getPendingWriteBytes() >= flushMaxBytes)) {
+				flushNow();
+			} else if (!flushScheduled) {
+				flushScheduled = true;
+				channel.eventLoop().execute(flushTask);
+			}
+		}
+	}
+
+	/**
+	 * Flushes whatever was written by the WriteMessageTasks queued ahead of it.
+	 */
+	private class FlushTask implements Runnable {
+		@Override
+		public void run() {
+			flushScheduled = false;
+			flushNow();
+		}
+	}
+
+	/**
+	 * Writes what the scheduler lets through and schedules itself again
+	 * for the rest.
+	 */
+	private class DrainTask implements Runnable {
+		@Override
+		public void run() {
+			if (!channel.isActive()) {
+				scheduler.clear();
+				return;
+			}
+			List<OFMessage> msgs = scheduler.poll(System.nanoTime(), channel.isWritable());
+			if (!msgs.isEmpty()) {
+				new WriteMessageTask(msgs).run();
+			}
+			long delayNs = scheduler.getDrainDelayNs();
+			if (delayNs == 0) {
+				channel.eventLoop().execute(this);
+			} else if (delayNs > 0) {
+				channel.eventLoop().schedule(this, delayNs, TimeUnit.NANOSECONDS);
+			}
+			if (delayNs > 0) {
+				counters.updateThrottleStats();
 			}
-			channel.writeAndFlush(msglist);
 		}
 	}
 
+	/**
+	 * Configure flush consolidation for all connections.
+	 * @param enabled true to coalesce writes into fewer flushes
+	 * @param maxMessages flush once this many messages are waiting
+	 * @param maxBytes flush once this many bytes are waiting; 0 for no byte limit
+	 */
+	public static void setFlushConsolidation(boolean enabled, int maxMessages, int maxBytes) {
+		Preconditions.checkArgument(maxMessages > 0, "maxMessages must be > 0");
+		Preconditions.checkArgument(maxBytes >= 0, "maxBytes must be >= 0");
+		flushMaxMessages = maxMessages;
+		flushMaxBytes = maxBytes;
+		flushConsolidation = enabled;
+	}
+
+	public static boolean isFlushConsolidation() {
+		return flushConsolidation;
+	}
+
 	public OFConnection(@Nonnull DatapathId dpid,
 			@Nonnull OFFactory factory,
 			@Nonnull Channel channel,
@@ -147,11 +249,10 @@ public class OFConnection implements IOFConnection, IOFConnectionBackend{
 		this.counters = new OFConnectionCounters(debugCounters, dpid, this.auxId);
 		this.timer = timer;
 		this.latency = U64.ZERO;
+		this.scheduler = OFWriteScheduler.isEnabled() ? new OFWriteScheduler(factory) : null;
 	}
 
 	/**
-	 * All write methods chain into this write() to use WriteMessageTask.
-	 * 
 	 * Write the list of messages to the switch
 	 * 
 	 * @param msgList list of messages to write
@@ -159,6 +260,23 @@ public class OFConnection implements IOFConnection, IOFConnectionBackend{
 	 */
 	@Override
 	public Collection<OFMessage> write(final Iterable<OFMessage> msgList) {
+		return write(msgList, null);
+	}
+
+	/**
+	 * All write methods chain into this write() to use WriteMessageTask,
+	 * or the scheduler's DrainTask when outbound scheduling is enabled.
+	 * 
+	 * Write the list of messages to the switch
+	 *
+	 * @param msgList list of messages to write
+	 * @param priority class of all the messages, or null to classify each
+	 * by its type
+	 * @return list of failed messages; can only fail if channel disconnected
+	 * or, with outbound scheduling, if the queue of their class is full
+	 */
+	@Override
+	public Collection<OFMessage> write(final Iterable<OFMessage> msgList, OFMessagePriority priority) {
 		if (!isConnected()) {
 			if (logger.isDebugEnabled())
 				logger.debug(this.toString() + " : not connected - dropping {} element msglist {} ",
@@ -172,8 +290,51 @@ public class OFConnection implements IOFConnection, IOFConnectionBackend{
 				counters.updateWriteStats(m);
 			}
 		}
-		this.channel.eventLoop().execute(new WriteMessageTask(msgList));
-		return Collections.emptyList();
+		if (scheduler == null) {
+			this.channel.eventLoop().execute(new WriteMessageTask(msgList));
+			return Collections.emptyList();
+		}
+		List<OFMessage> rejected = new ArrayList<OFMessage>();
+		if (scheduler.enqueue(msgList, priority, rejected)) {
+			this.channel.eventLoop().execute(drainTask);
+		}
+		if (!rejected.isEmpty()) {
+			counters.updateQueueRejectedStats(rejected.size());
+			if (logger.isDebugEnabled()) {
+				logger.debug("{}: outbound queue full - rejected {} messages", this, rejected.size());
+			}
+		}
+		return rejected;
+	}
+
+	/**
+	 * Flush any coalesced writes. The flush is queued on the EventLoop,
+	 * so it also covers writes issued before this call that have not been
+	 * handed to the channel yet.
+	 */
+	@Override
+	public void flush() {
+		if (flushConsolidation && isConnected()) {
+			this.channel.eventLoop().execute(flushTask);
+		}
+	}
+
+	/* Must be called on the EventLoop */
+	private void flushNow() {
+		if (unflushedMessages > 0) {
+			channel.flush();
+			counters.updateFlushStats(unflushedMessages);
+			unflushedMessages = 0;
+		}
+	}
+
+	/*
+	 * Bytes encoded into the channel's outbound buffer but not yet written
+	 * to the socket. Must be called on the EventLoop.
+	 */
+	private long getPendingWriteBytes() {
+		ChannelOutboundBuffer buf = channel.unsafe().outboundBuffer();
+		return buf != null ? buf.totalPendingWriteBytes() : 0;
 	}
 
 	/**
@@ -248,7 +409,190 @@ public class OFConnection implements IOFConnection, IOFConnectionBackend{
 		return future;
 	}
 
+	@Override
+	public <REPLY extends OFStatsReply> ListenableFuture<Void> streamStatsRequest(
+			OFStatsRequest<REPLY> request, final IOFStatsReplyListener<REPLY> listener) {
+		if (!isConnected()) {
+			return Futures.immediateFailedFuture(new SwitchDisconnectedException(getDatapathId()));
+		}
+
+		final DeliverableListenableFuture<Void> future =
+				new DeliverableListenableFuture<Void>(request);
+
+		Deliverable<REPLY> deliverable = new Deliverable<REPLY>() {
+			@Override
+			public void deliver(REPLY reply) {
+				if (future.isDone()) {
+					return; /* cancelled */
+				}
+				try {
+					listener.statsReplyReceived(reply);
+				} catch (RuntimeException e) {
+					future.deliverError(e);
+					return;
+				}
+				if (!reply.getFlags().contains(OFStatsReplyFlags.REPLY_MORE)) {
+					// done
+					future.deliver(null);
+				}
+			}
+
+			@Override
+			public void deliverError(Throwable cause) {
+				future.deliverError(cause);
+			}
+
+			@Override
+			public boolean isDone() {
+				return future.isDone();
+			}
+
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				return future.cancel(mayInterruptIfRunning);
+			}
+
+			@Override
+			public OFMessage getRequest() {
+				return future.getRequest();
+			}
+		};
+
+		registerDeliverable(request.getXid(), deliverable);
+		this.write(request);
+		return future;
+	}
+
+	@Override
+	public ListenableFuture<List<OFErrorMsg>> writeBatchWithBarrier(List<OFMessage> msgList) {
+		if (!isConnected()) {
+			return Futures.immediateFailedFuture(new SwitchDisconnectedException(getDatapathId()));
+		}
+
+		OFBarrierRequest barrier = factory.buildBarrierRequest().build();
+		BatchDeliverable batch = new BatchDeliverable(barrier);
+		for (OFMessage m : msgList) {
+			if (batch.members.containsKey(m.getXid())) {
+				continue; /* already collecting errors for this xid */
+			}
+			BatchMemberDeliverable member = new BatchMemberDeliverable(batch, m);
+			/* no timeout of their own; they go when the barrier is done */
+			if (xidDeliverableMap.putIfAbsent(m.getXid(), member) == null) {
+				batch.members.put(m.getXid(), member);
+			}
+		}
+		registerDeliverable(barrier.getXid(), batch);
+
+		List<OFMessage> all = new ArrayList<OFMessage>(msgList.size() + 1);
+		all.addAll(msgList);
+		all.add(barrier);
+		if (!this.write(all).isEmpty()) {
+			batch.deliverError(new SwitchDisconnectedException(getDatapathId()));
+		}
+		return batch.future;
+	}
+
+	/**
+	 * Waits for the barrier that ends a batch and collects the errors
+	 * delivered to the batch's members.
+	 */
+	private class BatchDeliverable implements Deliverable<OFBarrierReply> {
+		private final DeliverableListenableFuture<List<OFErrorMsg>> future;
+		private final Map<Long, BatchMemberDeliverable> members = new HashMap<Long, BatchMemberDeliverable>();
+		private final List<OFErrorMsg> errors = Collections.synchronizedList(new ArrayList<OFErrorMsg>());
+
+		BatchDeliverable(OFBarrierRequest barrier) {
+			this.future = new DeliverableListenableFuture<List<OFErrorMsg>>(barrier);
+		}
+
+		private void removeMembers() {
+			for (Map.Entry<Long, BatchMemberDeliverable> e : members.entrySet()) {
+				xidDeliverableMap.remove(e.getKey(), e.getValue());
+			}
+		}
+
+		@Override
+		public void deliver(OFBarrierReply reply) {
+			removeMembers();
+			synchronized (errors) {
+				future.deliver(new ArrayList<OFErrorMsg>(errors));
+			}
+		}
+
+		@Override
+		public void deliverError(Throwable cause) {
+			removeMembers();
+			future.deliverError(cause);
+		}
+
+		@Override
+		public boolean isDone() {
+			return future.isDone();
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			removeMembers();
+			return future.cancel(mayInterruptIfRunning);
+		}
+
+		@Override
+		public OFMessage getRequest() {
+			return future.getRequest();
+		}
+	}
+
+	/**
+	 * Stands in for one message of a batch in the xid map, so errors for it
+	 * reach the batch.
+	 */
+	private static class BatchMemberDeliverable implements Deliverable<OFMessage> {
+		private final BatchDeliverable batch;
+		private final OFMessage msg;
+		private volatile boolean replied;
+
+		BatchMemberDeliverable(BatchDeliverable batch, OFMessage msg) {
+			this.batch = batch;
+			this.msg = msg;
+		}
+
+		@Override
+		public void deliver(OFMessage reply) {
+			/* a reply to a request in the batch, e.g. a bundle control reply */
+			replied = true;
+		}
+
+		@Override
+		public void deliverError(Throwable cause) {
+			if (cause instanceof OFErrorMsgException) {
+				batch.errors.add(((OFErrorMsgException) cause).getErrorMessage());
+				replied = true;
+			} else {
+				/* disconnected */
+				batch.deliverError(cause);
+			}
+		}
+
+		@Override
+		public boolean isDone() {
+			return replied || batch.isDone();
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			return batch.cancel(mayInterruptIfRunning);
+		}
+
+		@Override
+		public OFMessage getRequest() {
+			return msg;
+		}
+	}
+
 	public void disconnected() {
+		if (scheduler != null) {
+			scheduler.clear();
+		}
 		SwitchDisconnectedException exception = new SwitchDisconnectedException(getDatapathId());
 		for (Long xid : xidDeliverableMap.keySet()) {
 			// protect against other mechanisms running at the same time
@@ -346,11 +690,26 @@ public class OFConnection implements IOFConnection, IOFConnectionBackend{
 			return false;
 	}
 
+	/**
+	 * Called by the channel handler when the channel became writable
+	 * again, so messages held back meanwhile get written.
+	 */
+	void channelWritable() {
+		if (scheduler != null && scheduler.wakeUp()) {
+			channel.eventLoop().execute(drainTask);
+		}
+	}
+
 	@Override
 	public boolean isWritable() {
 		return channel.isWritable();
 	}
 
+	@Override
+	public void setAutoRead(boolean autoRead) {
+		channel.config().setAutoRead(autoRead);
+	}
+
 	@Override
 	public DatapathId getDatapathId() {
 		return dpid;
@@ -409,17 +768,40 @@ public class OFConnection implements IOFConnection, IOFConnectionBackend{
 	}
 
 	public void messageReceived(OFMessage m) {
+		if (scheduler != null && m.getType() == OFType.BARRIER_REPLY
+				&& scheduler.barrierReplyReceived(m.getXid(), System.nanoTime())) {
+			return; /* reply to the scheduler's own probe */
+		}
 		// Check if message was a response for a xid waiting at the switch
 		if(!deliverResponse(m)){
 			listener.messageReceived(this, m);
 		}
 	}
 
+	public void portStatusBurstReceived(List<OFPortStatus> burst) {
+		listener.portStatusBurstReceived(this, burst);
+	}
+
 	@Override
 	public U64 getLatency() {
 		return this.latency;
 	}
 
+	@Override
+	public int[] getQueueDepths() {
+		return scheduler == null ? new int[0] : scheduler.getQueueDepths();
+	}
+
+	@Override
+	public double getFlowModRate() {
+		return scheduler == null ? 0 : scheduler.getRate();
+	}
+
+	@Override
+	public long getLastBarrierRttNs() {
+		return scheduler == null ? 0 : scheduler.getLastBarrierRttNs();
+	}
+
 	@Override
 	public void updateLatency(U64 latency) {
 		if (latency == null) {
@@ -454,6 +836,11 @@ public class OFConnection implements IOFConnection, IOFConnectionBackend{
 			logger.warn("NullConnectionListener for {} - received messageReceived: {}", connection, m);
 		}
 
+		@Override
+		public void portStatusBurstReceived(IOFConnectionBackend connection, List<OFPortStatus> burst) {
+			logger.warn("NullConnectionListener for {} - received portStatusBurstReceived: {}", connection, burst);
+		}
+
 		@Override
 		public boolean isSwitchHandshakeComplete(IOFConnectionBackend connection) {
 			return false;
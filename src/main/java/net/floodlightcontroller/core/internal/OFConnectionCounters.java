@@ -101,6 +101,19 @@ public class OFConnectionCounters {
     private final IDebugCounter ctrReadRequestForward;
     private final IDebugCounter ctrReadControllerStatus;
 
+    // Flush Counters
+    // messages per flush = flush/messages / flush
+    //
+    private final IDebugCounter ctrFlush;
+    private final IDebugCounter ctrFlushMessages;
+
+    // Outbound queue Counters, see OFWriteScheduler
+    // queue depths and pacing are levels, so they are read from the
+    // connection instead, see IOFConnection#getQueueDepths()
+    //
+    private final IDebugCounter ctrQueueThrottled;
+    private final IDebugCounter ctrQueueRejected;
+
     private static final Logger logger =
             LoggerFactory.getLogger(OFConnectionCounters.class);
 
@@ -529,6 +542,20 @@ public class OFConnectionCounters {
                 hierarchy,
                 stringId,
                 OFType.CONTROLLER_STATUS.toString());
+
+        ctrFlush =
+                counters.registerCounter(COUNTER_MODULE, stringId + "/flush",
+                                         "Number of channel flushes in this connection");
+        ctrFlushMessages =
+                counters.registerCounter(COUNTER_MODULE, stringId + "/flush/messages",
+                                         "Number of messages sent by channel flushes in this connection");
+
+        ctrQueueThrottled =
+                counters.registerCounter(COUNTER_MODULE, stringId + "/queue",
+                                         "Number of times flow-mod pacing held back the outbound queue of this connection");
+        ctrQueueRejected =
+                counters.registerCounter(COUNTER_MODULE, stringId + "/queue/rejected",
+                                         "Number of messages rejected because their outbound queue on this connection was full");
     }
     
     /**
@@ -541,6 +568,30 @@ public class OFConnectionCounters {
     	return debugCounterService.removeCounterHierarchy(COUNTER_MODULE, dpidAndConnIdString);
     }
 
+   /**
+    * Update Flush Counters
+    * @param messages number of messages written since the previous flush
+    */
+   public void updateFlushStats(int messages) {
+       ctrFlush.increment();
+       ctrFlushMessages.add(messages);
+   }
+
+   /**
+    * Update Outbound queue Counters, when pacing holds back the queue
+    */
+   public void updateThrottleStats() {
+       ctrQueueThrottled.increment();
+   }
+
+   /**
+    * Update Outbound queue Counters, when a full queue rejects messages
+    * @param n number of messages rejected
+    */
+   public void updateQueueRejectedStats(int n) {
+       ctrQueueRejected.add(n);
+   }
+
    /**
     * Update Write Counters for Open flow messages
     * @param ofm openflow message
@@ -17,8 +17,6 @@
 
 package net.floodlightcontroller.core.internal;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import io.netty.buffer.ByteBuf;
@@ -66,39 +64,15 @@ public class OFMessageDecoder extends ByteToMessageDecoder {
 			return;
 		}
 
-		// Note(andiw): netty4 adds support for more efficient handling of lists messages in the
-		// pipeline itself.
-		// Instead of constructing a list of messages here, we could also just add the individual
-		// messages to the "out" list provided by netty. This would require changing all the handlers
-		// in the pipeline to accept "OFMessage" instead of "Iterable<OFMessage>". Probably
-		// a good idea, but left for a future cleanup.
-
-		OFMessage singleMessage = null;
-		List<OFMessage> list = null;
-		boolean first = true;
+		// Hand each message to the pipeline on its own. Netty already
+		// batches the decoded objects in "out" (a recycled list), so wrapping
+		// them in a List of our own only cost an allocation per read.
 		for (;;) {
 			OFMessage message = reader.readFrom(in);
 			if (message == null) {
 				break;
 			}
-			if (first) {
-				// first message read
-				singleMessage = message;
-				first = false;
-			} else {
-				// more messages read, use the list
-				if (list == null) {
-					list = new ArrayList<>();
-					list.add(singleMessage);
-					singleMessage = null;
-				}
-				list.add(message);
-			}
-		}
-		if (list != null) {
-			out.add(list);
-		} else if (singleMessage != null) {
-			out.add(Collections.singletonList(singleMessage));
+			out.add(message);
 		}
 	}
 }
\ No newline at end of file
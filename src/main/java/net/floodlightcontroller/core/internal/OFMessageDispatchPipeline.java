@@ -0,0 +1,235 @@
+package net.floodlightcontroller.core.internal;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import net.floodlightcontroller.core.FloodlightContext;
+import net.floodlightcontroller.core.IFloodlightProviderService;
+import net.floodlightcontroller.core.IOFConnection;
+import net.floodlightcontroller.core.IOFConnectionBackend;
+import net.floodlightcontroller.core.IOFSwitchBackend;
+import net.floodlightcontroller.debugcounter.IDebugCounterService;
+
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFType;
+import org.projectfloodlight.openflow.types.DatapathId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Runs the IOFMessageListener chain on a pool of dispatcher threads instead
+ * of the Netty I/O thread that read the message, so that one slow listener
+ * cannot stall every switch sharing an event loop.
+ *
+ * Messages are partitioned by DatapathId: all messages from a given switch
+ * go to the same queue and the same dispatcher thread, so per-switch
+ * ordering is kept. Each queue has a soft capacity. When a switch enqueues
+ * into a full queue, reading from that switch's connections is paused
+ * (channel autoRead off) and only resumed once the queue has drained to half
+ * its capacity. Messages already read while a pause takes effect are still
+ * accepted, up to a hard limit of twice the capacity; beyond that
+ * packet-ins are dropped and counted. Every other message is still queued,
+ * since losing a flow-removed, error or port status would leave the
+ * controller's view of the switch wrong; reads stay paused meanwhile, so
+ * only what was already read can go over the limit.
+ */
+public class OFMessageDispatchPipeline {
+    private static final Logger log = LoggerFactory.getLogger(OFMessageDispatchPipeline.class);
+
+    /* How often an idle dispatcher re-checks whether paused switches can resume */
+    private static final long RESUME_CHECK_INTERVAL_MS = 100;
+
+    private final IFloodlightProviderService floodlightProvider;
+    private final DispatchPipelineCounters counters;
+    private final Partition[] partitions;
+    private final int capacity;
+    private final int lowWatermark;
+    private final int hardLimit;
+    private volatile boolean running;
+
+    private static class Task {
+        private final IOFSwitchBackend sw;
+        private final OFMessage m;
+        private final FloodlightContext bContext;
+        private final long enqueuedNs;
+
+        private Task(IOFSwitchBackend sw, OFMessage m, FloodlightContext bContext) {
+            this.sw = sw;
+            this.m = m;
+            this.bContext = bContext;
+            this.enqueuedNs = System.nanoTime();
+        }
+    }
+
+    private class Partition implements Runnable {
+        private final LinkedBlockingQueue<Task> queue = new LinkedBlockingQueue<Task>();
+        private final Set<IOFSwitchBackend> paused =
+                ConcurrentHashMap.<IOFSwitchBackend>newKeySet();
+
+        @Override
+        public void run() {
+            while (running) {
+                Task t;
+                try {
+                    t = queue.poll(RESUME_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    log.debug("Dispatcher thread interrupted; exiting");
+                    return;
+                }
+                if (t != null) {
+                    runTask(t);
+                }
+                /*
+                 * Checked after every poll, including empty ones, so that a
+                 * switch paused just as its queue emptied cannot stay paused.
+                 */
+                if (!paused.isEmpty() && queue.size() <= lowWatermark) {
+                    resumeAll();
+                }
+            }
+        }
+
+        private void runTask(Task t) {
+            counters.dequeued.increment();
+            counters.queueWaitTimeUs.add(
+                    TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - t.enqueuedNs));
+            try {
+                floodlightProvider.handleMessage(t.sw, t.m, t.bContext);
+            } catch (Exception e) {
+                counters.dispatchError.increment();
+                log.error("Error dispatching message " + t.m.getType() + " from switch " + t.sw, e);
+            }
+        }
+
+        private void pause(IOFSwitchBackend sw) {
+            if (paused.add(sw)) {
+                counters.backpressureOn.increment();
+                log.debug("Dispatch queue full; pausing reads from switch {}", sw.getId());
+                setAutoRead(sw, false);
+            }
+        }
+
+        private void resumeAll() {
+            for (IOFSwitchBackend sw : paused) {
+                if (paused.remove(sw)) {
+                    counters.backpressureOff.increment();
+                    log.debug("Dispatch queue drained; resuming reads from switch {}", sw.getId());
+                    setAutoRead(sw, true);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param floodlightProvider runs the listener chain for each message
+     * @param debugCounters where queue depth/wait time counters are registered
+     * @param threads number of dispatcher threads (and queues)
+     * @param capacity soft per-queue capacity at which reads are paused
+     */
+    public OFMessageDispatchPipeline(@Nonnull IFloodlightProviderService floodlightProvider,
+            @Nonnull IDebugCounterService debugCounters,
+            int threads, int capacity) {
+        Preconditions.checkNotNull(floodlightProvider, "floodlightProvider");
+        Preconditions.checkNotNull(debugCounters, "debugCounters");
+        Preconditions.checkArgument(threads > 0, "threads must be > 0");
+        Preconditions.checkArgument(capacity > 1, "capacity must be > 1");
+
+        this.floodlightProvider = floodlightProvider;
+        this.counters = new DispatchPipelineCounters(debugCounters);
+        this.capacity = capacity;
+        this.lowWatermark = capacity / 2;
+        this.hardLimit = capacity * 2;
+        this.partitions = new Partition[threads];
+        for (int i = 0; i < threads; i++) {
+            partitions[i] = new Partition();
+        }
+    }
+
+    /**
+     * Start the dispatcher threads.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < partitions.length; i++) {
+            Thread t = new Thread(partitions[i], "OFMessageDispatcher-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+        log.info("Dispatching OpenFlow messages on {} thread(s) with queue capacity {}",
+                partitions.length, capacity);
+    }
+
+    /**
+     * Stop the dispatcher threads. Queued messages are discarded. Called
+     * when Floodlight shuts down.
+     */
+    public synchronized void stop() {
+        running = false;
+        for (Partition p : partitions) {
+            p.queue.clear();
+            p.resumeAll();
+        }
+    }
+
+    /**
+     * Queue a message for dispatch to the listener chain. Called on the
+     * Netty I/O thread that read the message.
+     *
+     * @return true if the message was queued; false if it was a packet-in
+     * dropped over the hard limit
+     */
+    public boolean dispatch(@Nonnull IOFSwitchBackend sw, @Nonnull OFMessage m,
+            FloodlightContext bContext) {
+        Partition p = partitions[partitionOf(sw.getId())];
+        int size = p.queue.size();
+        if (size >= hardLimit && m.getType() == OFType.PACKET_IN) {
+            counters.dropped.increment();
+            if (log.isTraceEnabled()) {
+                log.trace("Dropping {} from switch {}: dispatch queue over hard limit",
+                        m.getType(), sw.getId());
+            }
+            return false;
+        }
+        p.queue.add(new Task(sw, m, bContext));
+        counters.enqueued.increment();
+        if (size + 1 >= capacity) {
+            p.pause(sw);
+        }
+        return true;
+    }
+
+    /**
+     * @return the total number of messages currently waiting in all queues
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Partition p : partitions) {
+            depth += p.queue.size();
+        }
+        return depth;
+    }
+
+    int partitionOf(DatapathId dpid) {
+        long v = dpid.getLong();
+        int h = (int) (v ^ (v >>> 32));
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % partitions.length;
+    }
+
+    private static void setAutoRead(IOFSwitchBackend sw, boolean autoRead) {
+        for (IOFConnection c : sw.getConnections()) {
+            if (c instanceof IOFConnectionBackend) {
+                ((IOFConnectionBackend) c).setAutoRead(autoRead);
+            }
+        }
+    }
+}
@@ -29,6 +29,7 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -41,11 +42,14 @@ import javax.annotation.Nonnull;
 
 import net.floodlightcontroller.core.IOFConnection;
 import net.floodlightcontroller.core.IOFConnectionBackend;
+import net.floodlightcontroller.core.IOFStatsReplyListener;
 import net.floodlightcontroller.core.IOFSwitchBackend;
 import net.floodlightcontroller.core.LogicalOFMessageCategory;
+import net.floodlightcontroller.core.OFMessagePriority;
 import net.floodlightcontroller.core.PortChangeEvent;
 import net.floodlightcontroller.core.PortChangeType;
 import net.floodlightcontroller.core.SwitchDescription;
+import net.floodlightcontroller.core.SwitchDisconnectedException;
 import net.floodlightcontroller.core.SwitchDriverSubHandshakeAlreadyStarted;
 import net.floodlightcontroller.core.SwitchDriverSubHandshakeCompleted;
 import net.floodlightcontroller.core.SwitchDriverSubHandshakeNotStarted;
@@ -58,6 +62,7 @@ import org.projectfloodlight.openflow.protocol.OFBsnControllerConnectionState;
 import org.projectfloodlight.openflow.protocol.OFBsnControllerConnectionsReply;
 import org.projectfloodlight.openflow.protocol.OFCapabilities;
 import org.projectfloodlight.openflow.protocol.OFControllerRole;
+import org.projectfloodlight.openflow.protocol.OFErrorMsg;
 import org.projectfloodlight.openflow.protocol.OFFactory;
 import org.projectfloodlight.openflow.protocol.OFFeaturesReply;
 import org.projectfloodlight.openflow.protocol.OFFlowWildcards;
@@ -90,11 +95,10 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-
 /**
  * This is the internal representation of an openflow switch.
  */
@@ -117,6 +121,8 @@ public class OFSwitch implements IOFSwitchBackend {
 
 	private boolean startDriverHandshakeCalled = false;
 	private final Map<OFAuxId, IOFConnectionBackend> connections;
+	/* Aux ids of connections other than MAIN, ascending; for AuxConnectionStriping */
+	private volatile OFAuxId[] auxIds = new OFAuxId[0];
 	private volatile Map<URI, Map<OFAuxId, OFBsnControllerConnection>> controllerConnections;
 	protected OFFactory factory;
 
@@ -207,135 +213,196 @@ public class OFSwitch implements IOFSwitchBackend {
 	 * changes.
 	 *
 	 * Implementation notes:
-	 * - We keep several different representations of the ports to allow for
-	 *   fast lookups
-	 * - Ports are stored in unchangeable lists. When a port is modified new
-	 *   data structures are allocated.
+	 * - Ports are kept in two maps, by number and by name. Port status
+	 *   messages update these maps in place, so a single port change costs
+	 *   O(1) no matter how many ports the switch has.
+	 * - The port lists handed out by the getters are immutable snapshots.
+	 *   They are built from the maps the first time they are asked for after
+	 *   a change, so a burst of port status messages only builds them once.
+	 * - A burst of port status messages can be applied under a single lock
+	 *   acquisition, returning one coalesced list of changes for the burst.
 	 * - We use a read-write-lock for synchronization, so multiple readers are
 	 *   allowed.
 	 */
 	protected static class PortManager {
 		private final ReentrantReadWriteLock lock;
-		private List<OFPortDesc> portList;
-		private List<OFPortDesc> enabledPortList;
-		private List<OFPort> enabledPortNumbers;
 		private Map<OFPort,OFPortDesc> portsByNumber;
 		private Map<String,OFPortDesc> portsByName;
+		/* Built from the maps on demand; null after the ports changed */
+		private volatile PortLists portLists;
+
+		/**
+		 * Immutable lists of the ports as of one version of the port maps.
+		 */
+		private static class PortLists {
+			private final List<OFPortDesc> ports;
+			private final List<OFPortDesc> enabledPorts;
+			private final List<OFPort> enabledPortNumbers;
+
+			private PortLists(Collection<OFPortDesc> allPorts) {
+				ImmutableList.Builder<OFPortDesc> enabled = ImmutableList.builder();
+				ImmutableList.Builder<OFPort> enabledNumbers = ImmutableList.builder();
+				for (OFPortDesc p : allPorts) {
+					if (isEnabled(p)) {
+						enabled.add(p);
+						enabledNumbers.add(p.getPortNo());
+					}
+				}
+				this.ports = ImmutableList.copyOf(allPorts);
+				this.enabledPorts = enabled.build();
+				this.enabledPortNumbers = enabledNumbers.build();
+			}
+		}
 
 		public PortManager() {
 			this.lock = new ReentrantReadWriteLock();
-			this.portList = Collections.emptyList();
-			this.enabledPortList = Collections.emptyList();
-			this.enabledPortNumbers = Collections.emptyList();
-			this.portsByName = Collections.emptyMap();
-			this.portsByNumber = Collections.emptyMap();
+			this.portsByName = new HashMap<String, OFPortDesc>();
+			this.portsByNumber = new HashMap<OFPort, OFPortDesc>();
+		}
+
+		/**
+		 * Enabled = not down admin (config) or phys (state)
+		 */
+		private static boolean isEnabled(OFPortDesc p) {
+			return !p.getState().contains(OFPortState.LINK_DOWN)
+					&& !p.getConfig().contains(OFPortConfig.PORT_DOWN);
+		}
+
+		/**
+		 * Get the change type of a port whose number and name stayed the
+		 * same but that differs otherwise.
+		 */
+		private static PortChangeType getModifyType(OFPortDesc prevPort,
+				OFPortDesc newPort) {
+			if (isEnabled(prevPort) && !isEnabled(newPort)) {
+				return PortChangeType.DOWN;
+			} else if (!isEnabled(prevPort) && isEnabled(newPort)) {
+				return PortChangeType.UP;
+			} else {
+				return PortChangeType.OTHER_UPDATE;
+			}
 		}
 
 		/**
-		 * Set the internal data structure storing this switch's port
-		 * to the ports specified by newPortsByNumber
+		 * Apply the given changes to the port maps.
 		 *
 		 * CALLER MUST HOLD WRITELOCK
 		 *
-		 * @param newPortsByNumber
-		 * @throws IllegaalStateException if called without holding the
+		 * @param events the changes, as computed by getSinglePortChanges()
+		 * or handlePortStatusDelete()
+		 * @param previous if not null, for every port number touched that is
+		 * not in it yet, the port that had that number before the change (or
+		 * null if there was none) is recorded here
+		 * @throws IllegalStateException if called without holding the
 		 * writelock
 		 */
-		private void updatePortsWithNewPortsByNumber(
-				Map<OFPort,OFPortDesc> newPortsByNumber) {
+		private void applyPortChanges(Collection<PortChangeEvent> events,
+				Map<OFPort,OFPortDesc> previous) {
 			if (!lock.writeLock().isHeldByCurrentThread()) {
 				throw new IllegalStateException("Method called without " +
 						"holding writeLock");
 			}
-			Map<String,OFPortDesc> newPortsByName =
-					new HashMap<String, OFPortDesc>();
-			List<OFPortDesc> newPortList =
-					new ArrayList<OFPortDesc>();
-			List<OFPortDesc> newEnabledPortList =
-					new ArrayList<OFPortDesc>();
-			List<OFPort> newEnabledPortNumbers = new ArrayList<OFPort>();
-
-			for(OFPortDesc p: newPortsByNumber.values()) {
-				newPortList.add(p);
-				newPortsByName.put(p.getName().toLowerCase(), p);
-				if (!p.getState().contains(OFPortState.LINK_DOWN) 
-						&& !p.getConfig().contains(OFPortConfig.PORT_DOWN)) {
-					if (!newEnabledPortList.contains(p)) {
-						newEnabledPortList.add(p);
-					}
-					if (!newEnabledPortNumbers.contains(p.getPortNo())) {
-						newEnabledPortNumbers.add(p.getPortNo());
+			for (PortChangeEvent e : events) {
+				OFPort portNo = e.port.getPortNo();
+				if (previous != null && !previous.containsKey(portNo)) {
+					previous.put(portNo, portsByNumber.get(portNo));
+				}
+				if (e.type == PortChangeType.DELETE) {
+					OFPortDesc removed = portsByNumber.remove(portNo);
+					if (removed != null) {
+						String name = removed.getName().toLowerCase();
+						OFPortDesc byName = portsByName.get(name);
+						if (byName != null && byName.getPortNo().equals(portNo)) {
+							portsByName.remove(name);
+						}
 					}
+				} else {
+					portsByNumber.put(portNo, e.port);
+					portsByName.put(e.port.getName().toLowerCase(), e.port);
 				}
 			}
-			portsByName = Collections.unmodifiableMap(newPortsByName);
-			portsByNumber =
-					Collections.unmodifiableMap(newPortsByNumber);
-			enabledPortList =
-					Collections.unmodifiableList(newEnabledPortList);
-			enabledPortNumbers =
-					Collections.unmodifiableList(newEnabledPortNumbers);
-			portList = Collections.unmodifiableList(newPortList);
+			if (!events.isEmpty()) {
+				portLists = null;
+			}
 		}
 
 		/**
-		 * Handle a OFPortStatus delete message for the given port.
-		 * Updates the internal port maps/lists of this switch and returns
-		 * the PortChangeEvents caused by the delete. If the given port
-		 * exists as it, it will be deleted. If the name<->number for the
-		 * given port is inconsistent with the ports stored by this switch
-		 * the method will delete all ports with the number or name of the
-		 * given port.
+		 * Compute the changes of a port delete message, without applying
+		 * them. If the given port exists as it, it will be deleted. If the
+		 * name<->number for the given port is inconsistent with the ports
+		 * stored by this switch the method will delete all ports with the
+		 * number or name of the given port.
 		 *
-		 * This method will increment error/warn counters and log
+		 * CALLER MUST HOLD WRITELOCK
 		 *
 		 * @param delPort the port from the port status message that should
 		 * be deleted.
-		 * @return ordered collection of port changes applied to this switch
+		 * @return ordered collection of port changes for this switch
 		 */
 		private OrderedCollection<PortChangeEvent>
-		handlePortStatusDelete(OFPortDesc delPort) {
+		getPortDeleteChanges(OFPortDesc delPort) {
 			OrderedCollection<PortChangeEvent> events =
 					new LinkedHashSetWrapper<PortChangeEvent>();
-			lock.writeLock().lock();
-			try {
-				Map<OFPort,OFPortDesc> newPortByNumber =
-						new HashMap<OFPort, OFPortDesc>(portsByNumber);
-				OFPortDesc prevPort =
-						portsByNumber.get(delPort.getPortNo());
-				if (prevPort == null) {
-					// so such port. Do we have a port with the name?
-					prevPort = portsByName.get(delPort.getName());
-					if (prevPort != null) {
-						newPortByNumber.remove(prevPort.getPortNo());
-						events.add(new PortChangeEvent(prevPort,
-								PortChangeType.DELETE));
-					}
-				} else if (prevPort.getName().equals(delPort.getName())) {
-					// port exists with consistent name-number mapping
-					newPortByNumber.remove(delPort.getPortNo());
-					events.add(new PortChangeEvent(delPort,
+			OFPortDesc prevPort =
+					portsByNumber.get(delPort.getPortNo());
+			if (prevPort == null) {
+				// so such port. Do we have a port with the name?
+				prevPort = portsByName.get(delPort.getName());
+				if (prevPort != null) {
+					events.add(new PortChangeEvent(prevPort,
 							PortChangeType.DELETE));
-				} else {
-					// port with same number exists but its name differs. This
-					// is weird. The best we can do is to delete the existing
-					// port(s) that have delPort's name and number.
-					newPortByNumber.remove(delPort.getPortNo());
+				}
+			} else if (prevPort.getName().equals(delPort.getName())) {
+				// port exists with consistent name-number mapping
+				events.add(new PortChangeEvent(delPort,
+						PortChangeType.DELETE));
+			} else {
+				// port with same number exists but its name differs. This
+				// is weird. The best we can do is to delete the existing
+				// port(s) that have delPort's name and number.
+				events.add(new PortChangeEvent(prevPort,
+						PortChangeType.DELETE));
+				// is there another port that has delPort's name?
+				prevPort = portsByName.get(delPort.getName().toLowerCase());
+				if (prevPort != null) {
 					events.add(new PortChangeEvent(prevPort,
 							PortChangeType.DELETE));
-					// is there another port that has delPort's name?
-					prevPort = portsByName.get(delPort.getName().toLowerCase());
-					if (prevPort != null) {
-						newPortByNumber.remove(prevPort.getPortNo());
-						events.add(new PortChangeEvent(prevPort,
-								PortChangeType.DELETE));
-					}
 				}
-				updatePortsWithNewPortsByNumber(newPortByNumber);
-				return events;
-			} finally {
-				lock.writeLock().unlock();
 			}
+			return events;
+		}
+
+		/**
+		 * Compute and apply the changes of one OFPortStatus message.
+		 *
+		 * CALLER MUST HOLD WRITELOCK
+		 *
+		 * @param previous see {@link #applyPortChanges(Collection, Map)}
+		 */
+		private OrderedCollection<PortChangeEvent>
+		applyPortStatus(OFPortStatus ps, Map<OFPort,OFPortDesc> previous) {
+			OFPortDesc port = ps.getDesc();
+			OFPortReason reason = ps.getReason();
+			if (reason == null) {
+				throw new IllegalArgumentException("Unknown PortStatus " +
+						"reason code " + ps.getReason());
+			}
+
+			if (log.isDebugEnabled()) {
+				log.debug("Handling OFPortStatus: {} for {}",
+						reason, String.format("%s (%d)", port.getName(), port.getPortNo().getPortNumber()));
+			}
+
+			// We handle ADD and MODIFY the same way. Since OpenFlow
+			// doesn't specify what uniquely identifies a port the
+			// notion of ADD vs. MODIFY can also be hazy. So we just
+			// compare the new port to the existing ones.
+			OrderedCollection<PortChangeEvent> events =
+					reason == OFPortReason.DELETE
+					? getPortDeleteChanges(port)
+					: getSinglePortChanges(port);
+			applyPortChanges(events, previous);
+			return events;
 		}
 
 		/**
@@ -347,7 +414,6 @@ public class OFSwitch implements IOFSwitchBackend {
 		 * @param ps
 		 * @return
 		 */
-		@SuppressFBWarnings(value="SF_SWITCH_FALLTHROUGH")
 		public OrderedCollection<PortChangeEvent> handlePortStatusMessage(OFPortStatus ps) {
 			if (ps == null) {
 				throw new NullPointerException("OFPortStatus message must " +
@@ -355,52 +421,70 @@ public class OFSwitch implements IOFSwitchBackend {
 			}
 			lock.writeLock().lock();
 			try {
-				OFPortDesc port = ps.getDesc();
-				OFPortReason reason = ps.getReason();
-				if (reason == null) {
-					throw new IllegalArgumentException("Unknown PortStatus " +
-							"reason code " + ps.getReason());
-				}
+				return applyPortStatus(ps, null);
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
 
-				if (log.isDebugEnabled()) {
-					log.debug("Handling OFPortStatus: {} for {}",
-							reason, String.format("%s (%d)", port.getName(), port.getPortNo().getPortNumber()));
+		/**
+		 * Handle a burst of OFPortStatus messages, e.g. from a port flap,
+		 * under a single lock acquisition.
+		 *
+		 * The returned changes are coalesced: they transform the ports as
+		 * they were before the burst into the ports after it. A port that
+		 * went down and came back up within the burst, unchanged, results
+		 * in no event at all. As for a single message, delete events come
+		 * before any other event.
+		 *
+		 * @param burst the port status messages, in the order received
+		 * @return the net changes of the whole burst
+		 */
+		public OrderedCollection<PortChangeEvent>
+		handlePortStatusMessages(List<OFPortStatus> burst) {
+			if (burst == null) {
+				throw new NullPointerException("OFPortStatus burst must " +
+						"not be null");
+			}
+			lock.writeLock().lock();
+			try {
+				Map<OFPort,OFPortDesc> previous =
+						new LinkedHashMap<OFPort, OFPortDesc>();
+				for (OFPortStatus ps : burst) {
+					if (ps == null) {
+						throw new NullPointerException("OFPortStatus message must " +
+								"not be null");
+					}
+					applyPortStatus(ps, previous);
 				}
 
-				if (reason == OFPortReason.DELETE)
-					return handlePortStatusDelete(port);
-
-				// We handle ADD and MODIFY the same way. Since OpenFlow
-				// doesn't specify what uniquely identifies a port the
-				// notion of ADD vs. MODIFY can also be hazy. So we just
-				// compare the new port to the existing ones.
-				Map<OFPort,OFPortDesc> newPortByNumber =
-						new HashMap<OFPort, OFPortDesc>(portsByNumber);
-				OrderedCollection<PortChangeEvent> events = getSinglePortChanges(port);
-				for (PortChangeEvent e: events) {
-					switch(e.type) {
-					case DELETE:
-						newPortByNumber.remove(e.port.getPortNo());
-						break;
-					case ADD:
-						if (reason != OFPortReason.ADD) {
-							// weird case
+				OrderedCollection<PortChangeEvent> events =
+						new LinkedHashSetWrapper<PortChangeEvent>();
+				List<PortChangeEvent> updates = new ArrayList<PortChangeEvent>();
+				for (Entry<OFPort,OFPortDesc> e : previous.entrySet()) {
+					OFPortDesc prevPort = e.getValue();
+					OFPortDesc newPort = portsByNumber.get(e.getKey());
+					if (prevPort == null) {
+						if (newPort != null) {
+							updates.add(new PortChangeEvent(newPort, PortChangeType.ADD));
+						}
+					} else if (newPort == null) {
+						events.add(new PortChangeEvent(prevPort, PortChangeType.DELETE));
+					} else if (prevPort.getName().equals(newPort.getName())) {
+						if (!prevPort.equals(newPort)) {
+							updates.add(new PortChangeEvent(newPort,
+									getModifyType(prevPort, newPort)));
 						}
-						// fall through
-					case DOWN:
-					case OTHER_UPDATE:
-					case UP:
-						// update or add the port in the map
-						newPortByNumber.put(e.port.getPortNo(), e.port);
-						break;
+					} else {
+						events.add(new PortChangeEvent(prevPort, PortChangeType.DELETE));
+						updates.add(new PortChangeEvent(newPort, PortChangeType.ADD));
 					}
 				}
-				updatePortsWithNewPortsByNumber(newPortByNumber);
+				events.addAll(updates);
 				return events;
 			} finally {
 				lock.writeLock().unlock();
 			}
-
 		}
 
 		/**
@@ -437,22 +521,8 @@ public class OFSwitch implements IOFSwitchBackend {
 					// A simple modify of a exiting port
 					// A previous port with this number exists and it's name
 					// also matches the new port. Find the differences
-					if ((!prevPort.getState().contains(OFPortState.LINK_DOWN) 
-							&& !prevPort.getConfig().contains(OFPortConfig.PORT_DOWN)) 
-							&& (newPort.getState().contains(OFPortState.LINK_DOWN) 
-									|| newPort.getConfig().contains(OFPortConfig.PORT_DOWN))) {
-						events.add(new PortChangeEvent(newPort,
-								PortChangeType.DOWN));
-					} else if ((prevPort.getState().contains(OFPortState.LINK_DOWN) 
-							|| prevPort.getConfig().contains(OFPortConfig.PORT_DOWN)) 
-							&& (!newPort.getState().contains(OFPortState.LINK_DOWN) 
-									&& !newPort.getConfig().contains(OFPortConfig.PORT_DOWN))) {
-						events.add(new PortChangeEvent(newPort,
-								PortChangeType.UP));
-					} else {
-						events.add(new PortChangeEvent(newPort,
-								PortChangeType.OTHER_UPDATE));
-					}
+					events.add(new PortChangeEvent(newPort,
+							getModifyType(prevPort, newPort)));
 					return events;
 				}
 
@@ -554,10 +624,6 @@ public class OFSwitch implements IOFSwitchBackend {
 						new HashMap<OFPort, OFPortDesc>();
 				Map<String,OFPortDesc> newPortsByName =
 						new HashMap<String, OFPortDesc>();
-				List<OFPortDesc> newEnabledPortList =
-						new ArrayList<OFPortDesc>();
-				List<OFPort> newEnabledPortNumbers =
-						new ArrayList<OFPort>();
 				List<OFPortDesc> newPortsList =
 						new ArrayList<OFPortDesc>(newPorts);
 
@@ -587,16 +653,6 @@ public class OFSwitch implements IOFSwitchBackend {
 								String.format("%s (%d)", duplicatePort.getName(), duplicatePort.getPortNo().getPortNumber()));
 						throw new IllegalArgumentException(msg);
 					}
-					// Enabled = not down admin (config) or phys (state)
-					if (!p.getConfig().contains(OFPortConfig.PORT_DOWN)
-							&& !p.getState().contains(OFPortState.LINK_DOWN)) {
-						if (!newEnabledPortList.contains(p)) {
-							newEnabledPortList.add(p);
-						}
-						if (!newEnabledPortNumbers.contains(p.getPortNo())) {
-							newEnabledPortNumbers.add(p.getPortNo());
-						}
-					}
 
 					// get changes
 					events.addAll(getSinglePortChanges(p));
@@ -606,7 +662,7 @@ public class OFSwitch implements IOFSwitchBackend {
 				// to we can handle changed name<->number mappings correctly
 				// We could pull it into the loop of we address this but
 				// it's probably not worth it
-				for (OFPortDesc oldPort: this.portList) {
+				for (OFPortDesc oldPort: this.portsByNumber.values()) {
 					if (!newPortsByNumber.containsKey(oldPort.getPortNo())) {
 						PortChangeEvent ev =
 								new PortChangeEvent(oldPort,
@@ -617,14 +673,9 @@ public class OFSwitch implements IOFSwitchBackend {
 
 
 				if (doUpdate) {
-					portsByName = Collections.unmodifiableMap(newPortsByName);
-					portsByNumber =
-							Collections.unmodifiableMap(newPortsByNumber);
-					enabledPortList =
-							Collections.unmodifiableList(newEnabledPortList);
-					enabledPortNumbers =
-							Collections.unmodifiableList(newEnabledPortNumbers);
-					portList = Collections.unmodifiableList(newPortsList);
+					portsByName = newPortsByName;
+					portsByNumber = newPortsByNumber;
+					portLists = new PortLists(newPortsList);
 				}
 				return events;
 			} finally {
@@ -653,31 +704,39 @@ public class OFSwitch implements IOFSwitchBackend {
 			}
 		}
 
-		public List<OFPortDesc> getPorts() {
+		/**
+		 * Get the lists of the current ports, building them if the ports
+		 * changed since they were last asked for.
+		 */
+		private PortLists getPortLists() {
+			PortLists lists = portLists;
+			if (lists != null) {
+				return lists;
+			}
 			lock.readLock().lock();
 			try {
-				return portList;
+				/* Concurrent readers may both build it; they get equal lists */
+				lists = portLists;
+				if (lists == null) {
+					lists = new PortLists(portsByNumber.values());
+					portLists = lists;
+				}
+				return lists;
 			} finally {
 				lock.readLock().unlock();
 			}
 		}
 
+		public List<OFPortDesc> getPorts() {
+			return getPortLists().ports;
+		}
+
 		public List<OFPortDesc> getEnabledPorts() {
-			lock.readLock().lock();
-			try {
-				return enabledPortList;
-			} finally {
-				lock.readLock().unlock();
-			}
+			return getPortLists().enabledPorts;
 		}
 
 		public List<OFPort> getEnabledPortNumbers() {
-			lock.readLock().lock();
-			try {
-				return enabledPortNumbers;
-			} finally {
-				lock.readLock().unlock();
-			}
+			return getPortLists().enabledPortNumbers;
 		}
 	}
 
@@ -784,6 +843,14 @@ public class OFSwitch implements IOFSwitchBackend {
 	@Override
 	public void registerConnection(IOFConnectionBackend connection) {
 		this.connections.put(connection.getAuxId(), connection);
+		updateAuxIds();
+	}
+
+	private void updateAuxIds() {
+		List<OFAuxId> ids = new ArrayList<OFAuxId>(this.connections.keySet());
+		ids.remove(OFAuxId.MAIN);
+		Collections.sort(ids);
+		this.auxIds = ids.toArray(new OFAuxId[ids.size()]);
 	}
 
 
@@ -795,11 +862,13 @@ public class OFSwitch implements IOFSwitchBackend {
 	@Override
 	public void removeConnections() {
 		this.connections.clear();
+		updateAuxIds();
 	}
 
 	@Override
 	public void removeConnection(IOFConnectionBackend connection) {
 		this.connections.remove(connection.getAuxId());
+		updateAuxIds();
 	}
 
 	/**
@@ -850,6 +919,16 @@ public class OFSwitch implements IOFSwitchBackend {
 		return this.write(msglist, LogicalOFMessageCategory.MAIN);
 	}
 
+	/**
+	 * Flush all of this switch's connections
+	 */
+	@Override
+	public void flush() {
+		for (IOFConnectionBackend conn : this.connections.values()) {
+			conn.flush();
+		}
+	}
+
 	@Override
 	public boolean write(OFMessage m, LogicalOFMessageCategory category) {
 		return this.write(Collections.singletonList(m), category).isEmpty();
@@ -857,6 +936,24 @@ public class OFSwitch implements IOFSwitchBackend {
 
 	@Override
 	public Collection<OFMessage> write(Iterable<OFMessage> msgList, LogicalOFMessageCategory category) {
+		return this.write(msgList, category, null);
+	}
+
+	/**
+	 * Write a list of messages to the switch's main connection, in the
+	 * given priority class
+	 * 
+	 * @param msgList list of messages to write
+	 * @param priority class of all the messages, or null to classify each by its type
+	 * @return list of failed messages
+	 */
+	@Override
+	public Collection<OFMessage> write(Iterable<OFMessage> msgList, OFMessagePriority priority) {
+		return this.write(msgList, LogicalOFMessageCategory.MAIN, priority);
+	}
+
+	private Collection<OFMessage> write(Iterable<OFMessage> msgList, LogicalOFMessageCategory category,
+			OFMessagePriority priority) {
 		IOFConnection conn = this.getConnection(category); /* do first to check for supported category */
 		Collection<OFMessage> validMsgs = new ArrayList<OFMessage>();
 		Collection<OFMessage> invalidMsgs = SwitchRoleMessageValidator.pruneInvalidMessages(
@@ -865,7 +962,13 @@ public class OFSwitch implements IOFSwitchBackend {
 			log.debug("MESSAGES: {}, VALID: {}, INVALID: {}", new Object[] { msgList, validMsgs, invalidMsgs});
 		}
 		/* Try to write all valid messages */
-		Collection<OFMessage> unsent = conn.write(validMsgs);
+		Collection<OFMessage> unsent;
+		if (AuxConnectionStriping.isEnabled() && this.auxIds.length > 0
+				&& LogicalOFMessageCategory.MAIN.equals(category)) {
+			unsent = writeStriped(validMsgs, conn, priority);
+		} else {
+			unsent = conn.write(validMsgs, priority);
+		}
 		for (OFMessage m : validMsgs) {
 			if (!unsent.contains(m)) {
 				switchManager.handleOutgoingMessage(this, m);
@@ -893,6 +996,55 @@ public class OFSwitch implements IOFSwitchBackend {
 		}
 	}
 
+	/**
+	 * Write messages according to {@link AuxConnectionStriping}. If any
+	 * message has to go to the main connection, the whole batch does, so
+	 * that messages written together are never reordered.
+	 * @return the messages that could not be written
+	 */
+	private Collection<OFMessage> writeStriped(Collection<OFMessage> msgs, IOFConnection main,
+			OFMessagePriority priority) {
+		OFAuxId[] ids = this.auxIds;
+		Map<OFAuxId, List<OFMessage>> byAuxId = new HashMap<OFAuxId, List<OFMessage>>();
+		for (OFMessage m : msgs) {
+			OFAuxId auxId = AuxConnectionStriping.select(m, ids);
+			if (auxId.equals(OFAuxId.MAIN)) {
+				return main.write(msgs, priority);
+			}
+			List<OFMessage> l = byAuxId.get(auxId);
+			if (l == null) {
+				l = new ArrayList<OFMessage>();
+				byAuxId.put(auxId, l);
+			}
+			l.add(m);
+		}
+
+		Collection<OFMessage> unsent = null;
+		for (Entry<OFAuxId, List<OFMessage>> e : byAuxId.entrySet()) {
+			IOFConnection conn = getConnectedAux(e.getKey(), main);
+			Collection<OFMessage> u = conn.write(e.getValue(), priority);
+			if (conn != main) {
+				switchManager.getCounters().auxStripedMessages.add(e.getValue().size() - u.size());
+			}
+			if (!u.isEmpty()) {
+				if (unsent == null) {
+					unsent = new ArrayList<OFMessage>();
+				}
+				unsent.addAll(u);
+			}
+		}
+		return unsent == null ? Collections.<OFMessage>emptyList() : unsent;
+	}
+
+	/**
+	 * @return the aux connection with the given id, or main if it is
+	 * gone or not connected
+	 */
+	private IOFConnection getConnectedAux(OFAuxId auxId, IOFConnection main) {
+		IOFConnection conn = this.connections.get(auxId);
+		return conn != null && conn.isConnected() ? conn : main;
+	}
+
 	@Override
 	public OFConnection getConnectionByCategory(LogicalOFMessageCategory category){
 		return (OFConnection) this.getConnection(category);
@@ -915,6 +1067,7 @@ public class OFSwitch implements IOFSwitchBackend {
 			entry.getValue().disconnect();
 			this.connections.remove(entry.getKey());
 		}
+		updateAuxIds();
 		log.debug("~~~~~~~SWITCH DISCONNECTED~~~~~~");
 		// Remove all counters from the store
 		connected = false;
@@ -975,6 +1128,12 @@ public class OFSwitch implements IOFSwitchBackend {
 		return portManager.handlePortStatusMessage(ps);
 	}
 
+	@Override
+	public OrderedCollection<PortChangeEvent>
+	processOFPortStatuses(List<OFPortStatus> burst) {
+		return portManager.handlePortStatusMessages(burst);
+	}
+
 	@Override
 	public void processOFTableFeatures(List<OFTableFeaturesStatsReply> replies) {
 		/*
@@ -1063,7 +1222,11 @@ public class OFSwitch implements IOFSwitchBackend {
 
 	@Override
 	public <REPLY extends OFStatsReply> ListenableFuture<List<REPLY>> writeStatsRequest(OFStatsRequest<REPLY> request) {
-		return addInternalStatsReplyListener(connections.get(OFAuxId.MAIN).writeStatsRequest(request), request);
+		IOFConnection conn = connections.get(OFAuxId.MAIN);
+		if (AuxConnectionStriping.isEnabled() && this.auxIds.length > 0) {
+			conn = getConnectedAux(AuxConnectionStriping.selectForStats(this.auxIds), conn);
+		}
+		return addInternalStatsReplyListener(conn.writeStatsRequest(request), request);
 	}
 
 	@Override
@@ -1071,6 +1234,50 @@ public class OFSwitch implements IOFSwitchBackend {
 		return addInternalStatsReplyListener(getConnection(category).writeStatsRequest(request), request);
 	}	
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The replies are only seen by the listener; they do not update the
+	 * switch's own state the way {@link #writeStatsRequest(OFStatsRequest)}
+	 * does for e.g. table features.
+	 */
+	@Override
+	public <REPLY extends OFStatsReply> ListenableFuture<Void> streamStatsRequest(OFStatsRequest<REPLY> request, IOFStatsReplyListener<REPLY> listener) {
+		IOFConnection conn = connections.get(OFAuxId.MAIN);
+		if (AuxConnectionStriping.isEnabled() && this.auxIds.length > 0) {
+			conn = getConnectedAux(AuxConnectionStriping.selectForStats(this.auxIds), conn);
+		}
+		return conn.streamStatsRequest(request, listener);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The batch always goes over the main connection, so the barrier
+	 * orders it. Nothing is written if any message of the batch is not
+	 * allowed in the switch's current role.
+	 */
+	@Override
+	public ListenableFuture<List<OFErrorMsg>> writeBatchWithBarrier(List<OFMessage> msgList) {
+		Collection<OFMessage> validMsgs = new ArrayList<OFMessage>();
+		Collection<OFMessage> invalidMsgs = SwitchRoleMessageValidator.pruneInvalidMessages(
+				msgList, validMsgs, this.getOFFactory().getVersion(), this.isActive());
+		if (!invalidMsgs.isEmpty()) {
+			log.warn("Could not send batch {} while in SLAVE role on switch {}", invalidMsgs, this.getId());
+			return Futures.immediateFailedFuture(new IllegalStateException(
+					"Switch " + this.getId() + " is not active"));
+		}
+		IOFConnection conn = connections.get(OFAuxId.MAIN);
+		if (!conn.isConnected()) {
+			return Futures.immediateFailedFuture(new SwitchDisconnectedException(this.getId()));
+		}
+		ListenableFuture<List<OFErrorMsg>> future = conn.writeBatchWithBarrier(msgList);
+		for (OFMessage m : msgList) {
+			switchManager.handleOutgoingMessage(this, m);
+		}
+		return future;
+	}
+
 	/**
 	 * Append a listener to receive an OFStatsReply and update the 
 	 * internal OFSwitch data structures.
@@ -110,6 +110,11 @@ public class OFSwitchHandshakeHandler implements IOFConnectionListener {
 	private final OFFeaturesReply featuresReply;
 	private final Timer timer;
 
+	/* Slot this handshake holds in the handshake scheduler, if enabled */
+	private final HandshakeScheduler handshakeScheduler;
+	private boolean holdsHandshakeSlot;
+	private long stateEnteredNanos;
+
 	private volatile OFControllerRole initialRole = null;
 
 	private final ArrayList<OFPortStatus> pendingPortStatusMsg;
@@ -782,6 +787,40 @@ public class OFSwitchHandshakeHandler implements IOFConnectionListener {
 			}
 		}
 
+		/**
+		 * Handle a burst of port status messages.
+		 *
+		 * Like {@link #handlePortStatusMessage(OFPortStatus, boolean)}, but
+		 * the ports are updated once for the whole burst and only the net
+		 * changes of the burst are dispatched.
+		 *
+		 * @param burst The PortStatus messages, in the order received
+		 * @param doNotify if true switch port changed events will be
+		 * dispatched
+		 */
+		protected void handlePortStatusMessages(List<OFPortStatus> burst, boolean doNotify) {
+			if (sw == null) {
+				String msg = getSwitchStateMessage(burst.get(0), "State machine error: switch is null. Should never happen");
+				throw new SwitchStateException(msg);
+			}
+			Collection<PortChangeEvent> changes = sw.processOFPortStatuses(burst);
+			if (doNotify) {
+				for (PortChangeEvent ev: changes)
+					switchManager.notifyPortChanged(sw, ev.port, ev.type);
+			}
+		}
+
+		/**
+		 * Process port status messages received back to back in one read.
+		 * By default each one is processed as if it had arrived on its own.
+		 * @param burst The PortStatus messages, in the order received
+		 */
+		void processOFPortStatuses(List<OFPortStatus> burst) {
+			for (OFPortStatus ps : burst) {
+				processOFMessage(ps);
+			}
+		}
+
 		/**
 		 * Handle a table features message.
 		 *
@@ -1041,8 +1080,10 @@ public class OFSwitchHandshakeHandler implements IOFConnectionListener {
 		}
 
 		void handlePendingPortStatusMessages(SwitchDescription description){
-			for (OFPortStatus ps: pendingPortStatusMsg) {
-				handlePortStatusMessage(ps, false);
+			if (pendingPortStatusMsg.size() == 1) {
+				handlePortStatusMessage(pendingPortStatusMsg.get(0), false);
+			} else if (!pendingPortStatusMsg.isEmpty()) {
+				handlePortStatusMessages(pendingPortStatusMsg, false);
 			}
 			pendingPortStatusMsg.clear();
 			log.info("Switch {} bound to class {}, description {}", new Object[] { sw, sw.getClass(), description });
@@ -1497,6 +1538,12 @@ public class OFSwitchHandshakeHandler implements IOFConnectionListener {
 			handlePortStatusMessage(m, true);
 		}
 
+		@Override
+		void processOFPortStatuses(List<OFPortStatus> burst) {
+			roleChanger.checkTimeout();
+			handlePortStatusMessages(burst, true);
+		}
+
 		@Override
 		void processOFPacketIn(OFPacketIn m) {
 			dispatchMessage(m);
@@ -1558,6 +1605,12 @@ public class OFSwitchHandshakeHandler implements IOFConnectionListener {
 			handlePortStatusMessage(m, true);
 		}
 
+		@Override
+		void processOFPortStatuses(List<OFPortStatus> burst) {
+			roleChanger.checkTimeout();
+			handlePortStatusMessages(burst, true);
+		}
+
 		@Override
 		void processOFExperimenter(OFExperimenter m) {
 			OFControllerRole role = extractNiciraRoleReply(m);
@@ -1669,6 +1722,8 @@ public class OFSwitchHandshakeHandler implements IOFConnectionListener {
 		this.featuresReply = featuresReply;
 		this.timer = timer;
 		this.switchManagerCounters = switchManager.getCounters();
+		this.handshakeScheduler = OFSwitchManager.getHandshakeScheduler();
+		this.holdsHandshakeSlot = handshakeScheduler != null;
 		this.factory = OFFactories.getFactory(featuresReply.getVersion());
 		this.roleChanger = new RoleChanger(DEFAULT_ROLE_TIMEOUT_NS);
 		setState(new InitState());
@@ -1795,11 +1850,42 @@ public class OFSwitchHandshakeHandler implements IOFConnectionListener {
 	 * @param state
 	 */
 	private void setState(OFSwitchHandshakeState state) {
+		recordStateDwellTime();
 		this.state = state;
+		stateEnteredNanos = System.nanoTime();
+		switchManagerCounters.getHandshakeStateCounters(getState()).entered.increment();
+		if (state.isHandshakeComplete()) {
+			releaseHandshakeSlot(!(state instanceof QuarantineState));
+		}
 		state.logState();
 		state.enterState();
 	}
 
+	/**
+	 * Add the time spent in the current state to its counter, unless the
+	 * handshake is already complete.
+	 */
+	private void recordStateDwellTime() {
+		if (state != null && !state.isHandshakeComplete()) {
+			long now = System.nanoTime();
+			switchManagerCounters.getHandshakeStateCounters(getState()).timeMs
+			.add(TimeUnit.NANOSECONDS.toMillis(now - stateEnteredNanos));
+			stateEnteredNanos = now;
+		}
+	}
+
+	/**
+	 * Give back the handshake scheduler slot, if we hold one, so that the
+	 * next waiting switch can start its handshake.
+	 * @param completed true if the switch completed the handshake
+	 */
+	private synchronized void releaseHandshakeSlot(boolean completed) {
+		if (holdsHandshakeSlot) {
+			holdsHandshakeSlot = false;
+			handshakeScheduler.release(mainConnection.getDatapathId(), completed);
+		}
+	}
+
 	public void processOFMessage(OFMessage m) {
 		state.processOFMessage(m);
 	}
@@ -1886,6 +1972,9 @@ public class OFSwitchHandshakeHandler implements IOFConnectionListener {
 		if (this.getState().equals("ACTIVE") || this.getState().equals("STANDBY")) {
 			auxConnections.put(connection.getAuxId(), connection);
 			connection.setListener(OFSwitchHandshakeHandler.this);
+			if (sw != null) {
+				sw.registerConnection(connection);
+			}
 			log.info("Auxiliary connection {} added for {}.", connection.getAuxId().getValue(), connection.getDatapathId().toString());
 		} else {
 			log.info("Auxiliary connection {} initiated for {} before main connection handshake complete. Ignorning aux connection attempt.", connection.getAuxId().getValue(), connection.getDatapathId().toString());
@@ -1962,6 +2051,8 @@ public class OFSwitchHandshakeHandler implements IOFConnectionListener {
 		// Only remove the switch handler when the main connection is
 		// closed
 		if (connection == this.mainConnection) {
+			recordStateDwellTime();
+			releaseHandshakeSlot(false);
 			switchManager.handshakeDisconnected(connection.getDatapathId());
 			if(sw != null) {
 				log.debug("[{}] - main connection {} closed - disconnecting switch",
@@ -1978,6 +2069,11 @@ public class OFSwitchHandshakeHandler implements IOFConnectionListener {
 		processOFMessage(m);
 	}
 
+	@Override
+	public void portStatusBurstReceived(IOFConnectionBackend connection, List<OFPortStatus> burst) {
+		state.processOFPortStatuses(burst);
+	}
+
 	@Override
 	public void messageWritten(IOFConnectionBackend connection, OFMessage m) {
 		processWrittenOFMessage(m);
@@ -19,6 +19,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 import net.floodlightcontroller.core.FloodlightContext;
+import net.floodlightcontroller.core.FlowModBatchResult;
 import net.floodlightcontroller.core.HAListenerTypeMarker;
 import net.floodlightcontroller.core.HARole;
 import net.floodlightcontroller.core.IFloodlightProviderService;
@@ -29,9 +30,12 @@ import net.floodlightcontroller.core.IOFSwitch.SwitchStatus;
 import net.floodlightcontroller.core.IOFSwitchBackend;
 import net.floodlightcontroller.core.IOFSwitchDriver;
 import net.floodlightcontroller.core.IOFSwitchListener;
+import net.floodlightcontroller.core.IShutdownListener;
+import net.floodlightcontroller.core.IShutdownService;
 import net.floodlightcontroller.core.LogicalOFMessageCategory;
 import net.floodlightcontroller.core.PortChangeType;
 import net.floodlightcontroller.core.SwitchDescription;
+import net.floodlightcontroller.core.SwitchDisconnectedException;
 import net.floodlightcontroller.core.SwitchSyncRepresentation;
 import net.floodlightcontroller.core.internal.Controller.IUpdate;
 import net.floodlightcontroller.core.internal.Controller.ModuleLoaderState;
@@ -46,8 +50,10 @@ import org.projectfloodlight.openflow.protocol.OFFactories;
 import org.projectfloodlight.openflow.protocol.OFFactory;
 import org.projectfloodlight.openflow.protocol.OFFeaturesReply;
 import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFPacketIn;
 import org.projectfloodlight.openflow.protocol.OFPortDesc;
 import org.projectfloodlight.openflow.protocol.OFPortState;
+import org.projectfloodlight.openflow.protocol.OFType;
 import org.projectfloodlight.openflow.protocol.OFVersion;
 import org.projectfloodlight.openflow.types.DatapathId;
 import org.projectfloodlight.openflow.types.IPv4Address;
@@ -72,6 +78,8 @@ import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelOption;
@@ -147,6 +155,20 @@ IHAListener, IFloodlightModule, IOFSwitchService, IStoreListener<DatapathId> {
     private static NioEventLoopGroup workerGroup;
     private static DefaultChannelGroup cg;
 
+    /* Staged dispatch of the listener chain off the I/O threads; null if disabled */
+    private static OFMessageDispatchPipeline dispatchPipeline;
+    private static int dispatcherThreads = 0;
+    private static int dispatcherQueueCapacity = 1024;
+
+    /* Packet-in rate limiting per switch and per ingress port; null if disabled */
+    private static PacketInAdmissionControl packetInAdmission;
+
+    /* Limits the number of concurrent switch handshakes; null if disabled */
+    private static HandshakeScheduler handshakeScheduler;
+
+    /* Writes flow-mod batches as bundles or with a barrier */
+    private static FlowModBatchWriter flowModBatchWriter;
+
     protected static Timer timer;
 
     /** IHAListener Implementation **/
@@ -166,6 +188,14 @@ IHAListener, IFloodlightModule, IOFSwitchService, IStoreListener<DatapathId> {
         return counters;
     }
 
+    /**
+     * @return the handshake scheduler, or null if the number of concurrent
+     * switch handshakes is not limited
+     */
+    static HandshakeScheduler getHandshakeScheduler() {
+        return handshakeScheduler;
+    }
+
     private void addUpdateToQueue(IUpdate iUpdate) {
         floodlightProvider.addUpdateToQueue(iUpdate);
     }
@@ -257,6 +287,9 @@ IHAListener, IFloodlightModule, IOFSwitchService, IStoreListener<DatapathId> {
 
         counters.switchDisconnected.increment();
         switches.remove(dpid);
+        if (packetInAdmission != null) {
+            packetInAdmission.removeSwitch(dpid);
+        }
     }
 
     @Override public void handshakeDisconnected(DatapathId dpid) {
@@ -485,7 +518,15 @@ IHAListener, IFloodlightModule, IOFSwitchService, IStoreListener<DatapathId> {
 
     @Override
     public void handleMessage(IOFSwitchBackend sw, OFMessage m, FloodlightContext bContext) {
-        floodlightProvider.handleMessage(sw, m, bContext);
+        if (packetInAdmission != null && m.getType() == OFType.PACKET_IN
+                && !packetInAdmission.admit(sw, (OFPacketIn) m)) {
+            return;
+        }
+        if (dispatchPipeline != null) {
+            dispatchPipeline.dispatch(sw, m, bContext);
+        } else {
+            floodlightProvider.handleMessage(sw, m, bContext);
+        }
     }
 
     @Override
@@ -504,6 +545,21 @@ IHAListener, IFloodlightModule, IOFSwitchService, IStoreListener<DatapathId> {
         return ImmutableList.copyOf(switchHandlers.values());
     }
 
+    @Override
+    public int getDispatchQueueDepth() {
+        OFMessageDispatchPipeline pipeline = dispatchPipeline;
+        return pipeline == null ? -1 : pipeline.getQueueDepth();
+    }
+
+    @Override
+    public ListenableFuture<FlowModBatchResult> writeFlowModBatch(DatapathId dpid, List<? extends OFMessage> msgs) {
+        IOFSwitch sw = getActiveSwitch(dpid);
+        if (sw == null) {
+            return Futures.immediateFailedFuture(new SwitchDisconnectedException(dpid));
+        }
+        return flowModBatchWriter.write(sw, msgs);
+    }
+
     @Override
     public int getNumRequiredConnections() {
         Preconditions.checkState(numRequiredConnections >= 0, "numRequiredConnections not calculated");
@@ -606,6 +662,7 @@ IHAListener, IFloodlightModule, IOFSwitchService, IStoreListener<DatapathId> {
         l.add(IFloodlightProviderService.class);
         l.add(IDebugCounterService.class);
         l.add(ISyncService.class);
+        l.add(IShutdownService.class);
 
         return l;
     }
@@ -629,6 +686,11 @@ IHAListener, IFloodlightModule, IOFSwitchService, IStoreListener<DatapathId> {
         timer = new HashedWheelTimer();
 
         /* TODO
+         * Switch state is not replicated at the moment: nothing writes to
+         * the store and keysModified() cannot build a switch from a
+         * SwitchSyncRepresentation yet. When this is brought back, write
+         * per-port deltas between periodic full snapshots rather than the
+         * whole representation on every port change.
 		try {
 			storeClient = syncService.getStoreClient(
 					SWITCH_SYNC_STORE_NAME,
@@ -835,6 +897,101 @@ IHAListener, IFloodlightModule, IOFSwitchService, IStoreListener<DatapathId> {
             openFlowAddresses.add(IPv4Address.NONE);
         }
 
+        /* Dispatcher threads that run the listener chain; 0 runs it on the Netty I/O threads */
+        threads = configParams.get("dispatcherThreads");
+        if (!Strings.isNullOrEmpty(threads)) {
+            dispatcherThreads = Integer.parseInt(threads.trim());
+        }
+
+        /* Per-dispatcher-thread queue capacity before reads from a switch are paused */
+        String queueCapacity = configParams.get("dispatcherQueueCapacity");
+        if (!Strings.isNullOrEmpty(queueCapacity)) {
+            dispatcherQueueCapacity = Integer.parseInt(queueCapacity.trim());
+        }
+
+        /* Packet-in admission control; rates are in packet-ins per second, 0 disables */
+        double piSwitchRate = parseDoubleParam(configParams, "packetInRateLimitPerSwitch", 0);
+        double piSwitchBurst = parseDoubleParam(configParams, "packetInBurstPerSwitch", piSwitchRate);
+        double piPortRate = parseDoubleParam(configParams, "packetInRateLimitPerPort", 0);
+        double piPortBurst = parseDoubleParam(configParams, "packetInBurstPerPort", piPortRate);
+        int piDropFlowTimeout = (int) parseDoubleParam(configParams, "packetInDropFlowTimeoutSeconds", 0);
+        /* What the drop flow matches: in_port_eth_src (one host) or in_port (the whole port) */
+        PacketInAdmissionControl.DropFlowMatch piDropFlowMatch =
+                PacketInAdmissionControl.DropFlowMatch.IN_PORT_ETH_SRC;
+        String dropFlowMatch = configParams.get("packetInDropFlowMatch");
+        if (!Strings.isNullOrEmpty(dropFlowMatch)) {
+            try {
+                piDropFlowMatch = PacketInAdmissionControl.DropFlowMatch.valueOf(
+                        dropFlowMatch.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                log.error("Invalid packetInDropFlowMatch {}. Using default {}",
+                        dropFlowMatch, piDropFlowMatch);
+            }
+        }
+        PacketInAdmissionControl admission = new PacketInAdmissionControl(counters,
+                piSwitchRate, piSwitchBurst, piPortRate, piPortBurst,
+                piDropFlowTimeout, piDropFlowMatch);
+        if (admission.isEnabled()) {
+            packetInAdmission = admission;
+            log.info("Packet-in admission control: {}/s (burst {}) per switch, {}/s (burst {}) per port, "
+                    + "drop flow timeout {}s matching {}", new Object[] { piSwitchRate, piSwitchBurst,
+                            piPortRate, piPortBurst, piDropFlowTimeout, piDropFlowMatch });
+        } else {
+            packetInAdmission = null;
+        }
+
+        /*
+         * Switch handshakes allowed to run at the same time; 0 means no limit.
+         * Switches seen before in this run are let in first; that is not
+         * kept across restarts.
+         */
+        int maxHandshakes = (int) parseDoubleParam(configParams, "maxConcurrentHandshakes", 0);
+        if (maxHandshakes > 0) {
+            handshakeScheduler = new HandshakeScheduler(maxHandshakes, counters);
+            log.info("At most {} concurrent switch handshakes", maxHandshakes);
+        } else {
+            handshakeScheduler = null;
+        }
+
+        /* Coalesce writes issued in the same event loop tick into one flush per connection */
+        boolean flushConsolidation = parseConfigBooleanValue(configParams.get("writeFlushConsolidation"), false);
+        int flushMaxMessages = (int) parseDoubleParam(configParams, "writeFlushMaxMessages", 256);
+        int flushMaxBytes = (int) parseDoubleParam(configParams, "writeFlushMaxBytes", 65536);
+        OFConnection.setFlushConsolidation(flushConsolidation, Math.max(1, flushMaxMessages),
+                Math.max(0, flushMaxBytes));
+        if (flushConsolidation) {
+            log.info("Write flush consolidation enabled: flush at most every {} messages or {} bytes",
+                    flushMaxMessages, flushMaxBytes);
+        }
+
+        /* Spread packet-outs and stats requests over a switch's auxiliary connections */
+        boolean auxStriping = parseConfigBooleanValue(configParams.get("auxConnectionStriping"), false);
+        AuxConnectionStriping.setEnabled(auxStriping);
+        if (auxStriping) {
+            log.info("Auxiliary connection striping enabled");
+        }
+
+        /* Queue writes by priority class and pace flow-mods to what each switch can take */
+        boolean outboundScheduling = parseConfigBooleanValue(configParams.get("outboundScheduling"), false);
+        double fmMinRate = parseDoubleParam(configParams, "flowModRateMin", 100);
+        double fmMaxRate = parseDoubleParam(configParams, "flowModRateMax", 20000);
+        double fmInitialRate = parseDoubleParam(configParams, "flowModRateInitial", 1000);
+        fmMinRate = Math.max(1, fmMinRate);
+        fmMaxRate = Math.max(fmMinRate, fmMaxRate);
+        fmInitialRate = Math.min(fmMaxRate, Math.max(fmMinRate, fmInitialRate));
+        int outboundQueueLimit = Math.max(0, (int) parseDoubleParam(configParams, "outboundQueueLimit", 10000));
+        OFWriteScheduler.configure(outboundScheduling, fmInitialRate, fmMinRate, fmMaxRate, outboundQueueLimit);
+        if (outboundScheduling) {
+            log.info("Outbound scheduling enabled: flow-mods paced from {}/s, between {}/s and {}/s; "
+                    + "at most {} messages queued per class",
+                    new Object[] { fmInitialRate, fmMinRate, fmMaxRate, outboundQueueLimit });
+        }
+
+        /* Send flow-mod batches to OpenFlow 1.4+ switches as atomic bundles */
+        boolean useBundles = parseConfigBooleanValue(configParams.get("useBundlesForFlowModBatches"), true);
+        flowModBatchWriter = new FlowModBatchWriter(this, counters, useBundles);
+        log.info("Use bundles for flow-mod batches to OpenFlow 1.4+ switches: {}", useBundles);
+
         /* OpenFlow port TCP send buffer size */
         String tcpBuffer = configParams.get("tcpSendBufferSizeBytes");
         if (!Strings.isNullOrEmpty(tcpBuffer)) {
@@ -847,16 +1004,31 @@ IHAListener, IFloodlightModule, IOFSwitchService, IStoreListener<DatapathId> {
                 + "{} worker thread(s), "
                 + "{} ms TCP connection timeout, "
                 + "max {} connection backlog, "
-                + "{} byte TCP send buffer size", 
+                + "{} byte TCP send buffer size, "
+                + "{} dispatcher thread(s)", 
                 new Object[] {
                         bossThreads, 
                         workerThreads, 
                         connectionTimeoutMsec, 
                         connectionBacklog, 
-                        tcpSendBufferSize
+                        tcpSendBufferSize,
+                        dispatcherThreads
                 });
     }
 
+    private static double parseDoubleParam(Map<String, String> configParams, String name, double defaultValue) {
+        String value = configParams.get(name);
+        if (Strings.isNullOrEmpty(value)) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            log.error("Invalid value {} for {}. Using default of {}", new Object[] { value, name, defaultValue });
+            return defaultValue;
+        }
+    }
+
     /**
      * Find the max version supplied in the supported
      * versions list and use it as the default, which
@@ -1011,6 +1183,22 @@ IHAListener, IFloodlightModule, IOFSwitchService, IStoreListener<DatapathId> {
         floodlightProvider.addHAListener(this);
 
         loadLogicalCategories();
+
+        if (dispatcherThreads > 0) {
+            dispatchPipeline = new OFMessageDispatchPipeline(floodlightProvider,
+                    debugCounterService, dispatcherThreads, dispatcherQueueCapacity);
+            dispatchPipeline.start();
+
+            IShutdownService shutdownService = context.getServiceImpl(IShutdownService.class);
+            if (shutdownService != null) {
+                shutdownService.registerShutdownListener(new IShutdownListener() {
+                    @Override
+                    public void floodlightIsShuttingDown() {
+                        dispatchPipeline.stop();
+                    }
+                });
+            }
+        }
     }
 
     /**
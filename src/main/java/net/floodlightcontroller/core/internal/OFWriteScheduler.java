@@ -0,0 +1,411 @@
+package net.floodlightcontroller.core.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import net.floodlightcontroller.core.OFMessagePriority;
+
+import org.projectfloodlight.openflow.protocol.OFBarrierRequest;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFPacketOut;
+import org.projectfloodlight.openflow.protocol.OFType;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Outbound message scheduler of one switch connection, used by
+ * {@link OFConnection} when enabled with {@link #configure}.
+ *
+ * Written messages are queued by {@link OFMessagePriority} and drained on
+ * the connection's EventLoop, always from the highest class that has any.
+ * Messages of one class keep their order. Barriers and stats requests are
+ * queued behind everything written before them, in their own class or the
+ * lowest non-empty one, whichever is lower, so they still cover all earlier
+ * writes. A packet-out to TABLE goes with the flow-mods, since it has to be
+ * processed after those written before it.
+ *
+ * Flow, group and meter mods and bundle adds are paced by a token bucket.
+ * Its rate follows the switch: barrier round trips well above the lowest
+ * one seen mean the switch is queueing flow-mods, so the rate is cut;
+ * quick round trips while pacing held messages back raise it again. Apart
+ * from the barriers modules write, the scheduler sends its own probe
+ * barrier after every {@link #PROBE_INTERVAL} paced messages, and at the
+ * end of a burst that was held back; the replies to those are consumed by
+ * {@link #barrierReplyReceived(long, long)}.
+ *
+ * Flow-mods go over the main connection, so pacing per connection is
+ * pacing per switch.
+ *
+ * Each class below {@link OFMessagePriority#CONTROL} holds at most the
+ * configured number of messages, so a switch that cannot keep up does not
+ * let its queues grow without limit. Messages over that are rejected and
+ * handed back to the writer as not written. Barriers and stats requests
+ * are always queued, since their callers wait for the reply.
+ */
+public class OFWriteScheduler {
+    /* Paced messages between two probe barriers */
+    static final int PROBE_INTERVAL = 128;
+    /* Messages written per drain, so one busy connection does not hog its EventLoop */
+    static final int MAX_MESSAGES_PER_DRAIN = 256;
+    /* The token bucket holds this many seconds worth of the current rate */
+    private static final double BURST_SECONDS = 0.05;
+    /* A barrier round trip above RTT_FACTOR times the lowest seen plus RTT_SLACK_NS is slow */
+    private static final double RTT_FACTOR = 2.0;
+    private static final long RTT_SLACK_NS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final double RATE_DECREASE = 0.75;
+    private static final double RATE_INCREASE = 1.1;
+    /* Barriers whose reply never came are forgotten beyond this many */
+    private static final int MAX_TRACKED_BARRIERS = 64;
+
+    private static volatile boolean enabled = false;
+    private static volatile double defaultInitialRate = 1000;
+    private static volatile double defaultMinRate = 100;
+    private static volatile double defaultMaxRate = 20000;
+    private static volatile int defaultMaxQueued = 10000;
+
+    /**
+     * Configure outbound scheduling for connections opened from now on.
+     * @param enabled true to queue writes by priority and pace flow-mods
+     * @param initialRate flow-mods per second a new connection starts at
+     * @param minRate flow-mods per second the rate is never cut below
+     * @param maxRate flow-mods per second the rate is never raised above
+     * @param maxQueued messages each class below CONTROL may hold; 0 for no limit
+     */
+    public static void configure(boolean enabled, double initialRate, double minRate, double maxRate,
+            int maxQueued) {
+        Preconditions.checkArgument(minRate > 0, "minRate must be > 0");
+        Preconditions.checkArgument(minRate <= initialRate && initialRate <= maxRate,
+                "initialRate must be between minRate and maxRate");
+        Preconditions.checkArgument(maxQueued >= 0, "maxQueued must be >= 0");
+        defaultInitialRate = initialRate;
+        defaultMinRate = minRate;
+        defaultMaxRate = maxRate;
+        defaultMaxQueued = maxQueued;
+        OFWriteScheduler.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    private static class SentBarrier {
+        final long sentNs;
+        /* paced messages written since the previous barrier */
+        final int paced;
+        /* whether pacing held messages back since the previous barrier */
+        final boolean throttled;
+        final boolean probe;
+
+        SentBarrier(long sentNs, int paced, boolean throttled, boolean probe) {
+            this.sentNs = sentNs;
+            this.paced = paced;
+            this.throttled = throttled;
+            this.probe = probe;
+        }
+    }
+
+    private final OFFactory factory;
+    private final double minRate;
+    private final double maxRate;
+    private final int maxQueued;
+
+    /* All state is guarded by this; only enqueue() is called off the EventLoop */
+    private final List<ArrayDeque<OFMessage>> queues;
+    private boolean drainPending;
+    private long drainDelayNs = -1;
+
+    private double rate;
+    private double tokens;
+    private long lastRefillNs;
+
+    private int pacedSinceBarrier;
+    private boolean throttledSinceBarrier;
+    private final Map<Long, SentBarrier> barriers = new LinkedHashMap<Long, SentBarrier>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, SentBarrier> eldest) {
+            return size() > MAX_TRACKED_BARRIERS;
+        }
+    };
+    private long baseRttNs;
+    private long lastRttNs;
+    private long lastDecreaseNs;
+
+    OFWriteScheduler(OFFactory factory) {
+        this(factory, defaultInitialRate, defaultMinRate, defaultMaxRate, defaultMaxQueued, System.nanoTime());
+    }
+
+    OFWriteScheduler(OFFactory factory, double initialRate, double minRate, double maxRate,
+            int maxQueued, long now) {
+        this.factory = factory;
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        this.maxQueued = maxQueued;
+        this.rate = initialRate;
+        this.tokens = burst();
+        this.lastRefillNs = now;
+        this.lastDecreaseNs = now;
+        this.queues = new ArrayList<ArrayDeque<OFMessage>>();
+        for (int i = 0; i < OFMessagePriority.values().length; i++) {
+            queues.add(new ArrayDeque<OFMessage>());
+        }
+    }
+
+    /**
+     * Queue messages for writing.
+     * @param msgs messages to queue, in order
+     * @param priority class of all the messages, or null to classify each
+     * with {@link OFMessagePriority#of(OFMessage)}
+     * @param rejected gets the messages that were not queued because their
+     * class is full, in order
+     * @return true if the caller has to schedule a drain on the EventLoop,
+     * false if one is pending already or nothing was queued
+     */
+    synchronized boolean enqueue(Iterable<OFMessage> msgs, @Nullable OFMessagePriority priority,
+            Collection<OFMessage> rejected) {
+        boolean queued = false;
+        for (OFMessage m : msgs) {
+            int c = classify(m, priority);
+            ArrayDeque<OFMessage> q = queues.get(c);
+            if (maxQueued > 0 && c > OFMessagePriority.CONTROL.ordinal()
+                    && q.size() >= maxQueued && !isOrdered(m)) {
+                rejected.add(m);
+            } else {
+                q.addLast(m);
+                queued = true;
+            }
+        }
+        return queued && schedule();
+    }
+
+    /**
+     * @return true if the caller has to schedule a drain on the EventLoop
+     * because messages are queued and none is pending, e.g. after the
+     * channel became writable again
+     */
+    synchronized boolean wakeUp() {
+        return !isEmpty() && schedule();
+    }
+
+    private boolean schedule() {
+        if (drainPending) {
+            return false;
+        }
+        drainPending = true;
+        return true;
+    }
+
+    private int classify(OFMessage m, @Nullable OFMessagePriority priority) {
+        int c;
+        if (priority != null) {
+            c = priority.ordinal();
+        } else if (m.getType() == OFType.PACKET_OUT
+                && AuxConnectionStriping.outputsToTable((OFPacketOut) m)) {
+            c = OFMessagePriority.FLOW_MOD.ordinal();
+        } else {
+            c = OFMessagePriority.of(m).ordinal();
+        }
+        if (isOrdered(m)) {
+            for (int i = queues.size() - 1; i > c; i--) {
+                if (!queues.get(i).isEmpty()) {
+                    return i;
+                }
+            }
+        }
+        return c;
+    }
+
+    private static boolean isOrdered(OFMessage m) {
+        return m.getType() == OFType.BARRIER_REQUEST || m.getType() == OFType.STATS_REQUEST;
+    }
+
+    private static boolean isPaced(OFMessage m) {
+        switch (m.getType()) {
+        case FLOW_MOD:
+        case GROUP_MOD:
+        case METER_MOD:
+        case BUNDLE_ADD_MESSAGE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Take the messages to write now, highest class first. Afterwards
+     * {@link #getDrainDelayNs()} tells when to drain again. Must be called
+     * on the EventLoop.
+     * @param now System.nanoTime()
+     * @param writable whether the channel is writable; if not, nothing is
+     * taken and the next drain is up to {@link #wakeUp()}
+     * @return the messages to write, in order, including probe barriers
+     */
+    synchronized List<OFMessage> poll(long now, boolean writable) {
+        drainDelayNs = -1;
+        if (!writable) {
+            drainPending = false;
+            return Collections.emptyList();
+        }
+        refill(now);
+        List<OFMessage> out = new ArrayList<OFMessage>();
+        boolean throttled = false;
+        while (out.size() < MAX_MESSAGES_PER_DRAIN) {
+            ArrayDeque<OFMessage> q = highestNonEmpty();
+            if (q == null) {
+                break;
+            }
+            OFMessage m = q.peekFirst();
+            boolean paced = isPaced(m);
+            if (paced && tokens < 1) {
+                throttled = true;
+                break;
+            }
+            q.pollFirst();
+            out.add(m);
+            if (paced) {
+                tokens -= 1;
+                if (++pacedSinceBarrier >= PROBE_INTERVAL) {
+                    out.add(probe(now));
+                }
+            } else if (m.getType() == OFType.BARRIER_REQUEST) {
+                sent(m.getXid(), false, now);
+            }
+        }
+
+        if (throttled) {
+            throttledSinceBarrier = true;
+            drainDelayNs = (long) Math.ceil((1 - tokens) / rate * 1e9);
+        } else if (!isEmpty()) {
+            drainDelayNs = 0;
+        } else {
+            if (throttledSinceBarrier && pacedSinceBarrier > 0) {
+                out.add(probe(now));
+            }
+            drainPending = false;
+        }
+        return out;
+    }
+
+    /**
+     * @return nanoseconds until the next drain after {@link #poll}, 0 to
+     * drain again right away, or -1 if no drain is needed
+     */
+    synchronized long getDrainDelayNs() {
+        return drainDelayNs;
+    }
+
+    private ArrayDeque<OFMessage> highestNonEmpty() {
+        for (ArrayDeque<OFMessage> q : queues) {
+            if (!q.isEmpty()) {
+                return q;
+            }
+        }
+        return null;
+    }
+
+    private boolean isEmpty() {
+        return highestNonEmpty() == null;
+    }
+
+    private double burst() {
+        return Math.max(1, rate * BURST_SECONDS);
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burst(), tokens + (now - lastRefillNs) * rate / 1e9);
+        lastRefillNs = now;
+    }
+
+    private OFBarrierRequest probe(long now) {
+        OFBarrierRequest b = factory.buildBarrierRequest().build();
+        sent(b.getXid(), true, now);
+        return b;
+    }
+
+    private void sent(long xid, boolean probe, long now) {
+        barriers.put(xid, new SentBarrier(now, pacedSinceBarrier, throttledSinceBarrier, probe));
+        pacedSinceBarrier = 0;
+        throttledSinceBarrier = false;
+    }
+
+    /**
+     * Adapt the flow-mod rate to the round trip of a barrier. Must be
+     * called on the EventLoop for every barrier reply.
+     * @param xid xid of the barrier reply
+     * @param now System.nanoTime()
+     * @return true if the reply is to a probe barrier and must not be
+     * passed on
+     */
+    synchronized boolean barrierReplyReceived(long xid, long now) {
+        SentBarrier b = barriers.remove(xid);
+        if (b == null) {
+            return false;
+        }
+        long rtt = now - b.sentNs;
+        lastRttNs = rtt;
+        if (baseRttNs == 0 || rtt < baseRttNs) {
+            baseRttNs = rtt;
+        } else {
+            /* creep up slowly, in case the path to the switch got longer */
+            baseRttNs += (rtt - baseRttNs) >> 8;
+        }
+        if (b.paced > 0) {
+            if (rtt > RTT_FACTOR * baseRttNs + RTT_SLACK_NS) {
+                /* cut once per round trip, not for every barrier that was already on its way */
+                if (b.sentNs - lastDecreaseNs >= 0) {
+                    rate = Math.max(minRate, rate * RATE_DECREASE);
+                    lastDecreaseNs = now;
+                }
+            } else if (b.throttled) {
+                rate = Math.min(maxRate, rate * RATE_INCREASE);
+            }
+        }
+        return b.probe;
+    }
+
+    /**
+     * Drop everything queued, e.g. once the channel is closed.
+     */
+    synchronized void clear() {
+        for (ArrayDeque<OFMessage> q : queues) {
+            q.clear();
+        }
+        drainPending = false;
+        drainDelayNs = -1;
+    }
+
+    /**
+     * @return messages queued, indexed by {@link OFMessagePriority} ordinal
+     */
+    synchronized int[] getQueueDepths() {
+        int[] depths = new int[queues.size()];
+        for (int i = 0; i < depths.length; i++) {
+            depths[i] = queues.get(i).size();
+        }
+        return depths;
+    }
+
+    /**
+     * @return flow-mods per second currently allowed
+     */
+    synchronized double getRate() {
+        return rate;
+    }
+
+    /**
+     * @return round trip time of the last barrier, 0 if none yet
+     */
+    synchronized long getLastBarrierRttNs() {
+        return lastRttNs;
+    }
+}
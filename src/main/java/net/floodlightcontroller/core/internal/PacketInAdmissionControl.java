@@ -0,0 +1,240 @@
+package net.floodlightcontroller.core.internal;
+
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.util.AppCookie;
+import net.floodlightcontroller.packet.PacketView;
+import net.floodlightcontroller.util.FlowModUtils;
+import net.floodlightcontroller.util.OFMessageUtils;
+import net.floodlightcontroller.util.TokenBucket;
+
+import org.projectfloodlight.openflow.protocol.OFFlowAdd;
+import org.projectfloodlight.openflow.protocol.OFPacketIn;
+import org.projectfloodlight.openflow.protocol.action.OFAction;
+import org.projectfloodlight.openflow.protocol.match.Match;
+import org.projectfloodlight.openflow.protocol.match.MatchField;
+import org.projectfloodlight.openflow.types.DatapathId;
+import org.projectfloodlight.openflow.types.MacAddress;
+import org.projectfloodlight.openflow.types.OFBufferId;
+import org.projectfloodlight.openflow.types.OFPort;
+import org.projectfloodlight.openflow.types.U64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Token-bucket admission control for packet-in messages, applied per switch
+ * and per ingress port before the payload is decoded or any listener runs.
+ *
+ * A packet-in must get a token from its ingress port's bucket and then from
+ * its switch's bucket to be admitted. Checking the port first means a single
+ * storming port does not use up the budget of the rest of the switch.
+ * Optionally, a port that is over its limit gets a temporary, high priority
+ * drop flow, so that the storm is stopped at the switch rather than just
+ * ignored here. Note the drop flow discards all traffic it matches, not only
+ * what would have been sent to the controller: for its timeout, the host
+ * (or with {@link DropFlowMatch#IN_PORT}, everything on the port) is cut off
+ * from the data plane as well.
+ *
+ * A port only gets another drop flow once the last one has timed out. The
+ * exception is {@link DropFlowMatch#IN_PORT_ETH_SRC}: if another source
+ * goes over the limit on a port while the first one is cut off, e.g. in a
+ * flood from many source MACs, the port gets one more drop flow that
+ * matches in_port alone.
+ */
+public class PacketInAdmissionControl {
+    private static final Logger log = LoggerFactory.getLogger(PacketInAdmissionControl.class);
+
+    public static final int PACKET_IN_ADMISSION_APP_ID = 6;
+    static {
+        AppCookie.registerApp(PACKET_IN_ADMISSION_APP_ID, "packet-in-admission");
+    }
+    private static final U64 DROP_FLOW_COOKIE = AppCookie.makeCookie(PACKET_IN_ADMISSION_APP_ID, 0);
+
+    /**
+     * What the drop flow for a port over its limit matches.
+     */
+    public enum DropFlowMatch {
+        /**
+         * in_port and the source MAC of the packet-in that went over the
+         * limit, so only that host is cut off. Falls back to in_port alone
+         * if the source MAC cannot be read, or if another source goes over
+         * the limit on the same port.
+         */
+        IN_PORT_ETH_SRC,
+        /**
+         * in_port alone, cutting off everything behind the port.
+         */
+        IN_PORT
+    }
+
+    private final SwitchManagerCounters counters;
+    private final double switchRate;
+    private final double switchBurst;
+    private final double portRate;
+    private final double portBurst;
+    private final int dropFlowTimeout;
+    private final DropFlowMatch dropFlowMatch;
+
+    private final ConcurrentHashMap<DatapathId, SwitchBuckets> buckets =
+            new ConcurrentHashMap<DatapathId, SwitchBuckets>();
+
+    private class SwitchBuckets {
+        private final TokenBucket switchBucket =
+                switchRate > 0 ? new TokenBucket(switchRate, switchBurst) : null;
+        private final ConcurrentHashMap<OFPort, PortBucket> portBuckets =
+                new ConcurrentHashMap<OFPort, PortBucket>();
+
+        private PortBucket getPortBucket(OFPort port) {
+            PortBucket b = portBuckets.get(port);
+            if (b == null) {
+                b = new PortBucket();
+                PortBucket old = portBuckets.putIfAbsent(port, b);
+                if (old != null) {
+                    b = old;
+                }
+            }
+            return b;
+        }
+    }
+
+    private class PortBucket {
+        private final TokenBucket bucket = new TokenBucket(portRate, portBurst);
+        /* The drop flow last pushed for this port; null if none yet */
+        private final AtomicReference<DropFlow> dropFlow = new AtomicReference<DropFlow>();
+    }
+
+    private static class DropFlow {
+        /* null if the flow matches in_port alone */
+        private final MacAddress srcMac;
+        private final long expiresNanos;
+
+        private DropFlow(MacAddress srcMac, long expiresNanos) {
+            this.srcMac = srcMac;
+            this.expiresNanos = expiresNanos;
+        }
+    }
+
+    /**
+     * @param counters where rejected packet-ins are counted
+     * @param switchRate packet-ins per second admitted per switch; 0 disables
+     * @param switchBurst bucket size per switch
+     * @param portRate packet-ins per second admitted per ingress port; 0 disables
+     * @param portBurst bucket size per ingress port
+     * @param dropFlowTimeout hard timeout in seconds of the drop flow pushed
+     * for a port over its limit; 0 disables drop flows
+     * @param dropFlowMatch what the drop flow matches, and so what traffic
+     * it cuts off
+     */
+    public PacketInAdmissionControl(@Nonnull SwitchManagerCounters counters,
+            double switchRate, double switchBurst,
+            double portRate, double portBurst,
+            int dropFlowTimeout, @Nonnull DropFlowMatch dropFlowMatch) {
+        this.counters = counters;
+        this.switchRate = switchRate;
+        this.switchBurst = Math.max(1, switchBurst);
+        this.portRate = portRate;
+        this.portBurst = Math.max(1, portBurst);
+        this.dropFlowTimeout = dropFlowTimeout;
+        this.dropFlowMatch = dropFlowMatch;
+    }
+
+    /**
+     * @return true if either a switch or a port limit is configured
+     */
+    public boolean isEnabled() {
+        return switchRate > 0 || portRate > 0;
+    }
+
+    /**
+     * Decide whether a packet-in may proceed to decoding and the listeners.
+     * @param sw the switch the packet-in came from
+     * @param pi the packet-in
+     * @return true to admit, false to drop
+     */
+    public boolean admit(@Nonnull IOFSwitch sw, @Nonnull OFPacketIn pi) {
+        SwitchBuckets sb = buckets.get(sw.getId());
+        if (sb == null) {
+            sb = new SwitchBuckets();
+            SwitchBuckets old = buckets.putIfAbsent(sw.getId(), sb);
+            if (old != null) {
+                sb = old;
+            }
+        }
+
+        if (portRate > 0) {
+            OFPort inPort = OFMessageUtils.getInPort(pi);
+            if (inPort != null) {
+                PortBucket pb = sb.getPortBucket(inPort);
+                if (!pb.bucket.tryAcquire()) {
+                    counters.packetInRateLimitedPort.increment();
+                    if (dropFlowTimeout > 0) {
+                        maybeInstallDropFlow(sw, pi, inPort, pb);
+                    }
+                    return false;
+                }
+            }
+        }
+
+        if (sb.switchBucket != null && !sb.switchBucket.tryAcquire()) {
+            counters.packetInRateLimitedSwitch.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Forget all buckets of a switch, e.g. when it disconnects.
+     */
+    public void removeSwitch(DatapathId dpid) {
+        buckets.remove(dpid);
+    }
+
+    private void maybeInstallDropFlow(IOFSwitch sw, OFPacketIn pi, OFPort inPort, PortBucket pb) {
+        MacAddress srcMac = null;
+        if (dropFlowMatch == DropFlowMatch.IN_PORT_ETH_SRC) {
+            srcMac = new PacketView(pi.getData()).getSourceMACAddress();
+        }
+
+        long now = System.nanoTime();
+        DropFlow installed = pb.dropFlow.get();
+        if (installed != null && now - installed.expiresNanos < 0) {
+            if (installed.srcMac == null || installed.srcMac.equals(srcMac)) {
+                return; /* the installed flow already drops it */
+            }
+            /* another source over the limit; cut off the whole port */
+            srcMac = null;
+        }
+        DropFlow next = new DropFlow(srcMac, now + TimeUnit.SECONDS.toNanos(dropFlowTimeout));
+        /* only the thread that replaces the installed flow pushes one */
+        if (!pb.dropFlow.compareAndSet(installed, next)) {
+            return;
+        }
+
+        Match.Builder mb = sw.getOFFactory().buildMatch();
+        mb.setExact(MatchField.IN_PORT, inPort);
+        if (srcMac != null) {
+            mb.setExact(MatchField.ETH_SRC, srcMac);
+        }
+
+        OFFlowAdd.Builder fab = sw.getOFFactory().buildFlowAdd()
+                .setCookie(DROP_FLOW_COOKIE)
+                .setBufferId(OFBufferId.NO_BUFFER)
+                .setHardTimeout(dropFlowTimeout)
+                .setIdleTimeout(FlowModUtils.INFINITE_TIMEOUT)
+                .setPriority(FlowModUtils.PRIORITY_HIGH)
+                .setMatch(mb.build());
+        FlowModUtils.setActions(fab, Collections.<OFAction>emptyList(), sw);
+
+        if (sw.write(fab.build())) {
+            counters.packetInDropFlowInstalled.increment();
+            log.warn("Packet-in rate limit exceeded on switch {} port {}; dropping all traffic from {} for {}s",
+                    new Object[] { sw.getId(), inPort, srcMac != null ? srcMac : "all hosts", dropFlowTimeout });
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package net.floodlightcontroller.core.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import net.floodlightcontroller.core.IOFMessageListener;
+import net.floodlightcontroller.core.IPacketInInterestListener;
+import net.floodlightcontroller.core.PacketInInterest;
+
+/**
+ * PACKET_IN listeners compiled into per packet class dispatch arrays, so
+ * that a packet-in only visits the listeners interested in it.
+ *
+ * A packet class is an (ethertype, IP protocol) pair. Only the ethertypes
+ * and protocols named by some listener's {@link PacketInInterest} get their
+ * own class; everything else falls into an "other" class. For every class
+ * the array holds the listeners whose interest may match, in the same
+ * order as the full, dependency ordered listener list. Interests that also
+ * name transport ports are checked per packet-in.
+ */
+class PacketInDispatchIndex {
+    /* Never a valid ethertype or IP protocol, so only wildcards match it */
+    private static final int OTHER = Integer.MIN_VALUE;
+
+    static final class Entry {
+        final IOFMessageListener listener;
+        /* Non-null only if ports need to be checked per packet-in */
+        final PacketInInterest portInterest;
+
+        private Entry(IOFMessageListener listener, PacketInInterest portInterest) {
+            this.listener = listener;
+            this.portInterest = portInterest;
+        }
+    }
+
+    private final List<IOFMessageListener> source;
+    private final int[] ethTypes;
+    private final int[] ipProtocols;
+    /* [ethType index][ipProtocol index]; the last index of each is "other" */
+    private final Entry[][][] table;
+    private final boolean filtering;
+
+    /**
+     * @param listeners the dependency ordered PACKET_IN listeners
+     */
+    PacketInDispatchIndex(List<IOFMessageListener> listeners) {
+        this.source = listeners;
+
+        List<PacketInInterest> interests = new ArrayList<PacketInInterest>(listeners.size());
+        TreeSet<Integer> allEthTypes = new TreeSet<Integer>();
+        TreeSet<Integer> allIpProtocols = new TreeSet<Integer>();
+        boolean anyInterest = false;
+        for (IOFMessageListener l : listeners) {
+            PacketInInterest interest = null;
+            if (l instanceof IPacketInInterestListener) {
+                interest = ((IPacketInInterestListener) l).getPacketInInterest();
+            }
+            interests.add(interest);
+            if (interest != null) {
+                anyInterest = true;
+                for (int t : interest.getEthTypes()) {
+                    allEthTypes.add(t);
+                }
+                for (int p : interest.getIpProtocols()) {
+                    allIpProtocols.add(p);
+                }
+            }
+        }
+        this.filtering = anyInterest;
+        this.ethTypes = toArray(allEthTypes);
+        this.ipProtocols = toArray(allIpProtocols);
+
+        this.table = new Entry[ethTypes.length + 1][ipProtocols.length + 1][];
+        for (int e = 0; e <= ethTypes.length; e++) {
+            int ethType = e < ethTypes.length ? ethTypes[e] : OTHER;
+            for (int p = 0; p <= ipProtocols.length; p++) {
+                int ipProtocol = p < ipProtocols.length ? ipProtocols[p] : OTHER;
+                List<Entry> entries = new ArrayList<Entry>();
+                for (int i = 0; i < listeners.size(); i++) {
+                    PacketInInterest interest = interests.get(i);
+                    if (interest == null) {
+                        entries.add(new Entry(listeners.get(i), null));
+                    } else if (interest.matchesClass(ethType, ipProtocol)) {
+                        entries.add(new Entry(listeners.get(i),
+                                interest.hasTransportPorts() ? interest : null));
+                    }
+                }
+                table[e][p] = entries.toArray(new Entry[entries.size()]);
+            }
+        }
+    }
+
+    private static int[] toArray(TreeSet<Integer> values) {
+        int[] a = new int[values.size()];
+        int i = 0;
+        for (Integer v : values) {
+            a[i++] = v;
+        }
+        return a;
+    }
+
+    private static int indexOf(int[] a, int value) {
+        /* These arrays hold a handful of values at most */
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == value) {
+                return i;
+            }
+        }
+        return a.length;
+    }
+
+    /**
+     * @return the listener list this index was compiled from
+     */
+    List<IOFMessageListener> getSource() {
+        return source;
+    }
+
+    /**
+     * @return false if no listener declared an interest, in which case
+     * every class gets every listener
+     */
+    boolean isFiltering() {
+        return filtering;
+    }
+
+    /**
+     * @param ethType the packet's unsigned 16 bit ethertype, or -1
+     * @param ipProtocol the packet's IP protocol number, or -1
+     * @return the listeners for this packet class, in dispatch order
+     */
+    Entry[] getEntries(int ethType, int ipProtocol) {
+        return table[indexOf(ethTypes, ethType)][indexOf(ipProtocols, ipProtocol)];
+    }
+}
@@ -1,5 +1,7 @@
 package net.floodlightcontroller.core.internal;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 import net.floodlightcontroller.debugcounter.IDebugCounter;
 import net.floodlightcontroller.debugcounter.IDebugCounterService;
 import net.floodlightcontroller.debugcounter.IDebugCounterService.MetaData;
@@ -32,8 +34,40 @@ public class SwitchManagerCounters {
     public final IDebugCounter roleReplyReceived;
     public final IDebugCounter roleReplyErrorUnsupported;
     public final IDebugCounter switchSslConfigurationError;
+    public final IDebugCounter packetInRateLimitedSwitch;
+    public final IDebugCounter packetInRateLimitedPort;
+    public final IDebugCounter packetInDropFlowInstalled;
+    public final IDebugCounter auxStripedMessages;
+    public final IDebugCounter handshakeQueued;
+    public final IDebugCounter handshakeQueueWaitMs;
+    public final IDebugCounter flowModBatches;
+    public final IDebugCounter flowModBatchesBundled;
+    public final IDebugCounter flowModBatchMessages;
+    public final IDebugCounter flowModBatchLatencyMs;
+    public final IDebugCounter flowModBatchErrors;
+    public final IDebugCounter flowModBatchFailures;
+
+    private static final String HANDSHAKE_STATE = "handshake-state";
+    private final IDebugCounterService debugCounters;
+    private final ConcurrentHashMap<String, HandshakeStateCounters> handshakeStates =
+            new ConcurrentHashMap<String, HandshakeStateCounters>();
+
+    /**
+     * How often a switch handshake state was entered and how long, in total,
+     * switches spent in it before moving on.
+     */
+    public static class HandshakeStateCounters {
+        public final IDebugCounter entered;
+        public final IDebugCounter timeMs;
+
+        private HandshakeStateCounters(IDebugCounter entered, IDebugCounter timeMs) {
+            this.entered = entered;
+            this.timeMs = timeMs;
+        }
+    }
 
     public SwitchManagerCounters(IDebugCounterService debugCounters) {
+        this.debugCounters = debugCounters;
         debugCounters.registerModule(prefix);
         invalidPortsChanged =
                 debugCounters.registerCounter(
@@ -209,6 +243,108 @@ public class SwitchManagerCounters {
                                         "IllegalArgumentException, which is likely " +
                                         "due to the switch trying to speak SSL whereas " +
                                         "the controller wants to use vanilla TCP.");
+
+                    packetInRateLimitedSwitch =
+                            debugCounters.registerCounter(
+                                        prefix, "packet-in-rate-limited-switch",
+                                        "Number of packet-ins dropped because the " +
+                                        "switch exceeded its packet-in rate limit",
+                                        MetaData.DROP);
+                    packetInRateLimitedPort =
+                            debugCounters.registerCounter(
+                                        prefix, "packet-in-rate-limited-port",
+                                        "Number of packet-ins dropped because the " +
+                                        "ingress port exceeded its packet-in rate limit",
+                                        MetaData.DROP);
+                    packetInDropFlowInstalled =
+                            debugCounters.registerCounter(
+                                        prefix, "packet-in-drop-flow-installed",
+                                        "Number of temporary drop flows installed " +
+                                        "on switches for ports exceeding their " +
+                                        "packet-in rate limit",
+                                        MetaData.WARN);
+                    auxStripedMessages =
+                            debugCounters.registerCounter(
+                                        prefix, "aux-striped-messages",
+                                        "Number of messages written on an auxiliary " +
+                                        "connection instead of the main connection " +
+                                        "by the aux connection striping policy");
+                    handshakeQueued =
+                            debugCounters.registerCounter(
+                                        prefix, "handshake-queued",
+                                        "Number of switch handshakes that had to wait " +
+                                        "for a slot because the maximum number of " +
+                                        "concurrent handshakes was reached");
+                    handshakeQueueWaitMs =
+                            debugCounters.registerCounter(
+                                        prefix, "handshake-queue-wait-ms",
+                                        "Total time in milliseconds switches waited " +
+                                        "for a handshake slot");
+                    flowModBatches =
+                            debugCounters.registerCounter(
+                                        prefix, "flow-mod-batches",
+                                        "Number of flow-mod batches the switches " +
+                                        "confirmed with a barrier reply");
+                    flowModBatchesBundled =
+                            debugCounters.registerCounter(
+                                        prefix, "flow-mod-batches-bundled",
+                                        "Number of flow-mod batches sent as an " +
+                                        "atomic bundle");
+                    flowModBatchMessages =
+                            debugCounters.registerCounter(
+                                        prefix, "flow-mod-batch-messages",
+                                        "Total number of messages in confirmed " +
+                                        "flow-mod batches");
+                    flowModBatchLatencyMs =
+                            debugCounters.registerCounter(
+                                        prefix, "flow-mod-batch-latency-ms",
+                                        "Total time in milliseconds from writing a " +
+                                        "flow-mod batch to its barrier reply");
+                    flowModBatchErrors =
+                            debugCounters.registerCounter(
+                                        prefix, "flow-mod-batch-errors",
+                                        "Number of flow-mod batches for which the " +
+                                        "switch sent one or more errors",
+                                        MetaData.WARN);
+                    flowModBatchFailures =
+                            debugCounters.registerCounter(
+                                        prefix, "flow-mod-batch-failures",
+                                        "Number of flow-mod batches that got no " +
+                                        "barrier reply, because the switch " +
+                                        "disconnected or did not answer in time",
+                                        MetaData.WARN);
+                    debugCounters.registerCounter(
+                                        prefix, HANDSHAKE_STATE,
+                                        "Parent of the per switch handshake state " +
+                                        "entry and dwell time counters");
+    }
+
+    /**
+     * Get the counters of a switch handshake state, registering them the
+     * first time the state is seen.
+     * @param state the simple class name of the state
+     */
+    public HandshakeStateCounters getHandshakeStateCounters(String state) {
+        HandshakeStateCounters c = handshakeStates.get(state);
+        if (c == null) {
+            /*
+             * Registering a counter that already exists resets it, so only
+             * one thread may register the counters of a state.
+             */
+            synchronized (handshakeStates) {
+                c = handshakeStates.get(state);
+                if (c == null) {
+                    String hierarchy = HANDSHAKE_STATE + "/" + state;
+                    c = new HandshakeStateCounters(
+                            debugCounters.registerCounter(prefix, hierarchy,
+                                    "Number of times a switch handshake entered " + state),
+                            debugCounters.registerCounter(prefix, hierarchy + "/time-ms",
+                                    "Total time in milliseconds switch handshakes spent in " + state));
+                    handshakeStates.put(state, c);
+                }
+            }
+        }
+        return c;
     }
 
     public String getPrefix(){
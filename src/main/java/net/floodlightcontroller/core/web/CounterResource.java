@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.Map;
 
 import net.floodlightcontroller.debugcounter.DebugCounterResource;
+import net.floodlightcontroller.debugcounter.DebugCounterSnapshot;
 
 import org.restlet.resource.Get;
 
@@ -33,8 +34,9 @@ public class CounterResource extends CounterResourceBase {
         String counterModule = (String) getRequestAttributes().get(CoreWebRoutable.STR_CTR_MODULE);
         Map<String, Object> model = new HashMap<String, Object>();
         long dc;
+        DebugCounterSnapshot snapshot = this.debugCounterService.getSnapshot();
         if (counterModule.equalsIgnoreCase(CoreWebRoutable.STR_ALL)) { // get all modules' counters
-            List<DebugCounterResource> counters = this.debugCounterService.getAllCounterValues();
+            List<DebugCounterResource> counters = snapshot.getCounters();
             if (counters != null) {
                 Iterator<DebugCounterResource> it = counters.iterator();
                 while (it.hasNext()) {
@@ -45,7 +47,7 @@ public class CounterResource extends CounterResourceBase {
                 }   
             }   
         } else if (counterTitle.equalsIgnoreCase(CoreWebRoutable.STR_ALL)) { // get all counters for a specifc module
-            List<DebugCounterResource> counters = this.debugCounterService.getModuleCounterValues(counterModule);
+            List<DebugCounterResource> counters = snapshot.getModuleCounters(counterModule);
             if (counters != null) {
                 Iterator<DebugCounterResource> it = counters.iterator();
                 while (it.hasNext()) {
@@ -56,7 +58,7 @@ public class CounterResource extends CounterResourceBase {
                 }   
             }   
         } else { // get a specific counter (or subset of counters) for a specific module
-            List<DebugCounterResource> counters = this.debugCounterService.getCounterHierarchy(counterModule, counterTitle);
+            List<DebugCounterResource> counters = snapshot.getCounterHierarchy(counterModule, counterTitle);
             if (counters != null) {
                 Iterator<DebugCounterResource> it = counters.iterator();
                 while (it.hasNext()) {
@@ -0,0 +1,322 @@
+package net.floodlightcontroller.core.web;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.floodlightcontroller.core.IOFConnection;
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.OFMessagePriority;
+import net.floodlightcontroller.core.internal.IOFSwitchService;
+import net.floodlightcontroller.core.internal.OFConnectionCounters;
+import net.floodlightcontroller.debugcounter.DebugCounterResource;
+import net.floodlightcontroller.debugcounter.DebugCounterSnapshot;
+import net.floodlightcontroller.perfmon.CumulativeTimeBucket;
+import net.floodlightcontroller.perfmon.LatencySnapshot;
+import net.floodlightcontroller.perfmon.OneComponentTime;
+
+import org.restlet.data.CharacterSet;
+import org.restlet.data.MediaType;
+import org.restlet.representation.WriterRepresentation;
+
+/**
+ * Writes debug counters and perfmon latencies in the Prometheus text
+ * exposition format, straight to the response stream.
+ *
+ * Per-connection OpenFlow counters (see {@link OFConnectionCounters}) get
+ * their own metric families with dpid and aux labels, plus direction and
+ * type labels for message counts and a priority label for queue depths; all
+ * other counters are exported as floodlight_counter_total with module and
+ * counter labels. Perfmon latencies are exported as summaries per window,
+ * quantile 1 being the max; they have no _sum or _count. Outbound queue
+ * depths and pacing, and the dispatch queue depth, are read from the switch
+ * manager when the metrics are written.
+ *
+ * Samples can be filtered by label: a sample is written only if it has
+ * every label in the filter with the same value. The metric name can be
+ * filtered with the __name__ label, as in Prometheus.
+ */
+public class MetricsRepresentation extends WriterRepresentation {
+
+    private static final String NAME_LABEL = "__name__";
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static final OFMessagePriority[] PRIORITIES = OFMessagePriority.values();
+
+    private static final String COUNTER = "floodlight_counter_total";
+    private static final String OF_MESSAGES = "floodlight_openflow_messages_total";
+    private static final String OF_FLUSHES = "floodlight_openflow_flushes_total";
+    private static final String OF_FLUSHED_MESSAGES = "floodlight_openflow_flushed_messages_total";
+    private static final String OF_QUEUE_THROTTLED = "floodlight_openflow_queue_throttled_total";
+    private static final String OF_QUEUE_REJECTED = "floodlight_openflow_queue_rejected_total";
+    private static final String OF_QUEUE_DEPTH = "floodlight_openflow_queue_depth";
+    private static final String OF_FLOW_MOD_RATE = "floodlight_openflow_flow_mod_rate";
+    private static final String OF_BARRIER_RTT = "floodlight_openflow_barrier_rtt_seconds";
+    private static final String PACKET_IN_LATENCY = "floodlight_packet_in_latency_seconds";
+    private static final String LISTENER_LATENCY = "floodlight_listener_latency_seconds";
+    private static final String DISPATCH_QUEUE_DEPTH = "floodlight_dispatch_queue_depth";
+
+    private static final String[] QUANTILES = { "0.5", "0.99", "0.999", "1" };
+
+    private final DebugCounterSnapshot counters;
+    private final CumulativeTimeBucket perfmon;
+    private final IOFSwitchService switchService;
+    private final Map<String, String> filter;
+
+    /**
+     * @param counters the counters to write
+     * @param perfmon perfmon data to write, or null to omit latencies
+     * @param switchService to read queue depths and pacing from, or null
+     * to omit them
+     * @param filter label values samples must match; may be empty
+     */
+    public MetricsRepresentation(@Nonnull DebugCounterSnapshot counters,
+            @Nullable CumulativeTimeBucket perfmon,
+            @Nullable IOFSwitchService switchService,
+            @Nonnull Map<String, String> filter) {
+        super(MediaType.TEXT_PLAIN);
+        setCharacterSet(CharacterSet.UTF_8);
+        this.counters = counters;
+        this.perfmon = perfmon;
+        this.switchService = switchService;
+        this.filter = filter;
+    }
+
+    /**
+     * Split a per-connection counter, whose hierarchy is
+     * &lt;dpid&gt;:&lt;aux&gt;[/&lt;rest&gt;], into dpid, aux and rest. Since the
+     * dpid itself contains ':', the aux id starts after the last ':'.
+     * @return null if c is not a per-connection counter
+     */
+    private static String[] parseConnectionCounter(DebugCounterResource c) {
+        if (!OFConnectionCounters.COUNTER_MODULE.equals(c.getModuleName())) {
+            return null;
+        }
+        String h = c.getCounterHierarchy();
+        int slash = h.indexOf('/');
+        String id = slash < 0 ? h : h.substring(0, slash);
+        int colon = id.lastIndexOf(':');
+        if (colon < 0) {
+            return null;
+        }
+        return new String[] { id.substring(0, colon), id.substring(colon + 1),
+                slash < 0 ? "" : h.substring(slash + 1) };
+    }
+
+    @Override
+    public void write(Writer w) throws IOException {
+        /*
+         * All samples of a family must be contiguous, so the snapshot is
+         * walked once per family.
+         */
+        if (beginFamily(w, COUNTER, "counter", "Floodlight debug counters")) {
+            for (DebugCounterResource c : counters.getCounters()) {
+                if (parseConnectionCounter(c) == null) {
+                    writeSample(w, COUNTER, c.getCounterValue(),
+                            "module", c.getModuleName(), "counter", c.getCounterHierarchy());
+                }
+            }
+        }
+        if (beginFamily(w, OF_MESSAGES, "counter", "OpenFlow messages per connection")) {
+            for (DebugCounterResource c : counters.getCounters()) {
+                String[] p = parseConnectionCounter(c);
+                if (p == null) {
+                    continue;
+                }
+                int slash = p[2].indexOf('/');
+                String direction = slash < 0 ? "" : p[2].substring(0, slash);
+                /* <id>/read/ and <id>/write/ are only there as parents of the message types */
+                if ((direction.equals("read") || direction.equals("write"))
+                        && slash + 1 < p[2].length()) {
+                    writeSample(w, OF_MESSAGES, c.getCounterValue(), "dpid", p[0], "aux", p[1],
+                            "direction", direction, "type", p[2].substring(slash + 1));
+                }
+            }
+        }
+        if (beginFamily(w, OF_FLUSHES, "counter", "Channel flushes per connection")) {
+            writeConnectionCounters(w, OF_FLUSHES, "flush");
+        }
+        if (beginFamily(w, OF_FLUSHED_MESSAGES, "counter", "Messages written by channel flushes per connection")) {
+            writeConnectionCounters(w, OF_FLUSHED_MESSAGES, "flush/messages");
+        }
+        if (beginFamily(w, OF_QUEUE_THROTTLED, "counter", "Times flow-mod pacing held back the outbound queue per connection")) {
+            writeConnectionCounters(w, OF_QUEUE_THROTTLED, "queue");
+        }
+        if (beginFamily(w, OF_QUEUE_REJECTED, "counter", "Messages rejected by a full outbound queue per connection")) {
+            writeConnectionCounters(w, OF_QUEUE_REJECTED, "queue/rejected");
+        }
+        if (switchService != null) {
+            writeQueues(w);
+        }
+
+        if (perfmon != null) {
+            if (beginFamily(w, PACKET_IN_LATENCY, "summary", "Packet-in processing time of the whole listener chain")) {
+                writeLatency(w, PACKET_IN_LATENCY, null, perfmon.getLatency());
+            }
+            if (beginFamily(w, LISTENER_LATENCY, "summary", "Packet-in processing time per listener")) {
+                for (OneComponentTime oct : perfmon.getModules()) {
+                    writeLatency(w, LISTENER_LATENCY, oct.getCompName(), oct.getLatency());
+                }
+            }
+        }
+
+        if (switchService != null) {
+            int depth = switchService.getDispatchQueueDepth();
+            if (depth >= 0 && beginFamily(w, DISPATCH_QUEUE_DEPTH, "gauge",
+                    "Messages from switches waiting to be dispatched to listeners")) {
+                writeSample(w, DISPATCH_QUEUE_DEPTH, depth);
+            }
+        }
+        w.flush();
+    }
+
+    /**
+     * Write the outbound queue gauges of every connection whose writes are
+     * scheduled; connections without a scheduler have no queue.
+     */
+    private void writeQueues(Writer w) throws IOException {
+        List<IOFConnection> conns = new ArrayList<IOFConnection>();
+        for (IOFSwitch sw : switchService.getAllSwitchMap().values()) {
+            for (IOFConnection c : sw.getConnections()) {
+                if (c.getQueueDepths().length > 0) {
+                    conns.add(c);
+                }
+            }
+        }
+        if (beginFamily(w, OF_QUEUE_DEPTH, "gauge", "Messages in the outbound queue per connection and priority")) {
+            for (IOFConnection c : conns) {
+                int[] depths = c.getQueueDepths();
+                for (int i = 0; i < depths.length; i++) {
+                    writeSample(w, OF_QUEUE_DEPTH, depths[i],
+                            "dpid", c.getDatapathId().toString(), "aux", c.getAuxId().toString(),
+                            "priority", PRIORITIES[i].name().toLowerCase().replace('_', '-'));
+                }
+            }
+        }
+        if (beginFamily(w, OF_FLOW_MOD_RATE, "gauge", "Flow-mods per second each connection is paced to")) {
+            for (IOFConnection c : conns) {
+                writeSample(w, OF_FLOW_MOD_RATE, c.getFlowModRate(),
+                        "dpid", c.getDatapathId().toString(), "aux", c.getAuxId().toString());
+            }
+        }
+        if (beginFamily(w, OF_BARRIER_RTT, "gauge", "Round trip time of the last barrier per connection")) {
+            for (IOFConnection c : conns) {
+                writeSample(w, OF_BARRIER_RTT, c.getLastBarrierRttNs() / NANOS_PER_SECOND,
+                        "dpid", c.getDatapathId().toString(), "aux", c.getAuxId().toString());
+            }
+        }
+    }
+
+    private void writeConnectionCounters(Writer w, String name, String rest) throws IOException {
+        for (DebugCounterResource c : counters.getCounters()) {
+            String[] p = parseConnectionCounter(c);
+            if (p != null && p[2].equals(rest)) {
+                writeSample(w, name, c.getCounterValue(), "dpid", p[0], "aux", p[1]);
+            }
+        }
+    }
+
+    private void writeLatency(Writer w, String name, String listener,
+            Map<String, LatencySnapshot> windows) throws IOException {
+        for (Map.Entry<String, LatencySnapshot> e : windows.entrySet()) {
+            LatencySnapshot s = e.getValue();
+            long[] values = { s.getP50(), s.getP99(), s.getP999(), s.getMax() };
+            for (int i = 0; i < QUANTILES.length; i++) {
+                double seconds = values[i] / NANOS_PER_SECOND;
+                if (listener == null) {
+                    writeSample(w, name, seconds, "window", e.getKey(), "quantile", QUANTILES[i]);
+                } else {
+                    writeSample(w, name, seconds, "listener", listener,
+                            "window", e.getKey(), "quantile", QUANTILES[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the HELP and TYPE lines of a family.
+     * @return false if the filter excludes the whole family
+     */
+    private boolean beginFamily(Writer w, String name, String type, String help)
+            throws IOException {
+        String wanted = filter.get(NAME_LABEL);
+        if (wanted != null && !wanted.equals(name)) {
+            return false;
+        }
+        w.write("# HELP ");
+        w.write(name);
+        w.write(' ');
+        w.write(help);
+        w.write("\n# TYPE ");
+        w.write(name);
+        w.write(' ');
+        w.write(type);
+        w.write('\n');
+        return true;
+    }
+
+    private boolean matches(String... labels) {
+        for (Map.Entry<String, String> f : filter.entrySet()) {
+            if (NAME_LABEL.equals(f.getKey())) {
+                continue;
+            }
+            boolean found = false;
+            for (int i = 0; i < labels.length; i += 2) {
+                if (labels[i].equals(f.getKey())) {
+                    found = labels[i + 1].equals(f.getValue());
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeSample(Writer w, String name, Object value, String... labels)
+            throws IOException {
+        if (!filter.isEmpty() && !matches(labels)) {
+            return;
+        }
+        w.write(name);
+        w.write('{');
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                w.write(',');
+            }
+            w.write(labels[i]);
+            w.write("=\"");
+            writeEscaped(w, labels[i + 1]);
+            w.write('"');
+        }
+        w.write("} ");
+        w.write(value.toString());
+        w.write('\n');
+    }
+
+    private static void writeEscaped(Writer w, String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+            case '\\':
+                w.write("\\\\");
+                break;
+            case '"':
+                w.write("\\\"");
+                break;
+            case '\n':
+                w.write("\\n");
+                break;
+            default:
+                w.write(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package net.floodlightcontroller.core.web;
+
+import net.floodlightcontroller.core.internal.IOFSwitchService;
+import net.floodlightcontroller.debugcounter.IDebugCounterService;
+import net.floodlightcontroller.perfmon.CumulativeTimeBucket;
+import net.floodlightcontroller.perfmon.IPktInProcessingTimeService;
+
+import org.restlet.representation.Representation;
+import org.restlet.resource.Get;
+import org.restlet.resource.ServerResource;
+
+/**
+ * Export counters, perfmon data and queue depths in Prometheus text format. Query
+ * parameters are label filters, e.g. ?dpid=00:00:00:00:00:00:00:01 or
+ * ?__name__=floodlight_openflow_messages_total.
+ */
+public class MetricsResource extends ServerResource {
+    @Get
+    public Representation retrieve() {
+        IDebugCounterService debugCounterService =
+                (IDebugCounterService) getContext().getAttributes().
+                get(IDebugCounterService.class.getCanonicalName());
+        IPktInProcessingTimeService pktInProcTime =
+                (IPktInProcessingTimeService) getContext().getAttributes().
+                get(IPktInProcessingTimeService.class.getCanonicalName());
+        IOFSwitchService switchService =
+                (IOFSwitchService) getContext().getAttributes().
+                get(IOFSwitchService.class.getCanonicalName());
+
+        CumulativeTimeBucket ctb = null;
+        if (pktInProcTime != null && pktInProcTime.isEnabled()) {
+            ctb = pktInProcTime.getCtb();
+        }
+        return new MetricsRepresentation(debugCounterService.getSnapshot(), ctb, switchService,
+                getQuery().getValuesMap());
+    }
+}
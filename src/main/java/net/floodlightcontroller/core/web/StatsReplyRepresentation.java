@@ -0,0 +1,177 @@
+package net.floodlightcontroller.core.web;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import net.floodlightcontroller.core.IOFStatsReplyListener;
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.web.serializers.StatsReplySerializer;
+
+import org.projectfloodlight.openflow.protocol.OFFlowStatsReply;
+import org.projectfloodlight.openflow.protocol.OFPortStatsReply;
+import org.projectfloodlight.openflow.protocol.OFStatsReply;
+import org.projectfloodlight.openflow.protocol.OFStatsReplyFlags;
+import org.projectfloodlight.openflow.protocol.OFStatsRequest;
+import org.projectfloodlight.openflow.protocol.OFStatsType;
+import org.restlet.data.MediaType;
+import org.restlet.representation.OutputRepresentation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Writes a multipart stats reply straight to the response stream, one part
+ * at a time as the parts arrive from the switch, in the same JSON as
+ * {@link StatsReplySerializer}.
+ *
+ * The request is only sent once Restlet starts writing the response. Parts
+ * are handed over from the switch's I/O thread through a queue of at most
+ * {@link #MAX_QUEUED_PARTS}; the I/O thread never waits for the client. If
+ * the client reads so slowly that the queue fills up, the rest of the reply
+ * is dropped.
+ *
+ * If the request fails before any part has arrived (the switch answers
+ * with an error, disconnects or does not answer), the response is the same
+ * error object the buffered path writes. Once parts have been written that
+ * is no longer possible, so if the reply is cut short after that, the
+ * array is closed and the JSON ends with an "error" field describing why,
+ * e.g. {"flows":[...],"error":"Timed out waiting for the switch"}.
+ */
+public class StatsReplyRepresentation extends OutputRepresentation {
+    protected static final Logger log = LoggerFactory.getLogger(StatsReplyRepresentation.class);
+
+    /** Parts received but not yet written */
+    static final int MAX_QUEUED_PARTS = 128;
+    /** How long to wait for the next part, as for non-streamed replies */
+    private static final int PART_TIMEOUT_S = 10;
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final IOFSwitch sw;
+    private final OFStatsRequest<?> request;
+
+    /**
+     * @param sw the switch to ask
+     * @param request a request of a type for which {@link #isStreamable(OFStatsType)}
+     */
+    public StatsReplyRepresentation(@Nonnull IOFSwitch sw, @Nonnull OFStatsRequest<?> request) {
+        super(MediaType.APPLICATION_JSON);
+        if (!isStreamable(request.getStatsType())) {
+            throw new IllegalArgumentException("Cannot stream " + request.getStatsType() + " replies");
+        }
+        this.sw = sw;
+        this.request = request;
+    }
+
+    /**
+     * Whether replies of a type can be written part by part. That is the
+     * case for the types that can be large and whose JSON does not depend
+     * on more than one part at a time.
+     */
+    public static boolean isStreamable(OFStatsType statType) {
+        return statType == OFStatsType.FLOW || statType == OFStatsType.PORT;
+    }
+
+    private static <REPLY extends OFStatsReply> ListenableFuture<Void> stream(IOFSwitch sw,
+            OFStatsRequest<REPLY> request, final BlockingQueue<OFStatsReply> parts) {
+        return sw.streamStatsRequest(request, new IOFStatsReplyListener<REPLY>() {
+            @Override
+            public void statsReplyReceived(REPLY reply) {
+                if (!parts.offer(reply)) {
+                    /* fails the future, so no more parts are delivered */
+                    throw new IllegalStateException("Client is not reading the reply fast enough");
+                }
+            }
+        });
+    }
+
+    @Override
+    public void write(OutputStream os) throws IOException {
+        BlockingQueue<OFStatsReply> parts = new ArrayBlockingQueue<OFStatsReply>(MAX_QUEUED_PARTS);
+        ListenableFuture<Void> done = stream(sw, request, parts);
+
+        JsonGenerator jGen = jsonFactory.createGenerator(os, JsonEncoding.UTF8);
+        jGen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        String error = null;
+        boolean started = false;
+        try {
+            int idle = 0;
+            while (true) {
+                OFStatsReply part = parts.poll(1, TimeUnit.SECONDS);
+                if (part != null) {
+                    if (!started) {
+                        writeStart(jGen);
+                        started = true;
+                    }
+                    if (part instanceof OFFlowStatsReply) {
+                        StatsReplySerializer.serializeFlowReplyEntries((OFFlowStatsReply) part, jGen);
+                    } else {
+                        StatsReplySerializer.serializePortReplyPart((OFPortStatsReply) part, jGen);
+                    }
+                    jGen.flush();
+                    if (!part.getFlags().contains(OFStatsReplyFlags.REPLY_MORE)) {
+                        break;
+                    }
+                    idle = 0;
+                } else if (done.isDone()) {
+                    /* done without the last part, so it failed */
+                    try {
+                        done.get();
+                        error = "Reply ended early";
+                    } catch (ExecutionException e) {
+                        error = e.getCause().getMessage();
+                    }
+                    break;
+                } else if (++idle >= PART_TIMEOUT_S) {
+                    error = "Timed out waiting for the switch";
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = "Interrupted";
+        } finally {
+            /* stop delivery if we are not done, e.g. if the client went away */
+            done.cancel(false);
+        }
+
+        if (!started) {
+            log.warn("No {} stats reply from switch {}: {}",
+                    new Object[] { request.getStatsType(), sw.getId(), error });
+            /* a StatsReply without values is serialized as the error object */
+            new StatsReplySerializer().serialize(new StatsReply(), jGen, null);
+            jGen.close();
+            return;
+        }
+
+        jGen.writeEndArray();
+        if (error != null) {
+            log.warn("Incomplete {} stats reply from switch {}: {}",
+                    new Object[] { request.getStatsType(), sw.getId(), error });
+            jGen.writeStringField("error", error);
+        }
+        jGen.writeEndObject();
+        jGen.close();
+    }
+
+    private void writeStart(JsonGenerator jGen) throws IOException {
+        jGen.enable(JsonGenerator.Feature.WRITE_NUMBERS_AS_STRINGS);
+        jGen.writeStartObject();
+        if (request.getStatsType() == OFStatsType.FLOW) {
+            jGen.writeArrayFieldStart("flows");
+        } else {
+            jGen.writeArrayFieldStart("port_reply");
+        }
+    }
+}
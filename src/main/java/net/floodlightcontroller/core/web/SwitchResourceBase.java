@@ -78,163 +78,172 @@ public class SwitchResourceBase extends ServerResource {
         IOFSwitch sw = switchService.getSwitch(switchId);
         ListenableFuture<?> future;
         List<OFStatsReply> values = null;
-        Match match;
         if (sw != null) {
-            OFStatsRequest<?> req = null;
-            switch (statType) {
-            case FLOW:
-                match = sw.getOFFactory().buildMatch().build();
-                req = sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) == 0 ? 
+            OFStatsRequest<?> req = buildStatsRequest(sw, statType);
+
+            try {
+                if (req != null) {
+                    future = sw.writeStatsRequest(req);
+                    values = (List<OFStatsReply>) future.get(10, TimeUnit.SECONDS);
+                }
+            } catch (Exception e) {
+                log.error("Failure retrieving statistics from switch " + sw, e);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Build the request for a type of statistics, or null if the switch's
+     * OpenFlow version does not support it.
+     */
+    protected OFStatsRequest<?> buildStatsRequest(IOFSwitch sw, OFStatsType statType) {
+        Match match;
+        OFStatsRequest<?> req = null;
+        switch (statType) {
+        case FLOW:
+            match = sw.getOFFactory().buildMatch().build();
+            req = sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) == 0 ? 
+                    sw.getOFFactory().buildFlowStatsRequest()
+                    .setMatch(match)
+                    .setOutPort(OFPort.ANY)
+                    .setTableId(TableId.ALL)
+                    .build() :
                         sw.getOFFactory().buildFlowStatsRequest()
                         .setMatch(match)
                         .setOutPort(OFPort.ANY)
                         .setTableId(TableId.ALL)
-                        .build() :
-                            sw.getOFFactory().buildFlowStatsRequest()
-                            .setMatch(match)
-                            .setOutPort(OFPort.ANY)
-                            .setTableId(TableId.ALL)
-                            .setOutGroup(OFGroup.ANY)
-                            .build();
-                break;
-            case AGGREGATE:
+                        .setOutGroup(OFGroup.ANY)
+                        .build();
+            break;
+        case AGGREGATE:
+            match = sw.getOFFactory().buildMatch().build();
+            req = sw.getOFFactory().buildAggregateStatsRequest()
+                    .setMatch(match)
+                    .setOutPort(OFPort.ANY)
+                    .setTableId(TableId.ALL)
+                    .build();
+            break;
+        case PORT:
+            req = sw.getOFFactory().buildPortStatsRequest()
+            .setPortNo(OFPort.ANY)
+            .build();
+            break;
+        case QUEUE:
+            req = sw.getOFFactory().buildQueueStatsRequest()
+            .setPortNo(OFPort.ANY)
+            .setQueueId(UnsignedLong.MAX_VALUE.longValue())
+            .build();
+            break;
+        case DESC:
+            // pass - nothing todo besides set the type above
+            req = sw.getOFFactory().buildDescStatsRequest()
+            .build();
+            break;
+        case GROUP:
+            if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) > 0) {
+                req = sw.getOFFactory().buildGroupStatsRequest()				
+                        .build();
+            }
+            break;
+        case METER:
+            if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_13) >= 0) {
+                req = sw.getOFFactory().buildMeterStatsRequest()
+                        .setMeterId(OFMeterSerializerVer13.ALL_VAL)
+                        .build();
+            }
+            break;
+        case GROUP_DESC:			
+            if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) > 0) {
+                req = sw.getOFFactory().buildGroupDescStatsRequest()			
+                        .build();
+            }
+            break;
+        case GROUP_FEATURES:
+            if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) > 0) {
+                req = sw.getOFFactory().buildGroupFeaturesStatsRequest()
+                        .build();
+            }
+            break;
+        case METER_CONFIG:
+            if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_13) >= 0) {
+                req = sw.getOFFactory().buildMeterConfigStatsRequest()
+                        .setMeterId(0xffFFffFF)
+                        .build();
+            }
+            break;
+        case METER_FEATURES:
+            if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_13) >= 0) {
+                req = sw.getOFFactory().buildMeterFeaturesStatsRequest()
+                        .build();
+            }
+            break;
+        case TABLE:
+            if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) > 0) {
+                req = sw.getOFFactory().buildTableStatsRequest()
+                        .build();
+            }
+            break;
+        case TABLE_FEATURES:	
+            if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) > 0) {
+                req = sw.getOFFactory().buildTableFeaturesStatsRequest()
+                        .build();		
+            }
+            break;
+        case PORT_DESC:
+            if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_13) >= 0) {
+                req = sw.getOFFactory().buildPortDescStatsRequest()
+                        .build();
+            }
+            break;
+        case EXPERIMENTER:		
+            log.error("Stats Request Type {} not implemented yet", statType.name());
+            break;
+        case BUNDLE_FEATURES:
+            if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_15) >= 0) {
+                req = sw.getOFFactory().buildBundleFeaturesStatsRequest()
+                        .build();
+            }
+            break;
+        case CONTROLLER_STATUS:
+            if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_15) >= 0) {
+                req = sw.getOFFactory().buildControllerStatusStatsRequest()
+                        .build();
+            }
+            break;
+        case FLOW_LIGHTWEIGHT:
+            if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_15) >= 0) {	
                 match = sw.getOFFactory().buildMatch().build();
-                req = sw.getOFFactory().buildAggregateStatsRequest()
+                req = sw.getOFFactory().buildFlowLightweightStatsRequest()
                         .setMatch(match)
                         .setOutPort(OFPort.ANY)
                         .setTableId(TableId.ALL)
                         .build();
-                break;
-            case PORT:
-                req = sw.getOFFactory().buildPortStatsRequest()
-                .setPortNo(OFPort.ANY)
-                .build();
-                break;
-            case QUEUE:
-                req = sw.getOFFactory().buildQueueStatsRequest()
-                .setPortNo(OFPort.ANY)
-                .setQueueId(UnsignedLong.MAX_VALUE.longValue())
-                .build();
-                break;
-            case DESC:
-                // pass - nothing todo besides set the type above
-                req = sw.getOFFactory().buildDescStatsRequest()
-                .build();
-                break;
-            case GROUP:
-                if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) > 0) {
-                    req = sw.getOFFactory().buildGroupStatsRequest()				
-                            .build();
-                }
-                break;
-            case METER:
-                if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_13) >= 0) {
-                    req = sw.getOFFactory().buildMeterStatsRequest()
-                            .setMeterId(OFMeterSerializerVer13.ALL_VAL)
-                            .build();
-                }
-                break;
-            case GROUP_DESC:			
-                if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) > 0) {
-                    req = sw.getOFFactory().buildGroupDescStatsRequest()			
-                            .build();
-                }
-                break;
-            case GROUP_FEATURES:
-                if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) > 0) {
-                    req = sw.getOFFactory().buildGroupFeaturesStatsRequest()
-                            .build();
-                }
-                break;
-            case METER_CONFIG:
-                if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_13) >= 0) {
-                    req = sw.getOFFactory().buildMeterConfigStatsRequest()
-                            .setMeterId(0xffFFffFF)
-                            .build();
-                }
-                break;
-            case METER_FEATURES:
-                if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_13) >= 0) {
-                    req = sw.getOFFactory().buildMeterFeaturesStatsRequest()
-                            .build();
-                }
-                break;
-            case TABLE:
-                if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) > 0) {
-                    req = sw.getOFFactory().buildTableStatsRequest()
-                            .build();
-                }
-                break;
-            case TABLE_FEATURES:	
-                if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) > 0) {
-                    req = sw.getOFFactory().buildTableFeaturesStatsRequest()
-                            .build();		
-                }
-                break;
-            case PORT_DESC:
-                if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_13) >= 0) {
-                    req = sw.getOFFactory().buildPortDescStatsRequest()
-                            .build();
-                }
-                break;
-            case EXPERIMENTER:		
-                log.error("Stats Request Type {} not implemented yet", statType.name());
-                break;
-            case BUNDLE_FEATURES:
-                if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_15) >= 0) {
-                    req = sw.getOFFactory().buildBundleFeaturesStatsRequest()
-                            .build();
-                }
-                break;
-            case CONTROLLER_STATUS:
-                if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_15) >= 0) {
-                    req = sw.getOFFactory().buildControllerStatusStatsRequest()
-                            .build();
-                }
-                break;
-            case FLOW_LIGHTWEIGHT:
-                if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_15) >= 0) {	
-                    match = sw.getOFFactory().buildMatch().build();
-                    req = sw.getOFFactory().buildFlowLightweightStatsRequest()
-                            .setMatch(match)
-                            .setOutPort(OFPort.ANY)
-                            .setTableId(TableId.ALL)
-                            .build();
-                }
-                break;
-            case FLOW_MONITOR:
-                if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_14) >= 0) {
-                    req = sw.getOFFactory().buildFlowMonitorRequest()
-                            .build();
-                }
-                break;
-            case QUEUE_DESC:
-                if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_14) >= 0) {
-                    req = sw.getOFFactory().buildQueueDescStatsRequest()
-                            .setPortNo(OFPort.ANY)
-                            .setQueueId(0xffFFffFF) /* all queues */
-                            .build();
-                }
-                break;
-            case TABLE_DESC:
-                if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_14) >= 0) {
-                    req = sw.getOFFactory().buildTableDescStatsRequest()
-                            .build();
-                }
-                break;
-                /* omit a default so we will know (via warning) if we miss one in the future */
             }
-
-            try {
-                if (req != null) {
-                    future = sw.writeStatsRequest(req);
-                    values = (List<OFStatsReply>) future.get(10, TimeUnit.SECONDS);
-                }
-            } catch (Exception e) {
-                log.error("Failure retrieving statistics from switch " + sw, e);
+            break;
+        case FLOW_MONITOR:
+            if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_14) >= 0) {
+                req = sw.getOFFactory().buildFlowMonitorRequest()
+                        .build();
+            }
+            break;
+        case QUEUE_DESC:
+            if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_14) >= 0) {
+                req = sw.getOFFactory().buildQueueDescStatsRequest()
+                        .setPortNo(OFPort.ANY)
+                        .setQueueId(0xffFFffFF) /* all queues */
+                        .build();
+            }
+            break;
+        case TABLE_DESC:
+            if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_14) >= 0) {
+                req = sw.getOFFactory().buildTableDescStatsRequest()
+                        .build();
             }
+            break;
+            /* omit a default so we will know (via warning) if we miss one in the future */
         }
-        return values;
+        return req;
     }
 
     protected List<OFStatsReply> getSwitchStatistics(String switchId, OFStatsType statType) {
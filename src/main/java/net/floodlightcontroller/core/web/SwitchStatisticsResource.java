@@ -17,6 +17,7 @@
 
 package net.floodlightcontroller.core.web;
 
+import net.floodlightcontroller.core.IOFSwitch;
 import net.floodlightcontroller.core.internal.IOFSwitchService;
 import net.floodlightcontroller.core.web.StatsReply;
 
@@ -35,7 +36,7 @@ public class SwitchStatisticsResource extends SwitchResourceBase {
 			LoggerFactory.getLogger(SwitchStatisticsResource.class);
 
 	@Get("json")
-	public StatsReply retrieve(){
+	public Object retrieve(){
 
 		StatsReply result = new StatsReply();
 		Object values = null; // set for error detection in serializer
@@ -54,13 +55,13 @@ public class SwitchStatisticsResource extends SwitchResourceBase {
 		}
 		
 		// stop if the DPID is invalid or is not presently connected
-		if (!switchId.equals(DatapathId.NONE) && switchService.getSwitch(switchId) != null) {			
+		IOFSwitch sw = switchId.equals(DatapathId.NONE) ? null : switchService.getSwitch(switchId);
+		if (sw != null) {			
 			// at this point, the switch DPID is valid AND exists; what about the OFStatsType?
 			switch (statType) {
 			case OFStatsTypeStrings.PORT:
-				values = getSwitchStatistics(switchId, OFStatsType.PORT);
-				result.setStatType(OFStatsType.PORT);
-				break;
+				// port and flow replies can be large, so they are written out as the parts arrive
+				return new StatsReplyRepresentation(sw, buildStatsRequest(sw, OFStatsType.PORT));
             case OFStatsTypeStrings.PORT_DESC:
                 values = getSwitchStatistics(switchId, OFStatsType.PORT_DESC);
                 result.setStatType(OFStatsType.PORT_DESC);
@@ -74,9 +75,7 @@ public class SwitchStatisticsResource extends SwitchResourceBase {
                 result.setStatType(OFStatsType.QUEUE_DESC);
                 break;
 			case OFStatsTypeStrings.FLOW:
-				values = getSwitchStatistics(switchId, OFStatsType.FLOW);
-				result.setStatType(OFStatsType.FLOW);
-				break;
+				return new StatsReplyRepresentation(sw, buildStatsRequest(sw, OFStatsType.FLOW));
 			case OFStatsTypeStrings.FLOW_LIGHTWEIGHT:
                 values = getSwitchStatistics(switchId, OFStatsType.FLOW_LIGHTWEIGHT);
                 result.setStatType(OFStatsType.FLOW_LIGHTWEIGHT);
@@ -867,91 +867,99 @@ public class StatsReplySerializer extends JsonSerializer<StatsReply> {
         jGen.writeFieldName("port_reply");
         jGen.writeStartArray();
         for (OFPortStatsReply portReply : portReplies) {
+            serializePortReplyPart(portReply, jGen);
+        }
+        jGen.writeEndArray();
+    }
+
+    /**
+     * Write one part of a port stats reply, an element of the "port_reply"
+     * array written by {@link #serializePortReply(List, JsonGenerator)}.
+     */
+    public static void serializePortReplyPart(OFPortStatsReply portReply, JsonGenerator jGen) throws IOException, JsonProcessingException{
+        jGen.writeStartObject();
+        jGen.writeStringField("version", portReply.getVersion().toString()); //return the enum name          
+        jGen.writeFieldName("port");
+        jGen.writeStartArray();
+        for (OFPortStatsEntry entry : portReply.getEntries()) {
             jGen.writeStartObject();
-            jGen.writeStringField("version", portReply.getVersion().toString()); //return the enum name          
-            jGen.writeFieldName("port");
-            jGen.writeStartArray();
-            for (OFPortStatsEntry entry : portReply.getEntries()) {
-                jGen.writeStartObject();
-                jGen.writeStringField("port_number",entry.getPortNo().toString());
-                jGen.writeNumberField("receive_packets", entry.getRxPackets().getValue());
-                jGen.writeNumberField("transmit_packets", entry.getTxPackets().getValue());
-                jGen.writeNumberField("receive_bytes", entry.getRxBytes().getValue());
-                jGen.writeNumberField("transmit_bytes", entry.getTxBytes().getValue());
-                jGen.writeNumberField("receive_dropped", entry.getRxDropped().getValue());
-                jGen.writeNumberField("transmit_dropped", entry.getTxDropped().getValue());
-                jGen.writeNumberField("receive_errors", entry.getRxErrors().getValue());
-                jGen.writeNumberField("transmit_errors", entry.getTxErrors().getValue());
-                if (entry.getVersion().compareTo(OFVersion.OF_13) <= 0) {
-                    jGen.writeNumberField("receive_frame_errors", entry.getRxFrameErr().getValue());
-                    jGen.writeNumberField("receive_overrun_errors", entry.getRxOverErr().getValue());
-                    jGen.writeNumberField("receive_CRC_errors", entry.getRxCrcErr().getValue());
-                    jGen.writeNumberField("collisions", entry.getCollisions().getValue());
-                }
-                if (entry.getVersion().compareTo(OFVersion.OF_13) >= 0) {
-                    jGen.writeNumberField("duration_sec", entry.getDurationSec());
-                    jGen.writeNumberField("duration_nsec", entry.getDurationNsec());
-                }
-                if (entry.getVersion().compareTo(OFVersion.OF_14) >= 0) {
-                    jGen.writeFieldName("properties");
-                    jGen.writeStartArray();
-                    for (OFPortStatsProp p : entry.getProperties()) {
-                        jGen.writeStartObject();
-                        if (p instanceof OFPortStatsPropEthernet) {
-                            jGen.writeStringField("type", OFPortStatsPropTypeSerializerVer15.ofWireValue((short)p.getType()).name());
-                            jGen.writeNumberField("collisions", ((OFPortStatsPropEthernet) p).getCollisions().getValue());
-                            jGen.writeNumberField("rx_crc_error", ((OFPortStatsPropEthernet) p).getRxCrcErr().getValue());
-                            jGen.writeNumberField("rx_frame_error", ((OFPortStatsPropEthernet) p).getRxFrameErr().getValue());
-                            jGen.writeNumberField("rx_over_error", ((OFPortStatsPropEthernet) p).getRxOverErr().getValue());
-                        } else if (p instanceof OFPortStatsPropOptical) {
-                            jGen.writeStringField("type", OFPortStatsPropTypeSerializerVer15.ofWireValue((short)p.getType()).name());
-                            jGen.writeNumberField("bias_current", ((OFPortStatsPropOptical) p).getBiasCurrent());
-                            jGen.writeNumberField("flags", ((OFPortStatsPropOptical) p).getFlags());
-                            jGen.writeNumberField("rx_freq_lambda", ((OFPortStatsPropOptical) p).getRxFreqLmda());
-                            jGen.writeNumberField("rx_grid_span", ((OFPortStatsPropOptical) p).getRxGridSpan());
-                            jGen.writeNumberField("rx_offset", ((OFPortStatsPropOptical) p).getRxOffset());
-                            jGen.writeNumberField("rx_power", ((OFPortStatsPropOptical) p).getRxPwr());
-                            jGen.writeNumberField("rx_temp", ((OFPortStatsPropOptical) p).getTemperature());
-                            jGen.writeNumberField("tx_freq_lambda", ((OFPortStatsPropOptical) p).getTxFreqLmda());
-                            jGen.writeNumberField("tx_grid_span", ((OFPortStatsPropOptical) p).getTxGridSpan());
-                            jGen.writeNumberField("tx_offset", ((OFPortStatsPropOptical) p).getTxOffset());
-                            jGen.writeNumberField("tx_power", ((OFPortStatsPropOptical) p).getTxPwr());
-                        } else if (p instanceof OFPortStatsPropExperimenterIntel) {
-                            jGen.writeStringField("type", OFPortStatsPropTypeSerializerVer15.ofWireValue((short)p.getType()).name());
-                            jGen.writeNumberField("rx_1_to_64_packets", ((OFPortStatsPropExperimenterIntel) p).getRx1To64Packets().getValue());
-                            jGen.writeNumberField("rx_65_to_127_packets", ((OFPortStatsPropExperimenterIntel) p).getRx65To127Packets().getValue());
-                            jGen.writeNumberField("rx_128_to_255_packets", ((OFPortStatsPropExperimenterIntel) p).getRx128To255Packets().getValue());
-                            jGen.writeNumberField("rx_256_to_511_packets", ((OFPortStatsPropExperimenterIntel) p).getRx256To511Packets().getValue());
-                            jGen.writeNumberField("rx_512_to_1023_packets", ((OFPortStatsPropExperimenterIntel) p).getRx512To1023Packets().getValue());
-                            jGen.writeNumberField("rx_1024_to_1522_packets", ((OFPortStatsPropExperimenterIntel) p).getRx1024To1522Packets().getValue());
-                            jGen.writeNumberField("rx_1523_to_max_packets", ((OFPortStatsPropExperimenterIntel) p).getRx1523ToMaxPackets().getValue());
-                            jGen.writeNumberField("tx_1_to_64_packets", ((OFPortStatsPropExperimenterIntel) p).getTx1To64Packets().getValue());
-                            jGen.writeNumberField("tx_65_to_127_packets", ((OFPortStatsPropExperimenterIntel) p).getTx65To127Packets().getValue());
-                            jGen.writeNumberField("tx_128_to_255_packets", ((OFPortStatsPropExperimenterIntel) p).getTx128To255Packets().getValue());
-                            jGen.writeNumberField("tx_256_to_511_packets", ((OFPortStatsPropExperimenterIntel) p).getTx256To511Packets().getValue());
-                            jGen.writeNumberField("tx_512_to_1023_packets", ((OFPortStatsPropExperimenterIntel) p).getTx512To1023Packets().getValue());
-                            jGen.writeNumberField("tx_1024_to_1522_packets", ((OFPortStatsPropExperimenterIntel) p).getTx1024To1522Packets().getValue());
-                            jGen.writeNumberField("tx_1523_to_max_packets", ((OFPortStatsPropExperimenterIntel) p).getTx1523ToMaxPackets().getValue());
-                            jGen.writeNumberField("tx_multicast_packets", ((OFPortStatsPropExperimenterIntel) p).getTxMulticastPackets().getValue());
-                            jGen.writeNumberField("rx_broadcast_packets", ((OFPortStatsPropExperimenterIntel) p).getRxBroadcastPackets().getValue());
-                            jGen.writeNumberField("tx_broadcast_packets", ((OFPortStatsPropExperimenterIntel) p).getTxBroadcastPackets().getValue());
-                            jGen.writeNumberField("rx_undersized_errors", ((OFPortStatsPropExperimenterIntel) p).getRxUndersizedErrors().getValue());
-                            jGen.writeNumberField("rx_oversize_errors", ((OFPortStatsPropExperimenterIntel) p).getRxOversizeErrors().getValue());
-                            jGen.writeNumberField("rx_fragmented_errors", ((OFPortStatsPropExperimenterIntel) p).getRxFragmentedErrors().getValue());
-                            jGen.writeNumberField("rx_jabber_errors", ((OFPortStatsPropExperimenterIntel) p).getRxJabberErrors().getValue());
-                        } else if (p instanceof OFPortStatsPropExperimenter) {
-                            jGen.writeStringField("type", OFPortStatsPropTypeSerializerVer15.ofWireValue((short)p.getType()).name());
-                        }
-                        jGen.writeEndObject();
+            jGen.writeStringField("port_number",entry.getPortNo().toString());
+            jGen.writeNumberField("receive_packets", entry.getRxPackets().getValue());
+            jGen.writeNumberField("transmit_packets", entry.getTxPackets().getValue());
+            jGen.writeNumberField("receive_bytes", entry.getRxBytes().getValue());
+            jGen.writeNumberField("transmit_bytes", entry.getTxBytes().getValue());
+            jGen.writeNumberField("receive_dropped", entry.getRxDropped().getValue());
+            jGen.writeNumberField("transmit_dropped", entry.getTxDropped().getValue());
+            jGen.writeNumberField("receive_errors", entry.getRxErrors().getValue());
+            jGen.writeNumberField("transmit_errors", entry.getTxErrors().getValue());
+            if (entry.getVersion().compareTo(OFVersion.OF_13) <= 0) {
+                jGen.writeNumberField("receive_frame_errors", entry.getRxFrameErr().getValue());
+                jGen.writeNumberField("receive_overrun_errors", entry.getRxOverErr().getValue());
+                jGen.writeNumberField("receive_CRC_errors", entry.getRxCrcErr().getValue());
+                jGen.writeNumberField("collisions", entry.getCollisions().getValue());
+            }
+            if (entry.getVersion().compareTo(OFVersion.OF_13) >= 0) {
+                jGen.writeNumberField("duration_sec", entry.getDurationSec());
+                jGen.writeNumberField("duration_nsec", entry.getDurationNsec());
+            }
+            if (entry.getVersion().compareTo(OFVersion.OF_14) >= 0) {
+                jGen.writeFieldName("properties");
+                jGen.writeStartArray();
+                for (OFPortStatsProp p : entry.getProperties()) {
+                    jGen.writeStartObject();
+                    if (p instanceof OFPortStatsPropEthernet) {
+                        jGen.writeStringField("type", OFPortStatsPropTypeSerializerVer15.ofWireValue((short)p.getType()).name());
+                        jGen.writeNumberField("collisions", ((OFPortStatsPropEthernet) p).getCollisions().getValue());
+                        jGen.writeNumberField("rx_crc_error", ((OFPortStatsPropEthernet) p).getRxCrcErr().getValue());
+                        jGen.writeNumberField("rx_frame_error", ((OFPortStatsPropEthernet) p).getRxFrameErr().getValue());
+                        jGen.writeNumberField("rx_over_error", ((OFPortStatsPropEthernet) p).getRxOverErr().getValue());
+                    } else if (p instanceof OFPortStatsPropOptical) {
+                        jGen.writeStringField("type", OFPortStatsPropTypeSerializerVer15.ofWireValue((short)p.getType()).name());
+                        jGen.writeNumberField("bias_current", ((OFPortStatsPropOptical) p).getBiasCurrent());
+                        jGen.writeNumberField("flags", ((OFPortStatsPropOptical) p).getFlags());
+                        jGen.writeNumberField("rx_freq_lambda", ((OFPortStatsPropOptical) p).getRxFreqLmda());
+                        jGen.writeNumberField("rx_grid_span", ((OFPortStatsPropOptical) p).getRxGridSpan());
+                        jGen.writeNumberField("rx_offset", ((OFPortStatsPropOptical) p).getRxOffset());
+                        jGen.writeNumberField("rx_power", ((OFPortStatsPropOptical) p).getRxPwr());
+                        jGen.writeNumberField("rx_temp", ((OFPortStatsPropOptical) p).getTemperature());
+                        jGen.writeNumberField("tx_freq_lambda", ((OFPortStatsPropOptical) p).getTxFreqLmda());
+                        jGen.writeNumberField("tx_grid_span", ((OFPortStatsPropOptical) p).getTxGridSpan());
+                        jGen.writeNumberField("tx_offset", ((OFPortStatsPropOptical) p).getTxOffset());
+                        jGen.writeNumberField("tx_power", ((OFPortStatsPropOptical) p).getTxPwr());
+                    } else if (p instanceof OFPortStatsPropExperimenterIntel) {
+                        jGen.writeStringField("type", OFPortStatsPropTypeSerializerVer15.ofWireValue((short)p.getType()).name());
+                        jGen.writeNumberField("rx_1_to_64_packets", ((OFPortStatsPropExperimenterIntel) p).getRx1To64Packets().getValue());
+                        jGen.writeNumberField("rx_65_to_127_packets", ((OFPortStatsPropExperimenterIntel) p).getRx65To127Packets().getValue());
+                        jGen.writeNumberField("rx_128_to_255_packets", ((OFPortStatsPropExperimenterIntel) p).getRx128To255Packets().getValue());
+                        jGen.writeNumberField("rx_256_to_511_packets", ((OFPortStatsPropExperimenterIntel) p).getRx256To511Packets().getValue());
+                        jGen.writeNumberField("rx_512_to_1023_packets", ((OFPortStatsPropExperimenterIntel) p).getRx512To1023Packets().getValue());
+                        jGen.writeNumberField("rx_1024_to_1522_packets", ((OFPortStatsPropExperimenterIntel) p).getRx1024To1522Packets().getValue());
+                        jGen.writeNumberField("rx_1523_to_max_packets", ((OFPortStatsPropExperimenterIntel) p).getRx1523ToMaxPackets().getValue());
+                        jGen.writeNumberField("tx_1_to_64_packets", ((OFPortStatsPropExperimenterIntel) p).getTx1To64Packets().getValue());
+                        jGen.writeNumberField("tx_65_to_127_packets", ((OFPortStatsPropExperimenterIntel) p).getTx65To127Packets().getValue());
+                        jGen.writeNumberField("tx_128_to_255_packets", ((OFPortStatsPropExperimenterIntel) p).getTx128To255Packets().getValue());
+                        jGen.writeNumberField("tx_256_to_511_packets", ((OFPortStatsPropExperimenterIntel) p).getTx256To511Packets().getValue());
+                        jGen.writeNumberField("tx_512_to_1023_packets", ((OFPortStatsPropExperimenterIntel) p).getTx512To1023Packets().getValue());
+                        jGen.writeNumberField("tx_1024_to_1522_packets", ((OFPortStatsPropExperimenterIntel) p).getTx1024To1522Packets().getValue());
+                        jGen.writeNumberField("tx_1523_to_max_packets", ((OFPortStatsPropExperimenterIntel) p).getTx1523ToMaxPackets().getValue());
+                        jGen.writeNumberField("tx_multicast_packets", ((OFPortStatsPropExperimenterIntel) p).getTxMulticastPackets().getValue());
+                        jGen.writeNumberField("rx_broadcast_packets", ((OFPortStatsPropExperimenterIntel) p).getRxBroadcastPackets().getValue());
+                        jGen.writeNumberField("tx_broadcast_packets", ((OFPortStatsPropExperimenterIntel) p).getTxBroadcastPackets().getValue());
+                        jGen.writeNumberField("rx_undersized_errors", ((OFPortStatsPropExperimenterIntel) p).getRxUndersizedErrors().getValue());
+                        jGen.writeNumberField("rx_oversize_errors", ((OFPortStatsPropExperimenterIntel) p).getRxOversizeErrors().getValue());
+                        jGen.writeNumberField("rx_fragmented_errors", ((OFPortStatsPropExperimenterIntel) p).getRxFragmentedErrors().getValue());
+                        jGen.writeNumberField("rx_jabber_errors", ((OFPortStatsPropExperimenterIntel) p).getRxJabberErrors().getValue());
+                    } else if (p instanceof OFPortStatsPropExperimenter) {
+                        jGen.writeStringField("type", OFPortStatsPropTypeSerializerVer15.ofWireValue((short)p.getType()).name());
                     }
-                    jGen.writeEndArray();
+                    jGen.writeEndObject();
                 }
-                jGen.writeEndObject();
+                jGen.writeEndArray();
             }
-            jGen.writeEndArray();
             jGen.writeEndObject();
         }
         jGen.writeEndArray();
+        jGen.writeEndObject();
     }
 
     public static void serializeFlowReply(List<OFFlowStatsReply> flowReplies, JsonGenerator jGen) throws IOException, JsonProcessingException{
@@ -959,46 +967,54 @@ public class StatsReplySerializer extends JsonSerializer<StatsReply> {
         jGen.writeFieldName("flows"); 
         jGen.writeStartArray();
         for (OFFlowStatsReply flowReply : flowReplies) { // for each flow stats reply
-            List<OFFlowStatsEntry> entries = flowReply.getEntries();
-            for (OFFlowStatsEntry entry : entries) { // for each flow
-                jGen.writeStartObject();
-                // list flow stats/info
-                jGen.writeStringField("version", entry.getVersion().toString()); // return the enum name
-                jGen.writeNumberField("cookie", entry.getCookie().getValue());
-                jGen.writeStringField("table_id", entry.getTableId().toString());
-                jGen.writeNumberField("packet_count", entry.getPacketCount().getValue());
-                jGen.writeNumberField("byte_count", entry.getByteCount().getValue());
-                jGen.writeNumberField("duration_sec", entry.getDurationSec());
-                jGen.writeNumberField("duration_nsec", entry.getDurationNsec());
-                jGen.writeNumberField("priority", entry.getPriority());
-                jGen.writeNumberField("idle_timeout_s", entry.getIdleTimeout());
-                jGen.writeNumberField("hard_timeout_s", entry.getHardTimeout());
-                if (entry.getVersion().compareTo(OFVersion.OF_10) != 0) {
-                    jGen.writeArrayFieldStart("flags");
-                    for (OFFlowModFlags f : entry.getFlags()) {
-                        jGen.writeString(f.toString());
-                    }
-                    jGen.writeEndArray();
-                }
-
-                MatchSerializer.serializeMatch(jGen, entry.getMatch());
-
-                // handle OF1.1+ instructions with actions within
-                if (entry.getVersion() == OFVersion.OF_10) {
-                    jGen.writeObjectFieldStart("actions");
-                    OFActionListSerializer.serializeActions(jGen, entry.getActions());
-                    jGen.writeEndObject();
-                } else {
-                    OFInstructionListSerializer.serializeInstructionList(jGen, entry.getInstructions());
-                }
-
-                jGen.writeEndObject();
-            } // end for each OFFlowStatsReply entry */
+            serializeFlowReplyEntries(flowReply, jGen);
         } // end for each OFStatsReply
         //jGen.writeEndObject();
         jGen.writeEndArray();
     } // end method
 
+    /**
+     * Write the entries of one part of a flow stats reply as elements of the
+     * "flows" array written by {@link #serializeFlowReply(List, JsonGenerator)}.
+     */
+    public static void serializeFlowReplyEntries(OFFlowStatsReply flowReply, JsonGenerator jGen) throws IOException, JsonProcessingException{
+        List<OFFlowStatsEntry> entries = flowReply.getEntries();
+        for (OFFlowStatsEntry entry : entries) { // for each flow
+            jGen.writeStartObject();
+            // list flow stats/info
+            jGen.writeStringField("version", entry.getVersion().toString()); // return the enum name
+            jGen.writeNumberField("cookie", entry.getCookie().getValue());
+            jGen.writeStringField("table_id", entry.getTableId().toString());
+            jGen.writeNumberField("packet_count", entry.getPacketCount().getValue());
+            jGen.writeNumberField("byte_count", entry.getByteCount().getValue());
+            jGen.writeNumberField("duration_sec", entry.getDurationSec());
+            jGen.writeNumberField("duration_nsec", entry.getDurationNsec());
+            jGen.writeNumberField("priority", entry.getPriority());
+            jGen.writeNumberField("idle_timeout_s", entry.getIdleTimeout());
+            jGen.writeNumberField("hard_timeout_s", entry.getHardTimeout());
+            if (entry.getVersion().compareTo(OFVersion.OF_10) != 0) {
+                jGen.writeArrayFieldStart("flags");
+                for (OFFlowModFlags f : entry.getFlags()) {
+                    jGen.writeString(f.toString());
+                }
+                jGen.writeEndArray();
+            }
+
+            MatchSerializer.serializeMatch(jGen, entry.getMatch());
+
+            // handle OF1.1+ instructions with actions within
+            if (entry.getVersion() == OFVersion.OF_10) {
+                jGen.writeObjectFieldStart("actions");
+                OFActionListSerializer.serializeActions(jGen, entry.getActions());
+                jGen.writeEndObject();
+            } else {
+                OFInstructionListSerializer.serializeInstructionList(jGen, entry.getInstructions());
+            }
+
+            jGen.writeEndObject();
+        } // end for each OFFlowStatsReply entry */
+    }
+
     public static void serializeDescReply(List<OFDescStatsReply> descReplies, JsonGenerator jGen) throws IOException, JsonProcessingException{
         OFDescStatsReply descReply = descReplies.get(0); // There is only one descReply from the switch
         jGen.writeObjectFieldStart("desc"); 
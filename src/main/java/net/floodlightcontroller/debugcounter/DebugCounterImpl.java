@@ -1,8 +1,7 @@
 package net.floodlightcontroller.debugcounter;
 
 import java.util.Collection;
-import java.util.Date;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.annotation.Nonnull;
 
@@ -12,15 +11,24 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 
 
+/**
+ * Counters are incremented from many threads at once (e.g., every netty
+ * worker bumps the controller's packet-in counter), so the value is a
+ * {@link LongAdder} and an increment touches no shared state. For the same
+ * reason the last-modified time is not written on increment. Instead, it is
+ * brought up to date whenever it is read and the value has changed since
+ * the previous read, so it is only as precise as the interval between reads.
+ */
 class DebugCounterImpl implements IDebugCounter {
     private final String moduleName;
     private final String counterHierarchy;
     private final String description;
     private final ImmutableSet<IDebugCounterService.MetaData> metaData;
 
-    private final AtomicLong value = new AtomicLong();
+    private final LongAdder value = new LongAdder();
 
-    private final Date lastModified = new Date(); // should return long ms to ensure immutability
+    private long lastModified;
+    private long lastModifiedValue; // value when lastModified was last updated
 
     DebugCounterImpl(@Nonnull String moduleName,
                      @Nonnull String counterHierarchy,
@@ -30,7 +38,7 @@ class DebugCounterImpl implements IDebugCounter {
         this.counterHierarchy = counterHierarchy;
         this.description = description;
         this.metaData = Sets.immutableEnumSet(metaData);
-        this.lastModified.setTime(System.currentTimeMillis());
+        this.lastModified = System.currentTimeMillis();
     }
 
     @Nonnull
@@ -57,14 +65,16 @@ class DebugCounterImpl implements IDebugCounter {
 
     @Override
     public void reset() {
-        value.set(0);
-        lastModified.setTime(System.currentTimeMillis());
+        value.reset();
+        synchronized (this) {
+            lastModified = System.currentTimeMillis();
+            lastModifiedValue = 0;
+        }
     }
 
     @Override
     public void increment() {
-        value.incrementAndGet();
-        lastModified.setTime(System.currentTimeMillis());
+        value.increment();
     }
 
     @Override
@@ -73,19 +83,23 @@ class DebugCounterImpl implements IDebugCounter {
             throw new IllegalArgumentException("increment must be > 0. Was "
                     + increment);
         }
-        value.addAndGet(increment);
-        lastModified.setTime(System.currentTimeMillis());
+        value.add(increment);
     }
 
     @Override
     public long getCounterValue() {
-        return value.get();
+        return value.sum();
+    }
+
+    @Override
+    public synchronized long getLastModified() {
+        long cur = value.sum();
+        if (cur != lastModifiedValue) {
+            lastModifiedValue = cur;
+            lastModified = System.currentTimeMillis();
+        }
+        return lastModified;
     }
-    
-	@Override
-	public long getLastModified() {
-		return lastModified.getTime();
-	}
 
     @Override
     public int hashCode() {
@@ -126,7 +140,7 @@ class DebugCounterImpl implements IDebugCounter {
         } else if (!moduleName.equals(other.moduleName)) return false;
         if (value == null) {
             if (other.value != null) return false;
-        } else if (value.get() != other.value.get()) return false;
+        } else if (value.sum() != other.value.sum()) return false;
         return true;
     }
 
@@ -8,6 +8,8 @@ import net.floodlightcontroller.core.module.IFloodlightService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.ImmutableList;
+
 import javax.annotation.concurrent.GuardedBy;
 import java.util.*;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -28,6 +30,14 @@ public class DebugCounterServiceImpl implements IFloodlightModule, IDebugCounter
      */
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
+    /**
+     * All counters in the tree in iteration order, so that snapshots can be
+     * taken without the lock. Cleared whenever the hierarchy changes and
+     * rebuilt by the next snapshot, so registering or removing many counters
+     * in a row does not copy the whole list every time.
+     */
+    private volatile ImmutableList<DebugCounterImpl> allCounters = ImmutableList.of();
+
     static void verifyStringSanity(String str, String name) {
         if (str == null) {
             if (name == null) {
@@ -101,13 +111,33 @@ public class DebugCounterServiceImpl implements IFloodlightModule, IDebugCounter
              * addCounter(counter) returned a non-null reference, then the reference is 
              * the existing counter, which has just been reset and should be reused.
              */
-            counter = (oldCounter == null ? counter : oldCounter);
+            if (oldCounter == null) {
+                allCounters = null;
+            } else {
+                counter = oldCounter;
+            }
         } finally {
             lock.writeLock().unlock();
         }
         return counter;
     }
 
+    private ImmutableList<DebugCounterImpl> getAllCounters() {
+        ImmutableList<DebugCounterImpl> counters = allCounters;
+        if (counters != null) {
+            return counters;
+        }
+        lock.readLock().lock();
+        try {
+            /* the hierarchy cannot change while the read lock is held */
+            counters = ImmutableList.copyOf(root.getCountersInHierarchy());
+            allCounters = counters;
+            return counters;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     @GuardedBy("lock.readLock")
     private boolean resetInternal(List<String> hierarchyElements) {
         CounterNode node = root.lookup(hierarchyElements);
@@ -118,13 +148,14 @@ public class DebugCounterServiceImpl implements IFloodlightModule, IDebugCounter
         return true;
     }
     
-    @GuardedBy("lock.readLock")
+    @GuardedBy("lock.writeLock")
     private boolean removeInternal(List<String> hierarchyElements) {
         CounterNode node = root.lookup(hierarchyElements); // returns e.g. root/module-name/counter-node-to-remove
         if (node == null) {
             return false;
         }
         root.remove(hierarchyElements);
+        allCounters = null;
         return true;
     }
 
@@ -168,11 +199,11 @@ public class DebugCounterServiceImpl implements IFloodlightModule, IDebugCounter
                                          String counterHierarchy) {
         verifyModuleNameSanity(moduleName);
         verifyStringSanity(counterHierarchy, "counterHierarchy");
-        lock.readLock().lock();
+        lock.writeLock().lock();
         try {
             return removeInternal(CounterNode.getHierarchyElements(moduleName, counterHierarchy));
         } finally {
-            lock.readLock().unlock();
+            lock.writeLock().unlock();
         }
     }
 
@@ -205,12 +236,17 @@ public class DebugCounterServiceImpl implements IFloodlightModule, IDebugCounter
 
     @Override
     public List<DebugCounterResource> getAllCounterValues() {
-        lock.readLock().lock();
-        try {
-            return getCountersFromNode(root);
-        } finally {
-            lock.readLock().unlock();
+        return new ArrayList<>(getSnapshot().getCounters());
+    }
+
+    @Override
+    public DebugCounterSnapshot getSnapshot() {
+        ImmutableList<DebugCounterImpl> counters = getAllCounters();
+        List<DebugCounterResource> ret = new ArrayList<>(counters.size());
+        for (DebugCounterImpl counter : counters) {
+            ret.add(new DebugCounterResource(counter));
         }
+        return new DebugCounterSnapshot(System.currentTimeMillis(), ret);
     }
 
     @Override
@@ -0,0 +1,71 @@
+package net.floodlightcontroller.debugcounter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The values of all registered counters, read in one pass.
+ * Counters are in the same order as {@link IDebugCounterService#getAllCounterValues()}:
+ * by module, then pre-order through the hierarchy.
+ */
+@Immutable
+public class DebugCounterSnapshot {
+    private final long timestamp;
+    private final ImmutableList<DebugCounterResource> counters;
+
+    public DebugCounterSnapshot(long timestamp, @Nonnull List<DebugCounterResource> counters) {
+        this.timestamp = timestamp;
+        this.counters = ImmutableList.copyOf(counters);
+    }
+
+    /**
+     * @return the time the snapshot was taken, in ms since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Nonnull
+    public List<DebugCounterResource> getCounters() {
+        return counters;
+    }
+
+    /**
+     * @return the counters of the given module, or an empty list
+     */
+    @Nonnull
+    public List<DebugCounterResource> getModuleCounters(@Nonnull String moduleName) {
+        List<DebugCounterResource> ret = new ArrayList<>();
+        for (DebugCounterResource c : counters) {
+            if (c.getModuleName().equals(moduleName)) {
+                ret.add(c);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return the counter at the given hierarchy and all counters below it,
+     * or an empty list
+     * @see IDebugCounterService#getCounterHierarchy(String, String)
+     */
+    @Nonnull
+    public List<DebugCounterResource> getCounterHierarchy(@Nonnull String moduleName,
+            @Nonnull String counterHierarchy) {
+        String prefix = counterHierarchy + "/";
+        List<DebugCounterResource> ret = new ArrayList<>();
+        for (DebugCounterResource c : counters) {
+            if (c.getModuleName().equals(moduleName)
+                    && (c.getCounterHierarchy().equals(counterHierarchy)
+                            || c.getCounterHierarchy().startsWith(prefix))) {
+                ret.add(c);
+            }
+        }
+        return ret;
+    }
+}
@@ -130,4 +130,14 @@ public interface IDebugCounterService extends IFloodlightService {
      */
     public  List<DebugCounterResource> getModuleCounterValues(String moduleName);
 
+    /**
+     * Get the values and associated information of all counters in the
+     * system in one pass. Unlike the other getters, this does not lock the
+     * counter hierarchy, so it is cheap enough to call frequently, e.g.,
+     * from REST or a metrics exporter. Registering or removing counters
+     * concurrently does not affect a snapshot being taken.
+     *
+     * @return the snapshot, possibly with no counters
+     */
+    public DebugCounterSnapshot getSnapshot();
 }
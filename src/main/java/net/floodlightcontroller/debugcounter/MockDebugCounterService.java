@@ -97,6 +97,12 @@ public class MockDebugCounterService implements IFloodlightModule, IDebugCounter
         return Collections.emptyList();
     }
 
+    @Override
+    public DebugCounterSnapshot getSnapshot() {
+        return new DebugCounterSnapshot(System.currentTimeMillis(),
+                Collections.<DebugCounterResource>emptyList());
+    }
+
     public static class MockCounterImpl implements IDebugCounter {
         @Override
         public void increment() {
@@ -31,6 +31,7 @@ import org.projectfloodlight.openflow.types.MacAddress;
 import org.projectfloodlight.openflow.types.VlanVid;
 import org.projectfloodlight.openflow.types.OFPort;
 
+import net.floodlightcontroller.core.FloodlightContextKey;
 import net.floodlightcontroller.core.FloodlightContextStore;
 import net.floodlightcontroller.core.module.IFloodlightService;
 
@@ -53,19 +54,25 @@ public interface IDeviceService extends IFloodlightService {
      * The source device for the current packet-in, if applicable.
      */
     public static final String CONTEXT_SRC_DEVICE = 
-            "net.floodlightcontroller.devicemanager.srcDevice"; 
+            "net.floodlightcontroller.devicemanager.srcDevice";
+    public static final FloodlightContextKey<IDevice> CONTEXT_SRC_DEVICE_KEY =
+            FloodlightContextKey.register(CONTEXT_SRC_DEVICE);
 
     /**
      * The destination device for the current packet-in, if applicable.
      */
     public static final String CONTEXT_DST_DEVICE = 
-            "net.floodlightcontroller.devicemanager.dstDevice"; 
+            "net.floodlightcontroller.devicemanager.dstDevice";
+    public static final FloodlightContextKey<IDevice> CONTEXT_DST_DEVICE_KEY =
+            FloodlightContextKey.register(CONTEXT_DST_DEVICE);
 
     /**
      * The original destination device for the current packet-in
      */
     public static final String CONTEXT_ORIG_DST_DEVICE =
             "net.floodlightcontroller.devicemanager.origDstDevice";
+    public static final FloodlightContextKey<IDevice> CONTEXT_ORIG_DST_DEVICE_KEY =
+            FloodlightContextKey.register(CONTEXT_ORIG_DST_DEVICE);
 
     /**
      * A FloodlightContextStore object that can be used to interact with the 
@@ -1066,7 +1066,7 @@ public class DeviceManagerImpl implements IDeviceService, IOFMessageListener, IT
 	// ****************
 
 	protected Command processPacketInMessage(IOFSwitch sw, OFPacketIn pi, FloodlightContext cntx) {
-		Ethernet eth = IFloodlightProviderService.bcStore.get(cntx,IFloodlightProviderService.CONTEXT_PI_PAYLOAD);
+		Ethernet eth = IFloodlightProviderService.bcStore.get(cntx,IFloodlightProviderService.CONTEXT_PI_PAYLOAD_KEY);
 		OFPort inPort = (pi.getVersion().compareTo(OFVersion.OF_12) < 0 ? pi.getInPort() : pi.getMatch().get(MatchField.IN_PORT));
 
 		NodePortTuple npt = new NodePortTuple(sw.getId(), inPort);
@@ -1110,7 +1110,7 @@ public class DeviceManagerImpl implements IDeviceService, IOFMessageListener, IT
 			return Command.STOP;
 		}
 		// Store the source device in the context
-		fcStore.put(cntx, CONTEXT_SRC_DEVICE, srcDevice);
+		fcStore.put(cntx, CONTEXT_SRC_DEVICE_KEY, srcDevice);
 
 		// Find the device matching the destination from the entity
 		// classes of the source.
@@ -1123,7 +1123,7 @@ public class DeviceManagerImpl implements IDeviceService, IOFMessageListener, IT
 		if (dstEntity != null) {
 			dstDevice = findDestByEntity(srcDevice.getEntityClass(), dstEntity);
 			if (dstDevice != null)
-				fcStore.put(cntx, CONTEXT_DST_DEVICE, dstDevice);
+				fcStore.put(cntx, CONTEXT_DST_DEVICE_KEY, dstDevice);
 			else
 				cntNoDest.increment();
 		} else {
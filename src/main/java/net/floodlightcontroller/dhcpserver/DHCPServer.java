@@ -11,6 +11,7 @@ import net.floodlightcontroller.dhcpserver.web.DHCPServerWebRoutable;
 import net.floodlightcontroller.packet.DHCP;
 import net.floodlightcontroller.packet.Ethernet;
 import net.floodlightcontroller.packet.IPv4;
+import net.floodlightcontroller.packet.UDP;
 import net.floodlightcontroller.restserver.IRestApiService;
 import net.floodlightcontroller.staticentry.IStaticEntryPusherService;
 import net.floodlightcontroller.core.IOFSwitchListener;
@@ -33,7 +34,7 @@ import java.util.concurrent.TimeUnit;
  * This module implementing a DHCP DHCPServer. The module can be configured with the REST API.
  * 
  */
-public class DHCPServer implements IOFMessageListener, IOFSwitchListener, IFloodlightModule, IDHCPService {
+public class DHCPServer implements IPacketInInterestListener, IOFSwitchListener, IFloodlightModule, IDHCPService {
     protected static final Logger log = LoggerFactory.getLogger(DHCPServer.class);
     protected IFloodlightProviderService floodlightProviderService;
     protected IOFSwitchService switchService;
@@ -50,7 +51,7 @@ public class DHCPServer implements IOFMessageListener, IOFSwitchListener, IFlood
 
     @Override
     public Command receive(IOFSwitch sw, OFMessage msg, FloodlightContext cntx) {
-        Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD);
+        Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD_KEY);
         OFPort inPort = OFMessageUtils.getInPort((OFPacketIn) msg);
 
         if (!isDHCPEnabled()) return Command.CONTINUE;
@@ -153,6 +154,18 @@ public class DHCPServer implements IOFMessageListener, IOFSwitchListener, IFlood
         return (type.equals(OFType.PACKET_IN) && name.equals("forwarding"));
     }
 
+    /* Only DHCP traffic (UDP to or from the server or client port) is of interest */
+    private static final PacketInInterest PACKET_IN_INTEREST = PacketInInterest.builder()
+            .ethType(EthType.IPv4)
+            .ipProtocol(IpProtocol.UDP)
+            .transportPort(UDP.DHCP_SERVER_PORT, UDP.DHCP_CLIENT_PORT)
+            .build();
+
+    @Override
+    public PacketInInterest getPacketInInterest() {
+        return PACKET_IN_INTEREST;
+    }
+
     @Override
     public Collection<Class<? extends IFloodlightService>> getModuleServices() {
         Collection<Class<? extends IFloodlightService>> s =
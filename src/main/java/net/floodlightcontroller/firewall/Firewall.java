@@ -330,7 +330,7 @@ IFloodlightModule {
 			if (cntx == null) {
 				logger.warn("Firewall unable to request packet drop: FloodlightContext is null.");
 			} else {
-				decision = IRoutingDecision.rtStore.get(cntx, IRoutingDecision.CONTEXT_DECISION);
+				decision = IRoutingDecision.rtStore.get(cntx, IRoutingDecision.CONTEXT_DECISION_KEY);
 				return this.processPacketInMessage(sw, (OFPacketIn) msg, decision, cntx);
 			}
 			break;
@@ -514,7 +514,7 @@ IFloodlightModule {
 	 */
 	protected RuleMatchPair matchWithRule(IOFSwitch sw, OFPacketIn pi, FloodlightContext cntx) {
 		FirewallRule matched_rule = null;
-		Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD);
+		Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD_KEY);
 		AllowDropPair adp = new AllowDropPair(sw.getOFFactory());
 
 		synchronized (rules) {
@@ -592,7 +592,7 @@ IFloodlightModule {
 	}
 
 	public Command processPacketInMessage(IOFSwitch sw, OFPacketIn pi, IRoutingDecision decision, FloodlightContext cntx) {
-		Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD);
+		Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD_KEY);
 		OFPort inPort = OFMessageUtils.getInPort(pi);
 
 		// Allowing L2 broadcast + ARP broadcast request (also deny malformed
@@ -610,7 +610,7 @@ IFloodlightModule {
 				}
 
 				decision = new RoutingDecision(sw.getId(), inPort, 
-						IDeviceService.fcStore.get(cntx, IDeviceService.CONTEXT_SRC_DEVICE),
+						IDeviceService.fcStore.get(cntx, IDeviceService.CONTEXT_SRC_DEVICE_KEY),
 						IRoutingDecision.RoutingAction.MULTICAST);
 				decision.setDescriptor(ALLOW_BCAST_COOKIE);
 				decision.addToContext(cntx);
@@ -620,7 +620,7 @@ IFloodlightModule {
 				}
 
 				decision = new RoutingDecision(sw.getId(), inPort,
-						IDeviceService.fcStore.get(cntx, IDeviceService.CONTEXT_SRC_DEVICE),
+						IDeviceService.fcStore.get(cntx, IDeviceService.CONTEXT_SRC_DEVICE_KEY),
 						IRoutingDecision.RoutingAction.DROP);
 				decision.setDescriptor(DENY_BCAST_COOKIE);
 				decision.addToContext(cntx);
@@ -648,7 +648,7 @@ IFloodlightModule {
 			// Drop the packet if we don't have a rule allowing or dropping it or if we explicitly drop it
 			if (rule == null || rule.action == FirewallRule.FirewallAction.DROP) {
 				decision = new RoutingDecision(sw.getId(), inPort, 
-						IDeviceService.fcStore.get(cntx, IDeviceService.CONTEXT_SRC_DEVICE), 
+						IDeviceService.fcStore.get(cntx, IDeviceService.CONTEXT_SRC_DEVICE_KEY), 
 						IRoutingDecision.RoutingAction.DROP);
 				decision.setMatch(rmp.match);
 				if (rule == null) {
@@ -667,7 +667,7 @@ IFloodlightModule {
 				// Found a rule and the rule is not a drop, so allow the packet
 			} else {
 				decision = new RoutingDecision(sw.getId(), inPort, 
-						IDeviceService.fcStore.get(cntx, IDeviceService.CONTEXT_SRC_DEVICE),
+						IDeviceService.fcStore.get(cntx, IDeviceService.CONTEXT_SRC_DEVICE_KEY),
 						IRoutingDecision.RoutingAction.FORWARD_OR_FLOOD);
 				decision.setMatch(rmp.match);
 				decision.setDescriptor(AppCookie.makeCookie(APP_ID, rule.ruleid));
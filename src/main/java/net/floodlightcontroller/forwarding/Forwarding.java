@@ -199,7 +199,7 @@ public class Forwarding extends ForwardingBase implements IFloodlightModule, IOF
 
     @Override
     public Command processPacketInMessage(IOFSwitch sw, OFPacketIn pi, IRoutingDecision decision, FloodlightContext cntx) {
-        Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD);
+        Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD_KEY);
 
         OFPort inPort = OFMessageUtils.getInPort(pi);
         NodePortTuple npt = new NodePortTuple(sw.getId(), inPort);
@@ -356,13 +356,13 @@ public class Forwarding extends ForwardingBase implements IFloodlightModule, IOF
      */
     protected void doL3ForwardFlow(IOFSwitch sw, OFPacketIn pi, IRoutingDecision decision, FloodlightContext cntx,
                                    VirtualGatewayInstance gateway, boolean requestFlowRemovedNotifn) {
-        Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD);
+        Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD_KEY);
         OFPort srcPort = OFMessageUtils.getInPort(pi);
 
         MacAddress virtualGatewayMac = gateway.getGatewayMac();
         DatapathId srcSw = sw.getId();
-        IDevice dstDevice = IDeviceService.fcStore.get(cntx, IDeviceService.CONTEXT_DST_DEVICE);
-        IDevice srcDevice = IDeviceService.fcStore.get(cntx, IDeviceService.CONTEXT_SRC_DEVICE);
+        IDevice dstDevice = IDeviceService.fcStore.get(cntx, IDeviceService.CONTEXT_DST_DEVICE_KEY);
+        IDevice srcDevice = IDeviceService.fcStore.get(cntx, IDeviceService.CONTEXT_SRC_DEVICE_KEY);
 
         if (dstDevice == null) {
             // Try one more time to retrieve dst device
@@ -397,7 +397,7 @@ public class Forwarding extends ForwardingBase implements IFloodlightModule, IOF
 
         /* Some physical switches partially support or do not support ARP flows */
         if (FLOOD_ALL_ARP_PACKETS &&
-                IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD).getEtherType()
+                IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD_KEY).getEtherType()
                         == EthType.ARP) {
             log.debug("ARP flows disabled in Forwarding. Flooding ARP packet");
             doFlood(sw, pi, decision, cntx);
@@ -630,8 +630,8 @@ public class Forwarding extends ForwardingBase implements IFloodlightModule, IOF
     protected void doL2ForwardFlow(IOFSwitch sw, OFPacketIn pi, IRoutingDecision decision, FloodlightContext cntx, boolean requestFlowRemovedNotifn) {
         OFPort srcPort = OFMessageUtils.getInPort(pi);
         DatapathId srcSw = sw.getId();
-        IDevice dstDevice = IDeviceService.fcStore.get(cntx, IDeviceService.CONTEXT_DST_DEVICE);
-        IDevice srcDevice = IDeviceService.fcStore.get(cntx, IDeviceService.CONTEXT_SRC_DEVICE);
+        IDevice dstDevice = IDeviceService.fcStore.get(cntx, IDeviceService.CONTEXT_DST_DEVICE_KEY);
+        IDevice srcDevice = IDeviceService.fcStore.get(cntx, IDeviceService.CONTEXT_SRC_DEVICE_KEY);
 
         if (dstDevice == null) {
             log.debug("Destination device unknown. Flooding packet");
@@ -646,7 +646,7 @@ public class Forwarding extends ForwardingBase implements IFloodlightModule, IOF
 
         /* Some physical switches partially support or do not support ARP flows */
         if (FLOOD_ALL_ARP_PACKETS &&
-                IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD).getEtherType()
+                IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD_KEY).getEtherType()
                         == EthType.ARP) {
             log.debug("ARP flows disabled in Forwarding. Flooding ARP packet");
             doFlood(sw, pi, decision, cntx);
@@ -740,7 +740,7 @@ public class Forwarding extends ForwardingBase implements IFloodlightModule, IOF
      */
     public IPacket gatewayArpReply(FloodlightContext cntx, MacAddress gatewayMac) {
         Ethernet eth = IFloodlightProviderService.bcStore.get(cntx,
-                IFloodlightProviderService.CONTEXT_PI_PAYLOAD);
+                IFloodlightProviderService.CONTEXT_PI_PAYLOAD_KEY);
 
         ARP arpRequest = (ARP) eth.getPayload();
 
@@ -1030,7 +1030,7 @@ public class Forwarding extends ForwardingBase implements IFloodlightModule, IOF
     protected Match createMatchFromPacket(IOFSwitch sw, OFPort inPort, OFPacketIn pi, FloodlightContext cntx) {
         // The packet in match will only contain the port number.
         // We need to add in specifics for the hosts we're routing between.
-        Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD);
+        Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD_KEY);
 
         VlanVid vlan = null;      
         if (pi.getVersion().compareTo(OFVersion.OF_11) > 0 && /* 1.0 and 1.1 do not have a match */
@@ -1239,7 +1239,7 @@ public class Forwarding extends ForwardingBase implements IFloodlightModule, IOF
     protected void doL3Flood(VirtualGatewayInstance gateway, IOFSwitch sw, OFPacketIn pi,
                              FloodlightContext cntx) {
         Ethernet eth = IFloodlightProviderService.bcStore.get(cntx,
-                IFloodlightProviderService.CONTEXT_PI_PAYLOAD);
+                IFloodlightProviderService.CONTEXT_PI_PAYLOAD_KEY);
 
         MacAddress gatewayMac = gateway.getGatewayMac();
 
@@ -1455,6 +1455,12 @@ public class Forwarding extends ForwardingBase implements IFloodlightModule, IOF
         } else {
             log.info("Flows will not be removed on link/port down events");
         }
+
+        tmp = configParameters.get("batch-route-flow-mods");
+        if (tmp != null) {
+            BATCH_ROUTE_FLOWMODS = Boolean.parseBoolean(tmp);
+        }
+        log.info("Route flow-mods will be written {}", BATCH_ROUTE_FLOWMODS ? "as one batch per switch" : "one at a time");
     }
 
     @Override
@@ -1808,7 +1814,7 @@ public class Forwarding extends ForwardingBase implements IFloodlightModule, IOF
     }
 
     private void pushL3Packet(IOFSwitch sw, OFPacketIn pi, FloodlightContext cntx, IDevice dstDevice) {
-        Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD);
+        Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD_KEY);
         OFPort inPort = OFMessageUtils.getInPort(pi);
 
         if (pi.getBufferId().equals(OFBufferId.NO_BUFFER)) {
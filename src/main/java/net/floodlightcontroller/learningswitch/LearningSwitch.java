@@ -347,7 +347,7 @@ implements IFloodlightModule, ILearningSwitchService, IOFMessageListener, IContr
 	protected Match createMatchFromPacket(IOFSwitch sw, OFPort inPort, FloodlightContext cntx) {
 		// The packet in match will only contain the port number.
 		// We need to add in specifics for the hosts we're routing between.
-		Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD);
+		Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD_KEY);
 		VlanVid vlan = VlanVid.ofVlan(eth.getVlanID());
 		MacAddress srcMac = eth.getSourceMACAddress();
 		MacAddress dstMac = eth.getDestinationMACAddress();
@@ -589,7 +589,7 @@ IFloodlightModule, IInfoProvider {
 	protected Command handlePacketIn(DatapathId sw, OFPacketIn pi,
 			FloodlightContext cntx) {
 		Ethernet eth = IFloodlightProviderService.bcStore.get(cntx,
-				IFloodlightProviderService.CONTEXT_PI_PAYLOAD);
+				IFloodlightProviderService.CONTEXT_PI_PAYLOAD_KEY);
 		OFPort inPort = (pi.getVersion().compareTo(OFVersion.OF_12) < 0 ? pi.getInPort() : pi.getMatch().get(MatchField.IN_PORT));
 		if (eth.getPayload() instanceof BSN) {
 			BSN bsn = (BSN) eth.getPayload();
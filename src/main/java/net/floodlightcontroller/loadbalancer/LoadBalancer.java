@@ -57,8 +57,9 @@ import org.slf4j.LoggerFactory;
 import javafx.util.Pair;
 import net.floodlightcontroller.core.FloodlightContext;
 import net.floodlightcontroller.core.IFloodlightProviderService;
-import net.floodlightcontroller.core.IOFMessageListener;
+import net.floodlightcontroller.core.IPacketInInterestListener;
 import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.PacketInInterest;
 import net.floodlightcontroller.core.internal.IOFSwitchService;
 import net.floodlightcontroller.core.module.FloodlightModuleContext;
 import net.floodlightcontroller.core.module.FloodlightModuleException;
@@ -107,7 +108,7 @@ import net.floodlightcontroller.util.OFMessageUtils;
  * @edited Ryan Izard, rizard@g.clemson.edu, ryan.izard@bigswitch.com
  */
 public class LoadBalancer implements IFloodlightModule,
-ILoadBalancerService, IOFMessageListener {
+ILoadBalancerService, IPacketInInterestListener {
 
 	protected static Logger log = LoggerFactory.getLogger(LoadBalancer.class);
 
@@ -207,6 +208,16 @@ ILoadBalancerService, IOFMessageListener {
 		return (type.equals(OFType.PACKET_IN) && name.equals("forwarding"));
 	}
 
+	/* Only ARP for a VIP and IPv4 to a VIP are handled */
+	private static final PacketInInterest PACKET_IN_INTEREST = PacketInInterest.builder()
+			.ethType(EthType.ARP, EthType.IPv4)
+			.build();
+
+	@Override
+	public PacketInInterest getPacketInInterest() {
+		return PACKET_IN_INTEREST;
+	}
+
 	@Override
 	public net.floodlightcontroller.core.IListener.Command
 	receive(IOFSwitch sw, OFMessage msg, FloodlightContext cntx) {
@@ -222,7 +233,7 @@ ILoadBalancerService, IOFMessageListener {
 
 	private net.floodlightcontroller.core.IListener.Command processPacketIn(IOFSwitch sw, OFPacketIn pi, FloodlightContext cntx) {
 
-		Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD);
+		Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD_KEY);
 		IPacket pkt = eth.getPayload(); 	
 
 		if (eth.isBroadcast() || eth.isMulticast()) {
@@ -378,7 +389,7 @@ ILoadBalancerService, IOFMessageListener {
 		log.debug("vipProxyArpReply");
 
 		Ethernet eth = IFloodlightProviderService.bcStore.get(cntx,
-				IFloodlightProviderService.CONTEXT_PI_PAYLOAD);
+				IFloodlightProviderService.CONTEXT_PI_PAYLOAD_KEY);
 
 		// retrieve original arp to determine host configured gw IP address                                          
 		if (! (eth.getPayload() instanceof ARP))
@@ -542,7 +553,7 @@ ILoadBalancerService, IOFMessageListener {
 		}
 
 		// Destination address of client's request to set in the outbound actions
-		Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD);
+		Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD_KEY);
 		IPacket pkt = eth.getPayload(); 
 		IPv4 ip_pkt = (IPv4) pkt;
 
@@ -836,7 +847,7 @@ ILoadBalancerService, IOFMessageListener {
 						ArrayList<Long> bytesIn = new ArrayList<Long>();
 						for(Pair<Match,DatapathId> pair: flowToVipId.keySet()){ // from the flows set from the load balancer
 							if(flowToVipId.get(pair).equals(pool.vipId)){ // determine which vip is responsible for the flow
-								frs = statisticsService.getFlowStats().get(pair); // get the statistics of this flow
+								frs = statisticsService.getFlowStats(pair.getValue(), pair.getKey()); // get the statistics of this flow
 								if(frs != null){
 									Set<DatapathId> membersDPID = new HashSet<DatapathId>();
 									for(SwitchPort sp: memberIdToSwitchPort.values()){	
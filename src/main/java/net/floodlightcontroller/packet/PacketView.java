@@ -0,0 +1,477 @@
+/**
+*    Copyright 2011, Big Switch Networks, Inc.
+*    Originally created by David Erickson, Stanford University
+*
+*    Licensed under the Apache License, Version 2.0 (the "License"); you may
+*    not use this file except in compliance with the License. You may obtain
+*    a copy of the License at
+*
+*         http://www.apache.org/licenses/LICENSE-2.0
+*
+*    Unless required by applicable law or agreed to in writing, software
+*    distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+*    WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+*    License for the specific language governing permissions and limitations
+*    under the License.
+**/
+
+package net.floodlightcontroller.packet;
+
+import org.projectfloodlight.openflow.types.EthType;
+import org.projectfloodlight.openflow.types.IPv4Address;
+import org.projectfloodlight.openflow.types.IPv6Address;
+import org.projectfloodlight.openflow.types.IpProtocol;
+import org.projectfloodlight.openflow.types.MacAddress;
+import org.projectfloodlight.openflow.types.TransportPort;
+import org.projectfloodlight.openflow.types.VlanVid;
+
+/**
+ * A read-only, lazily decoded view over the raw bytes of an Ethernet frame,
+ * typically the data of a packet-in message.
+ *
+ * Unlike {@link Ethernet#deserialize(byte[], int, int)}, no bytes are copied
+ * and no header objects are built up front. Each header field is decoded
+ * directly out of the backing array the first time it is read and cached
+ * thereafter. Listeners that only look at MACs, the ethertype or the IP
+ * 5-tuple can use this instead of the full {@link Ethernet} object tree;
+ * those that need the full tree can get it on demand with
+ * {@link #getEthernet()}.
+ *
+ * The backing array is not copied, so callers must not modify it while the
+ * view is in use. Accessors for a layer that is not present in the frame
+ * (e.g. the IPv4 source of an ARP packet) return null.
+ */
+public class PacketView {
+    private static final int ETH_HEADER_LEN = 14;
+    private static final int VLAN_TAG_LEN = 4;
+    private static final int IPV4_MIN_HEADER_LEN = 20;
+    private static final int IPV6_HEADER_LEN = 40;
+
+    private static final int UNKNOWN = -1;
+    private static final int ABSENT = -2;
+
+    private byte[] data;
+    private int offset;
+    private int length;
+
+    /* Decoded on first access; UNKNOWN until then */
+    private int l3Offset;
+    private int ipOffset;
+    private int l4Offset;
+    private int etherType;
+    private short vlanTci;
+    private int ipProtocol;
+
+    /* Cached field objects */
+    private MacAddress srcMac;
+    private MacAddress dstMac;
+    private IPv4Address srcIpv4;
+    private IPv4Address dstIpv4;
+    private IPv6Address srcIpv6;
+    private IPv6Address dstIpv6;
+    private Ethernet eth;
+
+    public PacketView() {
+        reset();
+    }
+
+    public PacketView(byte[] data) {
+        wrap(data, 0, data.length);
+    }
+
+    public PacketView(byte[] data, int offset, int length) {
+        wrap(data, offset, length);
+    }
+
+    /**
+     * Point this view at a new frame, discarding anything decoded from the
+     * previous one. This allows a single instance to be reused.
+     * @param data the backing array; not copied
+     * @param offset start of the Ethernet header in data
+     * @param length number of bytes of the frame in data
+     * @return this
+     */
+    public PacketView wrap(byte[] data, int offset, int length) {
+        if (data == null) {
+            throw new NullPointerException("data must not be null");
+        }
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IllegalArgumentException("Invalid offset " + offset
+                    + " and length " + length + " for array of length " + data.length);
+        }
+        reset();
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    private void reset() {
+        data = null;
+        offset = 0;
+        length = 0;
+        l3Offset = UNKNOWN;
+        ipOffset = UNKNOWN;
+        l4Offset = UNKNOWN;
+        etherType = UNKNOWN;
+        vlanTci = 0;
+        ipProtocol = UNKNOWN;
+        srcMac = null;
+        dstMac = null;
+        srcIpv4 = null;
+        dstIpv4 = null;
+        srcIpv6 = null;
+        dstIpv6 = null;
+        eth = null;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    // ********
+    // Layer 2
+    // ********
+
+    /**
+     * @return the destination MAC, or null if the frame is truncated
+     */
+    public MacAddress getDestinationMACAddress() {
+        if (dstMac == null && length >= ETH_HEADER_LEN) {
+            dstMac = MacAddress.of(getMacLong(offset));
+        }
+        return dstMac;
+    }
+
+    /**
+     * @return the source MAC, or null if the frame is truncated
+     */
+    public MacAddress getSourceMACAddress() {
+        if (srcMac == null && length >= ETH_HEADER_LEN) {
+            srcMac = MacAddress.of(getMacLong(offset + 6));
+        }
+        return srcMac;
+    }
+
+    /**
+     * @return true if the destination MAC is the broadcast address
+     */
+    public boolean isBroadcast() {
+        return length >= ETH_HEADER_LEN && getMacLong(offset) == MacAddress.BROADCAST.getLong();
+    }
+
+    /**
+     * @return true if the destination MAC has the group bit set
+     */
+    public boolean isMulticast() {
+        return length >= ETH_HEADER_LEN && !isBroadcast() && (data[offset] & 0x01) != 0;
+    }
+
+    /**
+     * @return the ethertype following any 802.1Q tag, or null if the
+     * frame is truncated
+     */
+    public EthType getEtherType() {
+        int type = getEtherTypeValue();
+        return type < 0 ? null : EthType.of(type);
+    }
+
+    /**
+     * Primitive variant of {@link #getEtherType()} that does not allocate.
+     * @return the ethertype as an unsigned 16 bit value, or -1 if the
+     * frame is truncated
+     */
+    public int getEtherTypeValue() {
+        decodeL2();
+        return etherType < 0 ? -1 : etherType;
+    }
+
+    /**
+     * @return the 802.1Q VLAN ID, or {@link Ethernet#VLAN_UNTAGGED}
+     */
+    public short getVlanID() {
+        decodeL2();
+        return (short) (vlanTci & 0x0fff);
+    }
+
+    /**
+     * @return the VLAN ID as a VlanVid, untagged frames give VlanVid.ZERO
+     */
+    public VlanVid getVlanVid() {
+        return VlanVid.ofVlan(getVlanID());
+    }
+
+    /**
+     * @return the 802.1Q priority code point, or 0 if untagged
+     */
+    public byte getPriorityCode() {
+        decodeL2();
+        return (byte) ((vlanTci >> 13) & 0x07);
+    }
+
+    // ********
+    // Layer 3
+    // ********
+
+    public boolean isIPv4() {
+        return getEtherTypeValue() == (Ethernet.TYPE_IPv4 & 0xffff) && decodeL3() != ABSENT;
+    }
+
+    public boolean isIPv6() {
+        return getEtherTypeValue() == (Ethernet.TYPE_IPv6 & 0xffff) && decodeL3() != ABSENT;
+    }
+
+    public boolean isARP() {
+        return getEtherTypeValue() == (Ethernet.TYPE_ARP & 0xffff);
+    }
+
+    public boolean isLLDP() {
+        return getEtherTypeValue() == (Ethernet.TYPE_LLDP & 0xffff);
+    }
+
+    /**
+     * @return the IP protocol of an IPv4 packet or the next header of an
+     * IPv6 packet, or null if the frame is not IP
+     */
+    public IpProtocol getIpProtocol() {
+        int proto = getIpProtocolValue();
+        return proto < 0 ? null : IpProtocol.of((short) proto);
+    }
+
+    /**
+     * Primitive variant of {@link #getIpProtocol()} that does not allocate.
+     * @return the IP protocol number, or -1 if the frame is not IP
+     */
+    public int getIpProtocolValue() {
+        if (ipProtocol == UNKNOWN) {
+            int l3 = decodeL3();
+            if (l3 == ABSENT) {
+                ipProtocol = ABSENT;
+            } else if (isIPv4()) {
+                ipProtocol = data[l3 + 9] & 0xff;
+            } else {
+                ipProtocol = data[l3 + 6] & 0xff;
+            }
+        }
+        return ipProtocol < 0 ? -1 : ipProtocol;
+    }
+
+    public IPv4Address getSourceIPv4Address() {
+        if (srcIpv4 == null && isIPv4()) {
+            srcIpv4 = IPv4Address.of(getInt(ipOffset + 12));
+        }
+        return srcIpv4;
+    }
+
+    public IPv4Address getDestinationIPv4Address() {
+        if (dstIpv4 == null && isIPv4()) {
+            dstIpv4 = IPv4Address.of(getInt(ipOffset + 16));
+        }
+        return dstIpv4;
+    }
+
+    public IPv6Address getSourceIPv6Address() {
+        if (srcIpv6 == null && isIPv6()) {
+            srcIpv6 = IPv6Address.of(getLong(ipOffset + 8), getLong(ipOffset + 16));
+        }
+        return srcIpv6;
+    }
+
+    public IPv6Address getDestinationIPv6Address() {
+        if (dstIpv6 == null && isIPv6()) {
+            dstIpv6 = IPv6Address.of(getLong(ipOffset + 24), getLong(ipOffset + 32));
+        }
+        return dstIpv6;
+    }
+
+    /**
+     * @return true if this is an IPv4 packet that is a non-initial fragment
+     * or has more fragments following, so no transport header can be read
+     */
+    public boolean isIPv4Fragment() {
+        if (!isIPv4()) {
+            return false;
+        }
+        int flagsAndOffset = getShort(ipOffset + 6);
+        int flags = (flagsAndOffset >> IPv4.IPV4_FLAGS_SHIFT) & IPv4.IPV4_FLAGS_MASK;
+        int fragOffset = flagsAndOffset & IPv4.IPV4_OFFSET_MASK;
+        return (flags & IPv4.IPV4_FLAGS_DONTFRAG) == 0
+                && ((flags & IPv4.IPV4_FLAGS_MOREFRAG) != 0 || fragOffset != 0);
+    }
+
+    // ********
+    // Layer 4
+    // ********
+
+    /**
+     * @return the TCP/UDP/SCTP source port, or null if there is no
+     * such transport header
+     */
+    public TransportPort getSourcePort() {
+        int l4 = decodeL4();
+        return l4 == ABSENT ? null : TransportPort.of(getShort(l4));
+    }
+
+    /**
+     * @return the TCP/UDP/SCTP destination port, or null if there is no
+     * such transport header
+     */
+    public TransportPort getDestinationPort() {
+        int l4 = decodeL4();
+        return l4 == ABSENT ? null : TransportPort.of(getShort(l4 + 2));
+    }
+
+    /**
+     * Primitive variant of {@link #getSourcePort()} that does not allocate.
+     * @return the source port, or -1 if there is no transport header
+     */
+    public int getSourcePortValue() {
+        int l4 = decodeL4();
+        return l4 == ABSENT ? -1 : getShort(l4);
+    }
+
+    /**
+     * Primitive variant of {@link #getDestinationPort()} that does not allocate.
+     * @return the destination port, or -1 if there is no transport header
+     */
+    public int getDestinationPortValue() {
+        int l4 = decodeL4();
+        return l4 == ABSENT ? -1 : getShort(l4 + 2);
+    }
+
+    /**
+     * Fully deserialize the frame into an {@link Ethernet} object tree. The
+     * result is cached, so repeated calls (e.g. from several listeners) pay
+     * the decode cost only once.
+     * @return the deserialized packet
+     */
+    public Ethernet getEthernet() {
+        if (eth == null) {
+            Ethernet e = new Ethernet();
+            e.deserialize(data, offset, length);
+            eth = e;
+        }
+        return eth;
+    }
+
+    /**
+     * Seed the cached {@link Ethernet} when the caller has already decoded
+     * the same frame, so that {@link #getEthernet()} does not decode twice.
+     * @param eth the already deserialized frame
+     * @return this
+     */
+    public PacketView setEthernet(Ethernet eth) {
+        this.eth = eth;
+        return this;
+    }
+
+    // ********
+    // Decoding
+    // ********
+
+    private void decodeL2() {
+        if (etherType != UNKNOWN) {
+            return;
+        }
+        if (length < ETH_HEADER_LEN) {
+            etherType = ABSENT;
+            l3Offset = ABSENT;
+            return;
+        }
+        int type = getShort(offset + 12);
+        int l3 = offset + ETH_HEADER_LEN;
+        if (type == (EthType.VLAN_FRAME.getValue() & 0xffff)) {
+            if (length < ETH_HEADER_LEN + VLAN_TAG_LEN) {
+                etherType = ABSENT;
+                l3Offset = ABSENT;
+                return;
+            }
+            vlanTci = (short) getShort(offset + 14);
+            type = getShort(offset + 16);
+            l3 += VLAN_TAG_LEN;
+        }
+        etherType = type;
+        l3Offset = l3;
+    }
+
+    private int decodeL3() {
+        if (ipOffset != UNKNOWN) {
+            return ipOffset;
+        }
+        decodeL2();
+        int end = offset + length;
+        if (l3Offset == ABSENT) {
+            ipOffset = ABSENT;
+        } else if (etherType == (Ethernet.TYPE_IPv4 & 0xffff)) {
+            if (l3Offset + IPV4_MIN_HEADER_LEN > end || ((data[l3Offset] >> 4) & 0xf) != 4) {
+                ipOffset = ABSENT;
+                l4Offset = ABSENT;
+            } else {
+                ipOffset = l3Offset;
+                l4Offset = l3Offset + (data[l3Offset] & 0xf) * 4;
+            }
+        } else if (etherType == (Ethernet.TYPE_IPv6 & 0xffff)) {
+            if (l3Offset + IPV6_HEADER_LEN > end || ((data[l3Offset] >> 4) & 0xf) != 6) {
+                ipOffset = ABSENT;
+                l4Offset = ABSENT;
+            } else {
+                ipOffset = l3Offset;
+                l4Offset = l3Offset + IPV6_HEADER_LEN;
+            }
+        } else {
+            ipOffset = ABSENT;
+            l4Offset = ABSENT;
+        }
+        return ipOffset;
+    }
+
+    private int decodeL4() {
+        if (decodeL3() == ABSENT) {
+            return ABSENT;
+        }
+        int proto = getIpProtocolValue();
+        if (proto != IpProtocol.TCP.getIpProtocolNumber()
+                && proto != IpProtocol.UDP.getIpProtocolNumber()
+                && proto != IpProtocol.SCTP.getIpProtocolNumber()) {
+            return ABSENT;
+        }
+        if (isIPv4Fragment() || l4Offset + 4 > offset + length) {
+            return ABSENT;
+        }
+        return l4Offset;
+    }
+
+    private int getShort(int i) {
+        return ((data[i] & 0xff) << 8) | (data[i + 1] & 0xff);
+    }
+
+    private int getInt(int i) {
+        return ((data[i] & 0xff) << 24) | ((data[i + 1] & 0xff) << 16)
+                | ((data[i + 2] & 0xff) << 8) | (data[i + 3] & 0xff);
+    }
+
+    private long getLong(int i) {
+        return ((long) getInt(i) << 32) | (getInt(i + 4) & 0xffffffffL);
+    }
+
+    private long getMacLong(int i) {
+        return ((long) getShort(i) << 32) | (getInt(i + 2) & 0xffffffffL);
+    }
+
+    @Override
+    public String toString() {
+        return "PacketView [src=" + getSourceMACAddress()
+                + ", dst=" + getDestinationMACAddress()
+                + ", ethType=" + getEtherType()
+                + ", vlan=" + getVlanID()
+                + ", length=" + length + "]";
+    }
+}
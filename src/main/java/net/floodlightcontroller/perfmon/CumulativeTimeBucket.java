@@ -17,9 +17,11 @@
 package net.floodlightcontroller.perfmon;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
@@ -27,7 +29,17 @@ import net.floodlightcontroller.core.IOFMessageListener;
 
 @JsonSerialize(using=CumulativeTimeBucketJSONSerializer.class)
 public class CumulativeTimeBucket {
+    /*
+     * Latency histograms keep 30 intervals of 10s, the same 5 minutes of
+     * history the buckets were meant to hold, and report these windows.
+     */
+    private static final int LATENCY_INTERVAL_SECONDS = 10;
+    private static final int LATENCY_INTERVAL_COUNT = 30;
+    private static final String[] LATENCY_WINDOW_NAMES = { "10s", "1m", "5m" };
+    private static final int[] LATENCY_WINDOW_SECONDS = { 10, 60, 300 };
+
     private long startTime_ns; // First pkt time-stamp in this bucket
+    private final LatencyHistogram latency = newLatencyHistogram(); // whole listener chain
     private Map<Integer, OneComponentTime> compStats;
     private long totalPktCnt;
     private long totalProcTimeNs; // total processing time for one pkt in
@@ -69,6 +81,25 @@ public class CumulativeTimeBucket {
         return compStats.values();
     }
 
+    /**
+     * @return latency percentiles of the whole listener chain, by window
+     */
+    public Map<String, LatencySnapshot> getLatency() {
+        return getLatencySnapshots(latency);
+    }
+
+    static LatencyHistogram newLatencyHistogram() {
+        return new LatencyHistogram(LATENCY_INTERVAL_SECONDS, LATENCY_INTERVAL_COUNT, TimeUnit.SECONDS);
+    }
+
+    static Map<String, LatencySnapshot> getLatencySnapshots(LatencyHistogram h) {
+        Map<String, LatencySnapshot> m = new LinkedHashMap<String, LatencySnapshot>();
+        for (int i = 0; i < LATENCY_WINDOW_NAMES.length; i++) {
+            m.put(LATENCY_WINDOW_NAMES[i], h.getSnapshot(LATENCY_WINDOW_SECONDS[i], TimeUnit.SECONDS));
+        }
+        return m;
+    }
+
     public CumulativeTimeBucket() {
         compStats = new ConcurrentHashMap<>();
         startTime_ns = System.nanoTime();
@@ -97,6 +128,7 @@ public class CumulativeTimeBucket {
         maxTotalProcTimeNs = Long.MIN_VALUE;
         minTotalProcTimeNs = Long.MAX_VALUE;
         sigmaTotalProcTimeNs = 0;
+        latency.reset();
         for (OneComponentTime oct : compStats.values()) {
             oct.resetAllCounters();
         }
@@ -121,6 +153,7 @@ public class CumulativeTimeBucket {
     }
     
     public void updatePerPacketCounters(long procTimeNs) {
+        latency.record(procTimeNs);
         totalPktCnt++;
         totalProcTimeNs += procTimeNs;
         avgTotalProcTimeNs = totalProcTimeNs / totalPktCnt;
@@ -45,6 +45,7 @@ public class CumulativeTimeBucketJSONSerializer
        jGen.writeNumberField("min", ctb.getMinTotalProcTimeNs());
        jGen.writeNumberField("max", ctb.getMaxTotalProcTimeNs());
        jGen.writeNumberField("std-dev", ctb.getTotalSigmaProcTimeNs());
+       serializer.defaultSerializeField("latency", ctb.getLatency(), jGen);
        jGen.writeArrayFieldStart("modules");
        for (OneComponentTime oct : ctb.getModules()) {
            serializer.defaultSerializeValue(oct, jGen);
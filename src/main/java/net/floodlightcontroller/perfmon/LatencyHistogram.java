@@ -0,0 +1,195 @@
+package net.floodlightcontroller.perfmon;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free latency histogram over a rolling time window.
+ *
+ * Values are counted in log-linear buckets: each power of two is split
+ * into 8 linear sub-buckets, so a reported percentile is at most 12.5%
+ * above the true value. Values below 16ns are counted exactly and values
+ * above ~18 minutes are clamped.
+ *
+ * Time is split into fixed intervals kept in a ring. A value is recorded
+ * into the interval for the current time; an interval is cleared the
+ * first time it is reused. Snapshots merge the intervals that fall in the
+ * requested window. Recording is a few atomic increments and never
+ * blocks. A value recorded by one thread while another clears a reused
+ * interval may be lost, which is fine for monitoring.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_MAGNITUDE = 40;
+    private static final long MAX_VALUE = (1L << MAX_MAGNITUDE) - 1;
+    static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BITS + 1) * SUB_COUNT;
+
+    private final long intervalNs;
+    private final Interval[] intervals;
+
+    private static final class Interval {
+        private final AtomicLong epoch = new AtomicLong(Long.MIN_VALUE);
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        private void clear() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts.set(i, 0);
+            }
+            sum.set(0);
+            max.set(0);
+        }
+    }
+
+    /**
+     * @param interval length of one interval
+     * @param intervalCount number of intervals kept; the longest window
+     * that can be queried is interval * intervalCount
+     * @param unit unit of interval
+     */
+    public LatencyHistogram(long interval, int intervalCount, TimeUnit unit) {
+        if (interval <= 0 || intervalCount <= 0) {
+            throw new IllegalArgumentException("interval and intervalCount must be > 0");
+        }
+        this.intervalNs = unit.toNanos(interval);
+        this.intervals = new Interval[intervalCount];
+        for (int i = 0; i < intervalCount; i++) {
+            intervals[i] = new Interval();
+        }
+    }
+
+    static int bucketIndex(long value) {
+        if (value < 2 * SUB_COUNT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        return (magnitude - SUB_BITS + 1) * SUB_COUNT
+                + (int) (value >>> (magnitude - SUB_BITS)) - SUB_COUNT;
+    }
+
+    /**
+     * @return the smallest value counted in the given bucket
+     */
+    static long bucketLowerBound(int index) {
+        if (index < 2 * SUB_COUNT) {
+            return index;
+        }
+        int magnitude = index / SUB_COUNT + SUB_BITS - 1;
+        long sub = index % SUB_COUNT + SUB_COUNT;
+        return sub << (magnitude - SUB_BITS);
+    }
+
+    /**
+     * @return the largest value counted in the given bucket
+     */
+    static long bucketUpperBound(int index) {
+        return index + 1 < BUCKET_COUNT ? bucketLowerBound(index + 1) - 1 : MAX_VALUE;
+    }
+
+    /**
+     * Record a latency.
+     * @param valueNs the latency in nanoseconds
+     */
+    public void record(long valueNs) {
+        record(valueNs, System.nanoTime());
+    }
+
+    void record(long valueNs, long nowNs) {
+        if (valueNs < 0) {
+            valueNs = 0;
+        } else if (valueNs > MAX_VALUE) {
+            valueNs = MAX_VALUE;
+        }
+        long epoch = Math.floorDiv(nowNs, intervalNs);
+        Interval in = intervals[(int) Math.floorMod(epoch, (long) intervals.length)];
+        long e = in.epoch.get();
+        if (e != epoch) {
+            if (e > epoch) {
+                return; /* too late, the interval has already been reused */
+            }
+            if (in.epoch.compareAndSet(e, epoch)) {
+                in.clear();
+            }
+        }
+        in.counts.incrementAndGet(bucketIndex(valueNs));
+        in.sum.addAndGet(valueNs);
+        long max;
+        while ((max = in.max.get()) < valueNs && !in.max.compareAndSet(max, valueNs)) { }
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public void reset() {
+        for (Interval in : intervals) {
+            in.epoch.set(Long.MIN_VALUE);
+            in.clear();
+        }
+    }
+
+    /**
+     * @return the longest window a snapshot can cover, in nanoseconds
+     */
+    public long getMaxWindowNs() {
+        return intervalNs * intervals.length;
+    }
+
+    /**
+     * Summarize the latencies recorded over the most recent window. The
+     * window is rounded up to whole intervals and includes the current,
+     * partial one.
+     * @param window length of the window; capped at {@link #getMaxWindowNs()}
+     * @param unit unit of window
+     */
+    public LatencySnapshot getSnapshot(long window, TimeUnit unit) {
+        return getSnapshot(window, unit, System.nanoTime());
+    }
+
+    LatencySnapshot getSnapshot(long window, TimeUnit unit, long nowNs) {
+        long windowNs = Math.min(unit.toNanos(window), getMaxWindowNs());
+        long count = Math.max(1, (windowNs + intervalNs - 1) / intervalNs);
+        long newest = Math.floorDiv(nowNs, intervalNs);
+        long oldest = newest - count + 1;
+
+        long[] merged = new long[BUCKET_COUNT];
+        long total = 0;
+        long sum = 0;
+        long max = 0;
+        for (Interval in : intervals) {
+            long e = in.epoch.get();
+            if (e < oldest || e > newest) {
+                continue;
+            }
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                long c = in.counts.get(i);
+                merged[i] += c;
+                total += c;
+            }
+            sum += in.sum.get();
+            max = Math.max(max, in.max.get());
+        }
+        if (total == 0) {
+            return LatencySnapshot.EMPTY;
+        }
+        return new LatencySnapshot(total, sum / total,
+                percentile(merged, total, 0.5, max),
+                percentile(merged, total, 0.99, max),
+                percentile(merged, total, 0.999, max),
+                max);
+    }
+
+    private static long percentile(long[] counts, long total, double q, long max) {
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+}
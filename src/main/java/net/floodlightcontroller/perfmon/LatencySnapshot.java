@@ -0,0 +1,63 @@
+package net.floodlightcontroller.perfmon;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Latency percentiles over one window of a {@link LatencyHistogram}.
+ * All times are in nanoseconds.
+ */
+public class LatencySnapshot {
+    public static final LatencySnapshot EMPTY = new LatencySnapshot(0, 0, 0, 0, 0, 0);
+
+    private final long count;
+    private final long mean;
+    private final long p50;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    public LatencySnapshot(long count, long mean, long p50, long p99, long p999, long max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    @JsonProperty("count")
+    public long getCount() {
+        return count;
+    }
+
+    @JsonProperty("mean")
+    public long getMean() {
+        return mean;
+    }
+
+    @JsonProperty("p50")
+    public long getP50() {
+        return p50;
+    }
+
+    @JsonProperty("p99")
+    public long getP99() {
+        return p99;
+    }
+
+    @JsonProperty("p999")
+    public long getP999() {
+        return p999;
+    }
+
+    @JsonProperty("max")
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencySnapshot [count=" + count + ", mean=" + mean + ", p50=" + p50
+                + ", p99=" + p99 + ", p999=" + p999 + ", max=" + max + "]";
+    }
+}
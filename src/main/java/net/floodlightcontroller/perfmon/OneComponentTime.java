@@ -16,6 +16,8 @@
 
 package net.floodlightcontroller.perfmon;
 
+import java.util.Map;
+
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import net.floodlightcontroller.core.IOFMessageListener;
@@ -35,6 +37,7 @@ public class OneComponentTime {
     private long minProcTimeNs;
     private long avgProcTimeNs;
     private long sigmaProcTimeNs;  // std. deviation
+    private final LatencyHistogram latency = CumulativeTimeBucket.newLatencyHistogram();
 
     public OneComponentTime(IOFMessageListener module) {
         compId = module.hashCode();
@@ -50,6 +53,7 @@ public class OneComponentTime {
         sumSquaredProcTimeNs2 = 0;
         avgProcTimeNs = 0;
         sigmaProcTimeNs = 0;
+        latency.reset();
     }
     
     @JsonProperty("module-name")
@@ -92,6 +96,11 @@ public class OneComponentTime {
         return sumSquaredProcTimeNs2;
     }
 
+    @JsonProperty("latency")
+    public Map<String, LatencySnapshot> getLatency() {
+        return CumulativeTimeBucket.getLatencySnapshots(latency);
+    }
+
     // Methods used to update the counters
     
     private void increasePktCount() {
@@ -130,6 +139,7 @@ public class OneComponentTime {
     }
     
     public void updatePerPacketCounters(long procTimeNs) {
+        latency.record(procTimeNs);
         increasePktCount();
         updateTotalProcessingTime(procTimeNs);
         calculateMinProcTime(procTimeNs);
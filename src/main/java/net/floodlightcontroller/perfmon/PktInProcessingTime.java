@@ -128,19 +128,28 @@ public class PktInProcessingTime
         return ctb;
     }
     
-    private long startTimePktNs;
-    private long startTimeCompNs;
+    /*
+     * Packet-ins are dispatched from several threads, so start times are
+     * kept per thread: [0] is the packet start, [1] the listener start.
+     */
+    private final ThreadLocal<long[]> startTimesNs = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[2];
+        }
+    };
+
     @Override
     public void recordStartTimeComp(IOFMessageListener listener) {
         if (isEnabled()) {
-            startTimeCompNs = System.nanoTime();
+            startTimesNs.get()[1] = System.nanoTime();
         }
     }
     
     @Override
     public void recordEndTimeComp(IOFMessageListener listener) {
         if (isEnabled()) {
-            long procTime = System.nanoTime() - startTimeCompNs;
+            long procTime = System.nanoTime() - startTimesNs.get()[1];
             ctb.updateOneComponent(listener, procTime);
         }
     }
@@ -148,14 +157,14 @@ public class PktInProcessingTime
     @Override
     public void recordStartTimePktIn() {
         if (isEnabled()) {
-            startTimePktNs = System.nanoTime();
+            startTimesNs.get()[0] = System.nanoTime();
         }
     }
     
     @Override
     public void recordEndTimePktIn(IOFSwitch sw, OFMessage m, FloodlightContext cntx) {
         if (isEnabled()) {
-            long procTimeNs = System.nanoTime() - startTimePktNs;
+            long procTimeNs = System.nanoTime() - startTimesNs.get()[0];
             ctb.updatePerPacketCounters(procTimeNs);
             
             if (ptWarningThresholdInNano > 0 && 
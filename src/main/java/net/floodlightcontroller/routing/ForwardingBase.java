@@ -20,6 +20,7 @@ package net.floodlightcontroller.routing;
 import java.util.*;
 
 import net.floodlightcontroller.core.FloodlightContext;
+import net.floodlightcontroller.core.FlowModBatchResult;
 import net.floodlightcontroller.core.IFloodlightProviderService;
 import net.floodlightcontroller.core.IOFMessageListener;
 import net.floodlightcontroller.core.IOFSwitch;
@@ -45,6 +46,10 @@ import org.projectfloodlight.openflow.types.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
 
 /**
  * Abstract base class for implementing a forwarding module.  Forwarding is
@@ -80,6 +85,9 @@ public abstract class ForwardingBase implements IOFMessageListener {
 
     protected static boolean REMOVE_FLOWS_ON_LINK_OR_PORT_DOWN = true;
 
+    /* Write the flow-mods of a route as one batch per switch */
+    protected static boolean BATCH_ROUTE_FLOWMODS = false;
+
     protected IFloodlightProviderService floodlightProviderService;
     protected IOFSwitchService switchService;
     protected IDeviceService deviceManagerService;
@@ -131,13 +139,13 @@ public abstract class ForwardingBase implements IOFMessageListener {
 
     @Override
     public Command receive(IOFSwitch sw, OFMessage msg, FloodlightContext cntx) {
-        Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD);
+        Ethernet eth = IFloodlightProviderService.bcStore.get(cntx, IFloodlightProviderService.CONTEXT_PI_PAYLOAD_KEY);
 
         switch (msg.getType()) {
         case PACKET_IN:
             IRoutingDecision decision = null;
             if (cntx != null) {
-                decision = RoutingDecision.rtStore.get(cntx, IRoutingDecision.CONTEXT_DECISION);
+                decision = RoutingDecision.rtStore.get(cntx, IRoutingDecision.CONTEXT_DECISION_KEY);
             }
             return this.processPacketInMessage(sw, (OFPacketIn) msg, decision, cntx);
         default:
@@ -148,6 +156,11 @@ public abstract class ForwardingBase implements IOFMessageListener {
 
     /**
      * Push routes from back to front
+     *
+     * With BATCH_ROUTE_FLOWMODS the flow-mods go out as one batch per switch
+     * once the whole route is built, and the packet out only once every
+     * switch of the route has confirmed its batch.
+     *
      * @param route Route to push
      * @param match OpenFlow fields to match on
      * @param srcSwPort Source switch port for the first hop
@@ -165,6 +178,10 @@ public abstract class ForwardingBase implements IOFMessageListener {
             boolean requestFlowRemovedNotification, OFFlowModCommand flowModCommand, boolean packetOutSent) {
 
         List<NodePortTuple> switchPortList = route.getPath();
+        Map<DatapathId, List<OFMessage>> batches = BATCH_ROUTE_FLOWMODS
+                ? new LinkedHashMap<DatapathId, List<OFMessage>>() : null;
+        IOFSwitch packetOutSw = null;
+        OFPort packetOutPort = null;
 
         for (int indx = switchPortList.size() - 1; indx > 0; indx -= 2) {
             // indx and indx-1 will always have the same switch DPID.
@@ -252,6 +269,16 @@ public abstract class ForwardingBase implements IOFMessageListener {
                         fmb.getMatch(), 
                         null, // TODO how to determine output VLAN for lookup of L2 interface group
                         outPort);
+            } else if (batches != null) {
+                OFFlowMod fm = fmb.build();
+                if (!messageDamper.dampen(sw, fm)) {
+                    List<OFMessage> batch = batches.get(sw.getId());
+                    if (batch == null) {
+                        batch = new ArrayList<>();
+                        batches.put(sw.getId(), batch);
+                    }
+                    batch.add(fm);
+                }
             } else {
                 messageDamper.write(sw, fmb.build());
             }
@@ -260,16 +287,57 @@ public abstract class ForwardingBase implements IOFMessageListener {
             if (!packetOutSent && sw.getId().equals(pinSwitch) &&
                     !fmb.getCommand().equals(OFFlowModCommand.DELETE) &&
                     !fmb.getCommand().equals(OFFlowModCommand.DELETE_STRICT)) {
-                /* Use the buffered packet at the switch, if there's one stored */
-                log.debug("Push packet out the first hop switch");
-                pushPacket(sw, pi, outPort, true, cntx);
+                if (batches != null) {
+                    packetOutSw = sw;
+                    packetOutPort = outPort;
+                } else {
+                    /* Use the buffered packet at the switch, if there's one stored */
+                    log.debug("Push packet out the first hop switch");
+                    pushPacket(sw, pi, outPort, true, cntx);
+                }
             }
 
         }
 
+        if (batches != null) {
+            writeRouteBatches(batches, pi, packetOutSw, packetOutPort);
+        }
         return true;
     }
 
+    /**
+     * Write the batches of a route, then push the packet out the first hop
+     * switch, if given, once all of them are done, so that the packet does
+     * not overtake its flows. Failed batches are logged by the switch
+     * service; the packet goes out regardless, as it does without batches.
+     *
+     * The packet-in's context is not passed on: it goes back to the
+     * controller's pool once the packet-in has been handled, which is
+     * likely before the batches are done.
+     */
+    private void writeRouteBatches(Map<DatapathId, List<OFMessage>> batches, final OFPacketIn pi,
+            final IOFSwitch packetOutSw, final OFPort packetOutPort) {
+        List<ListenableFuture<FlowModBatchResult>> results = new ArrayList<>(batches.size());
+        for (Map.Entry<DatapathId, List<OFMessage>> e : batches.entrySet()) {
+            results.add(switchService.writeFlowModBatch(e.getKey(), e.getValue()));
+        }
+        if (packetOutSw == null) {
+            return;
+        }
+        Futures.addCallback(Futures.successfulAsList(results), new FutureCallback<List<FlowModBatchResult>>() {
+            @Override
+            public void onSuccess(List<FlowModBatchResult> r) {
+                log.debug("Push packet out the first hop switch");
+                pushPacket(packetOutSw, pi, packetOutPort, true, null);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.warn("Not pushing packet out switch {}: {}", packetOutSw.getId(), t.getMessage());
+            }
+        });
+    }
+
     /**
      * Pushes a packet-out to a switch. The assumption here is that
      * the packet-in was also generated from the same switch. Thus, if the input
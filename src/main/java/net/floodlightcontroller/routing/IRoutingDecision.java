@@ -23,6 +23,7 @@ import org.projectfloodlight.openflow.protocol.match.Match;
 import org.projectfloodlight.openflow.types.U64;
 
 import net.floodlightcontroller.core.FloodlightContext;
+import net.floodlightcontroller.core.FloodlightContextKey;
 import net.floodlightcontroller.core.FloodlightContextStore;
 import net.floodlightcontroller.devicemanager.IDevice;
 import net.floodlightcontroller.devicemanager.SwitchPort;
@@ -50,6 +51,8 @@ public interface IRoutingDecision {
         new FloodlightContextStore<IRoutingDecision>();
     public static final String CONTEXT_DECISION =
             "net.floodlightcontroller.routing.decision";
+    public static final FloodlightContextKey<IRoutingDecision> CONTEXT_DECISION_KEY =
+            FloodlightContextKey.register(CONTEXT_DECISION);
 
     public void addToContext(FloodlightContext cntx);
     public RoutingAction getRoutingAction();
@@ -128,7 +128,7 @@ public class RoutingDecision implements IRoutingDecision {
 
     @Override
     public void addToContext(FloodlightContext cntx) {
-        rtStore.put(cntx, IRoutingDecision.CONTEXT_DECISION, this);
+        rtStore.put(cntx, IRoutingDecision.CONTEXT_DECISION_KEY, this);
     }
     
     public String toString() {
@@ -0,0 +1,34 @@
+package net.floodlightcontroller.shadowtable;
+
+import java.util.List;
+
+import net.floodlightcontroller.core.module.IFloodlightService;
+
+import org.projectfloodlight.openflow.protocol.OFFlowAdd;
+import org.projectfloodlight.openflow.types.DatapathId;
+import org.projectfloodlight.openflow.types.U64;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+public interface IShadowTableService extends IFloodlightService {
+
+	/**
+	 * @return the flows the controller has installed on a switch, as adds;
+	 * empty if none or the switch is unknown
+	 */
+	List<OFFlowAdd> getFlows(DatapathId dpid);
+
+	/**
+	 * @return the flows installed on a switch whose cookie matches the given
+	 * cookie in the bits set in mask
+	 */
+	List<OFFlowAdd> getFlows(DatapathId dpid, U64 cookie, U64 mask);
+
+	/**
+	 * Compare the shadow table of a switch with a flow stats dump of the
+	 * switch, and repair the differences if configured to.
+	 * @return the differences found; fails if the switch is not connected
+	 * as master or the dump fails
+	 */
+	ListenableFuture<ShadowFlowTable.Diff> reconcile(DatapathId dpid);
+}
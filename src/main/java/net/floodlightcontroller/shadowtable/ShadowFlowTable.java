@@ -0,0 +1,523 @@
+package net.floodlightcontroller.shadowtable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.floodlightcontroller.util.FlowModUtils;
+
+import org.projectfloodlight.openflow.protocol.OFFlowAdd;
+import org.projectfloodlight.openflow.protocol.OFFlowMod;
+import org.projectfloodlight.openflow.protocol.OFFlowModCommand;
+import org.projectfloodlight.openflow.protocol.OFFlowRemoved;
+import org.projectfloodlight.openflow.protocol.OFFlowStatsEntry;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.protocol.action.OFAction;
+import org.projectfloodlight.openflow.protocol.action.OFActionGroup;
+import org.projectfloodlight.openflow.protocol.action.OFActionOutput;
+import org.projectfloodlight.openflow.protocol.instruction.OFInstruction;
+import org.projectfloodlight.openflow.protocol.instruction.OFInstructionApplyActions;
+import org.projectfloodlight.openflow.protocol.instruction.OFInstructionWriteActions;
+import org.projectfloodlight.openflow.protocol.match.Match;
+import org.projectfloodlight.openflow.protocol.match.MatchField;
+import org.projectfloodlight.openflow.types.Masked;
+import org.projectfloodlight.openflow.types.OFBufferId;
+import org.projectfloodlight.openflow.types.OFGroup;
+import org.projectfloodlight.openflow.types.OFPort;
+import org.projectfloodlight.openflow.types.OFValueType;
+import org.projectfloodlight.openflow.types.TableId;
+import org.projectfloodlight.openflow.types.U64;
+
+/**
+ * The flows the controller has installed on one switch, as far as it can
+ * tell from the flow mods it sent and the flow removed messages it got.
+ *
+ * Flows are kept by table, priority and match, as the switch keeps them,
+ * and are also indexed by cookie. Flow mods are applied with the OpenFlow
+ * semantics of their command, including non-strict matching and the
+ * cookie, out port and out group filters of modifies and deletes.
+ *
+ * A {@link Diff} compares the table with a flow stats dump of the switch.
+ * Each flow mod applied bumps a version, so flows changed while a dump is
+ * under way are left out of the diff instead of showing up as differences.
+ * One diff of a table may be under way at a time.
+ */
+public class ShadowFlowTable {
+	private static final U64 ALL_COOKIE_BITS = U64.NO_MASK;
+
+	private final Map<FlowKey, Entry> flows = new HashMap<FlowKey, Entry>();
+	private final Map<U64, Set<FlowKey>> byCookie = new HashMap<U64, Set<FlowKey>>();
+	private long version;
+	/* diffs started, to mark the entries a diff has seen on the switch */
+	private long diffs;
+
+	/**
+	 * Where a flow lives on a switch; two flows with the same key cannot
+	 * both be installed. OpenFlow 1.0 has a single table, table 0.
+	 */
+	public static class FlowKey {
+		private final TableId table;
+		private final int priority;
+		private final Match match;
+
+		public FlowKey(TableId table, int priority, Match match) {
+			this.table = table;
+			this.priority = priority;
+			this.match = match;
+		}
+
+		public static FlowKey of(OFFlowMod fm) {
+			return new FlowKey(getTableId(fm.getVersion(), fm), fm.getPriority(), fm.getMatch());
+		}
+
+		public static FlowKey of(OFFlowStatsEntry e) {
+			return new FlowKey(e.getVersion() == OFVersion.OF_10 ? TableId.ZERO : e.getTableId(),
+					e.getPriority(), e.getMatch());
+		}
+
+		public static FlowKey of(OFFlowRemoved fr) {
+			return new FlowKey(fr.getVersion() == OFVersion.OF_10 ? TableId.ZERO : fr.getTableId(),
+					fr.getPriority(), fr.getMatch());
+		}
+
+		public TableId getTable() {
+			return table;
+		}
+
+		public int getPriority() {
+			return priority;
+		}
+
+		public Match getMatch() {
+			return match;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + match.hashCode();
+			result = prime * result + priority;
+			result = prime * result + table.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			FlowKey other = (FlowKey) obj;
+			return priority == other.priority && table.equals(other.table) && match.equals(other.match);
+		}
+
+		@Override
+		public String toString() {
+			return "FlowKey [table=" + table + ", priority=" + priority + ", match=" + match + "]";
+		}
+	}
+
+	private static class Entry {
+		/* as an add, so it can be sent again as it is */
+		private final OFFlowAdd flow;
+		/* table version when the entry was last changed */
+		private final long version;
+		/* the last diff that found the flow on the switch */
+		private long seenBy;
+
+		private Entry(OFFlowAdd flow, long version) {
+			this.flow = flow;
+			this.version = version;
+		}
+	}
+
+	private static TableId getTableId(OFVersion v, OFFlowMod fm) {
+		return v == OFVersion.OF_10 ? TableId.ZERO : fm.getTableId();
+	}
+
+	/**
+	 * Apply a flow mod sent to the switch.
+	 */
+	public synchronized void apply(OFFlowMod fm) {
+		version++;
+		switch (fm.getCommand()) {
+		case ADD:
+			put(FlowKey.of(fm), fm);
+			break;
+		case MODIFY:
+		case MODIFY_STRICT:
+			List<FlowKey> modified = select(fm, fm.getCommand() == OFFlowModCommand.MODIFY_STRICT);
+			for (FlowKey k : modified) {
+				put(k, withActionsOf(flows.get(k).flow, fm));
+			}
+			/* before 1.2, a modify that matches nothing is an add */
+			if (modified.isEmpty() && fm.getVersion().compareTo(OFVersion.OF_12) < 0) {
+				put(FlowKey.of(fm), fm);
+			}
+			break;
+		case DELETE:
+		case DELETE_STRICT:
+			for (FlowKey k : select(fm, fm.getCommand() == OFFlowModCommand.DELETE_STRICT)) {
+				remove(k);
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Apply a flow removed message received from the switch.
+	 */
+	public synchronized void flowRemoved(OFFlowRemoved fr) {
+		FlowKey k = FlowKey.of(fr);
+		Entry e = flows.get(k);
+		if (e != null && e.flow.getCookie().equals(fr.getCookie())) {
+			version++;
+			remove(k);
+		}
+	}
+
+	/**
+	 * Forget all flows, e.g. when the switch's tables are known to be gone.
+	 */
+	public synchronized void clear() {
+		version++;
+		flows.clear();
+		byCookie.clear();
+	}
+
+	public synchronized int size() {
+		return flows.size();
+	}
+
+	/**
+	 * @return the flows, as adds
+	 */
+	public synchronized List<OFFlowAdd> getFlows() {
+		List<OFFlowAdd> l = new ArrayList<OFFlowAdd>(flows.size());
+		for (Entry e : flows.values()) {
+			l.add(e.flow);
+		}
+		return l;
+	}
+
+	/**
+	 * @return the flows whose cookie matches the given cookie in the bits
+	 * set in mask, as adds
+	 */
+	public synchronized List<OFFlowAdd> getFlows(U64 cookie, U64 mask) {
+		List<OFFlowAdd> l = new ArrayList<OFFlowAdd>();
+		for (FlowKey k : getCandidates(cookie, mask)) {
+			OFFlowAdd f = flows.get(k).flow;
+			if (f.getCookie().and(mask).equals(cookie.and(mask))) {
+				l.add(f);
+			}
+		}
+		return l;
+	}
+
+	private Collection<FlowKey> getCandidates(U64 cookie, U64 mask) {
+		if (ALL_COOKIE_BITS.equals(mask)) {
+			Set<FlowKey> keys = byCookie.get(cookie);
+			return keys == null ? Collections.<FlowKey>emptySet() : keys;
+		}
+		return flows.keySet();
+	}
+
+	private void put(FlowKey k, OFFlowMod fm) {
+		remove(k);
+		/* a buffered packet is only released once */
+		OFFlowAdd add = FlowModUtils.toFlowAdd(fm).createBuilder()
+				.setBufferId(OFBufferId.NO_BUFFER)
+				.build();
+		flows.put(k, new Entry(add, version));
+		Set<FlowKey> keys = byCookie.get(add.getCookie());
+		if (keys == null) {
+			keys = new HashSet<FlowKey>();
+			byCookie.put(add.getCookie(), keys);
+		}
+		keys.add(k);
+	}
+
+	private void remove(FlowKey k) {
+		Entry e = flows.remove(k);
+		if (e != null) {
+			Set<FlowKey> keys = byCookie.get(e.flow.getCookie());
+			keys.remove(k);
+			if (keys.isEmpty()) {
+				byCookie.remove(e.flow.getCookie());
+			}
+		}
+	}
+
+	/**
+	 * The actions of a modify replace those of the flow; everything else,
+	 * the cookie included, stays.
+	 */
+	private static OFFlowAdd withActionsOf(OFFlowAdd flow, OFFlowMod fm) {
+		if (fm.getVersion() == OFVersion.OF_10) {
+			return flow.createBuilder().setActions(fm.getActions()).build();
+		}
+		return flow.createBuilder().setInstructions(fm.getInstructions()).build();
+	}
+
+	/**
+	 * The flows a modify or delete applies to.
+	 */
+	private List<FlowKey> select(OFFlowMod fm, boolean strict) {
+		OFVersion v = fm.getVersion();
+		List<FlowKey> keys = new ArrayList<FlowKey>();
+		if (strict) {
+			FlowKey k = FlowKey.of(fm);
+			Entry e = flows.get(k);
+			if (e != null && filtersMatch(fm, e.flow)) {
+				keys.add(k);
+			}
+			return keys;
+		}
+
+		TableId table = getTableId(v, fm);
+		U64 cookieMask = v == OFVersion.OF_10 ? U64.ZERO : fm.getCookieMask();
+		for (FlowKey k : getCandidates(fm.getCookie(), cookieMask)) {
+			if ((table.equals(TableId.ALL) || table.equals(k.table))
+					&& covers(fm.getMatch(), k.match)
+					&& filtersMatch(fm, flows.get(k).flow)) {
+				keys.add(k);
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Whether the cookie, and for deletes the out port and group, of a
+	 * modify or delete select a flow.
+	 */
+	private static boolean filtersMatch(OFFlowMod fm, OFFlowAdd flow) {
+		OFVersion v = fm.getVersion();
+		if (v != OFVersion.OF_10) {
+			U64 mask = fm.getCookieMask();
+			if (!flow.getCookie().and(mask).equals(fm.getCookie().and(mask))) {
+				return false;
+			}
+		}
+		switch (fm.getCommand()) {
+		case DELETE:
+		case DELETE_STRICT:
+			OFPort port = fm.getOutPort();
+			OFGroup group = v == OFVersion.OF_10 ? OFGroup.ANY : fm.getOutGroup();
+			return outputsTo(flow, port, group);
+		default:
+			return true;
+		}
+	}
+
+	private static boolean outputsTo(OFFlowAdd flow, OFPort port, OFGroup group) {
+		boolean anyPort = port == null || port.equals(OFPort.ANY);
+		boolean anyGroup = group == null || group.equals(OFGroup.ANY);
+		if (anyPort && anyGroup) {
+			return true;
+		}
+		List<OFAction> actions = new ArrayList<OFAction>();
+		if (flow.getVersion() == OFVersion.OF_10) {
+			actions.addAll(flow.getActions());
+		} else {
+			for (OFInstruction i : flow.getInstructions()) {
+				if (i instanceof OFInstructionApplyActions) {
+					actions.addAll(((OFInstructionApplyActions) i).getActions());
+				} else if (i instanceof OFInstructionWriteActions) {
+					actions.addAll(((OFInstructionWriteActions) i).getActions());
+				}
+			}
+		}
+		boolean portFound = anyPort;
+		boolean groupFound = anyGroup;
+		for (OFAction a : actions) {
+			if (a instanceof OFActionOutput && ((OFActionOutput) a).getPort().equals(port)) {
+				portFound = true;
+			} else if (a instanceof OFActionGroup && ((OFActionGroup) a).getGroup().equals(group)) {
+				groupFound = true;
+			}
+		}
+		return portFound && groupFound;
+	}
+
+	/**
+	 * Whether every packet matched by specific is also matched by general,
+	 * which is how non-strict modifies and deletes select flows.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	static boolean covers(Match general, Match specific) {
+		for (MatchField f : general.getMatchFields()) {
+			if (general.isFullyWildcarded(f)) {
+				continue;
+			}
+			if (specific.isFullyWildcarded(f)) {
+				return false;
+			}
+			OFValueType value = specific.isExact(f) ? specific.get(f) : specific.getMasked(f).getValue();
+			OFValueType mask = specific.isExact(f) ? null : (OFValueType) specific.getMasked(f).getMask();
+			if (general.isExact(f)) {
+				if (mask != null || !general.get(f).equals(value)) {
+					return false;
+				}
+			} else {
+				Masked m = general.getMasked(f);
+				/* specific must not wildcard any bit that general matches on */
+				if (mask != null && !mask.applyMask(m.getMask()).equals(m.getMask())) {
+					return false;
+				}
+				if (!value.applyMask(m.getMask()).equals(((OFValueType) m.getValue()).applyMask(m.getMask()))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Start comparing the table with a flow stats dump of the switch. Only
+	 * flows not changed since this call are compared, so this should be
+	 * called before the stats request is sent.
+	 * @param maxUnknown how many of the flows on the switch that are not
+	 * in the table to keep; all of them are counted
+	 */
+	public Diff startDiff(int maxUnknown) {
+		synchronized (this) {
+			return new Diff(version, ++diffs, maxUnknown);
+		}
+	}
+
+	/**
+	 * Differences between the table and the switch. Feed it the entries of
+	 * a flow stats dump, part by part, then call {@link #finish()}.
+	 */
+	public class Diff {
+		private final long startVersion;
+		private final long id;
+		private final int maxUnknown;
+		private final List<OFFlowAdd> missing = new ArrayList<OFFlowAdd>();
+		private final List<OFFlowAdd> changed = new ArrayList<OFFlowAdd>();
+		private final List<OFFlowStatsEntry> unknown = new ArrayList<OFFlowStatsEntry>();
+		private int unknownCount;
+		private int expired;
+		private boolean finished;
+
+		private Diff(long startVersion, long id, int maxUnknown) {
+			this.startVersion = startVersion;
+			this.id = id;
+			this.maxUnknown = maxUnknown;
+		}
+
+		/**
+		 * Compare the entries of one part of the dump.
+		 */
+		public void addSwitchEntries(Iterable<OFFlowStatsEntry> entries) {
+			synchronized (ShadowFlowTable.this) {
+				for (OFFlowStatsEntry se : entries) {
+					Entry e = flows.get(FlowKey.of(se));
+					if (e == null) {
+						if (unknownCount++ < maxUnknown) {
+							unknown.add(se);
+						}
+						continue;
+					}
+					/* marked in the entry, so a dump costs no memory per flow */
+					e.seenBy = id;
+					if (e.version <= startVersion && !sameFlow(e.flow, se)) {
+						changed.add(e.flow);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Call once the whole dump has been added. Flows that are not on
+		 * the switch and would have timed out by themselves are dropped
+		 * from the table; the others are missing.
+		 */
+		public void finish() {
+			synchronized (ShadowFlowTable.this) {
+				Iterator<Map.Entry<FlowKey, Entry>> it = flows.entrySet().iterator();
+				while (it.hasNext()) {
+					Map.Entry<FlowKey, Entry> me = it.next();
+					Entry e = me.getValue();
+					if (e.version > startVersion || e.seenBy == id) {
+						continue;
+					}
+					if (e.flow.getIdleTimeout() != 0 || e.flow.getHardTimeout() != 0) {
+						Set<FlowKey> keys = byCookie.get(e.flow.getCookie());
+						keys.remove(me.getKey());
+						if (keys.isEmpty()) {
+							byCookie.remove(e.flow.getCookie());
+						}
+						it.remove();
+						expired++;
+					} else {
+						missing.add(e.flow);
+					}
+				}
+				finished = true;
+			}
+		}
+
+		public boolean isFinished() {
+			return finished;
+		}
+
+		/** Flows in the table that are not on the switch */
+		public List<OFFlowAdd> getMissing() {
+			return missing;
+		}
+
+		/** Flows in the table that are on the switch with other actions or cookie */
+		public List<OFFlowAdd> getChanged() {
+			return changed;
+		}
+
+		/**
+		 * Flows on the switch that are not in the table, at most as many
+		 * as the diff was started to keep
+		 */
+		public List<OFFlowStatsEntry> getUnknown() {
+			return unknown;
+		}
+
+		/** Number of flows on the switch that are not in the table */
+		public int getUnknownCount() {
+			return unknownCount;
+		}
+
+		/** Number of flows dropped from the table as timed out */
+		public int getExpired() {
+			return expired;
+		}
+
+		public boolean isEmpty() {
+			return missing.isEmpty() && changed.isEmpty() && unknownCount == 0;
+		}
+
+		@Override
+		public String toString() {
+			return "Diff [missing=" + missing.size() + ", changed=" + changed.size()
+					+ ", unknown=" + unknownCount + ", expired=" + expired + "]";
+		}
+	}
+
+	private static boolean sameFlow(OFFlowAdd flow, OFFlowStatsEntry se) {
+		if (!flow.getCookie().equals(se.getCookie())) {
+			return false;
+		}
+		if (flow.getVersion() == OFVersion.OF_10) {
+			return flow.getActions().equals(se.getActions());
+		}
+		return flow.getInstructions().equals(se.getInstructions());
+	}
+}
@@ -0,0 +1,438 @@
+package net.floodlightcontroller.shadowtable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import net.floodlightcontroller.core.FloodlightContext;
+import net.floodlightcontroller.core.IFloodlightProviderService;
+import net.floodlightcontroller.core.IOFMessageListener;
+import net.floodlightcontroller.core.IOFStatsReplyListener;
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.IOFSwitchListener;
+import net.floodlightcontroller.core.OFMessagePriority;
+import net.floodlightcontroller.core.PortChangeType;
+import net.floodlightcontroller.core.internal.IOFSwitchService;
+import net.floodlightcontroller.core.module.FloodlightModuleContext;
+import net.floodlightcontroller.core.module.FloodlightModuleException;
+import net.floodlightcontroller.core.module.IFloodlightModule;
+import net.floodlightcontroller.core.module.IFloodlightService;
+import net.floodlightcontroller.debugcounter.IDebugCounter;
+import net.floodlightcontroller.debugcounter.IDebugCounterService;
+import net.floodlightcontroller.debugcounter.IDebugCounterService.MetaData;
+import net.floodlightcontroller.threadpool.IThreadPoolService;
+
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFFlowAdd;
+import org.projectfloodlight.openflow.protocol.OFFlowDeleteStrict;
+import org.projectfloodlight.openflow.protocol.OFFlowMod;
+import org.projectfloodlight.openflow.protocol.OFFlowRemoved;
+import org.projectfloodlight.openflow.protocol.OFFlowStatsEntry;
+import org.projectfloodlight.openflow.protocol.OFFlowStatsReply;
+import org.projectfloodlight.openflow.protocol.OFFlowStatsRequest;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFPortDesc;
+import org.projectfloodlight.openflow.protocol.OFType;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.types.DatapathId;
+import org.projectfloodlight.openflow.types.OFGroup;
+import org.projectfloodlight.openflow.types.OFPort;
+import org.projectfloodlight.openflow.types.TableId;
+import org.projectfloodlight.openflow.types.U64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Keeps a {@link ShadowFlowTable} of each switch, from the flow mods written
+ * to it and the flow removed messages it sends, and reconciles it with the
+ * switch when the switch becomes active and every reconcileIntervalSeconds.
+ *
+ * The module is not in the default module list. Reconciling dumps the
+ * switch's flows and, if repairFlowTables is set (it is not by default),
+ * adds back the flows that are missing or have changed. Flows on the switch
+ * that the controller did not install are only counted, and a few of them
+ * logged, unless deleteUnknownFlows is set as well.
+ *
+ * Tables are kept across disconnects, so that when a switch reconnects,
+ * e.g. after a reboot, only the missing and changed flows are pushed. A
+ * table is dropped once its switch has been gone for
+ * tableRetentionSeconds without reconnecting, so nothing is kept for
+ * switches that are gone for good. Tables are also kept across role
+ * changes, so a transition to master only has to push the differences; to
+ * get that instead of empty tables, turn off OFSwitchManager's
+ * clearTablesOnEachTransitionToMaster, as clearing is itself a flow mod the
+ * shadow table follows.
+ */
+public class ShadowTableManager implements IFloodlightModule, IShadowTableService,
+IOFMessageListener, IOFSwitchListener {
+	private static final Logger log = LoggerFactory.getLogger(ShadowTableManager.class);
+
+	private static final String MODULE_NAME = "shadowtable";
+
+	private static final String INTERVAL_STR = "reconcileIntervalSeconds";
+	private static final String REPAIR_STR = "repairFlowTables";
+	private static final String DELETE_UNKNOWN_STR = "deleteUnknownFlows";
+	private static final String RETENTION_STR = "tableRetentionSeconds";
+
+	/* unknown flows kept from a dump to log, unless they are to be deleted */
+	private static final int UNKNOWN_LOGGED = 10;
+
+	private IFloodlightProviderService floodlightProviderService;
+	private IOFSwitchService switchService;
+	private IThreadPoolService threadPoolService;
+	private IDebugCounterService debugCounterService;
+
+	private int reconcileInterval = 300; /* 0 to only reconcile on activation */
+	private boolean repair = false;
+	private boolean deleteUnknown = false;
+	private int tableRetention = 3600; /* 0 to drop a table as soon as its switch disconnects */
+
+	private final ConcurrentHashMap<DatapathId, ShadowFlowTable> tables = new ConcurrentHashMap<DatapathId, ShadowFlowTable>();
+	/* when switches whose tables are kept disconnected, by System.nanoTime() */
+	private final ConcurrentHashMap<DatapathId, Long> disconnected = new ConcurrentHashMap<DatapathId, Long>();
+	/* at most one reconcile per switch at a time */
+	private final Set<DatapathId> reconciling = Collections.newSetFromMap(new ConcurrentHashMap<DatapathId, Boolean>());
+
+	private IDebugCounter counterReconciles;
+	private IDebugCounter counterReconcileFailures;
+	private IDebugCounter counterMissing;
+	private IDebugCounter counterChanged;
+	private IDebugCounter counterUnknown;
+	private IDebugCounter counterExpired;
+
+	private ShadowFlowTable getTable(DatapathId dpid) {
+		ShadowFlowTable t = tables.get(dpid);
+		if (t == null) {
+			ShadowFlowTable prev = tables.putIfAbsent(dpid, t = new ShadowFlowTable());
+			if (prev != null) {
+				t = prev;
+			}
+		}
+		return t;
+	}
+
+	/*
+	 * IShadowTableService implementation
+	 */
+
+	@Override
+	public List<OFFlowAdd> getFlows(DatapathId dpid) {
+		ShadowFlowTable t = tables.get(dpid);
+		return t == null ? Collections.<OFFlowAdd>emptyList() : t.getFlows();
+	}
+
+	@Override
+	public List<OFFlowAdd> getFlows(DatapathId dpid, U64 cookie, U64 mask) {
+		ShadowFlowTable t = tables.get(dpid);
+		return t == null ? Collections.<OFFlowAdd>emptyList() : t.getFlows(cookie, mask);
+	}
+
+	@Override
+	public ListenableFuture<ShadowFlowTable.Diff> reconcile(final DatapathId dpid) {
+		final IOFSwitch sw = switchService.getActiveSwitch(dpid);
+		if (sw == null) {
+			return Futures.immediateFailedFuture(new IllegalStateException("Switch " + dpid + " is not active"));
+		}
+		if (!reconciling.add(dpid)) {
+			return Futures.immediateFailedFuture(new IllegalStateException("Switch " + dpid + " is already being reconciled"));
+		}
+
+		/* start the diff first, so flow mods sent during the dump are left out */
+		final ShadowFlowTable.Diff diff = getTable(dpid).startDiff(
+				repair && deleteUnknown ? Integer.MAX_VALUE : UNKNOWN_LOGGED);
+		final SettableFuture<ShadowFlowTable.Diff> result = SettableFuture.create();
+		ListenableFuture<Void> dump = sw.streamStatsRequest(buildFlowStatsRequest(sw.getOFFactory()),
+				new IOFStatsReplyListener<OFFlowStatsReply>() {
+			@Override
+			public void statsReplyReceived(OFFlowStatsReply reply) {
+				diff.addSwitchEntries(reply.getEntries());
+			}
+		});
+		Futures.addCallback(dump, new FutureCallback<Void>() {
+			@Override
+			public void onSuccess(Void v) {
+				reconciling.remove(dpid);
+				diff.finish();
+				counterReconciles.increment();
+				counterMissing.add(diff.getMissing().size());
+				counterChanged.add(diff.getChanged().size());
+				counterUnknown.add(diff.getUnknownCount());
+				counterExpired.add(diff.getExpired());
+				if (!diff.isEmpty()) {
+					log.info("Flow table of switch {} differs from the shadow table: {}", dpid, diff);
+					if (log.isDebugEnabled()) {
+						for (OFFlowStatsEntry e : diff.getUnknown()) {
+							log.debug("Unknown flow on switch {}: {}", dpid, e);
+						}
+					}
+					if (repair) {
+						repair(sw, diff);
+					}
+				}
+				result.set(diff);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				reconciling.remove(dpid);
+				counterReconcileFailures.increment();
+				log.warn("Could not reconcile flow table of switch {}: {}", dpid, t.getMessage());
+				result.setException(t);
+			}
+		});
+		return result;
+	}
+
+	private static OFFlowStatsRequest buildFlowStatsRequest(OFFactory factory) {
+		OFFlowStatsRequest.Builder b = factory.buildFlowStatsRequest()
+				.setMatch(factory.buildMatch().build())
+				.setOutPort(OFPort.ANY)
+				.setTableId(TableId.ALL);
+		if (factory.getVersion().compareTo(OFVersion.OF_10) > 0) {
+			b.setOutGroup(OFGroup.ANY);
+		}
+		return b.build();
+	}
+
+	/**
+	 * Add the missing and changed flows, highest priority first so that no
+	 * packet hits a lower priority flow it should not, and delete the
+	 * unknown ones if configured to.
+	 */
+	private void repair(IOFSwitch sw, ShadowFlowTable.Diff diff) {
+		List<OFFlowAdd> adds = new ArrayList<OFFlowAdd>(diff.getMissing());
+		adds.addAll(diff.getChanged());
+		Collections.sort(adds, new Comparator<OFFlowAdd>() {
+			@Override
+			public int compare(OFFlowAdd a, OFFlowAdd b) {
+				return Integer.compare(b.getPriority(), a.getPriority());
+			}
+		});
+		List<OFMessage> msgs = new ArrayList<OFMessage>(adds);
+		if (deleteUnknown) {
+			for (OFFlowStatsEntry e : diff.getUnknown()) {
+				msgs.add(buildDeleteStrict(sw.getOFFactory(), e));
+			}
+		}
+		if (!msgs.isEmpty()) {
+			log.info("Repairing flow table of switch {} with {} flow mods", sw.getId(), msgs.size());
+			/* let route setup go first; a repair is not urgent */
+			sw.write(msgs, OFMessagePriority.BULK);
+		}
+	}
+
+	private static OFFlowDeleteStrict buildDeleteStrict(OFFactory factory, OFFlowStatsEntry e) {
+		OFFlowDeleteStrict.Builder b = factory.buildFlowDeleteStrict()
+				.setMatch(e.getMatch())
+				.setPriority(e.getPriority())
+				.setOutPort(OFPort.ANY);
+		if (factory.getVersion().compareTo(OFVersion.OF_10) > 0) {
+			b.setTableId(e.getTableId())
+			.setCookie(e.getCookie())
+			.setCookieMask(U64.NO_MASK)
+			.setOutGroup(OFGroup.ANY);
+		}
+		return b.build();
+	}
+
+	private class Reconciler implements Runnable {
+		@Override
+		public void run() {
+			ScheduledExecutorService ses = threadPoolService.getScheduledExecutor();
+			long intervalMs = TimeUnit.SECONDS.toMillis(reconcileInterval);
+			for (final DatapathId dpid : switchService.getAllSwitchDpids()) {
+				/* spread the dumps over the interval */
+				ses.schedule(new Runnable() {
+					@Override
+					public void run() {
+						if (switchService.getActiveSwitch(dpid) != null) {
+							reconcile(dpid);
+						}
+					}
+				}, Math.floorMod(dpid.hashCode(), intervalMs), TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	/*
+	 * IOFMessageListener implementation
+	 */
+
+	@Override
+	public String getName() {
+		return MODULE_NAME;
+	}
+
+	@Override
+	public boolean isCallbackOrderingPrereq(OFType type, String name) {
+		return false;
+	}
+
+	@Override
+	public boolean isCallbackOrderingPostreq(OFType type, String name) {
+		/* see flow removed messages before a listener can stop them */
+		return type == OFType.FLOW_REMOVED;
+	}
+
+	@Override
+	public Command receive(IOFSwitch sw, OFMessage msg, FloodlightContext cntx) {
+		switch (msg.getType()) {
+		case FLOW_MOD:
+			/* only outgoing; the controller passes written messages to listeners */
+			getTable(sw.getId()).apply((OFFlowMod) msg);
+			break;
+		case FLOW_REMOVED:
+			ShadowFlowTable t = tables.get(sw.getId());
+			if (t != null) {
+				t.flowRemoved((OFFlowRemoved) msg);
+			}
+			break;
+		default:
+			break;
+		}
+		return Command.CONTINUE;
+	}
+
+	/*
+	 * IOFSwitchListener implementation
+	 */
+
+	@Override
+	public void switchAdded(DatapathId switchId) {
+		disconnected.remove(switchId);
+	}
+
+	@Override
+	public void switchRemoved(final DatapathId switchId) {
+		if (tableRetention <= 0) {
+			tables.remove(switchId);
+			return;
+		}
+		final Long since = System.nanoTime();
+		disconnected.put(switchId, since);
+		threadPoolService.getScheduledExecutor().schedule(new Runnable() {
+			@Override
+			public void run() {
+				/* unless it has come back, or gone again since */
+				if (disconnected.remove(switchId, since)) {
+					tables.remove(switchId);
+					log.debug("Dropped shadow table of switch {}, gone for {}s", switchId, tableRetention);
+				}
+			}
+		}, tableRetention, TimeUnit.SECONDS);
+	}
+
+	@Override
+	public void switchActivated(DatapathId switchId) {
+		disconnected.remove(switchId);
+		reconcile(switchId);
+	}
+
+	@Override
+	public void switchPortChanged(DatapathId switchId, OFPortDesc port, PortChangeType type) {
+	}
+
+	@Override
+	public void switchChanged(DatapathId switchId) {
+	}
+
+	@Override
+	public void switchDeactivated(DatapathId switchId) {
+	}
+
+	/*
+	 * IFloodlightModule implementation
+	 */
+
+	@Override
+	public Collection<Class<? extends IFloodlightService>> getModuleServices() {
+		Collection<Class<? extends IFloodlightService>> l =
+				new ArrayList<Class<? extends IFloodlightService>>();
+		l.add(IShadowTableService.class);
+		return l;
+	}
+
+	@Override
+	public Map<Class<? extends IFloodlightService>, IFloodlightService> getServiceImpls() {
+		Map<Class<? extends IFloodlightService>, IFloodlightService> m =
+				new HashMap<Class<? extends IFloodlightService>, IFloodlightService>();
+		m.put(IShadowTableService.class, this);
+		return m;
+	}
+
+	@Override
+	public Collection<Class<? extends IFloodlightService>> getModuleDependencies() {
+		Collection<Class<? extends IFloodlightService>> l =
+				new ArrayList<Class<? extends IFloodlightService>>();
+		l.add(IFloodlightProviderService.class);
+		l.add(IOFSwitchService.class);
+		l.add(IThreadPoolService.class);
+		l.add(IDebugCounterService.class);
+		return l;
+	}
+
+	@Override
+	public void init(FloodlightModuleContext context) throws FloodlightModuleException {
+		floodlightProviderService = context.getServiceImpl(IFloodlightProviderService.class);
+		switchService = context.getServiceImpl(IOFSwitchService.class);
+		threadPoolService = context.getServiceImpl(IThreadPoolService.class);
+		debugCounterService = context.getServiceImpl(IDebugCounterService.class);
+
+		Map<String, String> config = context.getConfigParams(this);
+		if (config.containsKey(INTERVAL_STR)) {
+			try {
+				reconcileInterval = Math.max(0, Integer.parseInt(config.get(INTERVAL_STR).trim()));
+			} catch (Exception e) {
+				log.error("Could not parse '{}'. Using default of {}", INTERVAL_STR, reconcileInterval);
+			}
+		}
+		if (config.containsKey(REPAIR_STR)) {
+			repair = Boolean.parseBoolean(config.get(REPAIR_STR).trim());
+		}
+		if (config.containsKey(DELETE_UNKNOWN_STR)) {
+			deleteUnknown = Boolean.parseBoolean(config.get(DELETE_UNKNOWN_STR).trim());
+		}
+		if (config.containsKey(RETENTION_STR)) {
+			try {
+				tableRetention = Math.max(0, Integer.parseInt(config.get(RETENTION_STR).trim()));
+			} catch (Exception e) {
+				log.error("Could not parse '{}'. Using default of {}", RETENTION_STR, tableRetention);
+			}
+		}
+		log.info("Flow tables reconciled every {}s, repair {}, delete unknown flows {}, tables kept {}s after a disconnect",
+				new Object[] { reconcileInterval, repair, deleteUnknown, tableRetention });
+	}
+
+	@Override
+	public void startUp(FloodlightModuleContext context) throws FloodlightModuleException {
+		floodlightProviderService.addOFMessageListener(OFType.FLOW_MOD, this);
+		floodlightProviderService.addOFMessageListener(OFType.FLOW_REMOVED, this);
+		switchService.addOFSwitchListener(this);
+
+		debugCounterService.registerModule(MODULE_NAME);
+		counterReconciles = debugCounterService.registerCounter(MODULE_NAME, "reconciles", "Flow tables compared with their shadow table");
+		counterReconcileFailures = debugCounterService.registerCounter(MODULE_NAME, "reconcile-failures", "Flow table dumps that failed", MetaData.WARN);
+		counterMissing = debugCounterService.registerCounter(MODULE_NAME, "flows-missing", "Flows in a shadow table but not on the switch", MetaData.WARN);
+		counterChanged = debugCounterService.registerCounter(MODULE_NAME, "flows-changed", "Flows on a switch that differ from the shadow table", MetaData.WARN);
+		counterUnknown = debugCounterService.registerCounter(MODULE_NAME, "flows-unknown", "Flows on a switch that are not in the shadow table");
+		counterExpired = debugCounterService.registerCounter(MODULE_NAME, "flows-expired", "Flows with timeouts dropped from a shadow table");
+
+		if (reconcileInterval > 0) {
+			threadPoolService.getScheduledExecutor().scheduleAtFixedRate(new Reconciler(),
+					reconcileInterval, reconcileInterval, TimeUnit.SECONDS);
+		}
+	}
+}
@@ -37,6 +37,7 @@ import net.floodlightcontroller.core.IHAListener;
 import net.floodlightcontroller.core.IOFMessageListener;
 import net.floodlightcontroller.core.IOFSwitch;
 import net.floodlightcontroller.core.IOFSwitchListener;
+import net.floodlightcontroller.core.OFMessagePriority;
 import net.floodlightcontroller.core.PortChangeType;
 import net.floodlightcontroller.core.internal.IOFSwitchService;
 import net.floodlightcontroller.core.module.FloodlightModuleContext;
@@ -636,7 +637,8 @@ implements IOFSwitchListener, IFloodlightModule, IStaticEntryPusherService, ISto
 	}
 
 	/**
-	 * Writes a list of OFMessages to a switch
+	 * Writes a list of OFMessages to a switch. Static entries are not
+	 * urgent, so they are written as bulk and do not hold up route setup.
 	 * @param dpid The datapath ID of the switch to write to
 	 * @param messages The list of OFMessages to write.
 	 */
@@ -646,23 +648,20 @@ implements IOFSwitchListener, IFloodlightModule, IStaticEntryPusherService, ISto
 			if (log.isDebugEnabled()) {
 				log.debug("Sending {} new entries to {}", messages.size(), dpid);
 			}
-			ofswitch.write(messages);
+			Collection<OFMessage> failed = ofswitch.write(messages, OFMessagePriority.BULK);
+			if (!failed.isEmpty()) {
+				log.warn("Could not send {} of {} entries to {}", new Object[] { failed.size(), messages.size(), dpid });
+			}
 		}
 	}
 
 	/**
-	 * Writes a single OFMessage to a switch
+	 * Writes a single OFMessage to a switch, as bulk
 	 * @param dpid The datapath ID of the switch to write to
 	 * @param message The OFMessage to write.
 	 */
 	private void writeOFMessageToSwitch(DatapathId dpid, OFMessage message) {
-		IOFSwitch ofswitch = switchService.getSwitch(dpid);
-		if (ofswitch != null) {  // is the switch connected
-			if (log.isDebugEnabled()) {
-				log.debug("Sending 1 new entries to {}", dpid.toString());
-			}
-			ofswitch.write(message);
-		}
+		writeOFMessagesToSwitch(dpid, Collections.singletonList(message));
 	}
 
 	@Override
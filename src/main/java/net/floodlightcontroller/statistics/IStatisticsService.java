@@ -6,6 +6,7 @@ import net.floodlightcontroller.core.types.NodePortTuple;
 import org.projectfloodlight.openflow.protocol.match.Match;
 import org.projectfloodlight.openflow.types.DatapathId;
 import org.projectfloodlight.openflow.types.OFPort;
+import org.projectfloodlight.openflow.types.U64;
 
 import javafx.util.Pair;
 
@@ -26,9 +27,29 @@ public interface IStatisticsService extends IFloodlightService {
 	
 	Set<FlowRuleStats> getFlowStats(DatapathId dpid);
 
+	/**
+	 * Get the stats of one flow of a switch.
+	 * @return the stats, or null if the flow was not in the last reply
+	 */
+	FlowRuleStats getFlowStats(DatapathId dpid, Match match);
+
 	SwitchPortBandwidth getBandwidthConsumption(DatapathId dpid, OFPort p);
 		
 	Map<NodePortTuple, SwitchPortBandwidth> getBandwidthConsumption();
+
+	/**
+	 * Get the history of a port's RX (channel 0) and TX (channel 1) rates,
+	 * in bits per second.
+	 * @return the history, or null if there is none
+	 */
+	StatsTimeSeries getPortHistory(DatapathId dpid, OFPort p);
+
+	/**
+	 * Get the history of the byte (channel 0) and packet (channel 1) rates,
+	 * per second, of a switch's flows, summed per flow cookie.
+	 * @return the history of each cookie; empty if there is none
+	 */
+	Map<U64, StatsTimeSeries> getFlowHistory(DatapathId dpid);
 	
 	void collectStatistics(boolean collect);
 
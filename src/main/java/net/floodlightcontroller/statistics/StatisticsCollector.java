@@ -1,10 +1,11 @@
 package net.floodlightcontroller.statistics;
 
 import com.google.common.primitives.UnsignedLong;
-import com.google.common.util.concurrent.ListenableFuture;
 
 import javafx.util.Pair;
 import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.IOFSwitchListener;
+import net.floodlightcontroller.core.PortChangeType;
 import net.floodlightcontroller.core.internal.IOFSwitchService;
 import net.floodlightcontroller.core.module.FloodlightModuleContext;
 import net.floodlightcontroller.core.module.FloodlightModuleException;
@@ -28,9 +29,8 @@ import org.projectfloodlight.openflow.types.U64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.Thread.State;
 import java.util.*;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -48,27 +48,67 @@ public class StatisticsCollector implements IFloodlightModule, IStatisticsServic
 	private static int portStatsInterval = 10; /* could be set by REST API, so not final */
 	private static int flowStatsInterval = 11;
 
-	private static ScheduledFuture<?> portStatsCollector;
-	private static ScheduledFuture<?> flowStatsCollector;
-	private static ScheduledFuture<?> portDescCollector;
+	private static int maxInFlightRequests = 64;
+
+	private static StatisticsPoller poller;
+	private static StatisticsPoller.Job portStatsCollector;
+	private static StatisticsPoller.Job flowStatsCollector;
+	private static StatisticsPoller.Job portDescCollector;
+	private static ScheduledFuture<?> historyPruner;
+
+	/* Buckets of history kept at 1s, 1m and 1h resolution; see StatsTimeSeries */
+	private static int[] historyRetention = { 60, 60, 24 };
 
 	private static final long BITS_PER_BYTE = 8;
 	private static final long MILLIS_PER_SEC = 1000;
 
 	private static final String INTERVAL_PORT_STATS_STR = "collectionIntervalPortStatsSeconds";
 	private static final String ENABLED_STR = "enable";
+	private static final String MAX_IN_FLIGHT_STR = "maxInFlightRequests";
+	private static final String[] HISTORY_RETENTION_STR = { "historySecondsRetained", "historyMinutesRetained", "historyHoursRetained" };
 
-	private static final HashMap<NodePortTuple, SwitchPortBandwidth> portStats = new HashMap<NodePortTuple, SwitchPortBandwidth>();
-	private static final HashMap<NodePortTuple, SwitchPortBandwidth> tentativePortStats = new HashMap<NodePortTuple, SwitchPortBandwidth>();
+	/* Replies of different switches are handled concurrently */
+	private static final ConcurrentHashMap<NodePortTuple, SwitchPortBandwidth> portStats = new ConcurrentHashMap<NodePortTuple, SwitchPortBandwidth>();
+	private static final ConcurrentHashMap<NodePortTuple, SwitchPortBandwidth> tentativePortStats = new ConcurrentHashMap<NodePortTuple, SwitchPortBandwidth>();
 
-	private static final HashMap<Pair<Match,DatapathId>, FlowRuleStats> flowStats = new HashMap<Pair<Match,DatapathId>,FlowRuleStats>();
+	/* Flow stats of each switch; a switch's map is replaced as a whole by each reply */
+	private static final ConcurrentHashMap<DatapathId, Map<Match, FlowRuleStats>> flowStats = new ConcurrentHashMap<DatapathId, Map<Match, FlowRuleStats>>();
 	
-	private static final HashMap<NodePortTuple, PortDesc> portDesc = new HashMap<NodePortTuple, PortDesc>();
+	private static final ConcurrentHashMap<NodePortTuple, PortDesc> portDesc = new ConcurrentHashMap<NodePortTuple, PortDesc>();
+
+	/* RX and TX bits per second of each port */
+	private static final ConcurrentHashMap<NodePortTuple, StatsTimeSeries> portHistory = new ConcurrentHashMap<NodePortTuple, StatsTimeSeries>();
+	/* Byte and packet rates of the flows of each cookie, per switch */
+	private static final ConcurrentHashMap<DatapathId, ConcurrentHashMap<U64, CookieHistory>> flowHistory = new ConcurrentHashMap<DatapathId, ConcurrentHashMap<U64, CookieHistory>>();
+
+	/**
+	 * Rates of all flows with one cookie on a switch, and the counters
+	 * they were last computed from.
+	 */
+	private static class CookieHistory {
+		private final StatsTimeSeries series = newHistory();
+		private long bytes;
+		private long packets;
+		private long nanos;
+	}
+
+	private static StatsTimeSeries newHistory() {
+		return new StatsTimeSeries(2, historyRetention);
+	}
+
+	private static boolean isHistoryEnabled() {
+		for (int r : historyRetention) {
+			if (r > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
 
 
 
 	/**
-	 * Run periodically to collect all port statistics. This only collects
+	 * Handles the port statistics of each switch as they arrive. This only collects
 	 * bandwidth stats right now, but it could be expanded to record other
 	 * information as well. The difference between the most recent and the
 	 * current RX/TX bytes is used to determine the "elapsed" bytes. A 
@@ -86,57 +126,67 @@ public class StatisticsCollector implements IFloodlightModule, IStatisticsServic
 	 * @author Ryan Izard, ryan.izard@bigswitch.com, rizard@g.clemson.edu
 	 *
 	 */
-	protected class PortStatsCollector implements Runnable {
+	protected class PortStatsCollector implements StatisticsPoller.IStatsReplyHandler {
 
 		@Override
-		public void run() {
-			Map<DatapathId, List<OFStatsReply>> replies = getSwitchStatistics(switchService.getAllSwitchDpids(), OFStatsType.PORT);
-			for (Entry<DatapathId, List<OFStatsReply>> e : replies.entrySet()) {
-				for (OFStatsReply r : e.getValue()) {
-					OFPortStatsReply psr = (OFPortStatsReply) r;
-					for (OFPortStatsEntry pse : psr.getEntries()) {
-						NodePortTuple npt = new NodePortTuple(e.getKey(), pse.getPortNo());
-						SwitchPortBandwidth spb;
-						if (portStats.containsKey(npt) || tentativePortStats.containsKey(npt)) {
-							if (portStats.containsKey(npt)) { /* update */
-								spb = portStats.get(npt);
-							} else if (tentativePortStats.containsKey(npt)) { /* finish */
-								spb = tentativePortStats.get(npt);
-								tentativePortStats.remove(npt);
-							} else {
-								log.error("Inconsistent state between tentative and official port stats lists.");
-								return;
-							}
+		public void statsReceived(DatapathId dpid, List<OFStatsReply> replies) {
+			for (OFStatsReply r : replies) {
+				OFPortStatsReply psr = (OFPortStatsReply) r;
+				for (OFPortStatsEntry pse : psr.getEntries()) {
+					NodePortTuple npt = new NodePortTuple(dpid, pse.getPortNo());
+					SwitchPortBandwidth spb;
+					if (portStats.containsKey(npt) || tentativePortStats.containsKey(npt)) {
+						if (portStats.containsKey(npt)) { /* update */
+							spb = portStats.get(npt);
+						} else if (tentativePortStats.containsKey(npt)) { /* finish */
+							spb = tentativePortStats.get(npt);
+							tentativePortStats.remove(npt);
+						} else {
+							log.error("Inconsistent state between tentative and official port stats lists.");
+							return;
+						}
 
-							/* Get counted bytes over the elapsed period. Check for counter overflow. */
-							U64 rxBytesCounted;
-							U64 txBytesCounted;
-							if (spb.getPriorByteValueRx().compareTo(pse.getRxBytes()) > 0) { /* overflow */
-								U64 upper = U64.NO_MASK.subtract(spb.getPriorByteValueRx());
-								U64 lower = pse.getRxBytes();
-								rxBytesCounted = upper.add(lower);
-							} else {
-								rxBytesCounted = pse.getRxBytes().subtract(spb.getPriorByteValueRx());
-							}
-							if (spb.getPriorByteValueTx().compareTo(pse.getTxBytes()) > 0) { /* overflow */
-								U64 upper = U64.NO_MASK.subtract(spb.getPriorByteValueTx());
-								U64 lower = pse.getTxBytes();
-								txBytesCounted = upper.add(lower);
-							} else {
-								txBytesCounted = pse.getTxBytes().subtract(spb.getPriorByteValueTx());
+						/* Get counted bytes over the elapsed period. Check for counter overflow. */
+						U64 rxBytesCounted;
+						U64 txBytesCounted;
+						if (spb.getPriorByteValueRx().compareTo(pse.getRxBytes()) > 0) { /* overflow */
+							U64 upper = U64.NO_MASK.subtract(spb.getPriorByteValueRx());
+							U64 lower = pse.getRxBytes();
+							rxBytesCounted = upper.add(lower);
+						} else {
+							rxBytesCounted = pse.getRxBytes().subtract(spb.getPriorByteValueRx());
+						}
+						if (spb.getPriorByteValueTx().compareTo(pse.getTxBytes()) > 0) { /* overflow */
+							U64 upper = U64.NO_MASK.subtract(spb.getPriorByteValueTx());
+							U64 lower = pse.getTxBytes();
+							txBytesCounted = upper.add(lower);
+						} else {
+							txBytesCounted = pse.getTxBytes().subtract(spb.getPriorByteValueTx());
+						}
+						long speed = getSpeed(npt);
+						double timeDifSec = ((System.nanoTime() - spb.getStartTime_ns()) * 1.0 / 1000000) / MILLIS_PER_SEC;
+						portStats.put(npt, SwitchPortBandwidth.of(npt.getNodeId(), npt.getPortId(), 
+								U64.ofRaw(speed),
+								U64.ofRaw(Math.round((rxBytesCounted.getValue() * BITS_PER_BYTE) / timeDifSec)),
+								U64.ofRaw(Math.round((txBytesCounted.getValue() * BITS_PER_BYTE) / timeDifSec)),
+								pse.getRxBytes(), pse.getTxBytes())
+								);
+						if (isHistoryEnabled()) {
+							StatsTimeSeries h = portHistory.get(npt);
+							if (h == null) {
+								h = newHistory();
+								StatsTimeSeries old = portHistory.putIfAbsent(npt, h);
+								if (old != null) {
+									h = old;
+								}
 							}
-							long speed = getSpeed(npt);
-							double timeDifSec = ((System.nanoTime() - spb.getStartTime_ns()) * 1.0 / 1000000) / MILLIS_PER_SEC;
-							portStats.put(npt, SwitchPortBandwidth.of(npt.getNodeId(), npt.getPortId(), 
-									U64.ofRaw(speed),
-									U64.ofRaw(Math.round((rxBytesCounted.getValue() * BITS_PER_BYTE) / timeDifSec)),
-									U64.ofRaw(Math.round((txBytesCounted.getValue() * BITS_PER_BYTE) / timeDifSec)),
-									pse.getRxBytes(), pse.getTxBytes())
-									);
-
-						} else { /* initialize */
-							tentativePortStats.put(npt, SwitchPortBandwidth.of(npt.getNodeId(), npt.getPortId(), U64.ZERO, U64.ZERO, U64.ZERO, pse.getRxBytes(), pse.getTxBytes()));
+							h.add(System.currentTimeMillis(),
+									(rxBytesCounted.getValue() * BITS_PER_BYTE) / timeDifSec,
+									(txBytesCounted.getValue() * BITS_PER_BYTE) / timeDifSec);
 						}
+
+					} else { /* initialize */
+						tentativePortStats.put(npt, SwitchPortBandwidth.of(npt.getNodeId(), npt.getPortId(), U64.ZERO, U64.ZERO, U64.ZERO, pse.getRxBytes(), pse.getTxBytes()));
 					}
 				}
 			}
@@ -182,94 +232,164 @@ public class StatisticsCollector implements IFloodlightModule, IStatisticsServic
 	}
 
 	/**
-	 * Run periodically to collect all flow statistics from every switch.
+	 * Handles the flow statistics of each switch as they arrive.
 	 */
-	protected class FlowStatsCollector implements Runnable {
+	protected class FlowStatsCollector implements StatisticsPoller.IStatsReplyHandler {
 		@Override
-		public void run() {
-			flowStats.clear(); // to clear expired flows
-			Map<DatapathId, List<OFStatsReply>> replies = getSwitchStatistics(switchService.getAllSwitchDpids(), OFStatsType.FLOW);
-			for (Entry<DatapathId, List<OFStatsReply>> e : replies.entrySet()) {
-				IOFSwitch sw = switchService.getSwitch(e.getKey());
-				for (OFStatsReply r : e.getValue()) {
-					OFFlowStatsReply psr = (OFFlowStatsReply) r;
-					for (OFFlowStatsEntry pse : psr.getEntries()) {
-						if(sw.getOFFactory().getVersion().compareTo(OFVersion.OF_15) == 0){
-							log.warn("Flow Stats not supported in OpenFlow 1.5.");
-
-						} else {
-							Pair<Match, DatapathId> pair = new Pair<Match,DatapathId>(pse.getMatch(),e.getKey());
-							flowStats.put(pair,FlowRuleStats.of(
-									e.getKey(),
-									pse.getByteCount(),
-									pse.getPacketCount(),
-									pse.getPriority(),
-									pse.getHardTimeout(),
-									pse.getIdleTimeout(),
-									pse.getDurationSec()));
+		public void statsReceived(DatapathId dpid, List<OFStatsReply> replies) {
+			IOFSwitch sw = switchService.getSwitch(dpid);
+			if (sw == null) {
+				flowStats.remove(dpid);
+				return;
+			}
+			/* flows that expired since the last reply are left out of the new map */
+			Map<Match, FlowRuleStats> stats = new HashMap<Match, FlowRuleStats>();
+			/* byte and packet counts summed per cookie */
+			Map<U64, long[]> cookieCounts = new HashMap<U64, long[]>();
+			for (OFStatsReply r : replies) {
+				OFFlowStatsReply psr = (OFFlowStatsReply) r;
+				for (OFFlowStatsEntry pse : psr.getEntries()) {
+					if(sw.getOFFactory().getVersion().compareTo(OFVersion.OF_15) == 0){
+						log.warn("Flow Stats not supported in OpenFlow 1.5.");
+
+					} else {
+						stats.put(pse.getMatch(), FlowRuleStats.of(
+								dpid,
+								pse.getByteCount(),
+								pse.getPacketCount(),
+								pse.getPriority(),
+								pse.getHardTimeout(),
+								pse.getIdleTimeout(),
+								pse.getDurationSec()));
+						long[] counts = cookieCounts.get(pse.getCookie());
+						if (counts == null) {
+							counts = new long[2];
+							cookieCounts.put(pse.getCookie(), counts);
 						}
+						counts[0] += pse.getByteCount().getValue();
+						counts[1] += pse.getPacketCount().getValue();
 					}
 				}
 			}
+			flowStats.put(dpid, Collections.unmodifiableMap(stats));
+			if (isHistoryEnabled()) {
+				updateFlowHistory(dpid, cookieCounts);
+			}
+		}
+
+		private void updateFlowHistory(DatapathId dpid, Map<U64, long[]> cookieCounts) {
+			ConcurrentHashMap<U64, CookieHistory> cookies = flowHistory.get(dpid);
+			if (cookies == null) {
+				cookies = new ConcurrentHashMap<U64, CookieHistory>();
+				ConcurrentHashMap<U64, CookieHistory> old = flowHistory.putIfAbsent(dpid, cookies);
+				if (old != null) {
+					cookies = old;
+				}
+			}
+			long now = System.nanoTime();
+			for (Map.Entry<U64, long[]> e : cookieCounts.entrySet()) {
+				CookieHistory h = cookies.get(e.getKey());
+				if (h == null) {
+					h = new CookieHistory();
+					cookies.put(e.getKey(), h); /* only this switch's replies get here */
+				}
+				long bytes = e.getValue()[0];
+				long packets = e.getValue()[1];
+				/* Counts drop when flows expire; then there's no rate until the next reply */
+				if (h.nanos != 0 && bytes >= h.bytes && packets >= h.packets) {
+					double sec = (now - h.nanos) / 1e9;
+					h.series.add(System.currentTimeMillis(), (bytes - h.bytes) / sec, (packets - h.packets) / sec);
+				}
+				h.bytes = bytes;
+				h.packets = packets;
+				h.nanos = now;
+			}
 		}
 	}
 
-	
 	/**
-	 *  Run periodically to collect port description from every switch and port, so it is possible to know its state and configuration.
-	 * Used in Load balancer to determine if a port is enabled.
+	 * Drops the history of ports and cookies that have not been updated
+	 * for longer than the history reaches back.
 	 */
-	private class PortDescCollector implements Runnable {
+	private class HistoryPruner implements Runnable {
 		@Override
 		public void run() {
-			Map<DatapathId, List<OFStatsReply>> replies = getSwitchStatistics(switchService.getAllSwitchDpids(), OFStatsType.PORT_DESC);
-			for (Entry<DatapathId, List<OFStatsReply>> e : replies.entrySet()) {
-				for (OFStatsReply r : e.getValue()) {
-					OFPortDescStatsReply psr = (OFPortDescStatsReply) r;	
-					for (OFPortDesc pse : psr.getEntries()) {
-						NodePortTuple npt = new NodePortTuple(e.getKey(), pse.getPortNo());
-						portDesc.put(npt,PortDesc.of(e.getKey(),
-								pse.getPortNo(),
-								pse.getName(),
-								pse.getState(),
-								pse.getConfig(),
-								pse.isEnabled()));						
+			long span = 0;
+			for (int i = 0; i < historyRetention.length; i++) {
+				span = Math.max(span, historyRetention[i] * StatsTimeSeries.RESOLUTIONS_MS[i]);
+			}
+			long oldestMs = System.currentTimeMillis() - span;
+			long oldestNanos = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(span);
+			for (Iterator<StatsTimeSeries> it = portHistory.values().iterator(); it.hasNext();) {
+				if (it.next().getLastUpdated() < oldestMs) {
+					it.remove();
+				}
+			}
+			for (Iterator<ConcurrentHashMap<U64, CookieHistory>> it = flowHistory.values().iterator(); it.hasNext();) {
+				ConcurrentHashMap<U64, CookieHistory> cookies = it.next();
+				for (Iterator<CookieHistory> cit = cookies.values().iterator(); cit.hasNext();) {
+					if (cit.next().nanos - oldestNanos < 0) {
+						cit.remove();
 					}
 				}
+				if (cookies.isEmpty()) {
+					it.remove();
+				}
+			}
+		}
+	}
+
+	
+	/**
+	 *  Handles the port descriptions of each switch as they arrive, so it is possible to know its state and configuration.
+	 * Used in Load balancer to determine if a port is enabled.
+	 */
+	private class PortDescCollector implements StatisticsPoller.IStatsReplyHandler {
+		@Override
+		public void statsReceived(DatapathId dpid, List<OFStatsReply> replies) {
+			for (OFStatsReply r : replies) {
+				OFPortDescStatsReply psr = (OFPortDescStatsReply) r;	
+				for (OFPortDesc pse : psr.getEntries()) {
+					NodePortTuple npt = new NodePortTuple(dpid, pse.getPortNo());
+					portDesc.put(npt,PortDesc.of(dpid,
+							pse.getPortNo(),
+							pse.getName(),
+							pse.getState(),
+							pse.getConfig(),
+							pse.isEnabled()));						
+				}
 			}
 		}
 	}
 
 
 	/**
-	 * Single thread for collecting switch statistics and
-	 * containing the reply.
-	 * 
-	 * @author Ryan Izard, ryan.izard@bigswitch.com, rizard@g.clemson.edu
-	 *
+	 * Forgets the flow stats of switches as they go away.
 	 */
-	private class GetStatisticsThread extends Thread {
-		private List<OFStatsReply> statsReply;
-		private DatapathId switchId;
-		private OFStatsType statType;
-
-		public GetStatisticsThread(DatapathId switchId, OFStatsType statType) {
-			this.switchId = switchId;
-			this.statType = statType;
-			this.statsReply = null;
+	private class SwitchListener implements IOFSwitchListener {
+		@Override
+		public void switchRemoved(DatapathId switchId) {
+			flowStats.remove(switchId);
 		}
 
-		public List<OFStatsReply> getStatisticsReply() {
-			return statsReply;
+		@Override
+		public void switchAdded(DatapathId switchId) {
 		}
 
-		public DatapathId getSwitchId() {
-			return switchId;
+		@Override
+		public void switchActivated(DatapathId switchId) {
 		}
 
 		@Override
-		public void run() {
-			statsReply = getSwitchStatistics(switchId, statType);
+		public void switchPortChanged(DatapathId switchId, OFPortDesc port, PortChangeType type) {
+		}
+
+		@Override
+		public void switchChanged(DatapathId switchId) {
+		}
+
+		@Override
+		public void switchDeactivated(DatapathId switchId) {
 		}
 	}
 
@@ -330,13 +450,41 @@ public class StatisticsCollector implements IFloodlightModule, IStatisticsServic
 			}
 		}
 		log.info("Port statistics collection interval set to {}s", portStatsInterval);
+
+		if (config.containsKey(MAX_IN_FLIGHT_STR)) {
+			try {
+				maxInFlightRequests = Integer.parseInt(config.get(MAX_IN_FLIGHT_STR).trim());
+			} catch (Exception e) {
+				log.error("Could not parse '{}'. Using default of {}", MAX_IN_FLIGHT_STR, maxInFlightRequests);
+			}
+		}
+		if (maxInFlightRequests <= 0) {
+			log.error("'{}' must be > 0. Using 1", MAX_IN_FLIGHT_STR);
+			maxInFlightRequests = 1;
+		}
+		log.info("At most {} statistics requests in flight", maxInFlightRequests);
+
+		for (int i = 0; i < HISTORY_RETENTION_STR.length; i++) {
+			if (config.containsKey(HISTORY_RETENTION_STR[i])) {
+				try {
+					historyRetention[i] = Math.max(0, Integer.parseInt(config.get(HISTORY_RETENTION_STR[i]).trim()));
+				} catch (Exception e) {
+					log.error("Could not parse '{}'. Using default of {}", HISTORY_RETENTION_STR[i], historyRetention[i]);
+				}
+			}
+		}
+		log.info("Statistics history kept for {}s, {}m and {}h",
+				new Object[] { historyRetention[0], historyRetention[1], historyRetention[2] });
 	}
 
 	@Override
 	public void startUp(FloodlightModuleContext context)
 			throws FloodlightModuleException {
 		restApiService.addRestletRoutable(new SwitchStatisticsWebRoutable());
+		switchService.addOFSwitchListener(new SwitchListener());
 		debugCounterService.registerModule("statistics");
+		poller = new StatisticsPoller(switchService, threadPoolService.getScheduledExecutor(),
+				maxInFlightRequests, debugCounterService);
 		if (isEnabled) {
 			startStatisticsCollection();
 		}
@@ -373,18 +521,29 @@ public class StatisticsCollector implements IFloodlightModule, IStatisticsServic
 	
 	
 	@Override
-	public Map<Pair<Match, DatapathId>, FlowRuleStats> getFlowStats(){		 
-		return Collections.unmodifiableMap(flowStats);
+	public Map<Pair<Match, DatapathId>, FlowRuleStats> getFlowStats(){
+		Map<Pair<Match, DatapathId>, FlowRuleStats> m = new HashMap<Pair<Match, DatapathId>, FlowRuleStats>();
+		for (Map.Entry<DatapathId, Map<Match, FlowRuleStats>> e : flowStats.entrySet()) {
+			for (Map.Entry<Match, FlowRuleStats> f : e.getValue().entrySet()) {
+				m.put(new Pair<Match, DatapathId>(f.getKey(), e.getKey()), f.getValue());
+			}
+		}
+		return Collections.unmodifiableMap(m);
 	}
 
 	@Override
 	public Set<FlowRuleStats> getFlowStats(DatapathId dpid){
-		Set<FlowRuleStats> frs = new HashSet<FlowRuleStats>();
-		for(Pair<Match,DatapathId> pair: flowStats.keySet()){
-			if(pair.getValue().equals(dpid))
-				frs.add(flowStats.get(pair));
+		Map<Match, FlowRuleStats> stats = flowStats.get(dpid);
+		if (stats == null) {
+			return new HashSet<FlowRuleStats>();
 		}
-		return frs;
+		return new HashSet<FlowRuleStats>(stats.values());
+	}
+
+	@Override
+	public FlowRuleStats getFlowStats(DatapathId dpid, Match match) {
+		Map<Match, FlowRuleStats> stats = flowStats.get(dpid);
+		return stats == null ? null : stats.get(match);
 	}
 
 	@Override
@@ -397,6 +556,24 @@ public class StatisticsCollector implements IFloodlightModule, IStatisticsServic
 		return Collections.unmodifiableMap(portStats);
 	}
 
+	@Override
+	public StatsTimeSeries getPortHistory(DatapathId dpid, OFPort p) {
+		return portHistory.get(new NodePortTuple(dpid, p));
+	}
+
+	@Override
+	public Map<U64, StatsTimeSeries> getFlowHistory(DatapathId dpid) {
+		ConcurrentHashMap<U64, CookieHistory> cookies = flowHistory.get(dpid);
+		if (cookies == null) {
+			return Collections.emptyMap();
+		}
+		Map<U64, StatsTimeSeries> m = new HashMap<U64, StatsTimeSeries>();
+		for (Map.Entry<U64, CookieHistory> e : cookies.entrySet()) {
+			m.put(e.getKey(), e.getValue().series);
+		}
+		return m;
+	}
+
 	@Override
 	public synchronized void collectStatistics(boolean collect) {
 		if (collect && !isEnabled) {
@@ -419,214 +596,151 @@ public class StatisticsCollector implements IFloodlightModule, IStatisticsServic
 	 */
 
 	/**
-	 * Start all stats threads.
+	 * Start polling all switches for stats.
 	 */
 	private void startStatisticsCollection() {
-		portStatsCollector = threadPoolService.getScheduledExecutor().scheduleAtFixedRate(new PortStatsCollector(), portStatsInterval, portStatsInterval, TimeUnit.SECONDS);
 		tentativePortStats.clear(); /* must clear out, otherwise might have huge BW result if present and wait a long time before re-enabling stats */
-		flowStatsCollector = threadPoolService.getScheduledExecutor().scheduleAtFixedRate(new FlowStatsCollector(), flowStatsInterval, flowStatsInterval, TimeUnit.SECONDS);
-		portDescCollector = threadPoolService.getScheduledExecutor().scheduleAtFixedRate(new PortDescCollector(), portStatsInterval, portStatsInterval, TimeUnit.SECONDS);
-		log.warn("Statistics collection thread(s) started");
+		portStatsCollector = poller.start(OFStatsType.PORT, portStatsInterval, new PortStatsCollector());
+		flowStatsCollector = poller.start(OFStatsType.FLOW, flowStatsInterval, new FlowStatsCollector());
+		portDescCollector = poller.start(OFStatsType.PORT_DESC, portStatsInterval, new PortDescCollector());
+		historyPruner = threadPoolService.getScheduledExecutor().scheduleAtFixedRate(new HistoryPruner(), 1, 1, TimeUnit.MINUTES);
+		log.warn("Statistics collection started");
 	}
 
 	/**
-	 * Stop all stats threads.
+	 * Stop polling switches for stats.
 	 */
 	private void stopStatisticsCollection() {
-		if (!portStatsCollector.cancel(false) || !flowStatsCollector.cancel(false) || !portDescCollector.cancel(false)) {
-			log.error("Could not cancel port/flow stats threads");
+		/* cancel each, even if an earlier one could not be */
+		boolean cancelled = portStatsCollector.cancel();
+		cancelled &= flowStatsCollector.cancel();
+		cancelled &= portDescCollector.cancel();
+		cancelled &= historyPruner.cancel(false);
+		if (!cancelled) {
+			log.error("Could not cancel port/flow stats polling");
 		} else {
-			log.warn("Statistics collection thread(s) stopped");
-		}
-	}
-
-	/**
-	 * Retrieve the statistics from all switches in parallel.
-	 * @param dpids
-	 * @param statsType
-	 * @return
-	 */
-	private Map<DatapathId, List<OFStatsReply>> getSwitchStatistics(Set<DatapathId> dpids, OFStatsType statsType) {
-		HashMap<DatapathId, List<OFStatsReply>> model = new HashMap<DatapathId, List<OFStatsReply>>();
-
-		List<GetStatisticsThread> activeThreads = new ArrayList<GetStatisticsThread>(dpids.size());
-		List<GetStatisticsThread> pendingRemovalThreads = new ArrayList<GetStatisticsThread>();
-		GetStatisticsThread t;
-		for (DatapathId d : dpids) {
-			t = new GetStatisticsThread(d, statsType);
-			activeThreads.add(t);
-			t.start();
-		}
-
-		/* Join all the threads after the timeout. Set a hard timeout
-		 * of 12 seconds for the threads to finish. If the thread has not
-		 * finished the switch has not replied yet and therefore we won't
-		 * add the switch's stats to the reply.
-		 */
-		for (int iSleepCycles = 0; iSleepCycles < portStatsInterval; iSleepCycles++) {
-			for (GetStatisticsThread curThread : activeThreads) {
-				if (curThread.getState() == State.TERMINATED) {
-					model.put(curThread.getSwitchId(), curThread.getStatisticsReply());
-					pendingRemovalThreads.add(curThread);
-				}
-			}
-
-			/* remove the threads that have completed the queries to the switches */
-			for (GetStatisticsThread curThread : pendingRemovalThreads) {
-				activeThreads.remove(curThread);
-			}
-
-			/* clear the list so we don't try to double remove them */
-			pendingRemovalThreads.clear();
-
-			/* if we are done finish early */
-			if (activeThreads.isEmpty()) {
-				break;
-			}
-
-			try {
-				Thread.sleep(1000);
-			} catch (InterruptedException e) {
-				log.error("Interrupted while waiting for statistics", e);
-			}
+			log.warn("Statistics collection stopped");
 		}
-
-		return model;
 	}
 
 	/**
-	 * Get statistics from a switch.
-	 * @param switchId
+	 * Build the stats request of a type for a switch.
+	 * @param sw
 	 * @param statsType
-	 * @return
+	 * @return the request, or null if the type is not supported by the switch
 	 */
-	@SuppressWarnings("unchecked")
-	protected List<OFStatsReply> getSwitchStatistics(DatapathId switchId, OFStatsType statsType) {
-		IOFSwitch sw = switchService.getSwitch(switchId);
-		ListenableFuture<?> future;
-		List<OFStatsReply> values = null;
+	static OFStatsRequest<?> buildStatsRequest(IOFSwitch sw, OFStatsType statsType) {
+		OFStatsRequest<?> req = null;
 		Match match;
-		if (sw != null) {
-			OFStatsRequest<?> req = null;
-			switch (statsType) {
-			case FLOW:
-				match = sw.getOFFactory().buildMatch().build();
-				if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_11) >= 0) {
-					req = sw.getOFFactory().buildFlowStatsRequest()
-							.setMatch(match)
-							.setOutPort(OFPort.ANY)
-							.setOutGroup(OFGroup.ANY)
-							.setTableId(TableId.ALL)
-							.build();
-				} else{
-					req = sw.getOFFactory().buildFlowStatsRequest()
-							.setMatch(match)
-							.setOutPort(OFPort.ANY)
-							.setTableId(TableId.ALL)
-							.build();
-				}
-				break;
-			case AGGREGATE:
-				match = sw.getOFFactory().buildMatch().build();
-				req = sw.getOFFactory().buildAggregateStatsRequest()
+		switch (statsType) {
+		case FLOW:
+			match = sw.getOFFactory().buildMatch().build();
+			if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_11) >= 0) {
+				req = sw.getOFFactory().buildFlowStatsRequest()
 						.setMatch(match)
 						.setOutPort(OFPort.ANY)
+						.setOutGroup(OFGroup.ANY)
 						.setTableId(TableId.ALL)
 						.build();
-				break;
-			case PORT:
-				req = sw.getOFFactory().buildPortStatsRequest()
-				.setPortNo(OFPort.ANY)
-				.build();
-				break;
-			case QUEUE:
-				req = sw.getOFFactory().buildQueueStatsRequest()
-				.setPortNo(OFPort.ANY)
-				.setQueueId(UnsignedLong.MAX_VALUE.longValue())
-				.build();
-				break;
-			case DESC:
-				req = sw.getOFFactory().buildDescStatsRequest()
-				.build();
-				break;
-			case GROUP:
-				if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) > 0) {
-					req = sw.getOFFactory().buildGroupStatsRequest()				
-							.build();
-				}
-				break;
-
-			case METER:
-				if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_13) >= 0) {
-					req = sw.getOFFactory().buildMeterStatsRequest()
-							.setMeterId(OFMeterSerializerVer13.ALL_VAL)
-							.build();
-				}
-				break;
-
-			case GROUP_DESC:			
-				if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) > 0) {
-					req = sw.getOFFactory().buildGroupDescStatsRequest()			
-							.build();
-				}
-				break;
+			} else{
+				req = sw.getOFFactory().buildFlowStatsRequest()
+						.setMatch(match)
+						.setOutPort(OFPort.ANY)
+						.setTableId(TableId.ALL)
+						.build();
+			}
+			break;
+		case AGGREGATE:
+			match = sw.getOFFactory().buildMatch().build();
+			req = sw.getOFFactory().buildAggregateStatsRequest()
+					.setMatch(match)
+					.setOutPort(OFPort.ANY)
+					.setTableId(TableId.ALL)
+					.build();
+			break;
+		case PORT:
+			req = sw.getOFFactory().buildPortStatsRequest()
+			.setPortNo(OFPort.ANY)
+			.build();
+			break;
+		case QUEUE:
+			req = sw.getOFFactory().buildQueueStatsRequest()
+			.setPortNo(OFPort.ANY)
+			.setQueueId(UnsignedLong.MAX_VALUE.longValue())
+			.build();
+			break;
+		case DESC:
+			req = sw.getOFFactory().buildDescStatsRequest()
+			.build();
+			break;
+		case GROUP:
+			if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) > 0) {
+				req = sw.getOFFactory().buildGroupStatsRequest()				
+						.build();
+			}
+			break;
 
-			case GROUP_FEATURES:
-				if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) > 0) {
-					req = sw.getOFFactory().buildGroupFeaturesStatsRequest()
-							.build();
-				}
-				break;
+		case METER:
+			if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_13) >= 0) {
+				req = sw.getOFFactory().buildMeterStatsRequest()
+						.setMeterId(OFMeterSerializerVer13.ALL_VAL)
+						.build();
+			}
+			break;
 
-			case METER_CONFIG:
-				if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_13) >= 0) {
-					req = sw.getOFFactory().buildMeterConfigStatsRequest()
-							.build();
-				}
-				break;
+		case GROUP_DESC:			
+			if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) > 0) {
+				req = sw.getOFFactory().buildGroupDescStatsRequest()			
+						.build();
+			}
+			break;
 
-			case METER_FEATURES:
-				if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_13) >= 0) {
-					req = sw.getOFFactory().buildMeterFeaturesStatsRequest()
-							.build();
-				}
-				break;
+		case GROUP_FEATURES:
+			if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) > 0) {
+				req = sw.getOFFactory().buildGroupFeaturesStatsRequest()
+						.build();
+			}
+			break;
 
-			case TABLE:
-				if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) > 0) {
-					req = sw.getOFFactory().buildTableStatsRequest()
-							.build();
-				}
-				break;
+		case METER_CONFIG:
+			if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_13) >= 0) {
+				req = sw.getOFFactory().buildMeterConfigStatsRequest()
+						.build();
+			}
+			break;
 
-			case TABLE_FEATURES:	
-				if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) > 0) {
-					req = sw.getOFFactory().buildTableFeaturesStatsRequest()
-							.build();		
-				}
-				break;
-			case PORT_DESC:
-				if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_13) >= 0) {
-					req = sw.getOFFactory().buildPortDescStatsRequest()
-							.build();
-				}
-				break;
-			case EXPERIMENTER:		
-			default:
-				log.error("Stats Request Type {} not implemented yet", statsType.name());
-				break;
+		case METER_FEATURES:
+			if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_13) >= 0) {
+				req = sw.getOFFactory().buildMeterFeaturesStatsRequest()
+						.build();
 			}
+			break;
 
-			try {
-				if (req != null) {
-					future = sw.writeStatsRequest(req); 
-					values = (List<OFStatsReply>) future.get(portStatsInterval*1000 / 2, TimeUnit.MILLISECONDS);
+		case TABLE:
+			if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) > 0) {
+				req = sw.getOFFactory().buildTableStatsRequest()
+						.build();
+			}
+			break;
 
-				}
-			} catch (Exception e) {
-				log.error("Failure retrieving statistics from switch {}. {}", sw, e);
+		case TABLE_FEATURES:	
+			if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_10) > 0) {
+				req = sw.getOFFactory().buildTableFeaturesStatsRequest()
+						.build();		
+			}
+			break;
+		case PORT_DESC:
+			if (sw.getOFFactory().getVersion().compareTo(OFVersion.OF_13) >= 0) {
+				req = sw.getOFFactory().buildPortDescStatsRequest()
+						.build();
 			}
+			break;
+		case EXPERIMENTER:		
+		default:
+			log.error("Stats Request Type {} not implemented yet", statsType.name());
+			break;
 		}
-		return values;
+
+		return req;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,319 @@
+package net.floodlightcontroller.statistics;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nonnull;
+
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.internal.IOFSwitchService;
+import net.floodlightcontroller.debugcounter.IDebugCounter;
+import net.floodlightcontroller.debugcounter.IDebugCounterService;
+import net.floodlightcontroller.debugcounter.IDebugCounterService.MetaData;
+
+import org.projectfloodlight.openflow.protocol.OFStatsReply;
+import org.projectfloodlight.openflow.protocol.OFStatsRequest;
+import org.projectfloodlight.openflow.protocol.OFStatsType;
+import org.projectfloodlight.openflow.types.DatapathId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Polls statistics from all switches without blocking or creating threads.
+ *
+ * Each poll job sends one stats request of its type to every switch once
+ * per interval. A switch's request goes out at a fixed offset into the
+ * interval derived from its DPID, so requests (and replies) are spread over
+ * the interval instead of hitting all switches at once. Replies are handled
+ * through the futures returned by {@link IOFSwitch#writeStatsRequest(OFStatsRequest)}
+ * and passed to the job's handler on the scheduled executor.
+ *
+ * At most maxInFlight requests, summed over all jobs, are outstanding at
+ * any time; further requests wait in a FIFO queue until one completes. A
+ * request without a reply after half the job's interval is counted as
+ * timed out and a late reply is dropped. A switch is not polled again by
+ * a job while its previous request is still queued or outstanding.
+ */
+public class StatisticsPoller {
+	private static final Logger log = LoggerFactory.getLogger(StatisticsPoller.class);
+
+	/**
+	 * Receives the replies to one stats request of one switch.
+	 */
+	public interface IStatsReplyHandler {
+		void statsReceived(DatapathId dpid, List<OFStatsReply> replies);
+	}
+
+	private final IOFSwitchService switchService;
+	private final ScheduledExecutorService executor;
+	private final int maxInFlight;
+
+	private final IDebugCounter ctrRequestsSent;
+	private final IDebugCounter ctrRequestsQueued;
+	private final IDebugCounter ctrRequestsTimedOut;
+	private final IDebugCounter ctrRequestsFailed;
+	private final IDebugCounter ctrRepliesLate;
+	private final IDebugCounter ctrPollsSkipped;
+
+	/* Guarded by this */
+	private int inFlight;
+	private final ArrayDeque<Poll> waiting = new ArrayDeque<Poll>();
+
+	/**
+	 * A periodic poll of one stats type from all switches.
+	 */
+	public class Job {
+		private final OFStatsType statsType;
+		private final long intervalMs;
+		private final IStatsReplyHandler handler;
+		/* Switches with a request of this job queued or outstanding */
+		private final Set<DatapathId> pending = ConcurrentHashMap.newKeySet();
+		private volatile ScheduledFuture<?> ticker;
+		private volatile boolean cancelled;
+
+		private Job(OFStatsType statsType, long intervalMs, IStatsReplyHandler handler) {
+			this.statsType = statsType;
+			this.intervalMs = intervalMs;
+			this.handler = handler;
+		}
+
+		/**
+		 * Stop polling. Requests already outstanding still complete, but
+		 * their replies are no longer passed to the handler.
+		 * @return false if the job was already cancelled
+		 */
+		public boolean cancel() {
+			if (cancelled) {
+				return false;
+			}
+			cancelled = true;
+			return ticker.cancel(false);
+		}
+
+		private void tick() {
+			for (final DatapathId dpid : switchService.getAllSwitchDpids()) {
+				executor.schedule(new Runnable() {
+					@Override
+					public void run() {
+						poll(Job.this, dpid);
+					}
+				}, getOffsetMs(dpid, statsType, intervalMs), TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	private static class Poll {
+		private final Job job;
+		private final DatapathId dpid;
+
+		private Poll(Job job, DatapathId dpid) {
+			this.job = job;
+			this.dpid = dpid;
+		}
+	}
+
+	/**
+	 * @param switchService where switches are looked up at each poll
+	 * @param executor runs the schedules, timeouts and reply handlers
+	 * @param maxInFlight maximum number of outstanding stats requests; must be > 0
+	 * @param debugCounterService where the "statistics" module is already registered
+	 */
+	public StatisticsPoller(@Nonnull IOFSwitchService switchService,
+			@Nonnull ScheduledExecutorService executor, int maxInFlight,
+			@Nonnull IDebugCounterService debugCounterService) {
+		if (maxInFlight <= 0) {
+			throw new IllegalArgumentException("maxInFlight must be > 0. Was " + maxInFlight);
+		}
+		this.switchService = switchService;
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+
+		ctrRequestsSent = debugCounterService.registerCounter("statistics", "stats-requests-sent",
+				"Stats requests sent by the StatisticsCollector");
+		ctrRequestsQueued = debugCounterService.registerCounter("statistics", "stats-requests-queued",
+				"Stats requests that had to wait for another request to complete first");
+		ctrRequestsTimedOut = debugCounterService.registerCounter("statistics", "stats-requests-timed-out",
+				"Stats requests without a reply within half the poll interval", MetaData.WARN);
+		ctrRequestsFailed = debugCounterService.registerCounter("statistics", "stats-requests-failed",
+				"Stats requests answered with an error or cancelled", MetaData.WARN);
+		ctrRepliesLate = debugCounterService.registerCounter("statistics", "stats-replies-late",
+				"Stats replies dropped because their request had already timed out");
+		ctrPollsSkipped = debugCounterService.registerCounter("statistics", "stats-polls-skipped",
+				"Polls of a switch skipped because its previous request was still pending", MetaData.WARN);
+	}
+
+	/**
+	 * Start polling all switches for a stats type.
+	 * @param statsType the stats request sent to each switch
+	 * @param intervalSeconds how often each switch is polled
+	 * @param handler gets the replies of each switch
+	 * @return the job, to cancel it
+	 */
+	public Job start(@Nonnull OFStatsType statsType, int intervalSeconds, @Nonnull IStatsReplyHandler handler) {
+		final Job job = new Job(statsType, TimeUnit.SECONDS.toMillis(intervalSeconds), handler);
+		job.ticker = executor.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					job.tick();
+				} catch (Exception e) {
+					log.error("Failed to schedule " + job.statsType + " stats polls", e);
+				}
+			}
+		}, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+		return job;
+	}
+
+	/**
+	 * Offset of a switch's poll into each interval. It is fixed per switch
+	 * and stats type so that each switch is polled about once per interval,
+	 * and different stats types of a switch are not requested together.
+	 */
+	static long getOffsetMs(DatapathId dpid, OFStatsType statsType, long intervalMs) {
+		if (intervalMs <= 0) {
+			return 0;
+		}
+		long h = dpid.getLong() * 0x9E3779B97F4A7C15L + statsType.ordinal();
+		h ^= h >>> 29;
+		h *= 0xBF58476D1CE4E5B9L;
+		h ^= h >>> 32;
+		return Math.floorMod(h, intervalMs);
+	}
+
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	public synchronized int getQueueLength() {
+		return waiting.size();
+	}
+
+	/**
+	 * Send a job's request to a switch, or queue it if too many requests
+	 * are in flight.
+	 */
+	void poll(Job job, DatapathId dpid) {
+		Poll p = new Poll(job, dpid);
+		if (p.job.cancelled) {
+			return;
+		}
+		if (!p.job.pending.add(p.dpid)) {
+			ctrPollsSkipped.increment();
+			log.debug("Skipping {} stats poll of switch {}; previous request still pending", p.job.statsType, p.dpid);
+			return;
+		}
+		synchronized (this) {
+			if (inFlight >= maxInFlight) {
+				waiting.add(p);
+				ctrRequestsQueued.increment();
+				return;
+			}
+			inFlight++;
+		}
+		send(p);
+	}
+
+	private void send(final Poll p) {
+		IOFSwitch sw = switchService.getSwitch(p.dpid);
+		OFStatsRequest<?> req = null;
+		if (!p.job.cancelled && sw != null) {
+			req = StatisticsCollector.buildStatsRequest(sw, p.job.statsType);
+		}
+		if (req == null) {
+			complete(p);
+			return;
+		}
+
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final ScheduledFuture<?> timeout = executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				if (done.compareAndSet(false, true)) {
+					ctrRequestsTimedOut.increment();
+					log.debug("Timed out waiting for {} stats of switch {}", p.job.statsType, p.dpid);
+					complete(p);
+				}
+			}
+		}, p.job.intervalMs / 2, TimeUnit.MILLISECONDS);
+
+		ListenableFuture<?> future;
+		try {
+			future = sw.writeStatsRequest(req);
+		} catch (Exception e) {
+			log.error("Failure sending " + p.job.statsType + " stats request to switch " + sw, e);
+			if (done.compareAndSet(false, true)) {
+				timeout.cancel(false);
+				ctrRequestsFailed.increment();
+				complete(p);
+			}
+			return;
+		}
+		ctrRequestsSent.increment();
+
+		Futures.addCallback(future, new FutureCallback<Object>() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public void onSuccess(final Object result) {
+				if (!done.compareAndSet(false, true)) {
+					ctrRepliesLate.increment();
+					return;
+				}
+				timeout.cancel(false);
+				/* Don't do the handler's work on the thread completing the future */
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							if (!p.job.cancelled) {
+								p.job.handler.statsReceived(p.dpid, (List<OFStatsReply>) result);
+							}
+						} catch (Exception e) {
+							log.error("Failure handling " + p.job.statsType + " stats of switch " + p.dpid, e);
+						} finally {
+							complete(p);
+						}
+					}
+				});
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				if (done.compareAndSet(false, true)) {
+					timeout.cancel(false);
+					ctrRequestsFailed.increment();
+					log.debug("Failure retrieving {} stats from switch {}: {}",
+							new Object[] { p.job.statsType, p.dpid, t.toString() });
+					complete(p);
+				}
+			}
+		}, MoreExecutors.sameThreadExecutor());
+	}
+
+	/**
+	 * Give back the in-flight slot of a poll and send the next waiting one.
+	 */
+	private void complete(Poll p) {
+		p.job.pending.remove(p.dpid);
+		Poll next;
+		synchronized (this) {
+			next = waiting.poll();
+			if (next == null) {
+				inFlight--;
+				return;
+			}
+			/* the slot passes on to the next poll */
+		}
+		send(next);
+	}
+}
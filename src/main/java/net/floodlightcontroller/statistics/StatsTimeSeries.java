@@ -0,0 +1,198 @@
+package net.floodlightcontroller.statistics;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size history of one or more values, e.g. the RX and TX rates of a
+ * port, kept at several resolutions.
+ *
+ * Each tier is a ring of buckets of {@link #RESOLUTIONS_MS one resolution}.
+ * A sample is added to the current bucket of every tier, and a bucket reads
+ * as the average of the samples in it, so coarser tiers are downsampled
+ * copies of the finer ones that reach further back. All state is in
+ * primitive arrays allocated up front; adding a sample does not allocate.
+ */
+public class StatsTimeSeries {
+	/** Bucket sizes of the tiers, finest first */
+	public static final long[] RESOLUTIONS_MS = { 1000L, 60 * 1000L, 60 * 60 * 1000L };
+
+	private final int channels;
+	private final Tier[] tiers;
+	private long lastUpdated;
+
+	private class Tier {
+		private final long resolutionMs;
+		private final int capacity;
+		/* bucket number (time / resolution) held by each slot; -1 if none */
+		private final long[] buckets;
+		private final int[] counts;
+		/* sums of the samples, channels per slot */
+		private final double[] sums;
+		private long newest = -1;
+
+		private Tier(long resolutionMs, int capacity) {
+			this.resolutionMs = resolutionMs;
+			this.capacity = capacity;
+			this.buckets = new long[capacity];
+			this.counts = new int[capacity];
+			this.sums = new double[capacity * channels];
+			Arrays.fill(buckets, -1);
+		}
+
+		private void add(long timeMs, double[] values) {
+			long bucket = timeMs / resolutionMs;
+			if (bucket <= newest - capacity) {
+				return; /* older than anything we keep */
+			}
+			int slot = (int) (bucket % capacity);
+			if (buckets[slot] != bucket) {
+				buckets[slot] = bucket;
+				counts[slot] = 0;
+				Arrays.fill(sums, slot * channels, (slot + 1) * channels, 0);
+			}
+			counts[slot]++;
+			for (int c = 0; c < channels; c++) {
+				sums[slot * channels + c] += values[c];
+			}
+			newest = Math.max(newest, bucket);
+		}
+
+		private long getOldestMs() {
+			return Math.max(0, newest - capacity + 1) * resolutionMs;
+		}
+	}
+
+	/**
+	 * Samples of a time range, oldest first.
+	 */
+	public static class Range {
+		private final long resolutionMs;
+		private final long[] times;
+		private final double[][] values;
+
+		private Range(long resolutionMs, long[] times, double[][] values) {
+			this.resolutionMs = resolutionMs;
+			this.times = times;
+			this.values = values;
+		}
+
+		/** Bucket size of the tier the samples come from; 0 if there is none */
+		public long getResolutionMs() {
+			return resolutionMs;
+		}
+
+		public int size() {
+			return times.length;
+		}
+
+		/** Start of the i-th sample's bucket, in ms since the epoch */
+		public long getTime(int i) {
+			return times[i];
+		}
+
+		/** Average of the channel over the i-th sample's bucket */
+		public double getValue(int i, int channel) {
+			return values[i][channel];
+		}
+	}
+
+	/**
+	 * @param channels number of values in each sample
+	 * @param retention number of buckets kept at each of {@link #RESOLUTIONS_MS};
+	 * 0 leaves a tier out
+	 */
+	public StatsTimeSeries(int channels, int[] retention) {
+		if (channels <= 0) {
+			throw new IllegalArgumentException("channels must be > 0. Was " + channels);
+		}
+		if (retention.length != RESOLUTIONS_MS.length) {
+			throw new IllegalArgumentException("Need a retention for each of " + RESOLUTIONS_MS.length + " tiers");
+		}
+		this.channels = channels;
+		int n = 0;
+		for (int r : retention) {
+			if (r > 0) {
+				n++;
+			}
+		}
+		tiers = new Tier[n];
+		n = 0;
+		for (int i = 0; i < retention.length; i++) {
+			if (retention[i] > 0) {
+				tiers[n++] = new Tier(RESOLUTIONS_MS[i], retention[i]);
+			}
+		}
+	}
+
+	/**
+	 * Add a sample.
+	 * @param timeMs when the sample was taken, in ms since the epoch
+	 * @param values one value per channel
+	 */
+	public synchronized void add(long timeMs, double... values) {
+		if (values.length != channels) {
+			throw new IllegalArgumentException("Expected " + channels + " values. Got " + values.length);
+		}
+		for (Tier t : tiers) {
+			t.add(timeMs, values);
+		}
+		lastUpdated = Math.max(lastUpdated, timeMs);
+	}
+
+	/**
+	 * @return time of the newest sample, in ms since the epoch; 0 if none
+	 */
+	public synchronized long getLastUpdated() {
+		return lastUpdated;
+	}
+
+	/**
+	 * Get the samples in a time range.
+	 *
+	 * The finest tier of at least minResolutionMs that still reaches back to
+	 * fromMs is used; if none does, the one reaching back furthest is.
+	 * @param fromMs start of the range, inclusive
+	 * @param toMs end of the range, inclusive
+	 * @param minResolutionMs finest bucket size wanted; 0 for any
+	 */
+	public synchronized Range query(long fromMs, long toMs, long minResolutionMs) {
+		Tier tier = null;
+		for (Tier t : tiers) {
+			if (t.resolutionMs < minResolutionMs) {
+				continue;
+			}
+			tier = t;
+			if (t.getOldestMs() <= fromMs) {
+				break;
+			}
+		}
+		if (tier == null || tier.newest < 0 || fromMs > toMs) {
+			return new Range(tier == null ? 0 : tier.resolutionMs, new long[0], new double[0][]);
+		}
+
+		long first = Math.max(0, Math.max(fromMs / tier.resolutionMs, tier.newest - tier.capacity + 1));
+		long last = Math.min(toMs / tier.resolutionMs, tier.newest);
+		int n = 0;
+		for (long b = first; b <= last; b++) {
+			if (tier.buckets[(int) (b % tier.capacity)] == b) {
+				n++;
+			}
+		}
+		long[] times = new long[n];
+		double[][] values = new double[n][];
+		n = 0;
+		for (long b = first; b <= last; b++) {
+			int slot = (int) (b % tier.capacity);
+			if (tier.buckets[slot] != b) {
+				continue;
+			}
+			times[n] = b * tier.resolutionMs;
+			values[n] = new double[channels];
+			for (int c = 0; c < channels; c++) {
+				values[n][c] = tier.sums[slot * channels + c] / tier.counts[slot];
+			}
+			n++;
+		}
+		return new Range(tier.resolutionMs, times, values);
+	}
+}
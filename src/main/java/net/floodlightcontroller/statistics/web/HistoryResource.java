@@ -0,0 +1,123 @@
+package net.floodlightcontroller.statistics.web;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.floodlightcontroller.statistics.IStatisticsService;
+import net.floodlightcontroller.statistics.StatsTimeSeries;
+
+import org.projectfloodlight.openflow.types.DatapathId;
+import org.projectfloodlight.openflow.types.OFPort;
+import org.projectfloodlight.openflow.types.U64;
+import org.restlet.data.Form;
+import org.restlet.resource.Get;
+import org.restlet.resource.ServerResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Range queries over the port and flow statistics history.
+ *
+ * The optional query parameters from and to (ms since the epoch; default
+ * everything kept) select the range, and resolution (ms) the finest
+ * resolution wanted.
+ */
+public class HistoryResource extends ServerResource {
+	private static final Logger log = LoggerFactory.getLogger(HistoryResource.class);
+
+	private static final String[] PORT_CHANNELS = { "bits-per-second-rx", "bits-per-second-tx" };
+	private static final String[] FLOW_CHANNELS = { "bytes-per-second", "packets-per-second" };
+
+	@Get("json")
+	public Object retrieve() {
+		IStatisticsService statisticsService = (IStatisticsService) getContext().getAttributes().get(IStatisticsService.class.getCanonicalName());
+
+		String d = (String) getRequestAttributes().get(SwitchStatisticsWebRoutable.DPID_STR);
+		DatapathId dpid;
+		try {
+			dpid = DatapathId.of(d);
+		} catch (Exception e) {
+			log.error("Could not parse DPID {}", d);
+			return Collections.singletonMap("ERROR", "Could not parse DPID " + d);
+		}
+
+		long from;
+		long to;
+		long resolution;
+		Form form = getQuery();
+		try {
+			from = parseLong(form.getFirstValue("from", true), 0);
+			to = parseLong(form.getFirstValue("to", true), Long.MAX_VALUE);
+			resolution = parseLong(form.getFirstValue("resolution", true), 0);
+		} catch (NumberFormatException e) {
+			return Collections.singletonMap("ERROR", "Could not parse from, to or resolution: " + e.getMessage());
+		}
+
+		if (getRequestAttributes().containsKey(SwitchStatisticsWebRoutable.PORT_STR)) {
+			String p = (String) getRequestAttributes().get(SwitchStatisticsWebRoutable.PORT_STR);
+			OFPort port;
+			try {
+				port = OFPort.of(Integer.parseInt(p));
+			} catch (Exception e) {
+				log.error("Could not parse port {}", p);
+				return Collections.singletonMap("ERROR", "Could not parse port " + p);
+			}
+			StatsTimeSeries ts = statisticsService.getPortHistory(dpid, port);
+			if (ts == null) {
+				return Collections.singletonMap("ERROR", "No history for switch " + dpid + " port " + port);
+			}
+			Map<String, Object> m = toMap(ts.query(from, to, resolution), PORT_CHANNELS);
+			m.put("dpid", dpid.toString());
+			m.put("port", port.toString());
+			return m;
+		}
+
+		String c = ((String) getRequestAttributes().get(SwitchStatisticsWebRoutable.COOKIE_STR)).trim();
+		U64 cookie = null; /* all */
+		if (!c.equalsIgnoreCase("all")) {
+			try {
+				cookie = c.toLowerCase().startsWith("0x")
+						? U64.of(Long.parseUnsignedLong(c.substring(2), 16))
+						: U64.of(Long.parseUnsignedLong(c));
+			} catch (Exception e) {
+				log.error("Could not parse cookie {}", c);
+				return Collections.singletonMap("ERROR", "Could not parse cookie " + c);
+			}
+		}
+		Map<U64, StatsTimeSeries> cookies = statisticsService.getFlowHistory(dpid);
+		List<Map<String, Object>> result = new ArrayList<Map<String, Object>>();
+		for (Map.Entry<U64, StatsTimeSeries> e : cookies.entrySet()) {
+			if (cookie != null && !cookie.equals(e.getKey())) {
+				continue;
+			}
+			Map<String, Object> m = toMap(e.getValue().query(from, to, resolution), FLOW_CHANNELS);
+			m.put("dpid", dpid.toString());
+			m.put("cookie", e.getKey().toString());
+			result.add(m);
+		}
+		return result;
+	}
+
+	private static long parseLong(String s, long def) {
+		return s == null || s.trim().isEmpty() ? def : Long.parseLong(s.trim());
+	}
+
+	private static Map<String, Object> toMap(StatsTimeSeries.Range r, String[] channels) {
+		Map<String, Object> m = new LinkedHashMap<String, Object>();
+		m.put("resolution-ms", r.getResolutionMs());
+		List<Map<String, Object>> samples = new ArrayList<Map<String, Object>>(r.size());
+		for (int i = 0; i < r.size(); i++) {
+			Map<String, Object> sample = new LinkedHashMap<String, Object>();
+			sample.put("time", r.getTime(i));
+			for (int ch = 0; ch < channels.length; ch++) {
+				sample.put(channels[ch], r.getValue(i, ch));
+			}
+			samples.add(sample);
+		}
+		m.put("samples", samples);
+		return m;
+	}
+}
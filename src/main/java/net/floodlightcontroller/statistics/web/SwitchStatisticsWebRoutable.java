@@ -10,6 +10,7 @@ public class SwitchStatisticsWebRoutable implements RestletRoutable {
 	protected static final String DPID_STR = "dpid";
 	protected static final String PORT_STR = "port";
 	protected static final String FLOW_STR = "flow";
+	protected static final String COOKIE_STR = "cookie";
 	protected static final String ENABLE_STR = "enable";
 	protected static final String DISABLE_STR = "disable";
 	
@@ -19,6 +20,8 @@ public class SwitchStatisticsWebRoutable implements RestletRoutable {
         router.attach("/bandwidth/{" + DPID_STR + "}/{" + PORT_STR + "}/json", BandwidthResource.class);
         router.attach("/flow/{" + DPID_STR + "}/json", FlowResource.class);
         router.attach("/portdesc/{" + DPID_STR + "}/{" + PORT_STR + "}/json", PortDescResource.class);
+        router.attach("/history/port/{" + DPID_STR + "}/{" + PORT_STR + "}/json", HistoryResource.class);
+        router.attach("/history/flow/{" + DPID_STR + "}/{" + COOKIE_STR + "}/json", HistoryResource.class);
         router.attach("/config/{" + ENABLE_STR + "}/json", ConfigResource.class);
         router.attach("/config/{" + DISABLE_STR + "}/json", ConfigResource.class);
         router.attach("/config/{" + PORT_STR + "}/{period}/json", ConfigResource.class);
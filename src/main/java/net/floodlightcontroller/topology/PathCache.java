@@ -0,0 +1,96 @@
+package net.floodlightcontroller.topology;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.floodlightcontroller.debugcounter.IDebugCounter;
+import net.floodlightcontroller.routing.Path;
+import net.floodlightcontroller.routing.PathId;
+
+/**
+ * Paths computed on demand, shared by successive topology instances.
+ * Every entry is tagged with the epoch of the instance that computed it
+ * and is only returned to that instance, so a new topology never sees the
+ * paths of an old one. Once a newer instance has used the cache, older
+ * ones no longer add to it, so they cannot evict its entries. Beyond the
+ * capacity, the least recently used entries are evicted.
+ */
+class PathCache {
+    private static final class Entry {
+        private final long epoch;
+        private final List<Path> paths;
+
+        private Entry(long epoch, List<Path> paths) {
+            this.epoch = epoch;
+            this.paths = paths;
+        }
+    }
+
+    private final int capacity;
+    private final Map<PathId, Entry> entries;
+    private final IDebugCounter hits;
+    private final IDebugCounter misses;
+    private final IDebugCounter evictions;
+    /* highest epoch seen in get or put */
+    private long newestEpoch;
+
+    PathCache(final int capacity, IDebugCounter hits, IDebugCounter misses, IDebugCounter evictions) {
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.entries = new LinkedHashMap<PathId, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PathId, Entry> eldest) {
+                if (size() > PathCache.this.capacity) {
+                    PathCache.this.evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param id the switch pair
+     * @param epoch the epoch of the asking topology instance
+     * @return the paths computed for id by that instance, or null
+     */
+    synchronized List<Path> get(PathId id, long epoch) {
+        newestEpoch = Math.max(newestEpoch, epoch);
+        Entry e = entries.get(id);
+        if (e == null || e.epoch != epoch) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return e.paths;
+    }
+
+    /**
+     * Cache the paths an instance computed, unless a newer instance has
+     * used the cache already.
+     */
+    synchronized void put(PathId id, long epoch, List<Path> paths) {
+        if (epoch < newestEpoch) {
+            return;
+        }
+        newestEpoch = epoch;
+        entries.put(id, new Entry(epoch, paths));
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,282 @@
+package net.floodlightcontroller.topology;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import net.floodlightcontroller.core.types.NodePortTuple;
+import net.floodlightcontroller.linkdiscovery.Link;
+import net.floodlightcontroller.routing.BroadcastTree;
+
+import org.projectfloodlight.openflow.types.DatapathId;
+
+/**
+ * The links between switches in a compact form for computing shortest
+ * path trees. Switches are numbered densely, the links into each switch
+ * are kept in compressed sparse row form with their costs in an int
+ * array, and Dijkstra's algorithm runs over an indexed binary heap with
+ * decrease-key. Trees still come out as {@link BroadcastTree}s keyed by
+ * DPID.
+ *
+ * Trees are the same as those computed over the maps of links directly:
+ * switches are settled in order of cost, then DPID, and the links into a
+ * switch are relaxed in the order of its link set.
+ *
+ * A graph is not modified once built, so trees can be computed on it from
+ * several threads at once.
+ */
+class TopologyGraph {
+    private final DatapathId[] switches;
+    private final long[] dpids;
+    private final Map<DatapathId, Integer> index;
+
+    /* links into switch v are edges offsets[v] to offsets[v + 1] - 1 */
+    private final int[] offsets;
+    private final int[] edgeSrc;
+    private final int[] edgeCost;
+    private final Link[] edgeLink;
+
+    /* links out of switch u are edges outEdges[outOffsets[u]] and on */
+    private final int[] outOffsets;
+    private final int[] outEdges;
+
+    /**
+     * @param linkDpidMap the links at each switch
+     * @param linkCost the cost of each link; links without one cost 1
+     */
+    TopologyGraph(Map<DatapathId, Set<Link>> linkDpidMap, Map<Link, Integer> linkCost) {
+        index = new HashMap<DatapathId, Integer>(linkDpidMap.size() * 2);
+        int edges = 0;
+        for (DatapathId sw : linkDpidMap.keySet()) {
+            index.put(sw, index.size());
+        }
+        /* a link may come from a switch that has none listed itself */
+        for (Set<Link> ls : linkDpidMap.values()) {
+            for (Link l : ls) {
+                if (!index.containsKey(l.getSrc())) {
+                    index.put(l.getSrc(), index.size());
+                }
+                edges++;
+            }
+        }
+
+        int n = index.size();
+        switches = new DatapathId[n];
+        dpids = new long[n];
+        for (Map.Entry<DatapathId, Integer> e : index.entrySet()) {
+            switches[e.getValue()] = e.getKey();
+            dpids[e.getValue()] = e.getKey().getLong();
+        }
+
+        offsets = new int[n + 1];
+        edgeSrc = new int[edges];
+        edgeCost = new int[edges];
+        edgeLink = new Link[edges];
+        int e = 0;
+        for (int v = 0; v < n; v++) {
+            offsets[v] = e;
+            Set<Link> ls = linkDpidMap.get(switches[v]);
+            if (ls == null) {
+                continue;
+            }
+            for (Link l : ls) {
+                if (l.getSrc().equals(switches[v])) {
+                    continue; /* a link out of v */
+                }
+                Integer cost = linkCost == null ? null : linkCost.get(l);
+                edgeSrc[e] = index.get(l.getSrc());
+                edgeCost[e] = cost == null ? 1 : cost;
+                edgeLink[e] = l;
+                e++;
+            }
+        }
+        offsets[n] = e;
+
+        outOffsets = new int[n + 1];
+        outEdges = new int[e];
+        for (int i = 0; i < e; i++) {
+            outOffsets[edgeSrc[i] + 1]++;
+        }
+        for (int u = 0; u < n; u++) {
+            outOffsets[u + 1] += outOffsets[u];
+        }
+        int[] next = Arrays.copyOf(outOffsets, n);
+        for (int i = 0; i < e; i++) {
+            outEdges[next[edgeSrc[i]]++] = i;
+        }
+    }
+
+    /**
+     * @param root the switch the tree leads to
+     * @return the shortest path tree toward root
+     */
+    BroadcastTree getTree(DatapathId root) {
+        return getTree(root, null, null);
+    }
+
+    /**
+     * @param root the switch the tree leads to
+     * @param removedSwitches switches the tree must not go through, or null
+     * @param removedPorts ports whose links the tree must not use, or null
+     * @return the shortest path tree toward root
+     */
+    BroadcastTree getTree(DatapathId root, Set<DatapathId> removedSwitches, Set<NodePortTuple> removedPorts) {
+        int n = switches.length;
+        int[] cost = new int[n];
+        int[] via = new int[n];
+        Arrays.fill(cost, TopologyInstance.MAX_PATH_WEIGHT);
+        Arrays.fill(via, -1);
+
+        Integer r = index.get(root);
+        if (r != null) {
+            boolean[] settled = new boolean[n];
+            if (removedSwitches != null) {
+                for (DatapathId sw : removedSwitches) {
+                    Integer i = index.get(sw);
+                    if (i != null) {
+                        settled[i] = true;
+                    }
+                }
+            }
+            boolean[] removedEdges = null;
+            if (removedPorts != null && !removedPorts.isEmpty()) {
+                removedEdges = new boolean[edgeLink.length];
+                for (NodePortTuple npt : removedPorts) {
+                    Integer v = index.get(npt.getNodeId());
+                    if (v == null) {
+                        continue;
+                    }
+                    for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                        if (edgeLink[e].getDstPort().equals(npt.getPortId())) {
+                            removedEdges[e] = true;
+                        }
+                    }
+                    for (int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+                        if (edgeLink[outEdges[i]].getSrcPort().equals(npt.getPortId())) {
+                            removedEdges[outEdges[i]] = true;
+                        }
+                    }
+                }
+            }
+
+            IndexedHeap heap = new IndexedHeap(cost, dpids);
+            cost[r] = 0;
+            heap.offer(r);
+            while (!heap.isEmpty()) {
+                int v = heap.poll();
+                settled[v] = true;
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int u = edgeSrc[e];
+                    if (settled[u] || (removedEdges != null && removedEdges[e])) {
+                        continue;
+                    }
+                    int d = cost[v] + edgeCost[e];
+                    if (d < cost[u]) {
+                        cost[u] = d;
+                        via[u] = e;
+                        heap.offer(u);
+                    }
+                }
+            }
+        }
+
+        HashMap<DatapathId, Link> nexthoplinks = new HashMap<DatapathId, Link>(n * 2);
+        HashMap<DatapathId, Integer> costs = new HashMap<DatapathId, Integer>(n * 2);
+        for (int v = 0; v < n; v++) {
+            nexthoplinks.put(switches[v], via[v] < 0 ? null : edgeLink[via[v]]);
+            costs.put(switches[v], cost[v]);
+        }
+        costs.put(root, 0);
+        return new BroadcastTree(nexthoplinks, costs);
+    }
+
+    /*
+     * Binary min-heap of switch numbers ordered by cost, then DPID, that
+     * knows where each switch is so its cost can be lowered in place.
+     */
+    private static final class IndexedHeap {
+        private final int[] cost;
+        private final long[] dpids;
+        private final int[] heap;
+        private final int[] pos; /* place of each switch in heap, or -1 */
+        private int size;
+
+        private IndexedHeap(int[] cost, long[] dpids) {
+            this.cost = cost;
+            this.dpids = dpids;
+            this.heap = new int[cost.length];
+            this.pos = new int[cost.length];
+            Arrays.fill(pos, -1);
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        /* adds v, or moves it up after its cost went down */
+        private void offer(int v) {
+            if (pos[v] < 0) {
+                heap[size] = v;
+                pos[v] = size;
+                size++;
+            }
+            up(pos[v]);
+        }
+
+        private int poll() {
+            int v = heap[0];
+            pos[v] = -1;
+            size--;
+            if (size > 0) {
+                heap[0] = heap[size];
+                pos[heap[0]] = 0;
+                down(0);
+            }
+            return v;
+        }
+
+        private boolean less(int a, int b) {
+            if (cost[a] != cost[b]) {
+                return cost[a] < cost[b];
+            }
+            return dpids[a] < dpids[b];
+        }
+
+        private void up(int i) {
+            int v = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!less(v, heap[parent])) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                pos[heap[i]] = i;
+                i = parent;
+            }
+            heap[i] = v;
+            pos[v] = i;
+        }
+
+        private void down(int i) {
+            int v = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && less(heap[child + 1], heap[child])) {
+                    child++;
+                }
+                if (!less(heap[child], v)) {
+                    break;
+                }
+                heap[i] = heap[child];
+                pos[heap[i]] = i;
+                i = child;
+            }
+            heap[i] = v;
+            pos[v] = i;
+        }
+    }
+}
@@ -21,6 +21,7 @@ import net.floodlightcontroller.core.IOFSwitch;
 import net.floodlightcontroller.core.types.NodePortTuple;
 import net.floodlightcontroller.linkdiscovery.Link;
 import net.floodlightcontroller.routing.BroadcastTree;
+import net.floodlightcontroller.routing.IRoutingService.PATH_METRIC;
 import net.floodlightcontroller.routing.Path;
 import net.floodlightcontroller.routing.PathId;
 import net.floodlightcontroller.statistics.SwitchPortBandwidth;
@@ -35,6 +36,11 @@ import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -80,6 +86,19 @@ public class TopologyInstance {
     private Map<Cluster, Archipelago>           archipelagoFromCluster;
     private Map<DatapathId, Set<NodePortTuple>> portsBroadcastPerArchipelago; /* broadcast ports in each archipelago ID */
     private Map<PathId, List<Path>>             pathcache; /* contains computed paths ordered best to worst */
+    private Map<DatapathId, BroadcastTree>      dstRootedTrees; /* shortest path tree toward each switch */
+
+    /* What the paths were computed with, to update them for the next instance */
+    private Map<Link, LinkWeight>               linkWeights;
+    private PATH_METRIC                         pathMetric;
+    private int                                 maxPaths;
+
+    /* When paths are computed on demand: where they go, and what they are computed from */
+    private PathCache                           pathCacheOnDemand;
+    private long                                epoch;
+    private Map<Link, Integer>                  onDemandLinkCost;
+    private TopologyGraph                       onDemandGraph;
+    private Map<DatapathId, Archipelago>        archipelagoFromSwitch;
 
     protected TopologyInstance(Map<DatapathId, Set<OFPort>> portsWithLinks,
             Set<NodePortTuple> portsBlocked,
@@ -131,6 +150,7 @@ public class TopologyInstance {
         this.portsBroadcastPerSwitch = new HashMap<DatapathId,Set<OFPort>>();
 
         this.pathcache = new HashMap<PathId, List<Path>>();
+        this.dstRootedTrees = new HashMap<DatapathId, BroadcastTree>();
 
         this.portsBroadcastPerArchipelago = new HashMap<DatapathId, Set<NodePortTuple>>();
 
@@ -138,6 +158,31 @@ public class TopologyInstance {
     }
 
     protected void compute() {
+        compute(null, 0);
+    }
+
+    /**
+     * Compute paths only when asked for them, rather than between all
+     * switches up front, and keep them in the given cache. Call before
+     * {@link #compute(TopologyInstance, int)}.
+     * @param cache the cache shared with the other instances
+     * @param epoch tags the paths of this instance in the cache; must
+     * be greater than that of every instance before
+     */
+    protected void computePathsOnDemand(PathCache cache, long epoch) {
+        this.pathCacheOnDemand = cache;
+        this.epoch = epoch;
+    }
+
+    /**
+     * Compute the topology, reusing the shortest path trees and paths of
+     * the previous instance where the links that changed since cannot
+     * affect them.
+     * @param previous the instance this one replaces, or null
+     * @param maxChangedLinks the most links that may have changed for
+     * the paths to be updated rather than computed anew
+     */
+    protected void compute(TopologyInstance previous, int maxChangedLinks) {
         /*
          * Step 1: Compute clusters ignoring ports with > 2 links and 
          * blocked links.
@@ -163,9 +208,16 @@ public class TopologyInstance {
          * Step 4: Use Yens algorithm to permute through each node combination
          * within each archipelago and compute multiple paths. The shortest
          * path located (i.e. first run of dijkstra's algorithm) will be used 
-         * as the broadcast tree for the archipelago.
+         * as the broadcast tree for the archipelago. If only a few links
+         * changed since the previous instance, only the trees and paths
+         * those links can affect are computed again. When computing paths on
+         * demand, only the broadcast trees are computed here.
          */
-        computeOrderedPaths();
+        if (pathCacheOnDemand != null) {
+            computeBroadcastTrees();
+        } else if (previous == null || !updateOrderedPaths(previous, maxChangedLinks)) {
+            computeOrderedPaths();
+        }
 
         /*
          * Step 5: Determine the broadcast ports for each archipelago. These are
@@ -220,7 +272,7 @@ public class TopologyInstance {
         log.debug("-----------------------------------------------");  
     }
 
-    private void identifyIntraClusterLinks() {
+    protected void identifyIntraClusterLinks() {
         for (DatapathId s : switches) {
             if (portsWithLinks.get(s) == null) continue;
             for (OFPort p : portsWithLinks.get(s)) {
@@ -256,7 +308,7 @@ public class TopologyInstance {
      *
      * http://en.wikipedia.org/wiki/Tarjan%27s_strongly_connected_components_algorithm
      */
-    private void identifyClusters() {
+    protected void identifyClusters() {
         Map<DatapathId, ClusterDFS> dfsList = new HashMap<DatapathId, ClusterDFS>();
 
         if (switches == null) return;
@@ -441,60 +493,6 @@ public class TopologyInstance {
         return portsBroadcastAll.contains(npt);
     }
 
-    private class NodeDist implements Comparable<NodeDist> {
-        private final DatapathId node;
-        public DatapathId getNode() {
-            return node;
-        }
-
-        private final int dist;
-        public int getDist() {
-            return dist;
-        }
-
-        public NodeDist(DatapathId node, int dist) {
-            this.node = node;
-            this.dist = dist;
-        }
-
-        @Override
-        public int compareTo(NodeDist o) {
-            if (o.dist == this.dist) {
-                return (int)(this.node.getLong() - o.node.getLong());
-            }
-            return this.dist - o.dist;
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj)
-                return true;
-            if (obj == null)
-                return false;
-            if (getClass() != obj.getClass())
-                return false;
-            NodeDist other = (NodeDist) obj;
-            if (!getOuterType().equals(other.getOuterType()))
-                return false;
-            if (node == null) {
-                if (other.node != null)
-                    return false;
-            } else if (!node.equals(other.node))
-                return false;
-            return true;
-        }
-
-        @Override
-        public int hashCode() {
-            assert false : "hashCode not designed";
-        return 42;
-        }
-
-        private TopologyInstance getOuterType() {
-            return TopologyInstance.this;
-        }
-    }
-
     protected void identifyArchipelagos() {
         // Iterate through each external link and create/merge archipelagos based on the
         // islands that each link is connected to
@@ -562,85 +560,6 @@ public class TopologyInstance {
     }
     
 
-    /*
-     * Dijkstra that calculates destination rooted trees over the entire topology.
-     */
-    private BroadcastTree dijkstra(Map<DatapathId, Set<Link>> links, DatapathId root,
-            Map<Link, Integer> linkCost,
-            boolean isDstRooted) {
-        HashMap<DatapathId, Link> nexthoplinks = new HashMap<DatapathId, Link>();
-        HashMap<DatapathId, Integer> cost = new HashMap<DatapathId, Integer>();
-        int w;
-
-        for (DatapathId node : links.keySet()) {
-            nexthoplinks.put(node, null);
-            cost.put(node, MAX_PATH_WEIGHT);
-            //log.debug("Added max cost to {}", node);
-        }
-
-        HashMap<DatapathId, Boolean> seen = new HashMap<DatapathId, Boolean>();
-        PriorityQueue<NodeDist> nodeq = new PriorityQueue<NodeDist>();
-        nodeq.add(new NodeDist(root, 0));
-        cost.put(root, 0);
-
-        //log.debug("{}", links);
-
-        while (nodeq.peek() != null) {
-            NodeDist n = nodeq.poll();
-            DatapathId cnode = n.getNode();
-            int cdist = n.getDist();
-
-            if (cdist >= MAX_PATH_WEIGHT) break;
-            if (seen.containsKey(cnode)) continue;
-            seen.put(cnode, true);
-
-            //log.debug("cnode {} and links {}", cnode, links.get(cnode));
-            if (links.get(cnode) == null) continue;
-            for (Link link : links.get(cnode)) {
-                DatapathId neighbor;
-
-                if (isDstRooted == true) {
-                    neighbor = link.getSrc();
-                } else {
-                    neighbor = link.getDst();
-                }
-
-                // links directed toward cnode will result in this condition
-                if (neighbor.equals(cnode)) continue;
-
-                if (seen.containsKey(neighbor)) continue;
-
-                if (linkCost == null || linkCost.get(link) == null) {
-                    w = 1;
-                } else {
-                    w = linkCost.get(link);
-                }
-
-                int ndist = cdist + w; // the weight of the link, always 1 in current version of floodlight.
-                log.debug("Neighbor: {}", neighbor);
-                log.debug("Cost: {}", cost);
-                log.debug("Neighbor cost: {}", cost.get(neighbor));
-
-                if (ndist < cost.get(neighbor)) {
-                    cost.put(neighbor, ndist);
-                    nexthoplinks.put(neighbor, link);
-
-                    NodeDist ndTemp = new NodeDist(neighbor, ndist);
-                    // Remove an object that's already in there.
-                    // Note that the comparison is based on only the node id,
-                    // and not node id and distance.
-                    nodeq.remove(ndTemp);
-                    // add the current object to the queue.
-                    nodeq.add(ndTemp);
-                }
-            }
-        }
-
-        BroadcastTree ret = new BroadcastTree(nexthoplinks, cost);
-
-        return ret;
-    }
-
     /*
      * Creates a map of links and the cost associated with each link
      */
@@ -774,26 +693,323 @@ public class TopologyInstance {
      * in the pathcache.
      */
     private void computeOrderedPaths() {
-        List<Path> paths;
-        PathId pathId;
         pathcache.clear();
+        dstRootedTrees.clear();
+
+        Map<Link, Integer> linkCost = initLinkCostMap();
+        Map<DatapathId, Set<Link>> linkDpidMap = buildLinkDpidMap(switches, portsWithLinks, links);
+        TopologyGraph graph = new TopologyGraph(linkDpidMap, linkCost);
+        int K = TopologyManager.getMaxPathsToComputeInternal();
 
         for (Archipelago a : archipelagos) { /* for each archipelago */
-            Set<DatapathId> srcSws = a.getSwitches();
-            Set<DatapathId> dstSws = a.getSwitches();
-            log.debug("SRC {}", srcSws);
-            log.debug("DST {}", dstSws);
+            List<DatapathId> sws = new ArrayList<DatapathId>(a.getSwitches());
+            log.debug("Switches {}", sws);
+
+            /* one tree per destination, shared by all sources */
+            List<BroadcastTree> trees = computeAll(sws, dst -> graph.getTree(dst));
+            for (int i = 0; i < sws.size(); i++) {
+                dstRootedTrees.put(sws.get(i), trees.get(i));
+            }
 
-            for (DatapathId src : srcSws) { /* permute all member switches */
-                for (DatapathId dst : dstSws) {
+            /* permute all member switches, one source at a time */
+            List<List<List<Path>>> rows = computeAll(sws, src -> {
+                List<List<Path>> row = new ArrayList<List<Path>>(sws.size());
+                for (DatapathId dst : sws) {
                     log.debug("Calling Yens {} {}", src, dst);
-                    paths = yens(src, dst, TopologyManager.getMaxPathsToComputeInternal(),
-                            getArchipelago(src), getArchipelago(dst));
-                    pathId = new PathId(src, dst);
+                    row.add(yens(src, dst, K, a, a, linkCost, graph, dstRootedTrees.get(dst)));
+                }
+                return row;
+            });
+            for (int i = 0; i < sws.size(); i++) {
+                for (int j = 0; j < sws.size(); j++) {
+                    pathcache.put(new PathId(sws.get(i), sws.get(j)), rows.get(i).get(j));
+                }
+            }
+            /* add one of the trees as our archipelago's broadcast tree */
+            a.setBroadcastTree(dstRootedTrees.get(sws.get(sws.size() - 1)));
+        }
+
+        linkWeights = getLinkWeights(linkDpidMap, linkCost);
+        pathMetric = TopologyManager.getPathMetricInternal();
+        maxPaths = K;
+    }
+
+    /*
+     * Computes only the broadcast tree of each archipelago, the same one
+     * computeOrderedPaths() picks, and keeps what is needed to compute
+     * paths on demand in getPaths().
+     */
+    private void computeBroadcastTrees() {
+        onDemandLinkCost = initLinkCostMap();
+        onDemandGraph = new TopologyGraph(buildLinkDpidMap(switches, portsWithLinks, links), onDemandLinkCost);
+        archipelagoFromSwitch = new HashMap<DatapathId, Archipelago>();
+        dstRootedTrees.clear();
+
+        List<DatapathId> roots = new ArrayList<DatapathId>(archipelagos.size());
+        for (Archipelago a : archipelagos) {
+            DatapathId last = null;
+            for (DatapathId sw : a.getSwitches()) {
+                archipelagoFromSwitch.put(sw, a);
+                last = sw;
+            }
+            roots.add(last);
+        }
+        List<BroadcastTree> trees = computeAll(roots, root -> onDemandGraph.getTree(root));
+        for (int i = 0; i < roots.size(); i++) {
+            dstRootedTrees.put(roots.get(i), trees.get(i));
+            archipelagos.get(i).setBroadcastTree(trees.get(i));
+        }
+    }
+
+    /*
+     * Derives the trees and paths from those of the previous instance,
+     * computing again only
+     * - the tree toward a switch if one of its links is gone or costs more,
+     *   or if a new or cheaper link gives some switch a shorter way to it;
+     * - the paths between two switches if one of them uses a link that is
+     *   gone or changed, or if a new or cheaper link allows a path no longer
+     *   than the longest kept (or any path, if fewer than K were found).
+     * Gives up, leaving everything to computeOrderedPaths(), if the metric,
+     * K or the archipelagos changed, or if more than maxChangedLinks links
+     * did.
+     */
+    private boolean updateOrderedPaths(TopologyInstance previous, int maxChangedLinks) {
+        int K = TopologyManager.getMaxPathsToComputeInternal();
+        if (previous.linkWeights == null
+                || previous.pathMetric != TopologyManager.getPathMetricInternal()
+                || previous.maxPaths != K
+                || !getArchipelagoSwitches().equals(previous.getArchipelagoSwitches())) {
+            return false;
+        }
+
+        Map<Link, Integer> linkCost = initLinkCostMap();
+        Map<DatapathId, Set<Link>> linkDpidMap = buildLinkDpidMap(switches, portsWithLinks, links);
+        Map<Link, LinkWeight> weights = getLinkWeights(linkDpidMap, linkCost);
+
+        Set<Link> changed = new HashSet<Link>(); /* gone, or cost or latency changed */
+        Set<Link> dearer = new HashSet<Link>(); /* gone, or cost went up */
+        Set<Link> cheaper = new HashSet<Link>(); /* new, or cost went down */
+        for (Entry<Link, LinkWeight> e : previous.linkWeights.entrySet()) {
+            LinkWeight w = weights.get(e.getKey());
+            if (!e.getValue().equals(w)) {
+                changed.add(e.getKey());
+                if (w == null || w.cost > e.getValue().cost) {
+                    dearer.add(e.getKey());
+                }
+            }
+        }
+        for (Entry<Link, LinkWeight> e : weights.entrySet()) {
+            LinkWeight old = previous.linkWeights.get(e.getKey());
+            if (old == null || e.getValue().cost < old.cost) {
+                cheaper.add(e.getKey());
+            }
+        }
+        Set<Link> all = new HashSet<Link>(changed);
+        all.addAll(cheaper);
+        if (all.size() > maxChangedLinks) {
+            log.debug("{} links changed; computing all paths", all.size());
+            return false;
+        }
+        TopologyGraph graph = new TopologyGraph(linkDpidMap, linkCost);
+
+        pathcache.clear();
+        dstRootedTrees.clear();
+        int trees = 0;
+        int pairs = 0;
+        for (Archipelago a : archipelagos) {
+            List<DatapathId> sws = new ArrayList<DatapathId>(a.getSwitches());
+            List<BroadcastTree> ts = computeAll(sws, dst -> {
+                BroadcastTree t = previous.dstRootedTrees.get(dst);
+                if (t == null || isTreeAffected(t, dearer, cheaper, weights)) {
+                    t = graph.getTree(dst);
+                }
+                return t;
+            });
+            for (int i = 0; i < sws.size(); i++) {
+                dstRootedTrees.put(sws.get(i), ts.get(i));
+                if (ts.get(i) != previous.dstRootedTrees.get(sws.get(i))) {
+                    trees++;
+                }
+            }
+        }
+
+        for (Archipelago a : archipelagos) {
+            List<DatapathId> sws = new ArrayList<DatapathId>(a.getSwitches());
+            List<List<List<Path>>> rows = computeAll(sws, src -> {
+                List<List<Path>> row = new ArrayList<List<Path>>(sws.size());
+                for (DatapathId dst : sws) {
+                    List<Path> paths = previous.pathcache.get(new PathId(src, dst));
+                    if (paths == null || arePathsAffected(src, dst, paths, K, changed, cheaper, weights)) {
+                        paths = yens(src, dst, K, a, a, linkCost, graph, dstRootedTrees.get(dst));
+                    }
+                    row.add(paths);
+                }
+                return row;
+            });
+            for (int i = 0; i < sws.size(); i++) {
+                for (int j = 0; j < sws.size(); j++) {
+                    PathId pathId = new PathId(sws.get(i), sws.get(j));
+                    List<Path> paths = rows.get(i).get(j);
                     pathcache.put(pathId, paths);
-                    log.debug("Adding paths {}", paths);
+                    if (paths != previous.pathcache.get(pathId)) {
+                        pairs++;
+                    }
                 }
             }
+            /* same broadcast tree computeOrderedPaths() would leave */
+            a.setBroadcastTree(dstRootedTrees.get(sws.get(sws.size() - 1)));
+        }
+
+        linkWeights = weights;
+        pathMetric = previous.pathMetric;
+        maxPaths = K;
+        log.debug("{} links changed; computed {} of {} trees and {} of {} path sets again",
+                new Object[] { all.size(), trees, dstRootedTrees.size(), pairs, pathcache.size() });
+        return true;
+    }
+
+    /*
+     * Applies f to each of items, in parallel on the topology compute pool
+     * if there is one. The results come in the order of the items, so they
+     * do not depend on how the work was scheduled; f must only read the
+     * instance.
+     */
+    private static <T, R> List<R> computeAll(List<T> items, Function<T, R> f) {
+        List<R> results = new ArrayList<R>(items.size());
+        ForkJoinPool pool = TopologyManager.getComputePoolInternal();
+        if (pool == null || items.size() < 2) {
+            for (T item : items) {
+                results.add(f.apply(item));
+            }
+            return results;
+        }
+
+        List<Callable<R>> tasks = new ArrayList<Callable<R>>(items.size());
+        for (T item : items) {
+            tasks.add(() -> f.apply(item));
+        }
+        try {
+            for (Future<R> result : pool.invokeAll(tasks)) {
+                results.add(result.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Topology computation failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during topology computation", e);
+        }
+        return results;
+    }
+
+    private Set<Set<DatapathId>> getArchipelagoSwitches() {
+        Set<Set<DatapathId>> sets = new HashSet<Set<DatapathId>>();
+        for (Archipelago a : archipelagos) {
+            sets.add(a.getSwitches());
+        }
+        return sets;
+    }
+
+    private static Map<Link, LinkWeight> getLinkWeights(Map<DatapathId, Set<Link>> linkDpidMap,
+            Map<Link, Integer> linkCost) {
+        Map<Link, LinkWeight> weights = new HashMap<Link, LinkWeight>();
+        for (Set<Link> ls : linkDpidMap.values()) {
+            for (Link l : ls) {
+                Integer cost = linkCost == null ? null : linkCost.get(l);
+                weights.put(l, new LinkWeight(cost == null ? 1 : cost, l.getLatency()));
+            }
+        }
+        return weights;
+    }
+
+    private static boolean isTreeAffected(BroadcastTree tree, Set<Link> dearer, Set<Link> cheaper,
+            Map<Link, LinkWeight> weights) {
+        Map<DatapathId, Link> nexthoplinks = tree.getLinks();
+        for (Link l : dearer) {
+            if (l.equals(nexthoplinks.get(l.getSrc()))) {
+                return true;
+            }
+        }
+        Map<DatapathId, Integer> costs = tree.getCosts();
+        for (Link l : cheaper) {
+            Integer cu = costs.get(l.getSrc());
+            Integer cv = costs.get(l.getDst());
+            if (cu == null || cv == null) {
+                return true; /* new to the tree */
+            }
+            if (cv < MAX_PATH_WEIGHT && cv + weights.get(l).cost < cu) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean arePathsAffected(DatapathId src, DatapathId dst, List<Path> paths, int K,
+            Set<Link> changed, Set<Link> cheaper, Map<Link, LinkWeight> weights) {
+        if (src.equals(dst)) {
+            return false;
+        }
+        long longest = 0;
+        for (Path p : paths) {
+            List<NodePortTuple> npts = p.getPath();
+            long cost = 0;
+            for (int i = 0; i < npts.size() - 1; i += 2) {
+                Link l = new Link(npts.get(i).getNodeId(), npts.get(i).getPortId(),
+                        npts.get(i + 1).getNodeId(), npts.get(i + 1).getPortId(), U64.ZERO);
+                LinkWeight w = weights.get(l);
+                if (w == null || changed.contains(l)) {
+                    return true;
+                }
+                cost += w.cost;
+            }
+            longest = Math.max(longest, cost);
+        }
+        if (cheaper.isEmpty()) {
+            return false;
+        }
+
+        /* the shortest path through l costs d(src, l.src) + w(l) + d(l.dst, dst) */
+        BroadcastTree toDst = dstRootedTrees.get(dst);
+        for (Link l : cheaper) {
+            BroadcastTree toU = dstRootedTrees.get(l.getSrc());
+            if (toU == null || toDst == null) {
+                return true;
+            }
+            int du = toU.getCost(src);
+            int dv = toDst.getCost(l.getDst());
+            if (du < 0 || dv < 0) {
+                return true;
+            }
+            if (du >= MAX_PATH_WEIGHT || dv >= MAX_PATH_WEIGHT) {
+                continue;
+            }
+            if (paths.size() < K || (long) du + weights.get(l).cost + dv <= longest) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* Cost and latency of a link when the paths were computed */
+    private static final class LinkWeight {
+        private final int cost;
+        private final U64 latency;
+
+        private LinkWeight(int cost, U64 latency) {
+            this.cost = cost;
+            this.latency = latency;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof LinkWeight)) return false;
+            LinkWeight other = (LinkWeight) obj;
+            return cost == other.cost && Objects.equals(latency, other.latency);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * cost + Objects.hashCode(latency);
         }
     }
 
@@ -899,7 +1115,7 @@ public class TopologyInstance {
      */
     public List<Path> getPathsFast(DatapathId src, DatapathId dst, int k) {
         PathId routeId = new PathId(src, dst);
-        List<Path> routes = pathcache.get(routeId);
+        List<Path> routes = getPaths(routeId);
 
         if (routes == null || k < 1) {
             return ImmutableList.of();
@@ -926,7 +1142,7 @@ public class TopologyInstance {
      */
     public List<Path> getPathsSlow(DatapathId src, DatapathId dst, int k) {
         PathId pathId = new PathId(src, dst);
-        List<Path> paths = pathcache.get(pathId);
+        List<Path> paths = getPaths(pathId);
 
         if (paths == null || k < 1) return ImmutableList.of();
 
@@ -938,6 +1154,29 @@ public class TopologyInstance {
         }
     }
 
+    /*
+     * The paths computed between the switches of id, computing them now
+     * if paths are computed on demand. Null if the switches are not in
+     * the same archipelago.
+     */
+    private List<Path> getPaths(PathId id) {
+        if (pathCacheOnDemand == null) {
+            return pathcache.get(id);
+        }
+
+        Archipelago a = archipelagoFromSwitch.get(id.getSrc());
+        if (a == null || a != archipelagoFromSwitch.get(id.getDst())) {
+            return null;
+        }
+        List<Path> paths = pathCacheOnDemand.get(id, epoch);
+        if (paths == null) {
+            paths = yens(id.getSrc(), id.getDst(), TopologyManager.getMaxPathsToComputeInternal(), a, a,
+                    onDemandLinkCost, onDemandGraph, dstRootedTrees.get(id.getDst()));
+            pathCacheOnDemand.put(id, epoch, paths);
+        }
+        return paths;
+    }
+
     private Archipelago getArchipelago(DatapathId d) {
         for (Archipelago a : archipelagos) {
             if (a.getSwitches().contains(d)) {
@@ -974,17 +1213,24 @@ public class TopologyInstance {
     }
 
     private List<Path> yens(DatapathId src, DatapathId dst, Integer K, Archipelago aSrc, Archipelago aDst) {
-
-        log.debug("YENS ALGORITHM -----------------");
-        log.debug("Asking for paths from {} to {}", src, dst);
-        log.debug("Asking for {} paths", K);
-
         // Find link costs
         Map<Link, Integer> linkCost = initLinkCostMap();
 
-        Map<DatapathId, Set<Link>> linkDpidMap = buildLinkDpidMap(switches, portsWithLinks, links);
+        TopologyGraph graph = new TopologyGraph(buildLinkDpidMap(switches, portsWithLinks, links), linkCost);
 
-        Map<DatapathId, Set<Link>> copyOfLinkDpidMap = new HashMap<DatapathId, Set<Link>>(linkDpidMap);
+        return yens(src, dst, K, aSrc, aDst, linkCost, graph, null);
+    }
+
+    /*
+     * Yen's algorithm over the given link costs and graph of them. The
+     * shortest path tree toward dst is computed unless given in dstTree.
+     */
+    private List<Path> yens(DatapathId src, DatapathId dst, Integer K, Archipelago aSrc, Archipelago aDst,
+            Map<Link, Integer> linkCost, TopologyGraph graph, BroadcastTree dstTree) {
+
+        log.debug("YENS ALGORITHM -----------------");
+        log.debug("Asking for paths from {} to {}", src, dst);
+        log.debug("Asking for {} paths", K);
 
         // A is the list of shortest paths. The number in the list at the end should be less than or equal to K
         // B is the list of possible shortest paths found in this function.
@@ -1008,9 +1254,7 @@ public class TopologyInstance {
         }
 
         /* Use Dijkstra's to find the shortest path, which will also be the first path in A */
-        BroadcastTree bt = dijkstra(copyOfLinkDpidMap, dst, linkCost, true);
-        /* add this initial tree as our archipelago's broadcast tree (aSrc == aDst) */
-        aSrc.setBroadcastTree(bt);
+        BroadcastTree bt = dstTree != null ? dstTree : graph.getTree(dst);
         /* now add the shortest path */
         log.debug("src {} dst {} tree {}", new Object[] {src, dst, bt});
         Path newroute = buildPath(new PathId(src, dst), bt); /* guaranteed to be in same tree */
@@ -1043,29 +1287,28 @@ public class TopologyInstance {
                         path.subList(0, i));
 
 
-                Map<NodePortTuple, Set<Link>> allLinksCopy = new HashMap<NodePortTuple, Set<Link>>(links);
                 // Remove the links after the spur node that are part of other paths in A so that new paths
                 // found are unique
+                Set<NodePortTuple> removedPorts = new HashSet<NodePortTuple>();
                 for (Path r : A) {
                     if (r.getPath().size() > (i + 1) && r.getPath().subList(0, i).equals(rootPath.getPath())) {
-                        allLinksCopy.remove(r.getPath().get(i));
-                        allLinksCopy.remove(r.getPath().get(i+1));
+                        removedPorts.add(r.getPath().get(i));
+                        removedPorts.add(r.getPath().get(i+1));
                     }
                 }
 
                 // Removes the root path so Dijkstra's doesn't try to go through it to find a path
-                Set<DatapathId> switchesCopy = new HashSet<DatapathId>(switches);
+                Set<DatapathId> removedSwitches = new HashSet<DatapathId>();
                 for (NodePortTuple npt : rootPath.getPath()) {
                     if (!npt.getNodeId().equals(spurNode)) {
-                        switchesCopy.remove(npt.getNodeId());
+                        removedSwitches.add(npt.getNodeId());
                     }
                 }
 
-                // Builds the new topology without the parts we want removed
-                copyOfLinkDpidMap = buildLinkDpidMap(switchesCopy, portsWithLinks, allLinksCopy);
-
-                // Uses Dijkstra's to try to find a shortest path from the spur node to the destination
-                Path spurPath = buildPath(new PathId(spurNode, dst), dijkstra(copyOfLinkDpidMap, dst, linkCost, true));
+                // Uses Dijkstra's to try to find a shortest path from the spur node to the destination,
+                // without the parts we want removed
+                Path spurPath = buildPath(new PathId(spurNode, dst),
+                        graph.getTree(dst, removedSwitches, removedPorts));
                 if (spurPath == null || spurPath.getPath().isEmpty()) {
                     log.debug("spurPath is null");
                     continue;
@@ -1107,17 +1350,21 @@ public class TopologyInstance {
 
             log.debug("Removing shortest path from {}", B);
             // Find the shortest path in B, remove it, and put it in A
-            log.debug("--------------BEFORE------------------------");
-            for (Path r : B) {
-                log.debug(r.toString());
+            if (log.isDebugEnabled()) {
+                log.debug("--------------BEFORE------------------------");
+                for (Path r : B) {
+                    log.debug(r.toString());
+                }
+                log.debug("--------------------------------------------");
             }
-            log.debug("--------------------------------------------");
             Path shortestPath = removeShortestPath(B, linkCost);
-            log.debug("--------------AFTER------------------------");
-            for (Path r : B) {
-                log.debug(r.toString());
+            if (log.isDebugEnabled()) {
+                log.debug("--------------AFTER------------------------");
+                for (Path r : B) {
+                    log.debug(r.toString());
+                }
+                log.debug("--------------------------------------------");
             }
-            log.debug("--------------------------------------------");
 
             if (shortestPath != null) {
                 log.debug("Adding new shortest path to {} in Yen's", shortestPath);
@@ -1152,13 +1399,15 @@ public class TopologyInstance {
         for (Path r : routes) {
             Integer pathCost = 0;
             // Add up the weights of each link in the path
-            // TODO Get the path cost from the route object
-            for (NodePortTuple npt : r.getPath()) {
-                if (links.get(npt) == null || linkCost.get(links.get(npt).iterator().next()) == null) {
+            List<NodePortTuple> npts = r.getPath();
+            for (int i = 0; i < npts.size() - 1; i += 2) {
+                Link l = new Link(npts.get(i).getNodeId(), npts.get(i).getPortId(),
+                        npts.get(i + 1).getNodeId(), npts.get(i + 1).getPortId(), U64.ZERO);
+                if (linkCost == null || linkCost.get(l) == null) {
                     pathCost++;
                 }
                 else {
-                    pathCost += linkCost.get(links.get(npt).iterator().next());
+                    pathCost += linkCost.get(l);
                 }
             }
             log.debug("Path {} with cost {}", r, pathCost);
@@ -1227,8 +1476,9 @@ public class TopologyInstance {
         Path result = null;
 
         try {
-            if (!pathcache.get(id).isEmpty()) {
-                result = pathcache.get(id).get(0);
+            List<Path> paths = getPaths(id);
+            if (!paths.isEmpty()) {
+                result = paths.get(0);
             }
         } catch (Exception e) {
             log.warn("Could not find route from {} to {}. If the path exists, wait for the topology to settle, and it will be detected", srcId, dstId);
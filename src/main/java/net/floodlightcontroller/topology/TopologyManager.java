@@ -53,9 +53,11 @@ import com.google.common.collect.ImmutableSet;
 
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Topology manager is responsible for maintaining the controller's notion
@@ -74,6 +76,26 @@ ITopologyManagerBackend, ILinkDiscoveryListener, IOFMessageListener {
      */
     private static volatile int maxPathsToCompute = 3;
 
+    /**
+     * Most links that may change between two topology instances for the
+     * paths of the new one to be derived from the old; 0 computes all
+     * paths every time.
+     */
+    private static volatile int incrementalPathUpdateMaxLinks = 32;
+
+    /**
+     * Paths computed on demand rather than between all switches upon
+     * topology updates, or null if they are not.
+     */
+    protected PathCache pathCache;
+    private final AtomicLong topologyEpoch = new AtomicLong();
+
+    /**
+     * Pool the trees and paths of a new topology instance are computed
+     * on, or null to compute them on the calling thread.
+     */
+    private static volatile ForkJoinPool computePool;
+
     /**
      * Role of the controller.
      */
@@ -149,6 +171,9 @@ ITopologyManagerBackend, ILinkDiscoveryListener, IOFMessageListener {
      */
     protected static final String PACKAGE = TopologyManager.class.getPackage().getName();
     protected IDebugCounter ctrIncoming;
+    protected IDebugCounter ctrPathCacheHit;
+    protected IDebugCounter ctrPathCacheMiss;
+    protected IDebugCounter ctrPathCacheEviction;
 
     //  Getter/Setter methods
     /**
@@ -357,6 +382,41 @@ ITopologyManagerBackend, ILinkDiscoveryListener, IOFMessageListener {
         return maxPathsToCompute;
     }
 
+    protected static ForkJoinPool getComputePoolInternal() {
+        return computePool;
+    }
+
+    /**
+     * Compute topology instances on up to parallelism threads.
+     * @param parallelism number of threads; 1 computes on the thread
+     * that builds the instance, 0 or less uses one thread per processor
+     */
+    protected static synchronized void setComputeParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        ForkJoinPool old = computePool;
+        if (old != null && old.getParallelism() == parallelism) {
+            return;
+        }
+        computePool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        if (old != null) {
+            old.shutdown();
+        }
+        log.info("Will compute topology instances on {} thread(s)", parallelism);
+    }
+
+    /**
+     * Stop the threads topology instances are computed on; instances are
+     * computed on the calling thread from now on.
+     */
+    protected static synchronized void shutdownComputePool() {
+        if (computePool != null) {
+            computePool.shutdown();
+            computePool = null;
+        }
+    }
+
     @Override
     public int getMaxPathsToCompute() {
         return maxPathsToCompute;
@@ -367,6 +427,22 @@ ITopologyManagerBackend, ILinkDiscoveryListener, IOFMessageListener {
         maxPathsToCompute = max;
     }
 
+    /**
+     * Compute paths only when they are asked for, keeping at most
+     * cacheSize switch pairs' paths. Takes effect with the next topology
+     * instance.
+     * @param cacheSize capacity of the path cache; 0 or less to compute
+     * paths between all switches upon topology updates instead
+     */
+    protected void setComputePathsOnDemand(int cacheSize) {
+        if (cacheSize > 0) {
+            pathCache = new PathCache(cacheSize, ctrPathCacheHit, ctrPathCacheMiss, ctrPathCacheEviction);
+            log.info("Will compute paths on demand, caching up to {} switch pairs", cacheSize);
+        } else {
+            pathCache = null;
+        }
+    }
+
     ////////////////////////////////////////////////////////////////////////
     ////////////////////////////////////////////////////////////////////////
 
@@ -591,6 +667,7 @@ ITopologyManagerBackend, ILinkDiscoveryListener, IOFMessageListener {
         l.add(IOFSwitchService.class);
         l.add(IDebugCounterService.class);
         l.add(IRestApiService.class);
+        l.add(IShutdownService.class);
         return l;
     }
 
@@ -654,6 +731,46 @@ ITopologyManagerBackend, ILinkDiscoveryListener, IOFMessageListener {
                     }
                 }
                 log.info("Will compute a max of {} paths upon topology updates", maxPathsToCompute);
+
+                String maxLinks = configOptions.get("incrementalPathUpdateMaxLinks") != null
+                        ? configOptions.get("incrementalPathUpdateMaxLinks").trim() : null;
+                if (maxLinks != null) {
+                    try {
+                        incrementalPathUpdateMaxLinks = Integer.parseInt(maxLinks);
+                    } catch (NumberFormatException e) {
+                        log.error("Invalid 'incrementalPathUpdateMaxLinks'. Using default {}",
+                                incrementalPathUpdateMaxLinks);
+                    }
+                }
+                log.info("Will update paths incrementally for up to {} changed links",
+                        incrementalPathUpdateMaxLinks);
+
+                int parallelism = 1;
+                String threads = configOptions.get("computeParallelism") != null
+                        ? configOptions.get("computeParallelism").trim() : null;
+                if (threads != null) {
+                    try {
+                        parallelism = Integer.parseInt(threads);
+                    } catch (NumberFormatException e) {
+                        log.error("Invalid 'computeParallelism'. Using default {}", parallelism);
+                    }
+                }
+                setComputeParallelism(parallelism);
+
+                String onDemand = configOptions.get("computePathsOnDemand");
+                if (onDemand != null && Boolean.parseBoolean(onDemand.trim())) {
+                    int size = TopologyInstance.PATH_CACHE_SIZE;
+                    String cacheSize = configOptions.get("pathCacheSize") != null
+                            ? configOptions.get("pathCacheSize").trim() : null;
+                    if (cacheSize != null) {
+                        try {
+                            size = Integer.parseInt(cacheSize);
+                        } catch (NumberFormatException e) {
+                            log.error("Invalid 'pathCacheSize'. Using default {}", size);
+                        }
+                    }
+                    setComputePathsOnDemand(size);
+                }
     }
 
     @Override
@@ -673,6 +790,16 @@ ITopologyManagerBackend, ILinkDiscoveryListener, IOFMessageListener {
         floodlightProviderService.addOFMessageListener(OFType.PACKET_IN, this);
         floodlightProviderService.addHAListener(this.haListener);
         addRestletRoutable();
+
+        IShutdownService shutdownService = context.getServiceImpl(IShutdownService.class);
+        if (shutdownService != null) {
+            shutdownService.registerShutdownListener(new IShutdownListener() {
+                @Override
+                public void floodlightIsShuttingDown() {
+                    shutdownComputePool();
+                }
+            });
+        }
     }
 
     private void registerTopologyDebugCounters() throws FloodlightModuleException {
@@ -683,6 +810,15 @@ ITopologyManagerBackend, ILinkDiscoveryListener, IOFMessageListener {
         ctrIncoming = debugCounterService.registerCounter(
                 PACKAGE, "incoming",
                 "All incoming packets seen by this module");
+        ctrPathCacheHit = debugCounterService.registerCounter(
+                PACKAGE, "path-cache-hit",
+                "Path lookups answered from the path cache");
+        ctrPathCacheMiss = debugCounterService.registerCounter(
+                PACKAGE, "path-cache-miss",
+                "Path lookups that computed the paths");
+        ctrPathCacheEviction = debugCounterService.registerCounter(
+                PACKAGE, "path-cache-eviction",
+                "Least recently used paths dropped from the full path cache");
     }
 
     protected void addRestletRoutable() {
@@ -1015,7 +1151,11 @@ ITopologyManagerBackend, ILinkDiscoveryListener, IOFMessageListener {
                 allPorts,
                 interClusterLinks);
 
-        nt.compute();
+        if (pathCache != null) {
+            nt.computePathsOnDemand(pathCache, topologyEpoch.incrementAndGet());
+        }
+        /* a forced recomputation starts from scratch */
+        nt.compute(forced ? null : currentInstance, incrementalPathUpdateMaxLinks);
 
         currentInstance = nt;
 
@@ -118,21 +118,35 @@ public class OFMessageDamper {
      * the message was dampened. 
      */
     public boolean write(IOFSwitch sw, OFMessage msg) {
+        if (dampen(sw, msg)) {
+            return false;
+        }
+        sw.write(msg);
+        return true;
+    }
+
+    /**
+     * Check whether a message should be dampened, and if not, record it as
+     * written. For callers that write the message some other way, e.g. as
+     * part of a batch.
+     * @param sw
+     * @param msg
+     * @return true if the message should not be written to the switch
+     */
+    public boolean dampen(IOFSwitch sw, OFMessage msg) {
         if (!msgTypesToCache.contains(msg.getType())) {
             log.debug("Not dampening this type of msg {}", msg);
-            sw.write(msg);
-            return true;
+            return false;
         }
         
         DamperEntry entry = new DamperEntry(msg, sw);
         if (cache.update(entry)) {
             // entry exists in cache. Dampening.
             log.debug("Dampening cached msg {}", msg);
-            return false; 
+            return true; 
         } else {
             log.debug("Not dampening new msg {}", msg);
-            sw.write(msg);
-            return true;
+            return false;
         }
     }
     
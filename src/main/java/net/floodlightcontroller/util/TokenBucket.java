@@ -0,0 +1,77 @@
+package net.floodlightcontroller.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A simple token bucket rate limiter. Tokens are added continuously at
+ * {@code rate} per second up to {@code burst}; each admitted event takes
+ * one token.
+ *
+ * Refill is computed lazily from {@link System#nanoTime()} when a token
+ * is requested, so an idle bucket costs nothing. Methods are synchronized;
+ * buckets are expected to be mostly uncontended (e.g. one per switch or
+ * per switch port).
+ */
+public class TokenBucket {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double rate;
+    private final double burst;
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param rate tokens added per second; must be > 0
+     * @param burst maximum number of tokens the bucket can hold; must be >= 1
+     */
+    public TokenBucket(double rate, double burst) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("rate must be > 0. Was " + rate);
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be >= 1. Was " + burst);
+        }
+        this.rate = rate;
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Take a token if one is available.
+     * @return true if the event is admitted, false if it should be rejected
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    /**
+     * Variant of {@link #tryAcquire()} with an explicit time, for testing.
+     * @param nowNanos the current time as from {@link System#nanoTime()}
+     */
+    public synchronized boolean tryAcquire(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(burst, tokens + elapsed * rate / NANOS_PER_SECOND);
+            lastRefillNanos = nowNanos;
+        }
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public double getBurst() {
+        return burst;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenBucket [rate=" + rate + ", burst=" + burst + "]";
+    }
+}
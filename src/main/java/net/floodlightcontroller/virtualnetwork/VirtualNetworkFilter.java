@@ -415,7 +415,7 @@ implements IFloodlightModule, IVirtualNetworkService, IOFMessageListener {
 	 */
 	protected Command processPacketIn(IOFSwitch sw, OFPacketIn msg, FloodlightContext cntx) {
 		Ethernet eth = IFloodlightProviderService.bcStore.get(cntx,
-				IFloodlightProviderService.CONTEXT_PI_PAYLOAD);
+				IFloodlightProviderService.CONTEXT_PI_PAYLOAD_KEY);
 		Command ret = Command.STOP;
 		String srcNetwork = macToGuid.get(eth.getSourceMACAddress());
 		// If the host is on an unknown network we deny it.
@@ -0,0 +1,54 @@
+package net.floodlightcontroller.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class FloodlightContextStoreTest {
+    private static final String NAME = "net.floodlightcontroller.core.FloodlightContextStoreTest.value";
+    private static final FloodlightContextKey<String> KEY = FloodlightContextKey.register(NAME);
+
+    private final FloodlightContextStore<String> store = new FloodlightContextStore<String>();
+
+    @Test
+    public void testRegisterReturnsSameKey() {
+        assertSame(KEY, FloodlightContextKey.register(NAME));
+    }
+
+    @Test
+    public void testTypedAndStringAccessShareSlot() {
+        FloodlightContext cntx = new FloodlightContext();
+        store.put(cntx, KEY, "a");
+        assertEquals("a", store.get(cntx, NAME));
+
+        store.put(cntx, NAME, "b");
+        assertEquals("b", store.get(cntx, KEY));
+
+        store.remove(cntx, NAME);
+        assertNull(store.get(cntx, KEY));
+    }
+
+    @Test
+    public void testKeyRegisteredAfterContextCreated() {
+        FloodlightContext cntx = new FloodlightContext();
+        String name = NAME + ".late";
+        assertNull(store.get(cntx, name));
+
+        FloodlightContextKey<String> late = FloodlightContextKey.register(name);
+        store.put(cntx, late, "c");
+        assertEquals("c", store.get(cntx, late));
+        assertEquals("c", store.get(cntx, name));
+    }
+
+    @Test
+    public void testClear() {
+        FloodlightContext cntx = new FloodlightContext();
+        store.put(cntx, KEY, "a");
+        cntx.getStorage().put("other", "x");
+        cntx.clear();
+        assertNull(store.get(cntx, KEY));
+        assertNull(cntx.getStorage().get("other"));
+    }
+}
@@ -0,0 +1,231 @@
+package net.floodlightcontroller.core.internal;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.newCapture;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.same;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.floodlightcontroller.core.FlowModBatchResult;
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.debugcounter.MockDebugCounterService;
+
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+import org.projectfloodlight.openflow.protocol.OFBadRequestCode;
+import org.projectfloodlight.openflow.protocol.OFBundleAddMsg;
+import org.projectfloodlight.openflow.protocol.OFBundleCtrlMsg;
+import org.projectfloodlight.openflow.protocol.OFBundleCtrlType;
+import org.projectfloodlight.openflow.protocol.OFErrorMsg;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFFlowModFailedCode;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.protocol.match.MatchField;
+import org.projectfloodlight.openflow.types.DatapathId;
+import org.projectfloodlight.openflow.types.OFPort;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+public class FlowModBatchWriterTest {
+    private static final DatapathId DPID = DatapathId.of(1);
+
+    private IOFSwitchManager switchManager;
+    private SwitchManagerCounters counters;
+
+    @Before
+    public void setUp() {
+        switchManager = createMock(IOFSwitchManager.class);
+        counters = new SwitchManagerCounters(new MockDebugCounterService());
+    }
+
+    private IOFSwitch createSwitch(OFFactory factory) {
+        IOFSwitch sw = createMock(IOFSwitch.class);
+        expect(sw.getId()).andReturn(DPID).anyTimes();
+        expect(sw.getOFFactory()).andReturn(factory).anyTimes();
+        return sw;
+    }
+
+    private List<OFMessage> flowMods(OFFactory factory) {
+        return Arrays.<OFMessage>asList(
+                factory.buildFlowAdd().setXid(1)
+                    .setMatch(factory.buildMatch().setExact(MatchField.IN_PORT, OFPort.of(1)).build())
+                    .build(),
+                factory.buildFlowAdd().setXid(2)
+                    .setMatch(factory.buildMatch().setExact(MatchField.IN_PORT, OFPort.of(2)).build())
+                    .build());
+    }
+
+    private static ListenableFuture<List<OFErrorMsg>> noErrors() {
+        return Futures.immediateFuture(Collections.<OFErrorMsg>emptyList());
+    }
+
+    /* the switch rejects the bundle open, as one without bundles would */
+    private static IAnswer<ListenableFuture<List<OFErrorMsg>>> rejectBundleOpen(final OFFactory factory) {
+        return new IAnswer<ListenableFuture<List<OFErrorMsg>>>() {
+            @Override
+            public ListenableFuture<List<OFErrorMsg>> answer() {
+                @SuppressWarnings("unchecked")
+                List<OFMessage> bundle = (List<OFMessage>) getCurrentArguments()[0];
+                OFErrorMsg error = factory.errorMsgs().buildBadRequestErrorMsg()
+                        .setXid(bundle.get(0).getXid())
+                        .setCode(OFBadRequestCode.BAD_TYPE)
+                        .build();
+                return Futures.immediateFuture(Collections.singletonList(error));
+            }
+        };
+    }
+
+    @Test
+    public void testPlainBatchBeforeOF14() throws Exception {
+        OFFactory factory = OFFactories.getFactory(OFVersion.OF_13);
+        List<OFMessage> msgs = flowMods(factory);
+        IOFSwitch sw = createSwitch(factory);
+        Capture<List<OFMessage>> written = newCapture();
+        expect(sw.writeBatchWithBarrier(capture(written))).andReturn(noErrors()).once();
+        replay(sw, switchManager);
+
+        FlowModBatchResult r = new FlowModBatchWriter(switchManager, counters, true).write(sw, msgs).get();
+
+        assertEquals(msgs, written.getValue());
+        assertFalse(r.isBundled());
+        assertTrue(r.isSuccess());
+        assertEquals(2, r.getSize());
+        verify(sw, switchManager);
+    }
+
+    @Test
+    public void testBundle() throws Exception {
+        OFFactory factory = OFFactories.getFactory(OFVersion.OF_14);
+        List<OFMessage> msgs = flowMods(factory);
+        IOFSwitch sw = createSwitch(factory);
+        Capture<List<OFMessage>> written = newCapture();
+        expect(sw.writeBatchWithBarrier(capture(written))).andReturn(noErrors()).once();
+        /* listeners see the flow-mods once the bundle has committed */
+        for (OFMessage m : msgs) {
+            switchManager.handleOutgoingMessage(same(sw), same(m));
+            expectLastCall().once();
+        }
+        replay(sw, switchManager);
+
+        FlowModBatchResult r = new FlowModBatchWriter(switchManager, counters, true).write(sw, msgs).get();
+
+        List<OFMessage> bundle = written.getValue();
+        assertEquals(msgs.size() + 2, bundle.size());
+        OFBundleCtrlMsg open = (OFBundleCtrlMsg) bundle.get(0);
+        OFBundleCtrlMsg commit = (OFBundleCtrlMsg) bundle.get(bundle.size() - 1);
+        assertEquals(OFBundleCtrlType.OPEN_REQUEST, open.getBundleCtrlType());
+        assertEquals(OFBundleCtrlType.COMMIT_REQUEST, commit.getBundleCtrlType());
+        assertEquals(open.getBundleId(), commit.getBundleId());
+        for (int i = 0; i < msgs.size(); i++) {
+            OFBundleAddMsg add = (OFBundleAddMsg) bundle.get(i + 1);
+            assertEquals(open.getBundleId(), add.getBundleId());
+            assertEquals(msgs.get(i), add.getData());
+            assertEquals(msgs.get(i).getXid(), add.getXid());
+        }
+        assertTrue(r.isBundled());
+        assertTrue(r.isSuccess());
+        verify(sw, switchManager);
+    }
+
+    /* a rejected flow-mod fails the whole bundle; listeners see none of it */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testBundleNotCommitted() throws Exception {
+        OFFactory factory = OFFactories.getFactory(OFVersion.OF_14);
+        List<OFMessage> msgs = flowMods(factory);
+        IOFSwitch sw = createSwitch(factory);
+        OFErrorMsg error = factory.errorMsgs().buildFlowModFailedErrorMsg()
+                .setXid(msgs.get(1).getXid())
+                .setCode(OFFlowModFailedCode.TABLE_FULL)
+                .build();
+        expect(sw.writeBatchWithBarrier(anyObject(List.class)))
+                .andReturn(Futures.immediateFuture(Collections.singletonList(error))).once();
+        replay(sw, switchManager);
+
+        FlowModBatchResult r = new FlowModBatchWriter(switchManager, counters, true).write(sw, msgs).get();
+
+        assertTrue(r.isBundled());
+        assertFalse(r.isSuccess());
+        assertEquals(Collections.singletonList(error), r.getErrors());
+        verify(sw, switchManager);
+    }
+
+    @Test
+    public void testFallBackToBarrier() throws Exception {
+        OFFactory factory = OFFactories.getFactory(OFVersion.OF_14);
+        List<OFMessage> msgs = flowMods(factory);
+        IOFSwitch sw = createSwitch(factory);
+        Capture<List<OFMessage>> written = newCapture(CaptureType.ALL);
+        expect(sw.writeBatchWithBarrier(capture(written))).andAnswer(rejectBundleOpen(factory)).once();
+        /* the same batch again as plain messages, and the next one right away */
+        expect(sw.writeBatchWithBarrier(capture(written))).andReturn(noErrors()).times(2);
+        replay(sw, switchManager);
+
+        FlowModBatchWriter writer = new FlowModBatchWriter(switchManager, counters, true);
+        FlowModBatchResult r = writer.write(sw, msgs).get();
+        assertFalse(r.isBundled());
+        assertTrue(r.isSuccess());
+        r = writer.write(sw, msgs).get();
+        assertFalse(r.isBundled());
+
+        assertEquals(3, written.getValues().size());
+        assertTrue(written.getValues().get(0).get(0) instanceof OFBundleCtrlMsg);
+        assertEquals(msgs, written.getValues().get(1));
+        assertEquals(msgs, written.getValues().get(2));
+        verify(sw, switchManager);
+    }
+
+    @Test
+    public void testBundlesOff() throws Exception {
+        OFFactory factory = OFFactories.getFactory(OFVersion.OF_14);
+        List<OFMessage> msgs = flowMods(factory);
+        IOFSwitch sw = createSwitch(factory);
+        Capture<List<OFMessage>> written = newCapture();
+        expect(sw.writeBatchWithBarrier(capture(written))).andReturn(noErrors()).once();
+        replay(sw, switchManager);
+
+        FlowModBatchResult r = new FlowModBatchWriter(switchManager, counters, false).write(sw, msgs).get();
+
+        assertEquals(msgs, written.getValue());
+        assertFalse(r.isBundled());
+        verify(sw, switchManager);
+    }
+
+    /* errors are told apart by xid */
+    @Test
+    public void testDistinctXids() throws Exception {
+        OFFactory factory = OFFactories.getFactory(OFVersion.OF_13);
+        OFMessage fm = flowMods(factory).get(0);
+        IOFSwitch sw = createSwitch(factory);
+        Capture<List<OFMessage>> written = newCapture();
+        expect(sw.writeBatchWithBarrier(capture(written))).andReturn(noErrors()).once();
+        replay(sw, switchManager);
+
+        new FlowModBatchWriter(switchManager, counters, true).write(sw, Arrays.asList(fm, fm)).get();
+
+        assertEquals(fm, written.getValue().get(0));
+        assertNotEquals(fm.getXid(), written.getValue().get(1).getXid());
+        assertEquals(fm.createBuilder().setXid(written.getValue().get(1).getXid()).build(),
+                written.getValue().get(1));
+        verify(sw, switchManager);
+    }
+}
@@ -0,0 +1,114 @@
+package net.floodlightcontroller.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.floodlightcontroller.debugcounter.MockDebugCounterService;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.projectfloodlight.openflow.types.DatapathId;
+
+public class HandshakeSchedulerTest {
+    private HandshakeScheduler scheduler;
+    private List<DatapathId> admitted;
+
+    @Before
+    public void setUp() {
+        scheduler = new HandshakeScheduler(2,
+                new SwitchManagerCounters(new MockDebugCounterService()));
+        admitted = new ArrayList<DatapathId>();
+    }
+
+    private HandshakeScheduler.Ticket request(long dpid) {
+        final DatapathId id = DatapathId.of(dpid);
+        return scheduler.request(id, new Runnable() {
+            @Override
+            public void run() {
+                admitted.add(id);
+            }
+        });
+    }
+
+    @Test
+    public void testLimitAndFifo() {
+        assertNull(request(1));
+        assertNull(request(2));
+        assertNotNull(request(3));
+        assertNotNull(request(4));
+        assertEquals(2, scheduler.getActiveCount());
+        assertEquals(2, scheduler.getQueueLength());
+
+        scheduler.release(DatapathId.of(1), true);
+        assertEquals(1, admitted.size());
+        assertEquals(DatapathId.of(3), admitted.get(0));
+        scheduler.release(DatapathId.of(2), false);
+        assertEquals(DatapathId.of(4), admitted.get(1));
+        assertEquals(2, scheduler.getActiveCount());
+        assertEquals(0, scheduler.getQueueLength());
+
+        assertTrue(scheduler.isKnown(DatapathId.of(1)));
+        assertFalse(scheduler.isKnown(DatapathId.of(2)));
+    }
+
+    @Test
+    public void testKnownFirstWithoutStarvingNew() {
+        /* 1 to 5 have completed a handshake before */
+        for (long dpid = 1; dpid <= 5; dpid++) {
+            assertNull(request(dpid));
+            scheduler.release(DatapathId.of(dpid), true);
+        }
+        assertNull(request(100));
+        assertNull(request(101));
+        request(200); /* new */
+        for (long dpid = 1; dpid <= 5; dpid++) {
+            request(dpid);
+        }
+        for (int i = 0; i < 6; i++) {
+            scheduler.release(i == 0 ? DatapathId.of(100) : admitted.get(i - 1), true);
+        }
+        assertEquals(6, admitted.size());
+        /* KNOWN_PER_NEW known ones, then the waiting new one, then the rest */
+        assertEquals(DatapathId.of(1), admitted.get(0));
+        assertEquals(DatapathId.of(2), admitted.get(1));
+        assertEquals(DatapathId.of(3), admitted.get(2));
+        assertEquals(DatapathId.of(200), admitted.get(3));
+        assertEquals(DatapathId.of(4), admitted.get(4));
+        assertEquals(DatapathId.of(5), admitted.get(5));
+    }
+
+    @Test
+    public void testReconnectSharesSlot() {
+        assertNull(request(1));
+        assertNull(request(2));
+        /* A new main connection for a switch already in the handshake */
+        assertNull(request(1));
+        assertNotNull(request(3));
+
+        /* The old connection goes away; the new one still holds the slot */
+        scheduler.release(DatapathId.of(1), false);
+        assertTrue(admitted.isEmpty());
+        scheduler.release(DatapathId.of(1), true);
+        assertEquals(DatapathId.of(3), admitted.get(0));
+    }
+
+    @Test
+    public void testCancel() {
+        assertNull(request(1));
+        assertNull(request(2));
+        HandshakeScheduler.Ticket t = request(3);
+        request(4);
+        assertTrue(scheduler.cancel(t));
+        assertEquals(1, scheduler.getQueueLength());
+
+        scheduler.release(DatapathId.of(1), true);
+        assertEquals(DatapathId.of(4), admitted.get(0));
+        assertFalse(scheduler.cancel(t));
+    }
+}
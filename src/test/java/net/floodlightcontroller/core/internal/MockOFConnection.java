@@ -12,7 +12,10 @@ import java.util.Map;
 import java.util.Date;
 
 import net.floodlightcontroller.core.IOFConnectionBackend;
+import net.floodlightcontroller.core.IOFStatsReplyListener;
+import net.floodlightcontroller.core.OFMessagePriority;
 
+import org.projectfloodlight.openflow.protocol.OFErrorMsg;
 import org.projectfloodlight.openflow.protocol.OFFactory;
 import org.projectfloodlight.openflow.protocol.OFMessage;
 import org.projectfloodlight.openflow.protocol.OFRequest;
@@ -37,6 +40,7 @@ public class MockOFConnection implements IOFConnectionBackend {
     private final List<OFMessage> messages;
     private final Map<Long, RequestAndFuture<?>>requests;
     private IOFConnectionListener listener;
+    private boolean autoRead = true;
 
     public MockOFConnection(DatapathId id, OFAuxId auxId){
         this.id = id;
@@ -85,6 +89,16 @@ public class MockOFConnection implements IOFConnectionBackend {
         return Collections.emptyList();
     }
 
+    @Override
+    public Collection<OFMessage> write(Iterable<OFMessage> msglist, OFMessagePriority priority) {
+        return write(msglist);
+    }
+
+    @Override
+    public void flush() {
+        // messages are recorded immediately
+    }
+
     static class RequestAndFuture<R extends OFMessage> {
         final OFRequest<R> request;
         final SettableFuture<R> replyFuture;
@@ -119,6 +133,17 @@ public class MockOFConnection implements IOFConnectionBackend {
         return null;
     }
 
+    @Override
+    public <REPLY extends OFStatsReply> ListenableFuture<Void>
+            streamStatsRequest(OFStatsRequest<REPLY> request, IOFStatsReplyListener<REPLY> listener) {
+        return null;
+    }
+
+    @Override
+    public ListenableFuture<List<OFErrorMsg>> writeBatchWithBarrier(List<OFMessage> msgList) {
+        return null;
+    }
+
     public void setConnectedSince(Date connectedSince) {
         this.connectedSince = connectedSince;
     }
@@ -180,6 +205,15 @@ public class MockOFConnection implements IOFConnectionBackend {
         return true;
     }
 
+    @Override
+    public void setAutoRead(boolean autoRead) {
+        this.autoRead = autoRead;
+    }
+
+    public boolean isAutoRead() {
+        return autoRead;
+    }
+
     @Override
     public boolean isConnected() {
         return this.connected;
@@ -221,6 +255,21 @@ public class MockOFConnection implements IOFConnectionBackend {
 		return U64.ZERO;
 	}
 
+	@Override
+	public int[] getQueueDepths() {
+		return new int[0];
+	}
+
+	@Override
+	public double getFlowModRate() {
+		return 0;
+	}
+
+	@Override
+	public long getLastBarrierRttNs() {
+		return 0;
+	}
+
 	@Override
 	public void updateLatency(U64 latency) {
 		// TODO Auto-generated method stub
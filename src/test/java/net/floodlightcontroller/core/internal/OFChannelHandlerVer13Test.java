@@ -218,7 +218,10 @@ public class OFChannelHandlerVer13Test {
 	 */
 	void sendMessageToHandlerNoControllerReset(List<OFMessage> messages)
 			throws Exception {
-		handler.channelRead(ctx, messages);
+		for (OFMessage m : messages) {
+			handler.channelRead(ctx, m);
+		}
+		handler.channelReadComplete(ctx);
 	}
 
 	/**
@@ -454,6 +457,41 @@ public class OFChannelHandlerVer13Test {
 
 	}
 
+	/**
+	 * Test that port status messages received back to back in one read
+	 * are passed on together, and a single one on its own
+	 */
+	@Test
+	public void testPortStatusBurstComplete() throws Exception {
+		moveToComplete();
+		newConnection.getValue().setListener(connectionListener);
+
+		OFPortStatus ps1 = factory.buildPortStatus()
+				.setReason(OFPortReason.MODIFY)
+				.setDesc(portDesc)
+				.build();
+		OFPortStatus ps2 = factory.buildPortStatus()
+				.setReason(OFPortReason.DELETE)
+				.setDesc(portDesc)
+				.build();
+		OFMessage barrierReply = factory.buildBarrierReply().build();
+
+		reset(connectionListener);
+		connectionListener.portStatusBurstReceived(handler.getConnectionForTesting(),
+				ImmutableList.<OFPortStatus>of(ps1, ps2));
+		expectLastCall().once();
+		connectionListener.messageReceived(handler.getConnectionForTesting(), barrierReply);
+		expectLastCall().once();
+		connectionListener.messageReceived(handler.getConnectionForTesting(), ps1);
+		expectLastCall().once();
+		replay(connectionListener);
+
+		sendMessageToHandlerWithControllerReset(
+				ImmutableList.<OFMessage>of(ps1, ps2, barrierReply, ps1));
+
+		verify(connectionListener);
+	}
+
 	public void resetAndExpectConnectionListener(OFMessage m) throws Exception{
 		reset(connectionListener);
 		connectionListener.messageReceived(handler.getConnectionForTesting(), m);
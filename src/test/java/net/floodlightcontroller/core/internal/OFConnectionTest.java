@@ -3,13 +3,19 @@ package net.floodlightcontroller.core.internal;
 import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.easymock.Capture;
+import org.easymock.CaptureType;
 import org.easymock.EasyMock;
 import org.hamcrest.CoreMatchers;
 import org.hamcrest.Matchers;
@@ -17,25 +23,33 @@ import org.hamcrest.Matchers;
 import io.netty.channel.Channel;
 import io.netty.util.HashedWheelTimer;
 import io.netty.util.Timer;
+import io.netty.util.TimerTask;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import net.floodlightcontroller.core.IOFStatsReplyListener;
+import net.floodlightcontroller.core.OFMessagePriority;
 import net.floodlightcontroller.core.SwitchDisconnectedException;
 import net.floodlightcontroller.core.internal.OFConnection;
 import net.floodlightcontroller.core.internal.OFConnectionCounters;
 import net.floodlightcontroller.core.internal.OFErrorMsgException;
 import net.floodlightcontroller.core.test.TestEventLoop;
+import net.floodlightcontroller.debugcounter.DebugCounterResource;
 import net.floodlightcontroller.debugcounter.DebugCounterServiceImpl;
 import net.floodlightcontroller.debugcounter.IDebugCounterService;
 
+import org.projectfloodlight.openflow.protocol.OFBadRequestCode;
+import org.projectfloodlight.openflow.protocol.OFBarrierRequest;
 import org.projectfloodlight.openflow.protocol.OFControllerRole;
 import org.projectfloodlight.openflow.protocol.OFEchoReply;
 import org.projectfloodlight.openflow.protocol.OFEchoRequest;
 import org.projectfloodlight.openflow.protocol.OFErrorMsg;
 import org.projectfloodlight.openflow.protocol.OFFactories;
 import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFFlowAdd;
+import org.projectfloodlight.openflow.protocol.OFFlowModFailedCode;
 import org.projectfloodlight.openflow.protocol.OFFlowStatsReply;
 import org.projectfloodlight.openflow.protocol.OFFlowStatsRequest;
 import org.projectfloodlight.openflow.protocol.OFHello;
@@ -48,6 +62,7 @@ import org.projectfloodlight.openflow.protocol.OFRoleRequestFailedCode;
 import org.projectfloodlight.openflow.protocol.OFStatsReplyFlags;
 import org.projectfloodlight.openflow.protocol.OFVersion;
 import org.projectfloodlight.openflow.protocol.action.OFAction;
+import org.projectfloodlight.openflow.protocol.errormsg.OFFlowModFailedErrorMsg;
 import org.projectfloodlight.openflow.protocol.errormsg.OFRoleRequestFailedErrorMsg;
 import org.projectfloodlight.openflow.types.DatapathId;
 import org.projectfloodlight.openflow.types.OFAuxId;
@@ -71,6 +86,7 @@ public class OFConnectionTest {
     private DatapathId switchId;
     private Timer timer;
     private TestEventLoop eventLoop;
+    private IDebugCounterService debugCounterService;
 
     @Before
     public void setUp() throws Exception {
@@ -78,7 +94,7 @@ public class OFConnectionTest {
         switchId = DatapathId.of(1);
         timer = new HashedWheelTimer();
         channel = EasyMock.createMock(Channel.class);        
-        IDebugCounterService debugCounterService = new DebugCounterServiceImpl();
+        debugCounterService = new DebugCounterServiceImpl();
         debugCounterService.registerModule(OFConnectionCounters.COUNTER_MODULE);
         conn = new OFConnection(switchId, factory, channel, OFAuxId.MAIN,
                                 debugCounterService, timer);
@@ -92,6 +108,7 @@ public class OFConnectionTest {
     	if (timer != null) {
     		timer.stop();
     	}
+    	OFConnection.setFlushConsolidation(false, 256, 65536);
     }
 
     @Test(timeout = 5000)
@@ -162,6 +179,126 @@ public class OFConnectionTest {
                 conn.getPendingRequestIds().isEmpty(), equalTo(true));
     }
 
+    /** a stats listener that keeps the parts it is given */
+    private static class PartCollector implements IOFStatsReplyListener<OFFlowStatsReply> {
+        private final List<OFFlowStatsReply> parts = new ArrayList<OFFlowStatsReply>();
+
+        @Override
+        public void statsReplyReceived(OFFlowStatsReply reply) {
+            parts.add(reply);
+        }
+    }
+
+    /** stream a stats request whose reply comes in two parts */
+    @Test(timeout = 5000)
+    public void testStreamStatsRequestMultiPart() throws InterruptedException, ExecutionException {
+        Capture<List<OFMessage>> cMsgList = prepareChannelForWriteList();
+
+        OFFlowStatsRequest flowStatsRequest = factory.buildFlowStatsRequest().build();
+        PartCollector collector = new PartCollector();
+        ListenableFuture<Void> future = conn.streamStatsRequest(flowStatsRequest, collector);
+        assertThat("Connection should have 1 pending request",
+                conn.getPendingRequestIds().size(), equalTo(1));
+
+        eventLoop.runTasks();
+        assertThat("Should have captured MsgList", cMsgList.getValue(),
+                Matchers.<OFMessage> contains(flowStatsRequest));
+
+        OFFlowStatsReply statsReply1 = factory.buildFlowStatsReply()
+                .setXid(flowStatsRequest.getXid())
+                .setFlags(Sets.immutableEnumSet(OFStatsReplyFlags.REPLY_MORE))
+                .build();
+        assertThat("Connection should have accepted the response",
+                conn.deliverResponse(statsReply1),
+                equalTo(true));
+        assertThat("First part should be handed over right away",
+                collector.parts, Matchers.contains(statsReply1));
+        assertThat("Future should not be complete ", future.isDone(), equalTo(false));
+
+        OFFlowStatsReply statsReply2 = factory.buildFlowStatsReply()
+                .setXid(flowStatsRequest.getXid())
+                .build();
+        assertThat("Connection should have accepted the response",
+                conn.deliverResponse(statsReply2),
+                equalTo(true));
+        assertThat("Future should be complete ", future.isDone(), equalTo(true));
+        future.get();
+
+        assertThat(collector.parts, Matchers.contains(statsReply1, statsReply2));
+        assertThat("Connection should have no pending requests",
+                conn.getPendingRequestIds().isEmpty(), equalTo(true));
+    }
+
+    /** stream a stats request the switch answers with an error after the first part */
+    @Test(timeout = 5000)
+    public void testStreamStatsRequestOFErrorMsg() throws InterruptedException, ExecutionException {
+        prepareChannelForWriteList();
+
+        OFFlowStatsRequest flowStatsRequest = factory.buildFlowStatsRequest().build();
+        PartCollector collector = new PartCollector();
+        ListenableFuture<Void> future = conn.streamStatsRequest(flowStatsRequest, collector);
+        eventLoop.runTasks();
+
+        OFFlowStatsReply statsReply1 = factory.buildFlowStatsReply()
+                .setXid(flowStatsRequest.getXid())
+                .setFlags(Sets.immutableEnumSet(OFStatsReplyFlags.REPLY_MORE))
+                .build();
+        conn.deliverResponse(statsReply1);
+
+        OFErrorMsg error = factory.errorMsgs().buildBadRequestErrorMsg()
+                .setXid(flowStatsRequest.getXid())
+                .setCode(OFBadRequestCode.BAD_STAT)
+                .build();
+        assertThat("Connection should have accepted the response",
+                conn.deliverResponse(error),
+                equalTo(true));
+
+        OFErrorMsgException e =
+                FutureTestUtils.assertFutureFailedWithException(future,
+                        OFErrorMsgException.class);
+        assertThat(e.getErrorMessage(), CoreMatchers.<OFErrorMsg>equalTo(error));
+        assertThat(collector.parts, Matchers.contains(statsReply1));
+        assertThat("Connection should have no pending requests",
+                conn.getPendingRequestIds().isEmpty(), equalTo(true));
+    }
+
+    /** stream a stats request the switch stops answering after the first part */
+    @Test(timeout = 5000)
+    public void testStreamStatsRequestTimeout() throws InterruptedException, ExecutionException {
+        /* a timer whose timeouts the test fires itself */
+        Timer mockTimer = EasyMock.createMock(Timer.class);
+        Capture<TimerTask> timeout = EasyMock.newCapture(CaptureType.LAST);
+        expect(mockTimer.newTimeout(capture(timeout), EasyMock.anyLong(),
+                EasyMock.anyObject(TimeUnit.class))).andReturn(null).anyTimes();
+        replay(mockTimer);
+        conn = new OFConnection(switchId, factory, channel, OFAuxId.MAIN,
+                debugCounterService, mockTimer);
+        prepareChannelForWriteList();
+
+        OFFlowStatsRequest flowStatsRequest = factory.buildFlowStatsRequest().build();
+        PartCollector collector = new PartCollector();
+        ListenableFuture<Void> future = conn.streamStatsRequest(flowStatsRequest, collector);
+        eventLoop.runTasks();
+
+        OFFlowStatsReply statsReply1 = factory.buildFlowStatsReply()
+                .setXid(flowStatsRequest.getXid())
+                .setFlags(Sets.immutableEnumSet(OFStatsReplyFlags.REPLY_MORE))
+                .build();
+        conn.deliverResponse(statsReply1);
+        assertThat("Future should not be complete ", future.isDone(), equalTo(false));
+
+        try {
+            timeout.getValue().run(null);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+
+        FutureTestUtils.assertFutureFailedWithException(future, TimeoutException.class);
+        assertThat(collector.parts, Matchers.contains(statsReply1));
+        assertThat("Connection should have no pending requests",
+                conn.getPendingRequestIds().isEmpty(), equalTo(true));
+    }
+
     private Capture<List<OFMessage>> prepareChannelForWriteList() {
         EasyMock.expect(channel.isActive()).andReturn(Boolean.TRUE).anyTimes();
         Capture<List<OFMessage>> cMsgList = EasyMock.newCapture();
@@ -238,6 +375,42 @@ public class OFConnectionTest {
                 conn.getPendingRequestIds().isEmpty(), equalTo(true));
     }
 
+    /** write a batch of flow mods, one of which fails, followed by a barrier */
+    @Test(timeout = 5000)
+    public void testWriteBatchWithBarrier() throws InterruptedException, ExecutionException {
+        Capture<List<OFMessage>> cMsgList = prepareChannelForWriteList();
+
+        OFFlowAdd add1 = factory.buildFlowAdd().setPriority(1).build();
+        OFFlowAdd add2 = factory.buildFlowAdd().setPriority(2).build();
+        ListenableFuture<List<OFErrorMsg>> future =
+                conn.writeBatchWithBarrier(ImmutableList.<OFMessage>of(add1, add2));
+        assertThat("Connection should have 3 pending requests",
+                conn.getPendingRequestIds().size(), equalTo(3));
+
+        eventLoop.runTasks();
+        List<OFMessage> written = cMsgList.getValue();
+        assertThat(written.size(), equalTo(3));
+        assertThat(written.get(0), CoreMatchers.<OFMessage>equalTo(add1));
+        assertThat(written.get(1), CoreMatchers.<OFMessage>equalTo(add2));
+        OFMessage barrier = written.get(2);
+        assertThat(barrier, CoreMatchers.instanceOf(OFBarrierRequest.class));
+
+        OFFlowModFailedErrorMsg error = factory.errorMsgs().buildFlowModFailedErrorMsg()
+                .setXid(add2.getXid())
+                .setCode(OFFlowModFailedCode.TABLE_FULL)
+                .build();
+        assertThat("Connection should have accepted the error",
+                conn.deliverResponse(error), equalTo(true));
+        assertThat("Future should not be complete yet", future.isDone(), equalTo(false));
+
+        assertThat("Connection should have accepted the barrier reply",
+                conn.deliverResponse(factory.buildBarrierReply().setXid(barrier.getXid()).build()),
+                equalTo(true));
+        assertThat(future.get(), Matchers.<OFErrorMsg>contains(error));
+        assertThat("Connection should have no pending requests",
+                conn.getPendingRequestIds().isEmpty(), equalTo(true));
+    }
+
     /** write a packetOut, which is not buffered */
     @Test(timeout = 5000)
     public void testSingleMessageWrite() throws InterruptedException, ExecutionException {
@@ -278,4 +451,94 @@ public class OFConnectionTest {
                 Matchers.<OFMessage> contains(hello, packetOut));
     }
 
+    private OFPacketOut packetOut(int port) {
+        return factory.buildPacketOut()
+                .setData(new byte[] { 0x01, 0x02, 0x03, 0x04 })
+                .setActions(ImmutableList.<OFAction>of( factory.actions().output(OFPort.of(port), 0)))
+                .build();
+    }
+
+    /** writes issued in the same event loop tick share one flush */
+    @Test(timeout = 5000)
+    public void testFlushConsolidation() throws InterruptedException, ExecutionException {
+        OFConnection.setFlushConsolidation(true, 256, 0);
+        EasyMock.expect(channel.isActive()).andReturn(Boolean.TRUE).anyTimes();
+        Capture<List<OFMessage>> cMsgList = EasyMock.newCapture(CaptureType.ALL);
+        expect(channel.write(capture(cMsgList))).andReturn(null).times(3);
+        expect(channel.flush()).andReturn(channel).once();
+        replay(channel);
+
+        OFPacketOut po1 = packetOut(1);
+        OFPacketOut po2 = packetOut(2);
+        OFPacketOut po3 = packetOut(3);
+        conn.write(po1);
+        conn.write(po2);
+        conn.write(po3);
+        eventLoop.runTasks();
+
+        verify(channel);
+        assertThat(cMsgList.getValues().size(), equalTo(3));
+        assertThat(cMsgList.getValues().get(0), Matchers.<OFMessage> contains(po1));
+        assertThat(cMsgList.getValues().get(2), Matchers.<OFMessage> contains(po3));
+    }
+
+    /** hitting the message threshold flushes without waiting for the end of the tick */
+    @Test(timeout = 5000)
+    public void testFlushConsolidationMessageThreshold() throws InterruptedException, ExecutionException {
+        OFConnection.setFlushConsolidation(true, 2, 0);
+        EasyMock.expect(channel.isActive()).andReturn(Boolean.TRUE).anyTimes();
+        expect(channel.write(EasyMock.anyObject())).andReturn(null).times(3);
+        /* once at the threshold, once more for the remaining message */
+        expect(channel.flush()).andReturn(channel).times(2);
+        replay(channel);
+
+        conn.write(packetOut(1));
+        conn.write(packetOut(2));
+        conn.write(packetOut(3));
+        eventLoop.runTasks();
+
+        verify(channel);
+    }
+
+    /** The queue gauges read the connection's scheduler, if it has one */
+    @Test(timeout = 5000)
+    public void testQueueGauges() {
+        assertThat(conn.getQueueDepths().length, equalTo(0));
+        assertThat(conn.getFlowModRate(), equalTo(0.0));
+
+        OFWriteScheduler.configure(true, 500, 100, 20000, 10000);
+        try {
+            OFConnection scheduled = new OFConnection(switchId, factory, channel, OFAuxId.MAIN,
+                    debugCounterService, timer);
+            assertThat(scheduled.getQueueDepths().length, equalTo(OFMessagePriority.values().length));
+            assertThat(scheduled.getFlowModRate(), equalTo(500.0));
+            assertThat(scheduled.getLastBarrierRttNs(), equalTo(0L));
+        } finally {
+            OFWriteScheduler.configure(false, 1000, 100, 20000, 10000);
+        }
+    }
+
+    /** With outbound scheduling, messages that do not fit their queue are handed back */
+    @Test(timeout = 5000)
+    public void testQueueLimit() {
+        EasyMock.expect(channel.isActive()).andReturn(Boolean.TRUE).anyTimes();
+        replay(channel);
+
+        OFWriteScheduler.configure(true, 500, 100, 20000, 2);
+        try {
+            OFConnection scheduled = new OFConnection(switchId, factory, channel, OFAuxId.MAIN,
+                    debugCounterService, timer);
+            List<OFMessage> msgs = ImmutableList.<OFMessage>of(factory.buildFlowAdd().build(),
+                    factory.buildFlowAdd().build(), factory.buildFlowAdd().build());
+            Collection<OFMessage> failed = scheduled.write(msgs, OFMessagePriority.BULK);
+
+            assertThat(failed, Matchers.<OFMessage> contains(msgs.get(2)));
+            assertThat(scheduled.getQueueDepths()[OFMessagePriority.BULK.ordinal()], equalTo(2));
+            List<DebugCounterResource> rejected = debugCounterService.getCounterHierarchy(
+                    OFConnectionCounters.COUNTER_MODULE, switchId + ":" + OFAuxId.MAIN + "/queue/rejected");
+            assertThat(rejected.get(0).getCounterValue(), equalTo(1L));
+        } finally {
+            OFWriteScheduler.configure(false, 1000, 100, 20000, 10000);
+        }
+    }
 }
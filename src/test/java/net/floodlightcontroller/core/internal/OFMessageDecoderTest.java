@@ -0,0 +1,60 @@
+package net.floodlightcontroller.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFPacketIn;
+import org.projectfloodlight.openflow.protocol.OFPacketInReason;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.protocol.match.MatchField;
+import org.projectfloodlight.openflow.types.OFBufferId;
+import org.projectfloodlight.openflow.types.OFPort;
+
+public class OFMessageDecoderTest {
+    private static final int PAYLOAD_LENGTH = 64;
+
+    private final OFFactory factory = OFFactories.getFactory(OFVersion.OF_13);
+    private byte[] packetInBytes;
+    private OFPacketIn packetIn;
+
+    @Before
+    public void setUp() {
+        packetIn = factory.buildPacketIn()
+                .setXid(1)
+                .setBufferId(OFBufferId.NO_BUFFER)
+                .setReason(OFPacketInReason.NO_MATCH)
+                .setMatch(factory.buildMatch().setExact(MatchField.IN_PORT, OFPort.of(1)).build())
+                .setData(new byte[PAYLOAD_LENGTH])
+                .build();
+        ByteBuf buf = Unpooled.buffer();
+        packetIn.writeTo(buf);
+        packetInBytes = new byte[buf.readableBytes()];
+        buf.readBytes(packetInBytes);
+    }
+
+    @Test
+    public void testMessagesHandedOffIndividually() {
+        EmbeddedChannel channel = new EmbeddedChannel(new OFMessageDecoder(OFVersion.OF_13));
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeBytes(packetInBytes);
+        buf.writeBytes(packetInBytes);
+        channel.writeInbound(buf);
+
+        for (int i = 0; i < 2; i++) {
+            Object o = channel.readInbound();
+            assertTrue("Expected an OFMessage, got " + o, o instanceof OFMessage);
+            assertEquals(packetIn, o);
+        }
+        assertNull(channel.readInbound());
+    }
+}
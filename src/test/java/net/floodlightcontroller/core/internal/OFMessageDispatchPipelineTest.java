@@ -0,0 +1,146 @@
+package net.floodlightcontroller.core.internal;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.floodlightcontroller.core.FloodlightContext;
+import net.floodlightcontroller.core.IFloodlightProviderService;
+import net.floodlightcontroller.core.IOFConnection;
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.IOFSwitchBackend;
+import net.floodlightcontroller.debugcounter.MockDebugCounterService;
+
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFPacketInReason;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.types.DatapathId;
+import org.projectfloodlight.openflow.types.OFAuxId;
+import org.projectfloodlight.openflow.types.OFBufferId;
+
+import com.google.common.collect.ImmutableList;
+
+public class OFMessageDispatchPipelineTest {
+    private static final int CAPACITY = 16;
+
+    private final OFFactory factory = OFFactories.getFactory(OFVersion.OF_13);
+    private final List<Long> dispatchedXids = Collections.synchronizedList(new ArrayList<Long>());
+    private volatile CountDownLatch latch;
+    private IFloodlightProviderService floodlightProvider;
+    private OFMessageDispatchPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        floodlightProvider = createNiceMock(IFloodlightProviderService.class);
+        floodlightProvider.handleMessage(anyObject(IOFSwitch.class), anyObject(OFMessage.class),
+                anyObject(FloodlightContext.class));
+        expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+                dispatchedXids.add(((OFMessage) getCurrentArguments()[1]).getXid());
+                if (latch != null) {
+                    latch.countDown();
+                }
+                return null;
+            }
+        }).anyTimes();
+        replay(floodlightProvider);
+        pipeline = new OFMessageDispatchPipeline(floodlightProvider,
+                new MockDebugCounterService(), 4, CAPACITY);
+    }
+
+    @After
+    public void tearDown() {
+        pipeline.stop();
+    }
+
+    private IOFSwitchBackend createSwitch(long dpid, MockOFConnection connection) {
+        IOFSwitchBackend sw = createMock(IOFSwitchBackend.class);
+        expect(sw.getId()).andReturn(DatapathId.of(dpid)).anyTimes();
+        expect(sw.getConnections()).andReturn(ImmutableList.<IOFConnection>of(connection)).anyTimes();
+        replay(sw);
+        return sw;
+    }
+
+    private OFMessage echo(long xid) {
+        return factory.buildEchoRequest().setXid(xid).build();
+    }
+
+    private OFMessage packetIn(long xid) {
+        return factory.buildPacketIn()
+                .setXid(xid)
+                .setBufferId(OFBufferId.NO_BUFFER)
+                .setReason(OFPacketInReason.NO_MATCH)
+                .setData(new byte[0])
+                .build();
+    }
+
+    @Test
+    public void testPerSwitchOrderingKept() throws Exception {
+        IOFSwitchBackend sw = createSwitch(1, new MockOFConnection(DatapathId.of(1), OFAuxId.MAIN));
+        int n = CAPACITY - 1;
+        latch = new CountDownLatch(n);
+        pipeline.start();
+        for (long xid = 0; xid < n; xid++) {
+            assertTrue(pipeline.dispatch(sw, echo(xid), null));
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < n; i++) {
+            assertEquals(i, dispatchedXids.get(i).longValue());
+        }
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        MockOFConnection connection = new MockOFConnection(DatapathId.of(1), OFAuxId.MAIN);
+        IOFSwitchBackend sw = createSwitch(1, connection);
+
+        /* Dispatchers not started yet, so the queue only fills */
+        for (long xid = 0; xid < CAPACITY - 1; xid++) {
+            assertTrue(pipeline.dispatch(sw, echo(xid), null));
+        }
+        assertTrue(connection.isAutoRead());
+        assertTrue(pipeline.dispatch(sw, echo(CAPACITY), null));
+        assertFalse(connection.isAutoRead());
+
+        /* Accepted up to the hard limit, then packet-ins are dropped */
+        for (long xid = CAPACITY; xid < 2 * CAPACITY; xid++) {
+            assertTrue(pipeline.dispatch(sw, echo(xid), null));
+        }
+        assertFalse(pipeline.dispatch(sw, packetIn(2 * CAPACITY), null));
+        assertEquals(2 * CAPACITY, pipeline.getQueueDepth());
+
+        /* but other messages are still queued */
+        assertTrue(pipeline.dispatch(sw, echo(2 * CAPACITY + 1), null));
+        assertEquals(2 * CAPACITY + 1, pipeline.getQueueDepth());
+
+        latch = new CountDownLatch(2 * CAPACITY + 1);
+        pipeline.start();
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!connection.isAutoRead() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(connection.isAutoRead());
+        assertEquals(0, pipeline.getQueueDepth());
+    }
+}
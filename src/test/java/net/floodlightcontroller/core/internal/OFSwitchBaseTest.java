@@ -44,6 +44,7 @@ import org.junit.Test;
 import net.floodlightcontroller.core.IOFConnectionBackend;
 import net.floodlightcontroller.core.IOFSwitchBackend;
 import net.floodlightcontroller.core.LogicalOFMessageCategory;
+import net.floodlightcontroller.core.OFMessagePriority;
 import net.floodlightcontroller.core.PortChangeEvent;
 import net.floodlightcontroller.core.PortChangeType;
 import net.floodlightcontroller.core.SwitchDescription;
@@ -147,7 +148,7 @@ public class OFSwitchBaseTest {
 
         IOFConnectionBackend conn = EasyMock.createNiceMock(IOFConnectionBackend.class);
         capturedMessage = EasyMock.newCapture();
-        expect(conn.write(EasyMock.capture(capturedMessage))).andReturn(Collections.<OFMessage>emptyList()).atLeastOnce();
+        expect(conn.write(EasyMock.capture(capturedMessage), EasyMock.<OFMessagePriority>isNull())).andReturn(Collections.<OFMessage>emptyList()).atLeastOnce();
         expect(conn.getOFFactory()).andReturn(factory).anyTimes();
         expect(conn.getAuxId()).andReturn(OFAuxId.MAIN).anyTimes();
         EasyMock.replay(conn);
@@ -155,7 +156,7 @@ public class OFSwitchBaseTest {
         IOFConnectionBackend auxConn = EasyMock.createNiceMock(IOFConnectionBackend.class);
         expect(auxConn.getOFFactory()).andReturn(factory).anyTimes();
         expect(auxConn.getAuxId()).andReturn(OFAuxId.of(1)).anyTimes();
-        expect(auxConn.write(EasyMock.capture(capturedMessage))).andReturn(Collections.<OFMessage>emptyList()).once();
+        expect(auxConn.write(EasyMock.capture(capturedMessage), EasyMock.<OFMessagePriority>isNull())).andReturn(Collections.<OFMessage>emptyList()).once();
         EasyMock.replay(auxConn);
 
         sw = new OFSwitchTest(conn, switchManager);
@@ -539,6 +540,63 @@ public class OFSwitchBaseTest {
     }
 
 
+    /**
+     * Test that a burst of OFPortStatus messages is applied as a whole and
+     * only its net changes are reported.
+     */
+    @Test
+    public void testPortStatusBurst() {
+        OFPortStatus.Builder builder = sw.getOFFactory().buildPortStatus();
+        List<OFPortDesc> ports = new ArrayList<OFPortDesc>();
+        ports.add(p1a);
+        ports.add(p2a);
+        sw.setPorts(ports);
+
+        // p1 flaps up and down again, p2 is modified, p3 comes and goes,
+        // port 11 is added and renamed
+        List<OFPortStatus> burst = new ArrayList<OFPortStatus>();
+        burst.add(builder.setReason(OFPortReason.MODIFY).setDesc(p1b).build());
+        burst.add(builder.setReason(OFPortReason.MODIFY).setDesc(p2b).build());
+        burst.add(builder.setReason(OFPortReason.ADD).setDesc(p3).build());
+        burst.add(builder.setReason(OFPortReason.MODIFY).setDesc(p1a).build());
+        burst.add(builder.setReason(OFPortReason.ADD).setDesc(portFoo1).build());
+        burst.add(builder.setReason(OFPortReason.DELETE).setDesc(p3).build());
+        burst.add(builder.setReason(OFPortReason.ADD).setDesc(portBar1).build());
+
+        Collection<PortChangeEvent> expectedChanges =
+                new ArrayList<PortChangeEvent>();
+        expectedChanges.add(new PortChangeEvent(p2b, PortChangeType.OTHER_UPDATE));
+        expectedChanges.add(new PortChangeEvent(portBar1, PortChangeType.ADD));
+        Collection<PortChangeEvent> actualChanges = sw.processOFPortStatuses(burst);
+        assertCollectionEqualsNoOrder(expectedChanges, actualChanges);
+
+        ports.clear();
+        ports.add(p1a);
+        ports.add(p2b);
+        ports.add(portBar1);
+        assertCollectionEqualsNoOrder(ports, sw.getPorts());
+        assertCollectionEqualsNoOrder(Collections.singletonList(portBar1),
+                                      sw.getEnabledPorts());
+        assertCollectionEqualsNoOrder(Collections.singletonList(OFPort.of(11)),
+                                      sw.getEnabledPortNumbers());
+        assertEquals(portBar1, sw.getPort(OFPort.of(11)));
+        assertEquals(portBar1, sw.getPort("BAR"));
+        assertEquals(null, sw.getPort("foo"));
+        assertEquals(null, sw.getPort(OFPort.of(3)));
+
+        // Deletes are reported before other changes
+        burst.clear();
+        burst.add(builder.setReason(OFPortReason.MODIFY).setDesc(p1b).build());
+        burst.add(builder.setReason(OFPortReason.DELETE).setDesc(p2b).build());
+        List<PortChangeEvent> orderedChanges = new ArrayList<PortChangeEvent>();
+        orderedChanges.add(new PortChangeEvent(p2b, PortChangeType.DELETE));
+        orderedChanges.add(new PortChangeEvent(p1b, PortChangeType.UP));
+        assertEquals(orderedChanges,
+                     new ArrayList<PortChangeEvent>(sw.processOFPortStatuses(burst)));
+        assertEquals(p1b, sw.getPort("port1"));
+        assertEquals(null, sw.getPort("port2"));
+    }
+
     /**
      * Test "normal" OFPortStatus handling. No name<->number
      * conflicts or exception testing.
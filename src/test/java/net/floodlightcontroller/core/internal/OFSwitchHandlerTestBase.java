@@ -1104,6 +1104,43 @@ public abstract class OFSwitchHandlerTestBase {
 		}
 	}
 
+	/**
+	 * Test that a burst of port status messages while MASTER is applied
+	 * to the switch at once and its net changes are dispatched
+	 */
+	@Test
+	public void testPortStatusBurstMaster() throws Exception {
+		DatapathId dpid = featuresReply.getDatapathId();
+		testInitialMoveToMasterWithRole();
+
+		OFPortDesc.Builder pb = factory.buildPortDesc();
+		OFPortDesc p1 = pb.setName("eth1").setPortNo(OFPort.of(1)).build();
+		OFPortDesc p2 = pb.setName("eth2").setPortNo(OFPort.of(2)).build();
+		List<OFPortStatus> burst = ImmutableList.<OFPortStatus>of(
+				factory.buildPortStatus().setReason(OFPortReason.MODIFY).setDesc(p1).build(),
+				factory.buildPortStatus().setReason(OFPortReason.ADD).setDesc(p2).build());
+
+		OrderedCollection<PortChangeEvent> events =
+				new LinkedHashSetWrapper<PortChangeEvent>();
+		events.add(new PortChangeEvent(p1, PortChangeType.DOWN));
+		events.add(new PortChangeEvent(p2, PortChangeType.ADD));
+
+		reset(sw);
+		expect(sw.getId()).andReturn(dpid).anyTimes();
+		expect(sw.processOFPortStatuses(burst)).andReturn(events).once();
+		replay(sw);
+
+		reset(switchManager);
+		switchManager.notifyPortChanged(sw, p1, PortChangeType.DOWN);
+		switchManager.notifyPortChanged(sw, p2, PortChangeType.ADD);
+		replay(switchManager);
+
+		switchHandler.portStatusBurstReceived(connection, burst);
+
+		verify(sw);
+		verify(switchManager);
+	}
+
 	/**
 	 * Test re-assert MASTER
 	 *
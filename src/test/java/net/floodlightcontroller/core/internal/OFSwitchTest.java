@@ -27,14 +27,21 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.easymock.EasyMock;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import net.floodlightcontroller.core.IOFSwitchBackend;
+import net.floodlightcontroller.core.LogicalOFMessageCategory;
 import net.floodlightcontroller.core.SwitchDriverSubHandshakeAlreadyStarted;
 import net.floodlightcontroller.core.SwitchDriverSubHandshakeCompleted;
 import net.floodlightcontroller.core.SwitchDriverSubHandshakeNotStarted;
 import net.floodlightcontroller.core.util.URIUtil;
+import net.floodlightcontroller.debugcounter.MockDebugCounterService;
+import net.floodlightcontroller.packet.Data;
+import net.floodlightcontroller.packet.Ethernet;
+import net.floodlightcontroller.packet.IPv4;
+import net.floodlightcontroller.packet.UDP;
 
 import org.projectfloodlight.openflow.protocol.OFBsnControllerConnection;
 import org.projectfloodlight.openflow.protocol.OFBsnControllerConnectionState;
@@ -45,8 +52,23 @@ import org.projectfloodlight.openflow.protocol.OFFactory;
 import org.projectfloodlight.openflow.protocol.OFMessage;
 import org.projectfloodlight.openflow.protocol.OFNiciraControllerRole;
 import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.protocol.OFPacketOut;
+import org.projectfloodlight.openflow.protocol.OFStatsReply;
+import org.projectfloodlight.openflow.protocol.OFStatsRequest;
+import org.projectfloodlight.openflow.protocol.action.OFAction;
 import org.projectfloodlight.openflow.types.DatapathId;
+import org.projectfloodlight.openflow.types.EthType;
+import org.projectfloodlight.openflow.types.IPv4Address;
+import org.projectfloodlight.openflow.types.IpProtocol;
+import org.projectfloodlight.openflow.types.MacAddress;
 import org.projectfloodlight.openflow.types.OFAuxId;
+import org.projectfloodlight.openflow.types.OFBufferId;
+import org.projectfloodlight.openflow.types.OFPort;
+import org.projectfloodlight.openflow.types.TransportPort;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 
 public class OFSwitchTest {
 	protected OFSwitch sw;
@@ -59,6 +81,11 @@ public class OFSwitchTest {
 				EasyMock.createMock(IOFSwitchManager.class), DatapathId.of(1));
 	}
 
+	@After
+	public void tearDown() {
+		AuxConnectionStriping.setEnabled(false);
+	}
+
 	@Test
 	public void testSetHARoleReply() {
 		sw.setControllerRole(OFControllerRole.ROLE_MASTER);
@@ -161,4 +188,93 @@ public class OFSwitchTest {
 		// From the perspective of pepsi, the cluster currently has another master controller
 		assertTrue(sw.hasAnotherMaster());
 	}
+
+	private OFPacketOut packetOut(int srcPort, OFPort outPort) {
+		Ethernet eth = new Ethernet()
+				.setSourceMACAddress(MacAddress.of(1))
+				.setDestinationMACAddress(MacAddress.of(2))
+				.setEtherType(EthType.IPv4);
+		eth.setPayload(new IPv4()
+				.setSourceAddress(IPv4Address.of(1))
+				.setDestinationAddress(IPv4Address.of(2))
+				.setProtocol(IpProtocol.UDP)
+				.setTtl((byte) 64)
+				.setPayload(new UDP()
+						.setSourcePort(TransportPort.of(srcPort))
+						.setDestinationPort(TransportPort.of(53))
+						.setPayload(new Data(new byte[4]))));
+		return factory.buildPacketOut()
+				.setBufferId(OFBufferId.NO_BUFFER)
+				.setInPort(OFPort.CONTROLLER)
+				.setActions(ImmutableList.<OFAction>of(factory.actions().output(outPort, Integer.MAX_VALUE)))
+				.setData(eth.serialize())
+				.build();
+	}
+
+	@Test
+	public void testAuxConnectionStriping() {
+		IOFSwitchManager switchManager = EasyMock.createNiceMock(IOFSwitchManager.class);
+		EasyMock.expect(switchManager.isCategoryRegistered(LogicalOFMessageCategory.MAIN)).andReturn(true).anyTimes();
+		EasyMock.expect(switchManager.getCounters())
+				.andReturn(new SwitchManagerCounters(new MockDebugCounterService())).anyTimes();
+		EasyMock.replay(switchManager);
+
+		MockOFConnection main = new MockOFConnection(DatapathId.of(1), OFAuxId.MAIN);
+		MockOFConnection aux1 = new MockOFConnection(DatapathId.of(1), OFAuxId.of(1));
+		final List<OFStatsRequest<?>> statsRequests = new ArrayList<OFStatsRequest<?>>();
+		MockOFConnection aux2 = new MockOFConnection(DatapathId.of(1), OFAuxId.of(2)) {
+			@Override
+			public <REPLY extends OFStatsReply> ListenableFuture<List<REPLY>> writeStatsRequest(
+					OFStatsRequest<REPLY> request) {
+				statsRequests.add(request);
+				return SettableFuture.create();
+			}
+		};
+		main.setConnected(true);
+		aux1.setConnected(true);
+		aux2.setConnected(true);
+		OFSwitch sw = new OFSwitch(main, factory, switchManager, DatapathId.of(1));
+		sw.setControllerRole(OFControllerRole.ROLE_MASTER);
+		sw.registerConnection(aux1);
+		sw.registerConnection(aux2);
+
+		/* Disabled: everything on main */
+		OFPacketOut po = packetOut(1000, OFPort.of(1));
+		assertTrue(sw.write(po));
+		assertEquals(ImmutableList.of(po), main.getMessages());
+		main.clearMessages();
+
+		AuxConnectionStriping.setEnabled(true);
+		/* With two aux connections, aux 2 is kept for stats */
+		for (int i = 0; i < 16; i++) {
+			assertTrue(sw.write(packetOut(1000 + i, OFPort.of(1))));
+		}
+		assertEquals(16, aux1.getMessages().size());
+		assertTrue(main.getMessages().isEmpty());
+		assertTrue(aux2.getMessages().isEmpty());
+		aux1.clearMessages();
+
+		sw.writeStatsRequest(factory.buildFlowStatsRequest().build());
+		assertEquals(1, statsRequests.size());
+
+		/* Packet-outs to TABLE, and batches with a flow-mod, stay on main */
+		OFPacketOut toTable = packetOut(1000, OFPort.TABLE);
+		assertTrue(sw.write(toTable));
+		OFMessage flowAdd = factory.buildFlowAdd().build();
+		assertTrue(sw.write(ImmutableList.<OFMessage>of(flowAdd, po)).isEmpty());
+		assertEquals(ImmutableList.of(toTable, flowAdd, po), main.getMessages());
+		assertTrue(aux1.getMessages().isEmpty());
+
+		/* With a single aux connection, it carries packet-outs and stats */
+		main.clearMessages();
+		aux2.clearMessages();
+		sw.removeConnection(aux1);
+		assertTrue(sw.write(po));
+		assertEquals(ImmutableList.of(po), aux2.getMessages());
+
+		/* No aux connections left */
+		sw.removeConnection(aux2);
+		assertTrue(sw.write(po));
+		assertEquals(ImmutableList.of(po), main.getMessages());
+	}
 }
@@ -0,0 +1,222 @@
+package net.floodlightcontroller.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.floodlightcontroller.core.OFMessagePriority;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFType;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.protocol.action.OFAction;
+import org.projectfloodlight.openflow.types.OFBufferId;
+import org.projectfloodlight.openflow.types.OFPort;
+
+public class OFWriteSchedulerTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int MAX_QUEUED = 20;
+
+    private final OFFactory factory = OFFactories.getFactory(OFVersion.OF_13);
+    /* 100 flow-mods/s, so the bucket holds 5 */
+    private OFWriteScheduler scheduler;
+    private List<OFMessage> rejected;
+
+    @Before
+    public void setUp() {
+        scheduler = new OFWriteScheduler(factory, 100, 10, 1000, MAX_QUEUED, 0);
+        rejected = new ArrayList<OFMessage>();
+    }
+
+    private OFMessage flowAdd() {
+        return factory.buildFlowAdd().build();
+    }
+
+    private OFMessage packetOut(OFPort port) {
+        return factory.buildPacketOut()
+                .setBufferId(OFBufferId.NO_BUFFER)
+                .setInPort(OFPort.CONTROLLER)
+                .setActions(Collections.<OFAction>singletonList(
+                        factory.actions().output(port, Integer.MAX_VALUE)))
+                .build();
+    }
+
+    private List<OFMessage> flowAdds(int n) {
+        List<OFMessage> l = new ArrayList<OFMessage>();
+        for (int i = 0; i < n; i++) {
+            l.add(flowAdd());
+        }
+        return l;
+    }
+
+    /** Poll until nothing is left, advancing time as the scheduler asks */
+    private List<OFMessage> drain(long now) {
+        List<OFMessage> out = new ArrayList<OFMessage>();
+        while (true) {
+            out.addAll(scheduler.poll(now, true));
+            long delay = scheduler.getDrainDelayNs();
+            if (delay < 0) {
+                return out;
+            }
+            now += delay;
+        }
+    }
+
+    private static OFMessage last(List<OFMessage> l) {
+        return l.get(l.size() - 1);
+    }
+
+    @Test
+    public void testPriorityOrder() {
+        OFMessage fm = flowAdd();
+        OFMessage po = packetOut(OFPort.of(1));
+        OFMessage echo = factory.buildEchoRequest().build();
+        assertTrue(scheduler.enqueue(Arrays.asList(fm, po, echo), null, rejected));
+        assertEquals(Arrays.asList(echo, po, fm), scheduler.poll(0, true));
+        assertEquals(-1, scheduler.getDrainDelayNs());
+    }
+
+    @Test
+    public void testDrainPending() {
+        assertTrue(scheduler.enqueue(Collections.singletonList(flowAdd()), null, rejected));
+        assertFalse(scheduler.enqueue(Collections.singletonList(flowAdd()), null, rejected));
+        assertFalse(scheduler.wakeUp());
+        scheduler.poll(0, false);
+        assertTrue(scheduler.wakeUp());
+        assertEquals(2, scheduler.poll(0, true).size());
+        assertFalse(scheduler.wakeUp());
+        assertTrue(scheduler.enqueue(Collections.singletonList(flowAdd()), null, rejected));
+    }
+
+    @Test
+    public void testOrderedMessagesStayBehind() {
+        OFMessage bulk = flowAdd();
+        OFMessage fm = flowAdd();
+        OFMessage tablePo = packetOut(OFPort.TABLE);
+        OFMessage barrier = factory.buildBarrierRequest().build();
+        OFMessage stats = factory.buildFlowStatsRequest().build();
+        OFMessage echo = factory.buildEchoRequest().build();
+        scheduler.enqueue(Collections.singletonList(bulk), OFMessagePriority.BULK, rejected);
+        scheduler.enqueue(Arrays.asList(fm, tablePo, barrier, stats, echo), null, rejected);
+        assertEquals(Arrays.asList(echo, fm, tablePo, bulk, barrier, stats), scheduler.poll(0, true));
+    }
+
+    @Test
+    public void testPacing() {
+        scheduler.enqueue(flowAdds(10), null, rejected);
+        OFMessage echo = factory.buildEchoRequest().build();
+        scheduler.enqueue(Collections.singletonList(echo), null, rejected);
+
+        List<OFMessage> out = scheduler.poll(0, true);
+        assertEquals(6, out.size());
+        assertEquals(echo, out.get(0));
+        long delay = scheduler.getDrainDelayNs();
+        assertTrue(delay > 0 && delay <= 10 * MS);
+        assertTrue(scheduler.poll(delay / 2, true).isEmpty());
+
+        /* 5 more after 50ms, then a probe barrier since pacing held them back */
+        out = scheduler.poll(50 * MS, true);
+        assertEquals(6, out.size());
+        assertEquals(OFType.BARRIER_REQUEST, last(out).getType());
+        assertEquals(-1, scheduler.getDrainDelayNs());
+        int[] depths = scheduler.getQueueDepths();
+        for (int d : depths) {
+            assertEquals(0, d);
+        }
+    }
+
+    @Test
+    public void testRateFollowsBarrierRtt() {
+        scheduler.enqueue(flowAdds(10), null, rejected);
+        OFMessage probe = last(drain(0));
+        assertEquals(OFType.BARRIER_REQUEST, probe.getType());
+
+        /* quick reply while pacing held messages back: faster */
+        assertTrue(scheduler.barrierReplyReceived(probe.getXid(), 51 * MS));
+        assertEquals(110, scheduler.getRate(), 0.001);
+        assertEquals(1 * MS, scheduler.getLastBarrierRttNs());
+        assertFalse(scheduler.barrierReplyReceived(probe.getXid(), 52 * MS));
+
+        /* slow reply: slower, but only once per round trip */
+        scheduler.enqueue(flowAdds(10), null, rejected);
+        List<OFMessage> out = drain(100 * MS);
+        OFMessage barrier = factory.buildBarrierRequest().build();
+        scheduler.enqueue(flowAdds(1), null, rejected);
+        scheduler.enqueue(Collections.singletonList(barrier), null, rejected);
+        out.addAll(drain(200 * MS));
+        assertEquals(barrier, last(out));
+        assertTrue(scheduler.barrierReplyReceived(out.get(10).getXid(), 300 * MS));
+        assertEquals(82.5, scheduler.getRate(), 0.001);
+        /* the application's barrier is passed on */
+        assertFalse(scheduler.barrierReplyReceived(barrier.getXid(), 301 * MS));
+        assertEquals(82.5, scheduler.getRate(), 0.001);
+    }
+
+    @Test
+    public void testProbeInterval() {
+        OFWriteScheduler fast = new OFWriteScheduler(factory, 100000, 10, 100000, MAX_QUEUED, 0);
+        fast.enqueue(flowAdds(OFWriteScheduler.PROBE_INTERVAL), null, rejected);
+        List<OFMessage> out = fast.poll(0, true);
+        assertEquals(OFWriteScheduler.PROBE_INTERVAL + 1, out.size());
+        assertEquals(OFType.BARRIER_REQUEST, last(out).getType());
+        assertTrue(fast.barrierReplyReceived(last(out).getXid(), MS));
+    }
+
+    @Test
+    public void testClear() {
+        scheduler.enqueue(flowAdds(10), null, rejected);
+        scheduler.poll(0, true);
+        scheduler.clear();
+        assertEquals(-1, scheduler.getDrainDelayNs());
+        assertFalse(scheduler.wakeUp());
+        assertTrue(scheduler.enqueue(flowAdds(1), null, rejected));
+    }
+
+    /** A full class hands back what does not fit; CONTROL and barriers are always queued */
+    @Test
+    public void testQueueLimit() {
+        List<OFMessage> bulk = flowAdds(MAX_QUEUED + 5);
+        assertTrue(scheduler.enqueue(bulk, OFMessagePriority.BULK, rejected));
+        assertEquals(bulk.subList(MAX_QUEUED, bulk.size()), rejected);
+        assertEquals(MAX_QUEUED, scheduler.getQueueDepths()[OFMessagePriority.BULK.ordinal()]);
+
+        /* other classes have their own room */
+        rejected.clear();
+        scheduler.enqueue(flowAdds(MAX_QUEUED), null, rejected);
+        assertTrue(rejected.isEmpty());
+
+        OFMessage barrier = factory.buildBarrierRequest().build();
+        List<OFMessage> echoes = new ArrayList<OFMessage>();
+        for (int i = 0; i < MAX_QUEUED + 5; i++) {
+            echoes.add(factory.buildEchoRequest().build());
+        }
+        scheduler.enqueue(Collections.singletonList(barrier), null, rejected);
+        scheduler.enqueue(echoes, null, rejected);
+        assertTrue(rejected.isEmpty());
+        assertEquals(MAX_QUEUED + 1, scheduler.getQueueDepths()[OFMessagePriority.BULK.ordinal()]);
+
+        /* a write that is rejected as a whole does not ask for a drain */
+        OFWriteScheduler blocked = new OFWriteScheduler(factory, 100, 10, 1000, 1, 0);
+        assertTrue(blocked.enqueue(flowAdds(1), OFMessagePriority.BULK, rejected));
+        blocked.poll(0, false);
+        assertFalse(blocked.enqueue(flowAdds(1), OFMessagePriority.BULK, rejected));
+        assertEquals(1, rejected.size());
+        assertTrue(blocked.wakeUp());
+
+        /* room again once drained */
+        drain(0);
+        rejected.clear();
+        assertTrue(scheduler.enqueue(flowAdds(MAX_QUEUED), OFMessagePriority.BULK, rejected));
+        assertTrue(rejected.isEmpty());
+    }
+}
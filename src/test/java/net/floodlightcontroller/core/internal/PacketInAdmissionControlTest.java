@@ -0,0 +1,259 @@
+package net.floodlightcontroller.core.internal;
+
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.newCapture;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.internal.PacketInAdmissionControl.DropFlowMatch;
+import net.floodlightcontroller.debugcounter.DebugCounterServiceImpl;
+
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.junit.Before;
+import org.junit.Test;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFFlowAdd;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFPacketIn;
+import org.projectfloodlight.openflow.protocol.OFPacketInReason;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.protocol.match.MatchField;
+import org.projectfloodlight.openflow.types.DatapathId;
+import org.projectfloodlight.openflow.types.MacAddress;
+import org.projectfloodlight.openflow.types.OFBufferId;
+import org.projectfloodlight.openflow.types.OFPort;
+
+public class PacketInAdmissionControlTest {
+    /* slow enough that no token is added back while a test runs */
+    private static final double RATE = 0.001;
+
+    private final OFFactory factory = OFFactories.getFactory(OFVersion.OF_13);
+    private SwitchManagerCounters counters;
+    private Capture<OFMessage> written;
+
+    @Before
+    public void setUp() {
+        counters = new SwitchManagerCounters(new DebugCounterServiceImpl());
+        written = newCapture(CaptureType.ALL);
+    }
+
+    private IOFSwitch createSwitch(long dpid) {
+        IOFSwitch sw = createMock(IOFSwitch.class);
+        expect(sw.getId()).andReturn(DatapathId.of(dpid)).anyTimes();
+        expect(sw.getOFFactory()).andReturn(factory).anyTimes();
+        expect(sw.write(capture(written))).andReturn(true).anyTimes();
+        replay(sw);
+        return sw;
+    }
+
+    private OFPacketIn packetIn(int inPort, long srcMac) {
+        byte[] eth = new byte[60];
+        byte[] dst = MacAddress.of(0x0a0000000001L).getBytes();
+        byte[] src = MacAddress.of(srcMac).getBytes();
+        System.arraycopy(dst, 0, eth, 0, 6);
+        System.arraycopy(src, 0, eth, 6, 6);
+        eth[12] = 0x08; /* IPv4 */
+        return factory.buildPacketIn()
+                .setMatch(factory.buildMatch().setExact(MatchField.IN_PORT, OFPort.of(inPort)).build())
+                .setReason(OFPacketInReason.NO_MATCH)
+                .setBufferId(OFBufferId.NO_BUFFER)
+                .setData(eth)
+                .build();
+    }
+
+    private List<OFFlowAdd> dropFlows() {
+        List<OFFlowAdd> flows = new ArrayList<OFFlowAdd>();
+        for (OFMessage m : written.getValues()) {
+            flows.add((OFFlowAdd) m);
+        }
+        return flows;
+    }
+
+    @Test
+    public void testDisabled() {
+        assertFalse(new PacketInAdmissionControl(counters, 0, 10, 0, 10, 0,
+                DropFlowMatch.IN_PORT_ETH_SRC).isEnabled());
+        assertTrue(new PacketInAdmissionControl(counters, 0, 10, RATE, 10, 0,
+                DropFlowMatch.IN_PORT_ETH_SRC).isEnabled());
+    }
+
+    @Test
+    public void testSwitchLimit() {
+        PacketInAdmissionControl ac = new PacketInAdmissionControl(counters, RATE, 3, 0, 1, 0,
+                DropFlowMatch.IN_PORT_ETH_SRC);
+        IOFSwitch sw1 = createSwitch(1);
+        IOFSwitch sw2 = createSwitch(2);
+
+        /* the budget is shared by all ports of the switch */
+        assertTrue(ac.admit(sw1, packetIn(1, 1)));
+        assertTrue(ac.admit(sw1, packetIn(2, 1)));
+        assertTrue(ac.admit(sw1, packetIn(3, 1)));
+        assertFalse(ac.admit(sw1, packetIn(4, 1)));
+        assertFalse(ac.admit(sw1, packetIn(1, 1)));
+        /* but not by other switches */
+        assertTrue(ac.admit(sw2, packetIn(1, 1)));
+
+        assertEquals(2, counters.packetInRateLimitedSwitch.getCounterValue());
+        assertEquals(0, counters.packetInRateLimitedPort.getCounterValue());
+        assertTrue(written.getValues().isEmpty());
+    }
+
+    @Test
+    public void testPortLimit() {
+        PacketInAdmissionControl ac = new PacketInAdmissionControl(counters, 0, 1, RATE, 2, 0,
+                DropFlowMatch.IN_PORT_ETH_SRC);
+        IOFSwitch sw = createSwitch(1);
+
+        assertTrue(ac.admit(sw, packetIn(1, 1)));
+        assertTrue(ac.admit(sw, packetIn(1, 2)));
+        assertFalse(ac.admit(sw, packetIn(1, 3)));
+        /* a storming port leaves the others alone */
+        assertTrue(ac.admit(sw, packetIn(2, 1)));
+        assertTrue(ac.admit(sw, packetIn(2, 1)));
+        assertFalse(ac.admit(sw, packetIn(2, 1)));
+
+        assertEquals(2, counters.packetInRateLimitedPort.getCounterValue());
+        assertEquals(0, counters.packetInRateLimitedSwitch.getCounterValue());
+        /* drop flows are off */
+        assertTrue(written.getValues().isEmpty());
+    }
+
+    /* packet-ins rejected by their port do not use up the switch's budget */
+    @Test
+    public void testPortCheckedFirst() {
+        PacketInAdmissionControl ac = new PacketInAdmissionControl(counters, RATE, 2, RATE, 1, 0,
+                DropFlowMatch.IN_PORT_ETH_SRC);
+        IOFSwitch sw = createSwitch(1);
+
+        assertTrue(ac.admit(sw, packetIn(1, 1)));
+        for (int i = 0; i < 10; i++) {
+            assertFalse(ac.admit(sw, packetIn(1, 1)));
+        }
+        assertTrue(ac.admit(sw, packetIn(2, 1)));
+        assertFalse(ac.admit(sw, packetIn(3, 1)));
+
+        assertEquals(10, counters.packetInRateLimitedPort.getCounterValue());
+        assertEquals(1, counters.packetInRateLimitedSwitch.getCounterValue());
+    }
+
+    @Test
+    public void testRemoveSwitch() {
+        PacketInAdmissionControl ac = new PacketInAdmissionControl(counters, RATE, 1, RATE, 1, 0,
+                DropFlowMatch.IN_PORT_ETH_SRC);
+        IOFSwitch sw = createSwitch(1);
+
+        assertTrue(ac.admit(sw, packetIn(1, 1)));
+        assertFalse(ac.admit(sw, packetIn(1, 1)));
+        assertFalse(ac.admit(sw, packetIn(2, 1)));
+
+        /* full buckets again when it reconnects */
+        ac.removeSwitch(sw.getId());
+        assertTrue(ac.admit(sw, packetIn(1, 1)));
+    }
+
+    @Test
+    public void testDropFlowOncePerTimeout() {
+        PacketInAdmissionControl ac = new PacketInAdmissionControl(counters, 0, 1, RATE, 1, 60,
+                DropFlowMatch.IN_PORT_ETH_SRC);
+        IOFSwitch sw = createSwitch(1);
+
+        assertTrue(ac.admit(sw, packetIn(1, 0x10)));
+        for (int i = 0; i < 10; i++) {
+            assertFalse(ac.admit(sw, packetIn(1, 0x10)));
+        }
+
+        List<OFFlowAdd> flows = dropFlows();
+        assertEquals(1, flows.size());
+        OFFlowAdd fa = flows.get(0);
+        assertEquals(OFPort.of(1), fa.getMatch().get(MatchField.IN_PORT));
+        assertEquals(MacAddress.of(0x10), fa.getMatch().get(MatchField.ETH_SRC));
+        assertEquals(60, fa.getHardTimeout());
+        assertEquals(1, counters.packetInDropFlowInstalled.getCounterValue());
+        assertEquals(10, counters.packetInRateLimitedPort.getCounterValue());
+    }
+
+    @Test
+    public void testDropFlowInPort() {
+        PacketInAdmissionControl ac = new PacketInAdmissionControl(counters, 0, 1, RATE, 1, 60,
+                DropFlowMatch.IN_PORT);
+        IOFSwitch sw = createSwitch(1);
+
+        assertTrue(ac.admit(sw, packetIn(1, 0x10)));
+        assertFalse(ac.admit(sw, packetIn(1, 0x10)));
+        assertFalse(ac.admit(sw, packetIn(1, 0x11)));
+
+        List<OFFlowAdd> flows = dropFlows();
+        assertEquals(1, flows.size());
+        assertEquals(OFPort.of(1), flows.get(0).getMatch().get(MatchField.IN_PORT));
+        assertNull(flows.get(0).getMatch().get(MatchField.ETH_SRC));
+    }
+
+    /* a flood from many sources ends up cutting off the whole port, once */
+    @Test
+    public void testDropFlowManySources() {
+        PacketInAdmissionControl ac = new PacketInAdmissionControl(counters, 0, 1, RATE, 1, 60,
+                DropFlowMatch.IN_PORT_ETH_SRC);
+        IOFSwitch sw = createSwitch(1);
+
+        assertTrue(ac.admit(sw, packetIn(1, 0x10)));
+        for (long mac = 0x10; mac < 0x20; mac++) {
+            assertFalse(ac.admit(sw, packetIn(1, mac)));
+        }
+
+        List<OFFlowAdd> flows = dropFlows();
+        assertEquals(2, flows.size());
+        assertEquals(MacAddress.of(0x10), flows.get(0).getMatch().get(MatchField.ETH_SRC));
+        assertEquals(OFPort.of(1), flows.get(1).getMatch().get(MatchField.IN_PORT));
+        assertNull(flows.get(1).getMatch().get(MatchField.ETH_SRC));
+        assertEquals(2, counters.packetInDropFlowInstalled.getCounterValue());
+    }
+
+    /* threads over the limit at the same time push one drop flow between them */
+    @Test
+    public void testDropFlowConcurrent() throws Exception {
+        final PacketInAdmissionControl ac = new PacketInAdmissionControl(counters, 0, 1, RATE, 1, 60,
+                DropFlowMatch.IN_PORT_ETH_SRC);
+        final IOFSwitch sw = createSwitch(1);
+        final OFPacketIn pi = packetIn(1, 0x10);
+        assertTrue(ac.admit(sw, pi));
+
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < 1000; j++) {
+                        ac.admit(sw, pi);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertEquals(1, written.getValues().size());
+        assertEquals(1, counters.packetInDropFlowInstalled.getCounterValue());
+        assertEquals(8000, counters.packetInRateLimitedPort.getCounterValue());
+    }
+}
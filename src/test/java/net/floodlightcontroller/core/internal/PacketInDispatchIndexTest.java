@@ -0,0 +1,97 @@
+package net.floodlightcontroller.core.internal;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import net.floodlightcontroller.core.IOFMessageListener;
+import net.floodlightcontroller.core.IPacketInInterestListener;
+import net.floodlightcontroller.core.PacketInInterest;
+
+import org.junit.Test;
+import org.projectfloodlight.openflow.types.EthType;
+import org.projectfloodlight.openflow.types.IpProtocol;
+import org.projectfloodlight.openflow.types.TransportPort;
+
+import com.google.common.collect.ImmutableList;
+
+public class PacketInDispatchIndexTest {
+    private static final int IPV4 = EthType.IPv4.getValue();
+    private static final int ARP = EthType.ARP.getValue();
+    private static final int LLDP = EthType.LLDP.getValue();
+    private static final int UDP = IpProtocol.UDP.getIpProtocolNumber();
+    private static final int TCP = IpProtocol.TCP.getIpProtocolNumber();
+
+    private IOFMessageListener plainListener() {
+        IOFMessageListener l = createNiceMock(IOFMessageListener.class);
+        replay(l);
+        return l;
+    }
+
+    private IPacketInInterestListener interestListener(PacketInInterest interest) {
+        IPacketInInterestListener l = createNiceMock(IPacketInInterestListener.class);
+        expect(l.getPacketInInterest()).andReturn(interest).anyTimes();
+        replay(l);
+        return l;
+    }
+
+    private static IOFMessageListener[] listeners(PacketInDispatchIndex.Entry[] entries) {
+        IOFMessageListener[] a = new IOFMessageListener[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            a[i] = entries[i].listener;
+        }
+        return a;
+    }
+
+    @Test
+    public void testNoInterestsNoFiltering() {
+        IOFMessageListener a = plainListener();
+        IOFMessageListener b = interestListener(null);
+        PacketInDispatchIndex index = new PacketInDispatchIndex(ImmutableList.of(a, b));
+        assertFalse(index.isFiltering());
+        assertArrayEquals(new IOFMessageListener[] { a, b }, listeners(index.getEntries(LLDP, -1)));
+    }
+
+    @Test
+    public void testFilteringKeepsOrder() {
+        IOFMessageListener first = plainListener();
+        IPacketInInterestListener arpOrIp = interestListener(PacketInInterest.builder()
+                .ethType(EthType.ARP, EthType.IPv4).build());
+        IPacketInInterestListener dhcp = interestListener(PacketInInterest.builder()
+                .ethType(EthType.IPv4)
+                .ipProtocol(IpProtocol.UDP)
+                .transportPort(TransportPort.of(67), TransportPort.of(68))
+                .build());
+        IOFMessageListener last = plainListener();
+        List<IOFMessageListener> ordered = ImmutableList.<IOFMessageListener>of(first, arpOrIp, dhcp, last);
+        PacketInDispatchIndex index = new PacketInDispatchIndex(ordered);
+
+        assertTrue(index.isFiltering());
+        assertSame(ordered, index.getSource());
+        assertArrayEquals(new IOFMessageListener[] { first, last },
+                listeners(index.getEntries(LLDP, -1)));
+        assertArrayEquals(new IOFMessageListener[] { first, arpOrIp, last },
+                listeners(index.getEntries(ARP, -1)));
+        assertArrayEquals(new IOFMessageListener[] { first, arpOrIp, last },
+                listeners(index.getEntries(IPV4, TCP)));
+        assertArrayEquals(new IOFMessageListener[] { first, arpOrIp, dhcp, last },
+                listeners(index.getEntries(IPV4, UDP)));
+        assertArrayEquals(new IOFMessageListener[] { first, last },
+                listeners(index.getEntries(-1, -1)));
+
+        /* Only the entry whose interest names ports needs a per-packet check */
+        PacketInDispatchIndex.Entry[] udp = index.getEntries(IPV4, UDP);
+        assertNull(udp[0].portInterest);
+        assertNull(udp[1].portInterest);
+        assertTrue(udp[2].portInterest.matchesTransportPorts(68, 67));
+        assertFalse(udp[2].portInterest.matchesTransportPorts(5353, 5353));
+        assertFalse(udp[2].portInterest.matchesTransportPorts(-1, -1));
+    }
+}
@@ -10,6 +10,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import net.floodlightcontroller.core.FloodlightContext;
+import net.floodlightcontroller.core.FlowModBatchResult;
 import net.floodlightcontroller.core.IOFConnectionBackend;
 import net.floodlightcontroller.core.IOFSwitch;
 import net.floodlightcontroller.core.IOFSwitch.SwitchStatus;
@@ -19,6 +20,7 @@ import net.floodlightcontroller.core.IOFSwitchListener;
 import net.floodlightcontroller.core.LogicalOFMessageCategory;
 import net.floodlightcontroller.core.PortChangeType;
 import net.floodlightcontroller.core.SwitchDescription;
+import net.floodlightcontroller.core.SwitchDisconnectedException;
 import net.floodlightcontroller.core.internal.IAppHandshakePluginFactory;
 import net.floodlightcontroller.core.internal.IOFSwitchManager;
 import net.floodlightcontroller.core.internal.IOFSwitchService;
@@ -30,12 +32,15 @@ import net.floodlightcontroller.core.module.IFloodlightModule;
 import net.floodlightcontroller.core.module.IFloodlightService;
 import net.floodlightcontroller.debugcounter.DebugCounterServiceImpl;
 
+import org.projectfloodlight.openflow.protocol.OFErrorMsg;
 import org.projectfloodlight.openflow.protocol.OFFactory;
 import org.projectfloodlight.openflow.protocol.OFMessage;
 import org.projectfloodlight.openflow.protocol.OFPortDesc;
 import org.projectfloodlight.openflow.types.DatapathId;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 public class MockSwitchManager implements IFloodlightModule, IOFSwitchManager, IOFSwitchService {
 
@@ -170,6 +175,26 @@ public class MockSwitchManager implements IFloodlightModule, IOFSwitchManager, I
             return null;
     }
 
+    /**
+     * Writes the messages to the switch as they are and reports success
+     * right away.
+     */
+    @Override
+    public ListenableFuture<FlowModBatchResult> writeFlowModBatch(DatapathId dpid, List<? extends OFMessage> msgs) {
+        IOFSwitch sw = getActiveSwitch(dpid);
+        if (sw == null) {
+            return Futures.immediateFailedFuture(new SwitchDisconnectedException(dpid));
+        }
+        sw.write(new ArrayList<OFMessage>(msgs));
+        return Futures.immediateFuture(new FlowModBatchResult(dpid, msgs.size(), false,
+                Collections.<OFErrorMsg>emptyList(), 0));
+    }
+
+    @Override
+    public int getDispatchQueueDepth() {
+        return -1;
+    }
+
     @Override
     public void addOFSwitchListener(IOFSwitchListener listener) {
         // do nothing
@@ -0,0 +1,204 @@
+package net.floodlightcontroller.core.web;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.floodlightcontroller.core.IOFConnection;
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.internal.IOFSwitchService;
+import net.floodlightcontroller.core.internal.OFConnectionCounters;
+import net.floodlightcontroller.debugcounter.DebugCounterServiceImpl;
+import net.floodlightcontroller.debugcounter.IDebugCounterService;
+import net.floodlightcontroller.perfmon.CumulativeTimeBucket;
+import net.floodlightcontroller.perfmon.LatencySnapshot;
+import net.floodlightcontroller.perfmon.OneComponentTime;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.types.DatapathId;
+import org.projectfloodlight.openflow.types.OFAuxId;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class MetricsRepresentationTest {
+    private static final DatapathId DPID = DatapathId.of(1);
+    private static final String CONN_LABELS = "dpid=\"" + DPID + "\",aux=\"" + OFAuxId.MAIN + "\"";
+
+    private final OFFactory factory = OFFactories.getFactory(OFVersion.OF_13);
+    private IDebugCounterService debugCounters;
+
+    @Before
+    public void setUp() {
+        debugCounters = new DebugCounterServiceImpl();
+        debugCounters.registerModule("test");
+        debugCounters.registerCounter("test", "hits", "Hits").add(5);
+        debugCounters.registerModule(OFConnectionCounters.COUNTER_MODULE);
+        OFConnectionCounters conn = new OFConnectionCounters(debugCounters, DPID, OFAuxId.MAIN);
+        conn.updateWriteStats(factory.buildBarrierRequest().build());
+        conn.updateWriteStats(factory.buildBarrierRequest().build());
+        conn.updateReadStats(factory.buildEchoRequest().build());
+        conn.updateFlushStats(3);
+        conn.updateQueueRejectedStats(4);
+    }
+
+    private String write(CumulativeTimeBucket perfmon, IOFSwitchService switchService,
+            Map<String, String> filter) throws Exception {
+        StringWriter w = new StringWriter();
+        new MetricsRepresentation(debugCounters.getSnapshot(), perfmon, switchService, filter).write(w);
+        return w.toString();
+    }
+
+    private static List<String> lines(String text) {
+        return Arrays.asList(text.split("\n"));
+    }
+
+    private static CumulativeTimeBucket createPerfmon() {
+        Map<String, LatencySnapshot> latency = new LinkedHashMap<String, LatencySnapshot>();
+        latency.put("10s", new LatencySnapshot(10, 2000, 1000, 5000, 9000, 20000));
+        OneComponentTime listener = createMock(OneComponentTime.class);
+        expect(listener.getCompName()).andReturn("forwarding").anyTimes();
+        expect(listener.getLatency()).andReturn(latency).anyTimes();
+        CumulativeTimeBucket ctb = createMock(CumulativeTimeBucket.class);
+        expect(ctb.getLatency()).andReturn(latency).anyTimes();
+        expect(ctb.getModules()).andReturn(Collections.singletonList(listener)).anyTimes();
+        replay(listener, ctb);
+        return ctb;
+    }
+
+    private static IOFSwitchService createSwitchService() {
+        IOFConnection conn = createMock(IOFConnection.class);
+        expect(conn.getDatapathId()).andReturn(DPID).anyTimes();
+        expect(conn.getAuxId()).andReturn(OFAuxId.MAIN).anyTimes();
+        expect(conn.getQueueDepths()).andReturn(new int[] { 0, 1, 2, 3 }).anyTimes();
+        expect(conn.getFlowModRate()).andReturn(500.0).anyTimes();
+        expect(conn.getLastBarrierRttNs()).andReturn(2000000L).anyTimes();
+        IOFSwitch sw = createMock(IOFSwitch.class);
+        expect(sw.getConnections()).andReturn(ImmutableList.of(conn)).anyTimes();
+        IOFSwitchService switchService = createMock(IOFSwitchService.class);
+        expect(switchService.getAllSwitchMap()).andReturn(ImmutableMap.of(DPID, sw)).anyTimes();
+        expect(switchService.getDispatchQueueDepth()).andReturn(7).anyTimes();
+        replay(conn, sw, switchService);
+        return switchService;
+    }
+
+    @Test
+    public void testCounters() throws Exception {
+        List<String> out = lines(write(null, null, Collections.<String, String>emptyMap()));
+
+        assertTrue(out.contains("# TYPE floodlight_counter_total counter"));
+        assertTrue(out.contains("floodlight_counter_total{module=\"test\",counter=\"hits\"} 5"));
+        assertTrue(out.contains("# TYPE floodlight_openflow_messages_total counter"));
+        assertTrue(out.contains("floodlight_openflow_messages_total{" + CONN_LABELS
+                + ",direction=\"write\",type=\"BARRIER_REQUEST\"} 2"));
+        assertTrue(out.contains("floodlight_openflow_messages_total{" + CONN_LABELS
+                + ",direction=\"read\",type=\"ECHO_REQUEST\"} 1"));
+        assertTrue(out.contains("floodlight_openflow_flushes_total{" + CONN_LABELS + "} 1"));
+        assertTrue(out.contains("floodlight_openflow_flushed_messages_total{" + CONN_LABELS + "} 3"));
+        assertTrue(out.contains("floodlight_openflow_queue_throttled_total{" + CONN_LABELS + "} 0"));
+        assertTrue(out.contains("floodlight_openflow_queue_rejected_total{" + CONN_LABELS + "} 4"));
+
+        for (String l : out) {
+            /* per-connection counters only show up in their own families */
+            assertFalse(l, l.startsWith("floodlight_counter_total")
+                    && l.contains(OFConnectionCounters.COUNTER_MODULE));
+            /* nor do the parents of the message types */
+            assertFalse(l, l.contains("type=\"\""));
+        }
+    }
+
+    /* the samples of each family follow its HELP and TYPE lines */
+    @Test
+    public void testFamiliesContiguous() throws Exception {
+        List<String> out = lines(write(createPerfmon(), createSwitchService(),
+                Collections.<String, String>emptyMap()));
+        String family = null;
+        for (String l : out) {
+            if (l.startsWith("# HELP ")) {
+                family = l.split(" ")[2];
+            } else if (!l.startsWith("# TYPE ")) {
+                assertTrue(l, l.startsWith(family + "{"));
+            }
+        }
+    }
+
+    @Test
+    public void testLatencySummaries() throws Exception {
+        List<String> out = lines(write(createPerfmon(), null, Collections.<String, String>emptyMap()));
+
+        assertTrue(out.contains("# TYPE floodlight_packet_in_latency_seconds summary"));
+        assertTrue(out.contains("# TYPE floodlight_listener_latency_seconds summary"));
+        assertTrue(out.contains("floodlight_packet_in_latency_seconds{window=\"10s\",quantile=\"0.5\"} 1.0E-6"));
+        assertTrue(out.contains("floodlight_packet_in_latency_seconds{window=\"10s\",quantile=\"1\"} 2.0E-5"));
+        assertTrue(out.contains("floodlight_listener_latency_seconds{listener=\"forwarding\","
+                + "window=\"10s\",quantile=\"0.99\"} 5.0E-6"));
+    }
+
+    @Test
+    public void testQueues() throws Exception {
+        List<String> out = lines(write(null, createSwitchService(), Collections.<String, String>emptyMap()));
+
+        assertTrue(out.contains("# TYPE floodlight_openflow_queue_depth gauge"));
+        assertTrue(out.contains("floodlight_openflow_queue_depth{" + CONN_LABELS + ",priority=\"control\"} 0"));
+        assertTrue(out.contains("floodlight_openflow_queue_depth{" + CONN_LABELS + ",priority=\"packet-out\"} 1"));
+        assertTrue(out.contains("floodlight_openflow_queue_depth{" + CONN_LABELS + ",priority=\"bulk\"} 3"));
+        assertTrue(out.contains("floodlight_openflow_flow_mod_rate{" + CONN_LABELS + "} 500.0"));
+        assertTrue(out.contains("floodlight_openflow_barrier_rtt_seconds{" + CONN_LABELS + "} 0.002"));
+        assertTrue(out.contains("floodlight_dispatch_queue_depth{} 7"));
+    }
+
+    @Test
+    public void testNameFilter() throws Exception {
+        Map<String, String> filter = new HashMap<String, String>();
+        filter.put("__name__", "floodlight_openflow_flushes_total");
+        List<String> out = lines(write(createPerfmon(), createSwitchService(), filter));
+
+        assertEquals(Arrays.asList(
+                "# HELP floodlight_openflow_flushes_total Channel flushes per connection",
+                "# TYPE floodlight_openflow_flushes_total counter",
+                "floodlight_openflow_flushes_total{" + CONN_LABELS + "} 1"), out);
+    }
+
+    @Test
+    public void testLabelFilter() throws Exception {
+        Map<String, String> filter = new HashMap<String, String>();
+        filter.put("direction", "write");
+        List<String> out = lines(write(null, null, filter));
+
+        assertTrue(out.contains("floodlight_openflow_messages_total{" + CONN_LABELS
+                + ",direction=\"write\",type=\"BARRIER_REQUEST\"} 2"));
+        for (String l : out) {
+            /* samples without the label, or with another value, are left out */
+            assertTrue(l, l.startsWith("#") || l.contains("direction=\"write\""));
+        }
+
+        /* every label must match */
+        filter.put("dpid", DatapathId.of(2).toString());
+        for (String l : lines(write(null, null, filter))) {
+            assertTrue(l, l.startsWith("#"));
+        }
+    }
+
+    @Test
+    public void testLabelEscaping() throws Exception {
+        debugCounters.registerCounter("test", "a\\b\"c\nd", "Odd name").increment();
+        List<String> out = lines(write(null, null, Collections.<String, String>emptyMap()));
+
+        assertTrue(out.contains("floodlight_counter_total{module=\"test\",counter=\"a\\\\b\\\"c\\nd\"} 1"));
+    }
+}
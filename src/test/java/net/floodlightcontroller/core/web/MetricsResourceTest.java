@@ -0,0 +1,71 @@
+package net.floodlightcontroller.core.web;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import net.floodlightcontroller.debugcounter.DebugCounterServiceImpl;
+import net.floodlightcontroller.debugcounter.IDebugCounterService;
+import net.floodlightcontroller.perfmon.IPktInProcessingTimeService;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.representation.Representation;
+
+public class MetricsResourceTest {
+    private Context context;
+
+    @Before
+    public void setUp() {
+        IDebugCounterService debugCounters = new DebugCounterServiceImpl();
+        debugCounters.registerModule("test");
+        debugCounters.registerCounter("test", "hits", "Hits").add(5);
+        debugCounters.registerCounter("test", "misses", "Misses").add(2);
+
+        /* perfmon is off, so there are no latencies */
+        IPktInProcessingTimeService pktInProcTime = createMock(IPktInProcessingTimeService.class);
+        expect(pktInProcTime.isEnabled()).andReturn(false).anyTimes();
+        replay(pktInProcTime);
+
+        context = new Context();
+        context.getAttributes().put(IDebugCounterService.class.getCanonicalName(), debugCounters);
+        context.getAttributes().put(IPktInProcessingTimeService.class.getCanonicalName(), pktInProcTime);
+    }
+
+    private Representation get(String query) {
+        Request request = new Request(Method.GET, "http://localhost:8080/wm/core/metrics" + query);
+        MetricsResource resource = new MetricsResource();
+        resource.init(context, request, new Response(request));
+        return resource.retrieve();
+    }
+
+    @Test
+    public void testAll() throws Exception {
+        Representation r = get("");
+        assertTrue(MediaType.TEXT_PLAIN.equals(r.getMediaType(), true));
+        String text = r.getText();
+        assertTrue(text, text.contains("floodlight_counter_total{module=\"test\",counter=\"hits\"} 5\n"));
+        assertTrue(text, text.contains("floodlight_counter_total{module=\"test\",counter=\"misses\"} 2\n"));
+        assertTrue(text, !text.contains("latency"));
+    }
+
+    /* query parameters are label filters */
+    @Test
+    public void testQueryFilters() throws Exception {
+        String text = get("?__name__=floodlight_counter_total&counter=misses").getText();
+        assertEquals(Arrays.asList(
+                "# HELP floodlight_counter_total Floodlight debug counters",
+                "# TYPE floodlight_counter_total counter",
+                "floodlight_counter_total{module=\"test\",counter=\"misses\"} 2"),
+                Arrays.asList(text.split("\n")));
+    }
+}
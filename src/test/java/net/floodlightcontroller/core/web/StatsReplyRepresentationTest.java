@@ -0,0 +1,170 @@
+package net.floodlightcontroller.core.web;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.floodlightcontroller.core.IOFStatsReplyListener;
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.internal.OFErrorMsgException;
+
+import org.easymock.IAnswer;
+import org.junit.Test;
+import org.projectfloodlight.openflow.protocol.OFBadRequestCode;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFFlowStatsEntry;
+import org.projectfloodlight.openflow.protocol.OFFlowStatsReply;
+import org.projectfloodlight.openflow.protocol.OFPortStatsEntry;
+import org.projectfloodlight.openflow.protocol.OFPortStatsReply;
+import org.projectfloodlight.openflow.protocol.OFStatsReply;
+import org.projectfloodlight.openflow.protocol.OFStatsReplyFlags;
+import org.projectfloodlight.openflow.protocol.OFStatsRequest;
+import org.projectfloodlight.openflow.protocol.OFStatsType;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.protocol.match.MatchField;
+import org.projectfloodlight.openflow.types.DatapathId;
+import org.projectfloodlight.openflow.types.OFPort;
+import org.projectfloodlight.openflow.types.TableId;
+import org.projectfloodlight.openflow.types.U64;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Streamed replies must read the same as the buffered ones, written by
+ * {@link net.floodlightcontroller.core.web.serializers.StatsReplySerializer}.
+ */
+public class StatsReplyRepresentationTest {
+    private static final DatapathId DPID = DatapathId.of(1);
+
+    private final OFFactory factory = OFFactories.getFactory(OFVersion.OF_13);
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * A switch that answers a streamed stats request with the given parts
+     * right away, then completes or fails the request.
+     */
+    @SuppressWarnings("unchecked")
+    private IOFSwitch createSwitch(final List<? extends OFStatsReply> parts, final Throwable failure) {
+        IOFSwitch sw = createMock(IOFSwitch.class);
+        expect(sw.getId()).andReturn(DPID).anyTimes();
+        expect(sw.streamStatsRequest(anyObject(OFStatsRequest.class), anyObject(IOFStatsReplyListener.class)))
+                .andAnswer(new IAnswer<ListenableFuture<Void>>() {
+                    @Override
+                    public ListenableFuture<Void> answer() {
+                        IOFStatsReplyListener<OFStatsReply> listener =
+                                (IOFStatsReplyListener<OFStatsReply>) getCurrentArguments()[1];
+                        for (OFStatsReply part : parts) {
+                            listener.statsReplyReceived(part);
+                        }
+                        return failure == null
+                                ? Futures.<Void>immediateFuture(null)
+                                : Futures.<Void>immediateFailedFuture(failure);
+                    }
+                }).once();
+        replay(sw);
+        return sw;
+    }
+
+    private String write(IOFSwitch sw, OFStatsRequest<?> request) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        new StatsReplyRepresentation(sw, request).write(os);
+        return os.toString("UTF-8");
+    }
+
+    private OFFlowStatsReply flowReply(boolean more, int... cookies) {
+        OFFlowStatsEntry[] entries = new OFFlowStatsEntry[cookies.length];
+        for (int i = 0; i < cookies.length; i++) {
+            entries[i] = factory.buildFlowStatsEntry()
+                    .setTableId(TableId.of(0))
+                    .setCookie(U64.of(cookies[i]))
+                    .setPriority(100)
+                    .setPacketCount(U64.of(10 * cookies[i]))
+                    .setByteCount(U64.of(1000 * cookies[i]))
+                    .setMatch(factory.buildMatch().setExact(MatchField.IN_PORT, OFPort.of(cookies[i])).build())
+                    .build();
+        }
+        OFFlowStatsReply.Builder b = factory.buildFlowStatsReply().setEntries(Arrays.asList(entries));
+        if (more) {
+            b.setFlags(Sets.immutableEnumSet(OFStatsReplyFlags.REPLY_MORE));
+        }
+        return b.build();
+    }
+
+    private OFPortStatsReply portReply(boolean more, int... ports) {
+        OFPortStatsEntry[] entries = new OFPortStatsEntry[ports.length];
+        for (int i = 0; i < ports.length; i++) {
+            entries[i] = factory.buildPortStatsEntry()
+                    .setPortNo(OFPort.of(ports[i]))
+                    .setRxPackets(U64.of(ports[i]))
+                    .setTxBytes(U64.of(100 * ports[i]))
+                    .build();
+        }
+        OFPortStatsReply.Builder b = factory.buildPortStatsReply().setEntries(Arrays.asList(entries));
+        if (more) {
+            b.setFlags(Sets.immutableEnumSet(OFStatsReplyFlags.REPLY_MORE));
+        }
+        return b.build();
+    }
+
+    @Test
+    public void testFlowReplySameAsBuffered() throws Exception {
+        List<OFFlowStatsReply> parts = Arrays.asList(flowReply(true, 1, 2), flowReply(true, 3), flowReply(false, 4, 5));
+        String streamed = write(createSwitch(parts, null), factory.buildFlowStatsRequest().build());
+        String buffered = mapper.writeValueAsString(new StatsReply(DPID, parts, OFStatsType.FLOW));
+        assertEquals(buffered, streamed);
+    }
+
+    @Test
+    public void testPortReplySameAsBuffered() throws Exception {
+        List<OFPortStatsReply> parts = Arrays.asList(portReply(true, 1, 2), portReply(false, 3));
+        String streamed = write(createSwitch(parts, null), factory.buildPortStatsRequest().build());
+        String buffered = mapper.writeValueAsString(new StatsReply(DPID, parts, OFStatsType.PORT));
+        assertEquals(buffered, streamed);
+    }
+
+    @Test
+    public void testEmptyFlowReplySameAsBuffered() throws Exception {
+        List<OFFlowStatsReply> parts = Collections.singletonList(flowReply(false));
+        String streamed = write(createSwitch(parts, null), factory.buildFlowStatsRequest().build());
+        String buffered = mapper.writeValueAsString(new StatsReply(DPID, parts, OFStatsType.FLOW));
+        assertEquals(buffered, streamed);
+    }
+
+    /* nothing written yet, so the error reads as it did for buffered replies */
+    @Test
+    public void testErrorBeforeFirstPartSameAsBuffered() throws Exception {
+        Throwable error = new OFErrorMsgException(factory.errorMsgs().buildBadRequestErrorMsg()
+                .setCode(OFBadRequestCode.BAD_STAT)
+                .build());
+        String streamed = write(createSwitch(Collections.<OFStatsReply>emptyList(), error),
+                factory.buildFlowStatsRequest().build());
+        String buffered = mapper.writeValueAsString(new StatsReply());
+        assertEquals(buffered, streamed);
+    }
+
+    @Test
+    public void testErrorAfterFirstPart() throws Exception {
+        List<OFFlowStatsReply> parts = Collections.singletonList(flowReply(true, 1));
+        String streamed = write(createSwitch(parts, new IllegalStateException("Switch went away")),
+                factory.buildFlowStatsRequest().build());
+        String buffered = mapper.writeValueAsString(new StatsReply(DPID, parts, OFStatsType.FLOW));
+
+        /* the parts written so far, then the error */
+        String flows = buffered.substring(0, buffered.length() - 1);
+        assertTrue(streamed, streamed.startsWith(flows));
+        assertEquals(flows + ",\"error\":\"Switch went away\"}", streamed);
+    }
+}
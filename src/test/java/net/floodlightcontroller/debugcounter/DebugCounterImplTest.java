@@ -78,4 +78,20 @@ public class DebugCounterImplTest {
         assertEquals(ImmutableSet.of(MetaData.WARN, MetaData.DROP),
                      c2.getMetaData());
     }
+
+    @Test
+    public void testLastModified() throws Exception {
+        DebugCounterImpl c =
+                new DebugCounterImpl("foo", "bar", "The foo bar counter",
+                                     Collections.<MetaData>emptyList());
+        long created = c.getLastModified();
+        Thread.sleep(5);
+        assertEquals(created, c.getLastModified());
+
+        c.increment();
+        long modified = c.getLastModified();
+        assertTrue(modified > created);
+        Thread.sleep(5);
+        assertEquals(modified, c.getLastModified());
+    }
 }
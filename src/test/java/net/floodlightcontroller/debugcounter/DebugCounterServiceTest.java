@@ -532,4 +532,37 @@ public class DebugCounterServiceTest {
         verifyCounters(expectedCounters, counterService.getAllCounterValues());
     }
 
+    @Test
+    public void testSnapshot() {
+        assertTrue(counterService.getSnapshot().getCounters().isEmpty());
+
+        counterService.registerModule("moduleA");
+        counterService.registerModule("moduleB");
+        IDebugCounter cAfoo = counterService.registerCounter("moduleA", "foo", "foo");
+        IDebugCounter cAfooBar = counterService.registerCounter("moduleA", "foo/bar", "foo/bar");
+        counterService.registerCounter("moduleA", "foobar", "foobar");
+        IDebugCounter cBfoo = counterService.registerCounter("moduleB", "foo", "foo");
+        cAfoo.add(1);
+        cAfooBar.add(2);
+        cBfoo.add(3);
+
+        DebugCounterSnapshot snapshot = counterService.getSnapshot();
+        assertEquals(counterService.getAllCounterValues(), snapshot.getCounters());
+        assertEquals(counterService.getModuleCounterValues("moduleA"),
+                     snapshot.getModuleCounters("moduleA"));
+        assertEquals(counterService.getCounterHierarchy("moduleA", "foo"),
+                     snapshot.getCounterHierarchy("moduleA", "foo"));
+        assertEquals(2, snapshot.getCounterHierarchy("moduleA", "foo").size());
+        assertTrue(snapshot.getModuleCounters("moduleC").isEmpty());
+
+        /* a snapshot is not affected by later updates */
+        cAfoo.add(10);
+        assertEquals(1L, snapshot.getCounters().get(0).getCounterValue().longValue());
+        assertEquals(11L, counterService.getSnapshot().getCounters().get(0)
+                     .getCounterValue().longValue());
+
+        assertTrue(counterService.removeCounterHierarchy("moduleA", "foo"));
+        assertEquals(2, counterService.getSnapshot().getCounters().size());
+        assertEquals(4, snapshot.getCounters().size());
+    }
 }
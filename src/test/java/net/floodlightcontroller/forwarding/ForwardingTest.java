@@ -21,6 +21,7 @@ import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -69,6 +70,7 @@ import net.floodlightcontroller.forwarding.Forwarding;
 import org.easymock.Capture;
 import org.easymock.CaptureType;
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.Test;
 import org.projectfloodlight.openflow.protocol.OFFeaturesReply;
 import org.projectfloodlight.openflow.protocol.OFFlowMod;
@@ -548,6 +550,106 @@ public class ForwardingTest extends FloodlightTestCase {
 		removeDeviceFromContext();
 	}
 	
+	/* only forwarding modules can turn route batches on */
+	private static class BatchRouteFlowMods extends Forwarding {
+		static void set(boolean batch) {
+			BATCH_ROUTE_FLOWMODS = batch;
+		}
+	}
+
+	@Test
+	public void testForwardMultiSwitchPathBatched() throws Exception {
+		learnDevices(DestDeviceToLearn.DEVICE1);
+
+		Capture<List<OFMessage>> batch1 = EasyMock.newCapture(CaptureType.ALL);
+		Capture<List<OFMessage>> batch2 = EasyMock.newCapture(CaptureType.ALL);
+		Capture<OFMessage> wc1 = EasyMock.newCapture(CaptureType.ALL);
+		final List<String> order = new ArrayList<String>();
+
+		Path path = new Path(DatapathId.of(1L), DatapathId.of(2L));
+		List<NodePortTuple> nptList = new ArrayList<NodePortTuple>();
+		nptList.add(new NodePortTuple(DatapathId.of(1L), OFPort.of(1)));
+		nptList.add(new NodePortTuple(DatapathId.of(1L), OFPort.of(3)));
+		nptList.add(new NodePortTuple(DatapathId.of(2L), OFPort.of(1)));
+		nptList.add(new NodePortTuple(DatapathId.of(2L), OFPort.of(3)));
+		path.setPath(nptList);
+		reset(routingEngine);
+		expect(routingEngine.getPath(DatapathId.of(1L), OFPort.of(1), DatapathId.of(2L), OFPort.of(3))).andReturn(path).atLeastOnce();
+
+		// Expected Flow-mods
+		Match match = packetIn.getMatch();
+		OFActionOutput action = factory.actions().output(OFPort.of(3), Integer.MAX_VALUE);
+		List<OFAction> actions = new ArrayList<OFAction>();
+		actions.add(action);
+
+		OFFlowMod fm1 = factory.buildFlowAdd()
+				.setIdleTimeout((short)5)
+				.setMatch(match)
+				.setActions(actions)
+				.setOutPort(action.getPort())
+				.setBufferId(OFBufferId.NO_BUFFER)
+				.setCookie(U64.of(2L << 52).or(U64.of(4 << Forwarding.FLOWSET_SHIFT)))
+				.setPriority(1)
+				.build();
+		OFFlowMod fm2 = fm1.createBuilder().build();
+
+		// Each switch gets its flow-mods as one batch, and the packet out follows the batches
+		expect(sw1.getStatus()).andReturn(IOFSwitch.SwitchStatus.MASTER).anyTimes();
+		expect(sw2.getStatus()).andReturn(IOFSwitch.SwitchStatus.MASTER).anyTimes();
+		expect(sw1.write(capture(batch1))).andAnswer(new IAnswer<Collection<OFMessage>>() {
+			@Override
+			public Collection<OFMessage> answer() {
+				order.add("batch1");
+				return ImmutableList.of();
+			}
+		}).once();
+		expect(sw2.write(capture(batch2))).andAnswer(new IAnswer<Collection<OFMessage>>() {
+			@Override
+			public Collection<OFMessage> answer() {
+				order.add("batch2");
+				return ImmutableList.of();
+			}
+		}).once();
+		expect(sw1.write(capture(wc1))).andAnswer(new IAnswer<Boolean>() {
+			@Override
+			public Boolean answer() {
+				order.add("packet-out");
+				return true;
+			}
+		}).once();
+
+		reset(topology);
+		expect(topology.getClusterId(DatapathId.of(1L))).andReturn(DatapathId.of(1L)).anyTimes();
+		expect(topology.getClusterId(DatapathId.of(2L))).andReturn(DatapathId.of(1L)).anyTimes();
+		expect(topology.isAttachmentPointPort(DatapathId.of(1L),  OFPort.of(1))).andReturn(true).anyTimes();
+		expect(topology.isAttachmentPointPort(DatapathId.of(2L),  OFPort.of(3))).andReturn(true).anyTimes();
+		expect(topology.isBroadcastAllowed(DatapathId.of(anyLong()), OFPort.of(anyShort()))).andReturn(true).anyTimes();
+		expect(topology.isEdge(DatapathId.of(1L), OFPort.of(1))).andReturn(true).anyTimes();
+		expect(topology.isEdge(DatapathId.of(2L), OFPort.of(3))).andReturn(true).anyTimes();
+
+		// Reset mocks, trigger the packet in, and validate results
+		expect(routingEngine.isL3RoutingEnabled()).andReturn(false).atLeastOnce();
+		replay(sw1, sw2, routingEngine, topology);
+		BatchRouteFlowMods.set(true);
+		try {
+			forwarding.receive(sw1, this.packetIn, cntx);
+		} finally {
+			BatchRouteFlowMods.set(false);
+		}
+		verify(sw1, sw2, routingEngine);
+
+		List<OFMessage> expected1 = new ArrayList<OFMessage>();
+		expected1.add(fm1);
+		List<OFMessage> expected2 = new ArrayList<OFMessage>();
+		expected2.add(fm2);
+		assertTrue(messageListsEqualIgnoreXid(batch1.getValue(), expected1));
+		assertTrue(messageListsEqualIgnoreXid(batch2.getValue(), expected2));
+		assertEquals(OFMessageUtils.OFMessageIgnoreXid.of(packetOut), OFMessageUtils.OFMessageIgnoreXid.of(wc1.getValue()));
+		assertEquals("packet-out", order.get(order.size() - 1));
+
+		removeDeviceFromContext();
+	}
+
 	@Test
 	public void testForwardMultiSwitchPathIPv6() throws Exception {
 		learnDevicesIPv6(DestDeviceToLearn.DEVICE1);
@@ -20,6 +20,7 @@ import static org.easymock.EasyMock.anyLong;
 import static org.easymock.EasyMock.anyShort;
 import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.replay;
@@ -29,6 +30,7 @@ import static org.junit.Assert.*;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -64,6 +66,7 @@ import org.sdnplatform.sync.test.MockSyncService;
 import net.floodlightcontroller.core.FloodlightContext;
 import net.floodlightcontroller.core.IFloodlightProviderService;
 import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.OFMessagePriority;
 import net.floodlightcontroller.core.internal.IOFSwitchService;
 import net.floodlightcontroller.core.module.FloodlightModuleContext;
 import net.floodlightcontroller.core.test.MockThreadPoolService;
@@ -606,6 +609,9 @@ public class LoadBalancerTest extends FloodlightTestCase {
 		expect(sw1.hasAttribute(IOFSwitch.PROP_SUPPORTS_OFPP_TABLE)).andReturn(true).anyTimes();
 		expect(sw1.getOFFactory()).andReturn(factory).anyTimes();
 		expect(sw1.write(capture(wc1))).andReturn(true).anyTimes();
+		/* static entries pushed by the load balancer */
+		expect(sw1.write(EasyMock.<Iterable<OFMessage>> anyObject(), eq(OFMessagePriority.BULK)))
+				.andReturn(Collections.<OFMessage> emptyList()).anyTimes();
 
 		replay(sw1);
 		sfp.switchAdded(DatapathId.of(1L));
@@ -0,0 +1,146 @@
+/**
+*    Copyright 2011, Big Switch Networks, Inc.
+*    Originally created by David Erickson, Stanford University
+*
+*    Licensed under the Apache License, Version 2.0 (the "License"); you may
+*    not use this file except in compliance with the License. You may obtain
+*    a copy of the License at
+*
+*         http://www.apache.org/licenses/LICENSE-2.0
+*
+*    Unless required by applicable law or agreed to in writing, software
+*    distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+*    WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+*    License for the specific language governing permissions and limitations
+*    under the License.
+**/
+
+package net.floodlightcontroller.packet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.projectfloodlight.openflow.types.EthType;
+import org.projectfloodlight.openflow.types.IPv4Address;
+import org.projectfloodlight.openflow.types.IpProtocol;
+import org.projectfloodlight.openflow.types.MacAddress;
+import org.projectfloodlight.openflow.types.TransportPort;
+
+public class PacketViewTest {
+
+    private static byte[] tcpPacket(short vlan) {
+        return new Ethernet()
+            .setDestinationMACAddress("00:11:22:33:44:55")
+            .setSourceMACAddress("00:44:33:22:11:00")
+            .setVlanID(vlan)
+            .setEtherType(EthType.IPv4)
+            .setPayload(new IPv4()
+                    .setTtl((byte) 128)
+                    .setSourceAddress("192.168.1.1")
+                    .setDestinationAddress("192.168.1.2")
+                    .setProtocol(IpProtocol.TCP)
+                    .setPayload(new TCP()
+                            .setSourcePort(5000)
+                            .setDestinationPort(80)
+                            .setPayload(new Data(new byte[] {0x01}))))
+            .serialize();
+    }
+
+    @Test
+    public void testUntaggedTcp() {
+        PacketView view = new PacketView(tcpPacket(Ethernet.VLAN_UNTAGGED));
+        assertEquals(MacAddress.of("00:11:22:33:44:55"), view.getDestinationMACAddress());
+        assertEquals(MacAddress.of("00:44:33:22:11:00"), view.getSourceMACAddress());
+        assertEquals(EthType.IPv4, view.getEtherType());
+        assertEquals(Ethernet.VLAN_UNTAGGED, view.getVlanID());
+        assertTrue(view.isIPv4());
+        assertFalse(view.isIPv6());
+        assertFalse(view.isIPv4Fragment());
+        assertEquals(IpProtocol.TCP, view.getIpProtocol());
+        assertEquals(IPv4Address.of("192.168.1.1"), view.getSourceIPv4Address());
+        assertEquals(IPv4Address.of("192.168.1.2"), view.getDestinationIPv4Address());
+        assertEquals(TransportPort.of(5000), view.getSourcePort());
+        assertEquals(TransportPort.of(80), view.getDestinationPort());
+        assertEquals(80, view.getDestinationPortValue());
+    }
+
+    @Test
+    public void testVlanTagged() {
+        PacketView view = new PacketView(tcpPacket((short) 42));
+        assertEquals(42, view.getVlanID());
+        assertEquals(EthType.IPv4, view.getEtherType());
+        assertEquals(IPv4Address.of("192.168.1.2"), view.getDestinationIPv4Address());
+        assertEquals(5000, view.getSourcePortValue());
+    }
+
+    @Test
+    public void testMatchesEagerDecode() {
+        byte[] data = tcpPacket((short) 7);
+        Ethernet eth = new Ethernet();
+        eth.deserialize(data, 0, data.length);
+        PacketView view = new PacketView(data);
+        assertEquals(eth.getSourceMACAddress(), view.getSourceMACAddress());
+        assertEquals(eth.getDestinationMACAddress(), view.getDestinationMACAddress());
+        assertEquals(eth.getEtherType(), view.getEtherType());
+        assertEquals(eth.getVlanID(), view.getVlanID());
+        IPv4 ip = (IPv4) eth.getPayload();
+        assertEquals(ip.getSourceAddress(), view.getSourceIPv4Address());
+        assertEquals(ip.getProtocol(), view.getIpProtocol());
+        TCP tcp = (TCP) ip.getPayload();
+        assertEquals(tcp.getSourcePort(), view.getSourcePort());
+        assertEquals(tcp.getDestinationPort(), view.getDestinationPort());
+    }
+
+    @Test
+    public void testNonIp() {
+        byte[] data = new Ethernet()
+            .setDestinationMACAddress("ff:ff:ff:ff:ff:ff")
+            .setSourceMACAddress("00:44:33:22:11:00")
+            .setEtherType(EthType.ARP)
+            .setPayload(new Data(new byte[28]))
+            .serialize();
+        PacketView view = new PacketView(data);
+        assertTrue(view.isBroadcast());
+        assertFalse(view.isMulticast());
+        assertTrue(view.isARP());
+        assertFalse(view.isIPv4());
+        assertNull(view.getIpProtocol());
+        assertEquals(-1, view.getIpProtocolValue());
+        assertNull(view.getSourceIPv4Address());
+        assertNull(view.getSourcePort());
+        /* Repeated reads must stay consistent once decoded */
+        assertFalse(view.isIPv4());
+        assertNull(view.getSourcePort());
+    }
+
+    @Test
+    public void testTruncated() {
+        PacketView view = new PacketView(new byte[] { 0x00, 0x11, 0x22 });
+        assertNull(view.getSourceMACAddress());
+        assertNull(view.getEtherType());
+        assertNull(view.getSourcePort());
+    }
+
+    @Test
+    public void testWrapResetsState() {
+        byte[] tcp = tcpPacket(Ethernet.VLAN_UNTAGGED);
+        PacketView view = new PacketView(tcp);
+        assertEquals(IpProtocol.TCP, view.getIpProtocol());
+        view.wrap(new byte[] { 0x00, 0x11, 0x22 }, 0, 3);
+        assertNull(view.getIpProtocol());
+        view.wrap(tcp, 0, tcp.length);
+        assertEquals(TransportPort.of(80), view.getDestinationPort());
+    }
+
+    @Test
+    public void testEthernetIsCached() {
+        PacketView view = new PacketView(tcpPacket(Ethernet.VLAN_UNTAGGED));
+        Ethernet eth = view.getEthernet();
+        assertSame(eth, view.getEthernet());
+        assertEquals(view.getSourceMACAddress(), eth.getSourceMACAddress());
+    }
+}
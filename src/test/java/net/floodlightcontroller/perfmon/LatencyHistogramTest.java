@@ -0,0 +1,79 @@
+package net.floodlightcontroller.perfmon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testBucketBoundsAreContiguous() {
+        assertEquals(0, LatencyHistogram.bucketLowerBound(0));
+        for (int i = 1; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long lower = LatencyHistogram.bucketLowerBound(i);
+            assertEquals(LatencyHistogram.bucketUpperBound(i - 1) + 1, lower);
+            assertEquals(i, LatencyHistogram.bucketIndex(lower));
+            assertEquals(i - 1, LatencyHistogram.bucketIndex(lower - 1));
+        }
+    }
+
+    @Test
+    public void testRelativeError() {
+        for (long v = 1; v < (1L << 39); v = v * 3 + 1) {
+            int i = LatencyHistogram.bucketIndex(v);
+            long upper = LatencyHistogram.bucketUpperBound(i);
+            assertTrue(v <= upper);
+            assertTrue("bucket too wide for " + v, upper - v <= v / 8 + 1);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram h = new LatencyHistogram(10, 6, TimeUnit.SECONDS);
+        long now = 100 * SECOND;
+        for (int i = 1; i <= 1000; i++) {
+            h.record(i * 1000, now);
+        }
+        LatencySnapshot s = h.getSnapshot(10, TimeUnit.SECONDS, now);
+        assertEquals(1000, s.getCount());
+        assertEquals(500500, s.getMean());
+        assertEquals(1000000, s.getMax());
+        assertWithin(500000, s.getP50());
+        assertWithin(990000, s.getP99());
+        assertWithin(999000, s.getP999());
+        assertTrue(s.getP999() <= s.getMax());
+    }
+
+    @Test
+    public void testRollingWindow() {
+        LatencyHistogram h = new LatencyHistogram(10, 6, TimeUnit.SECONDS);
+        long now = 100 * SECOND;
+        h.record(5000, now);
+        h.record(7000, now + 10 * SECOND);
+
+        long later = now + 10 * SECOND;
+        assertEquals(1, h.getSnapshot(10, TimeUnit.SECONDS, later).getCount());
+        assertEquals(2, h.getSnapshot(20, TimeUnit.SECONDS, later).getCount());
+
+        /* The first interval has dropped out of the ring ... */
+        later = now + 60 * SECOND;
+        assertEquals(1, h.getSnapshot(60, TimeUnit.SECONDS, later).getCount());
+        /* ... and is cleared when its slot is reused */
+        h.record(9000, later);
+        LatencySnapshot s = h.getSnapshot(60, TimeUnit.SECONDS, later);
+        assertEquals(2, s.getCount());
+        assertEquals(9000, s.getMax());
+
+        h.reset();
+        assertEquals(0, h.getSnapshot(60, TimeUnit.SECONDS, later).getCount());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected ~" + expected + ", got " + actual,
+                actual >= expected && actual <= expected + expected / 8);
+    }
+}
@@ -0,0 +1,255 @@
+package net.floodlightcontroller.shadowtable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFFlowAdd;
+import org.projectfloodlight.openflow.protocol.OFFlowRemovedReason;
+import org.projectfloodlight.openflow.protocol.OFFlowStatsEntry;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.protocol.instruction.OFInstruction;
+import org.projectfloodlight.openflow.protocol.match.Match;
+import org.projectfloodlight.openflow.protocol.match.MatchField;
+import org.projectfloodlight.openflow.types.EthType;
+import org.projectfloodlight.openflow.types.IPv4Address;
+import org.projectfloodlight.openflow.types.IPv4AddressWithMask;
+import org.projectfloodlight.openflow.types.OFPort;
+import org.projectfloodlight.openflow.types.TableId;
+import org.projectfloodlight.openflow.types.U64;
+
+public class ShadowFlowTableTest {
+    private OFFactory factory;
+    private ShadowFlowTable table;
+
+    @Before
+    public void setUp() {
+        factory = OFFactories.getFactory(OFVersion.OF_13);
+        table = new ShadowFlowTable();
+    }
+
+    private Match inPort(int port) {
+        return factory.buildMatch().setExact(MatchField.IN_PORT, OFPort.of(port)).build();
+    }
+
+    private List<OFInstruction> output(int port) {
+        return Collections.<OFInstruction>singletonList(factory.instructions().applyActions(
+                Collections.singletonList(factory.actions().output(OFPort.of(port), Integer.MAX_VALUE))));
+    }
+
+    private OFFlowAdd add(Match match, int priority, long cookie, int outPort) {
+        return factory.buildFlowAdd()
+                .setTableId(TableId.ZERO)
+                .setMatch(match)
+                .setPriority(priority)
+                .setCookie(U64.of(cookie))
+                .setInstructions(output(outPort))
+                .build();
+    }
+
+    private OFFlowStatsEntry entry(OFFlowAdd fa) {
+        return factory.buildFlowStatsEntry()
+                .setTableId(fa.getTableId())
+                .setMatch(fa.getMatch())
+                .setPriority(fa.getPriority())
+                .setCookie(fa.getCookie())
+                .setIdleTimeout(fa.getIdleTimeout())
+                .setHardTimeout(fa.getHardTimeout())
+                .setInstructions(fa.getInstructions())
+                .build();
+    }
+
+    @Test
+    public void testAddAndDeleteStrict() {
+        table.apply(add(inPort(1), 100, 1, 2));
+        table.apply(add(inPort(1), 100, 1, 3)); /* same key, replaces */
+        table.apply(add(inPort(1), 200, 1, 2));
+        assertEquals(2, table.size());
+
+        table.apply(factory.buildFlowDeleteStrict()
+                .setTableId(TableId.ZERO)
+                .setMatch(inPort(1))
+                .setPriority(100)
+                .build());
+        assertEquals(1, table.size());
+        assertEquals(200, table.getFlows().get(0).getPriority());
+    }
+
+    @Test
+    public void testDeleteByCookieAndMatch() {
+        table.apply(add(inPort(1), 100, 0x110, 2));
+        table.apply(add(inPort(2), 100, 0x120, 2));
+        table.apply(add(inPort(3), 100, 0x210, 2));
+
+        /* everything with 0x1 in the second nibble */
+        table.apply(factory.buildFlowDelete()
+                .setTableId(TableId.ALL)
+                .setCookie(U64.of(0x010))
+                .setCookieMask(U64.of(0x0f0))
+                .build());
+        assertEquals(1, table.size());
+        assertEquals(U64.of(0x120), table.getFlows().get(0).getCookie());
+
+        /* non-strict, so a wildcard match deletes more specific flows */
+        table.apply(add(inPort(4), 100, 0x120, 2));
+        table.apply(factory.buildFlowDelete()
+                .setTableId(TableId.ALL)
+                .setMatch(inPort(2))
+                .build());
+        assertEquals(1, table.size());
+        assertEquals(1, table.getFlows(U64.of(0x120), U64.NO_MASK).size());
+    }
+
+    @Test
+    public void testDeleteByOutPort() {
+        table.apply(add(inPort(1), 100, 1, 2));
+        table.apply(add(inPort(2), 100, 1, 3));
+        table.apply(factory.buildFlowDelete()
+                .setTableId(TableId.ALL)
+                .setOutPort(OFPort.of(3))
+                .build());
+        assertEquals(1, table.size());
+        assertEquals(inPort(1), table.getFlows().get(0).getMatch());
+    }
+
+    @Test
+    public void testModifyKeepsCookie() {
+        table.apply(add(inPort(1), 100, 7, 2));
+        table.apply(factory.buildFlowModify()
+                .setTableId(TableId.ZERO)
+                .setCookie(U64.of(8))
+                .setInstructions(output(5))
+                .build());
+        OFFlowAdd f = table.getFlows().get(0);
+        assertEquals(U64.of(7), f.getCookie());
+        assertEquals(output(5), f.getInstructions());
+
+        /* a 1.3 modify that matches nothing does not add */
+        table.apply(factory.buildFlowModifyStrict()
+                .setTableId(TableId.ZERO)
+                .setMatch(inPort(9))
+                .setPriority(100)
+                .setInstructions(output(5))
+                .build());
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void testCovers() {
+        Match general = factory.buildMatch()
+                .setExact(MatchField.ETH_TYPE, EthType.IPv4)
+                .setMasked(MatchField.IPV4_DST, IPv4AddressWithMask.of("10.0.0.0/8"))
+                .build();
+        Match inside = factory.buildMatch()
+                .setExact(MatchField.ETH_TYPE, EthType.IPv4)
+                .setExact(MatchField.IPV4_DST, IPv4Address.of("10.1.2.3"))
+                .setExact(MatchField.IN_PORT, OFPort.of(1))
+                .build();
+        Match outside = factory.buildMatch()
+                .setExact(MatchField.ETH_TYPE, EthType.IPv4)
+                .setExact(MatchField.IPV4_DST, IPv4Address.of("11.1.2.3"))
+                .build();
+        Match wider = factory.buildMatch()
+                .setExact(MatchField.ETH_TYPE, EthType.IPv4)
+                .setMasked(MatchField.IPV4_DST, IPv4AddressWithMask.of("0.0.0.0/4"))
+                .build();
+        assertTrue(ShadowFlowTable.covers(general, inside));
+        assertFalse(ShadowFlowTable.covers(general, outside));
+        assertFalse(ShadowFlowTable.covers(general, wider));
+        assertFalse(ShadowFlowTable.covers(inside, general));
+        assertTrue(ShadowFlowTable.covers(factory.buildMatch().build(), general));
+    }
+
+    @Test
+    public void testFlowRemoved() {
+        table.apply(add(inPort(1), 100, 1, 2));
+        table.flowRemoved(factory.buildFlowRemoved()
+                .setTableId(TableId.ZERO)
+                .setMatch(inPort(1))
+                .setPriority(100)
+                .setCookie(U64.of(2)) /* someone else's */
+                .setReason(OFFlowRemovedReason.IDLE_TIMEOUT)
+                .build());
+        assertEquals(1, table.size());
+        table.flowRemoved(factory.buildFlowRemoved()
+                .setTableId(TableId.ZERO)
+                .setMatch(inPort(1))
+                .setPriority(100)
+                .setCookie(U64.of(1))
+                .setReason(OFFlowRemovedReason.IDLE_TIMEOUT)
+                .build());
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testDiff() {
+        OFFlowAdd missing = add(inPort(1), 100, 1, 2);
+        OFFlowAdd expired = add(inPort(2), 100, 1, 2).createBuilder().setIdleTimeout(5).build();
+        OFFlowAdd same = add(inPort(3), 100, 1, 2);
+        OFFlowAdd changed = add(inPort(4), 100, 1, 2);
+        for (OFFlowAdd fa : Arrays.asList(missing, expired, same, changed)) {
+            table.apply(fa);
+        }
+
+        ShadowFlowTable.Diff diff = table.startDiff(Integer.MAX_VALUE);
+        diff.addSwitchEntries(Arrays.asList(entry(same), entry(add(inPort(4), 100, 1, 3))));
+        diff.addSwitchEntries(Collections.singletonList(entry(add(inPort(5), 100, 1, 2))));
+        diff.finish();
+
+        assertEquals(Collections.singletonList(missing), diff.getMissing());
+        assertEquals(Collections.singletonList(changed), diff.getChanged());
+        assertEquals(1, diff.getUnknownCount());
+        assertEquals(1, diff.getUnknown().size());
+        assertEquals(inPort(5), diff.getUnknown().get(0).getMatch());
+        assertEquals(1, diff.getExpired());
+        assertEquals(3, table.size());
+    }
+
+    @Test
+    public void testDiffKeepsSomeUnknownFlows() {
+        ShadowFlowTable.Diff diff = table.startDiff(2);
+        for (int port = 1; port <= 5; port++) {
+            diff.addSwitchEntries(Collections.singletonList(entry(add(inPort(port), 100, 1, 2))));
+        }
+        diff.finish();
+        assertEquals(5, diff.getUnknownCount());
+        assertEquals(2, diff.getUnknown().size());
+        assertEquals(inPort(1), diff.getUnknown().get(0).getMatch());
+        assertFalse(diff.isEmpty());
+    }
+
+    /* each diff tells for itself which flows are on the switch */
+    @Test
+    public void testDiffAfterDiff() {
+        OFFlowAdd fa = add(inPort(1), 100, 1, 2);
+        table.apply(fa);
+
+        ShadowFlowTable.Diff first = table.startDiff(0);
+        first.addSwitchEntries(Collections.singletonList(entry(fa)));
+        first.finish();
+        assertTrue(first.isEmpty());
+
+        ShadowFlowTable.Diff second = table.startDiff(0);
+        second.addSwitchEntries(Collections.<OFFlowStatsEntry>emptyList());
+        second.finish();
+        assertEquals(Collections.singletonList(fa), second.getMissing());
+    }
+
+    @Test
+    public void testDiffIgnoresFlowsChangedDuringDump() {
+        ShadowFlowTable.Diff diff = table.startDiff(0);
+        table.apply(add(inPort(1), 100, 1, 2));
+        diff.addSwitchEntries(Collections.<OFFlowStatsEntry>emptyList());
+        diff.finish();
+        assertTrue(diff.isEmpty());
+        assertEquals(1, table.size());
+    }
+}
@@ -0,0 +1,258 @@
+package net.floodlightcontroller.shadowtable;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.newCapture;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import net.floodlightcontroller.core.IFloodlightProviderService;
+import net.floodlightcontroller.core.IOFStatsReplyListener;
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.OFMessagePriority;
+import net.floodlightcontroller.core.internal.IOFSwitchService;
+import net.floodlightcontroller.core.module.FloodlightModuleContext;
+import net.floodlightcontroller.debugcounter.IDebugCounterService;
+import net.floodlightcontroller.debugcounter.MockDebugCounterService;
+import net.floodlightcontroller.threadpool.IThreadPoolService;
+
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFFlowAdd;
+import org.projectfloodlight.openflow.protocol.OFFlowDeleteStrict;
+import org.projectfloodlight.openflow.protocol.OFFlowStatsEntry;
+import org.projectfloodlight.openflow.protocol.OFFlowStatsReply;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFStatsRequest;
+import org.projectfloodlight.openflow.protocol.OFType;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.protocol.instruction.OFInstruction;
+import org.projectfloodlight.openflow.protocol.match.MatchField;
+import org.projectfloodlight.openflow.types.DatapathId;
+import org.projectfloodlight.openflow.types.OFPort;
+import org.projectfloodlight.openflow.types.TableId;
+import org.projectfloodlight.openflow.types.U64;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+public class ShadowTableManagerTest {
+    private static final DatapathId DPID = DatapathId.of(1);
+    private static final int RETENTION = 60;
+
+    private final OFFactory factory = OFFactories.getFactory(OFVersion.OF_13);
+    private ShadowTableManager manager;
+    private IFloodlightProviderService provider;
+    private IOFSwitchService switchService;
+    private IOFSwitch sw;
+    private Capture<Runnable> expiry;
+    private Capture<List<OFMessage>> written;
+    /* what the switch reports when its flows are dumped */
+    private List<OFFlowStatsEntry> switchFlows;
+
+    @Before
+    public void setUp() {
+        expiry = newCapture(CaptureType.ALL);
+        written = newCapture(CaptureType.ALL);
+        switchFlows = new ArrayList<OFFlowStatsEntry>();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void startManager(String... config) throws Exception {
+        manager = new ShadowTableManager();
+        sw = createMock(IOFSwitch.class);
+        expect(sw.getId()).andReturn(DPID).anyTimes();
+        expect(sw.getOFFactory()).andReturn(factory).anyTimes();
+        expect(sw.streamStatsRequest(anyObject(OFStatsRequest.class), anyObject(IOFStatsReplyListener.class)))
+                .andAnswer(new IAnswer<ListenableFuture<Void>>() {
+                    @Override
+                    public ListenableFuture<Void> answer() {
+                        IOFStatsReplyListener<OFFlowStatsReply> listener =
+                                (IOFStatsReplyListener<OFFlowStatsReply>) getCurrentArguments()[1];
+                        listener.statsReplyReceived(factory.buildFlowStatsReply()
+                                .setEntries(new ArrayList<OFFlowStatsEntry>(switchFlows))
+                                .build());
+                        return Futures.immediateFuture(null);
+                    }
+                }).anyTimes();
+        expect(sw.write(capture(written), eq(OFMessagePriority.BULK)))
+                .andReturn(Collections.<OFMessage>emptyList()).anyTimes();
+
+        provider = createMock(IFloodlightProviderService.class);
+        provider.addOFMessageListener(OFType.FLOW_MOD, manager);
+        expectLastCall().once();
+        provider.addOFMessageListener(OFType.FLOW_REMOVED, manager);
+        expectLastCall().once();
+
+        switchService = createMock(IOFSwitchService.class);
+        switchService.addOFSwitchListener(manager);
+        expectLastCall().once();
+        expect(switchService.getActiveSwitch(DPID)).andReturn(sw).anyTimes();
+
+        ScheduledExecutorService ses = createMock(ScheduledExecutorService.class);
+        expect(ses.schedule(capture(expiry), eq((long) RETENTION), eq(TimeUnit.SECONDS)))
+                .andReturn(null).anyTimes();
+        IThreadPoolService threadPool = createMock(IThreadPoolService.class);
+        expect(threadPool.getScheduledExecutor()).andReturn(ses).anyTimes();
+
+        replay(sw, provider, switchService, ses, threadPool);
+
+        FloodlightModuleContext fmc = new FloodlightModuleContext();
+        fmc.addService(IFloodlightProviderService.class, provider);
+        fmc.addService(IOFSwitchService.class, switchService);
+        fmc.addService(IThreadPoolService.class, threadPool);
+        fmc.addService(IDebugCounterService.class, new MockDebugCounterService());
+        /* only reconcile on activation */
+        fmc.addConfigParam(manager, "reconcileIntervalSeconds", "0");
+        fmc.addConfigParam(manager, "tableRetentionSeconds", String.valueOf(RETENTION));
+        for (int i = 0; i < config.length; i += 2) {
+            fmc.addConfigParam(manager, config[i], config[i + 1]);
+        }
+        manager.init(fmc);
+        manager.startUp(fmc);
+
+        /* listens for flow mods, flow removed messages and switch events */
+        verify(provider, switchService);
+    }
+
+    private OFFlowAdd add(int inPort, int outPort) {
+        return factory.buildFlowAdd()
+                .setTableId(TableId.ZERO)
+                .setMatch(factory.buildMatch().setExact(MatchField.IN_PORT, OFPort.of(inPort)).build())
+                .setPriority(100)
+                .setCookie(U64.of(1))
+                .setInstructions(Collections.<OFInstruction>singletonList(factory.instructions().applyActions(
+                        Collections.singletonList(factory.actions().output(OFPort.of(outPort), Integer.MAX_VALUE)))))
+                .build();
+    }
+
+    private OFFlowStatsEntry entry(OFFlowAdd fa) {
+        return factory.buildFlowStatsEntry()
+                .setTableId(fa.getTableId())
+                .setMatch(fa.getMatch())
+                .setPriority(fa.getPriority())
+                .setCookie(fa.getCookie())
+                .setIdleTimeout(fa.getIdleTimeout())
+                .setHardTimeout(fa.getHardTimeout())
+                .setInstructions(fa.getInstructions())
+                .build();
+    }
+
+    /* the switch comes back with one flow gone; only that one is pushed */
+    @Test
+    public void testReconnectPushesMissingFlow() throws Exception {
+        startManager("repairFlowTables", "true");
+        List<OFFlowAdd> flows = Arrays.asList(add(1, 2), add(2, 3), add(3, 1));
+        for (OFFlowAdd fa : flows) {
+            manager.receive(sw, fa, null);
+        }
+
+        manager.switchRemoved(DPID);
+        assertEquals(3, manager.getFlows(DPID).size());
+
+        switchFlows.add(entry(flows.get(0)));
+        switchFlows.add(entry(flows.get(2)));
+        manager.switchAdded(DPID);
+        manager.switchActivated(DPID);
+
+        assertEquals(1, written.getValues().size());
+        assertEquals(Collections.<OFMessage>singletonList(flows.get(1)), written.getValue());
+
+        /* the switch came back in time, so its table stays */
+        assertEquals(1, expiry.getValues().size());
+        expiry.getValue().run();
+        assertEquals(3, manager.getFlows(DPID).size());
+    }
+
+    @Test
+    public void testTableDroppedAfterRetention() throws Exception {
+        startManager();
+        manager.receive(sw, add(1, 2), null);
+
+        manager.switchRemoved(DPID);
+        assertEquals(1, manager.getFlows(DPID).size());
+        expiry.getValue().run();
+        assertTrue(manager.getFlows(DPID).isEmpty());
+    }
+
+    /* a switch that comes back and goes again is kept from its last disconnect */
+    @Test
+    public void testRetentionFromLastDisconnect() throws Exception {
+        startManager();
+        manager.receive(sw, add(1, 2), null);
+
+        manager.switchRemoved(DPID);
+        manager.switchAdded(DPID);
+        manager.switchRemoved(DPID);
+        assertEquals(2, expiry.getValues().size());
+
+        expiry.getValues().get(0).run();
+        assertEquals(1, manager.getFlows(DPID).size());
+        expiry.getValues().get(1).run();
+        assertTrue(manager.getFlows(DPID).isEmpty());
+    }
+
+    @Test
+    public void testNoRepairByDefault() throws Exception {
+        startManager();
+        OFFlowAdd fa = add(1, 2);
+        manager.receive(sw, fa, null);
+        switchFlows.add(entry(add(5, 6)));
+
+        ShadowFlowTable.Diff diff = manager.reconcile(DPID).get();
+
+        assertEquals(Collections.singletonList(fa), diff.getMissing());
+        assertEquals(1, diff.getUnknownCount());
+        assertFalse(written.hasCaptured());
+    }
+
+    @Test
+    public void testRepairKeepsUnknownFlows() throws Exception {
+        startManager("repairFlowTables", "true");
+        OFFlowAdd fa = add(1, 2);
+        manager.receive(sw, fa, null);
+        switchFlows.add(entry(add(5, 6)));
+
+        manager.reconcile(DPID).get();
+
+        assertEquals(Collections.<OFMessage>singletonList(fa), written.getValue());
+    }
+
+    @Test
+    public void testRepairDeletesUnknownFlows() throws Exception {
+        startManager("repairFlowTables", "true", "deleteUnknownFlows", "true");
+        OFFlowAdd fa = add(1, 2);
+        OFFlowAdd unknown = add(5, 6);
+        manager.receive(sw, fa, null);
+        switchFlows.add(entry(unknown));
+
+        manager.reconcile(DPID).get();
+
+        List<OFMessage> msgs = written.getValue();
+        assertEquals(2, msgs.size());
+        assertEquals(fa, msgs.get(0));
+        OFFlowDeleteStrict delete = (OFFlowDeleteStrict) msgs.get(1);
+        assertEquals(unknown.getMatch(), delete.getMatch());
+        assertEquals(unknown.getPriority(), delete.getPriority());
+    }
+}
@@ -18,6 +18,7 @@ package net.floodlightcontroller.staticentry;
 
 import net.floodlightcontroller.core.IFloodlightProviderService;
 import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.OFMessagePriority;
 import net.floodlightcontroller.core.internal.IOFSwitchService;
 import net.floodlightcontroller.core.module.FloodlightModuleContext;
 import net.floodlightcontroller.core.test.MockFloodlightProvider;
@@ -128,7 +129,6 @@ public class StaticFlowTests extends FloodlightTestCase {
 	private IOFSwitchService switchService;
 	private IOFSwitch mockSwitch;
 	private MockDebugCounterService debugCounterService;
-	private Capture<OFMessage> writeCapture;
 	private Capture<List<OFMessage>> writeCaptureList;
 	private long dpid;
 	private MemoryStorageSource storage;
@@ -202,11 +202,10 @@ public class StaticFlowTests extends FloodlightTestCase {
 		dpid = HexString.toLong(TestSwitch1DPID);
 
 		mockSwitch = createNiceMock(IOFSwitch.class);
-		writeCapture = EasyMock.newCapture(CaptureType.ALL);
 		writeCaptureList = EasyMock.newCapture(CaptureType.ALL);
 
-		expect(mockSwitch.write(capture(writeCapture))).andReturn(true).anyTimes();
-		expect(mockSwitch.write(capture(writeCaptureList))).andReturn(Collections.<OFMessage>emptyList()).anyTimes();
+		expect(mockSwitch.write(capture(writeCaptureList), eq(OFMessagePriority.BULK)))
+				.andReturn(Collections.<OFMessage>emptyList()).anyTimes();
 		expect(mockSwitch.getOFFactory()).andReturn(factory).anyTimes();
 		replay(mockSwitch);
 
@@ -236,6 +235,15 @@ public class StaticFlowTests extends FloodlightTestCase {
 		pusher.startUp(fmc);    // again, to hack unittest
 	}
 
+	/* all static entries are written as bulk, one list per write */
+	private List<OFMessage> written() {
+		List<OFMessage> msgs = new ArrayList<OFMessage>();
+		for (List<OFMessage> l : writeCaptureList.getValues()) {
+			msgs.addAll(l);
+		}
+		return msgs;
+	}
+
 	@Test
 	public void testStaticFlowPush() throws Exception {
 
@@ -247,8 +255,8 @@ public class StaticFlowTests extends FloodlightTestCase {
 
 		// if someone calls getId(), return this dpid instead
 		resetToNice(mockSwitch);
-		expect(mockSwitch.write(capture(writeCapture))).andReturn(true).anyTimes();
-		expect(mockSwitch.write(capture(writeCaptureList))).andReturn(Collections.<OFMessage> emptyList()).anyTimes();
+		expect(mockSwitch.write(capture(writeCaptureList), eq(OFMessagePriority.BULK)))
+				.andReturn(Collections.<OFMessage>emptyList()).anyTimes();
 		expect(mockSwitch.getOFFactory()).andReturn(factory).anyTimes();
 		expect(mockSwitch.getId()).andReturn(DatapathId.of(dpid)).anyTimes();
 		replay(mockSwitch);
@@ -259,19 +267,20 @@ public class StaticFlowTests extends FloodlightTestCase {
 		verify(mockSwitch);
 
 		// Verify that the switch has gotten some flow_mods
-		assertEquals(true, writeCapture.hasCaptured());
-		assertEquals(TotalTestRules, writeCapture.getValues().size());
+		assertEquals(true, writeCaptureList.hasCaptured());
+		List<OFMessage> written = written();
+		assertEquals(TotalTestRules, written.size());
 
 		// Order assumes how things are stored in hash bucket;
 		// should be fixed because OFMessage.hashCode() is deterministic
-		OFFlowMod firstFlowMod = (OFFlowMod) writeCapture.getValues().get(2);
+		OFFlowMod firstFlowMod = (OFFlowMod) written.get(2);
 		verifyFlowMod(firstFlowMod, FlowMod1);
-		OFFlowMod secondFlowMod = (OFFlowMod) writeCapture.getValues().get(0); /* Java 8 stores 2-0-1 */
+		OFFlowMod secondFlowMod = (OFFlowMod) written.get(0); /* Java 8 stores 2-0-1 */
 		verifyFlowMod(secondFlowMod, FlowMod2);
-		OFFlowMod thirdFlowMod = (OFFlowMod) writeCapture.getValues().get(1);
+		OFFlowMod thirdFlowMod = (OFFlowMod) written.get(1);
 		verifyFlowMod(thirdFlowMod, FlowMod3);
 
-		writeCapture.reset();
+		writeCaptureList.reset();
 
 		// delete two rules and verify they've been removed
 		// this should invoke staticFlowPusher.rowsDeleted()
@@ -279,18 +288,19 @@ public class StaticFlowTests extends FloodlightTestCase {
 		storage.deleteRow(StaticEntryPusher.TABLE_NAME, "TestRule2");
 
 		assertEquals(1, pusher.countEntries());
-		assertEquals(2, writeCapture.getValues().size());
+		written = written();
+		assertEquals(2, written.size());
 
-		OFFlowMod firstDelete = (OFFlowMod) writeCapture.getValues().get(0);
+		OFFlowMod firstDelete = (OFFlowMod) written.get(0);
 		FlowMod1 = FlowModUtils.toFlowDeleteStrict(FlowMod1);
 		verifyFlowMod(firstDelete, FlowMod1);
 
-		OFFlowMod secondDelete = (OFFlowMod) writeCapture.getValues().get(1);
+		OFFlowMod secondDelete = (OFFlowMod) written.get(1);
 		FlowMod2 = FlowModUtils.toFlowDeleteStrict(FlowMod2);
 		verifyFlowMod(secondDelete, FlowMod2);
 
 		// add rules back to make sure that staticFlowPusher.rowsInserted() works
-		writeCapture.reset();
+		writeCaptureList.reset();
 		FlowMod2 = FlowModUtils.toFlowAdd(FlowMod2);
 		FlowMod2 = FlowMod2.createBuilder().setXid(12).build();
 		storage.insertRow(StaticEntryPusher.TABLE_NAME, TestRule2);
@@ -301,7 +311,6 @@ public class StaticFlowTests extends FloodlightTestCase {
 		assertEquals(1, outList.size());
 		OFFlowMod firstAdd = (OFFlowMod) outList.get(0);
 		verifyFlowMod(firstAdd, FlowMod2);
-		writeCapture.reset();
 		writeCaptureList.reset();
 
 		// now try an overwriting update, calling staticFlowPusher.rowUpdated()
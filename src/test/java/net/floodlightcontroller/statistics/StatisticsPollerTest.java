@@ -0,0 +1,134 @@
+package net.floodlightcontroller.statistics;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.internal.IOFSwitchService;
+import net.floodlightcontroller.debugcounter.MockDebugCounterService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFStatsReply;
+import org.projectfloodlight.openflow.protocol.OFStatsRequest;
+import org.projectfloodlight.openflow.protocol.OFStatsType;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.types.DatapathId;
+
+import com.google.common.util.concurrent.SettableFuture;
+
+public class StatisticsPollerTest {
+    private static final int SWITCHES = 3;
+
+    private ScheduledExecutorService executor;
+    private StatisticsPoller poller;
+    private List<SettableFuture<List<OFStatsReply>>> futures;
+    private List<DatapathId> received;
+    private StatisticsPoller.IStatsReplyHandler handler;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        futures = new CopyOnWriteArrayList<SettableFuture<List<OFStatsReply>>>();
+        received = new CopyOnWriteArrayList<DatapathId>();
+        handler = new StatisticsPoller.IStatsReplyHandler() {
+            @Override
+            public void statsReceived(DatapathId dpid, List<OFStatsReply> replies) {
+                received.add(dpid);
+            }
+        };
+
+        /* Switches are only polled when the tests ask for it */
+        IOFSwitchService switchService = createMock(IOFSwitchService.class);
+        expect(switchService.getAllSwitchDpids()).andReturn(Collections.<DatapathId>emptySet()).anyTimes();
+        for (int i = 0; i < SWITCHES; i++) {
+            SettableFuture<List<OFStatsReply>> f = SettableFuture.create();
+            futures.add(f);
+            IOFSwitch sw = createMock(IOFSwitch.class);
+            expect(sw.getOFFactory()).andReturn(OFFactories.getFactory(OFVersion.OF_13)).anyTimes();
+            expect(sw.writeStatsRequest(anyObject(OFStatsRequest.class))).andReturn(f).anyTimes();
+            replay(sw);
+            expect(switchService.getSwitch(DatapathId.of(i))).andReturn(sw).anyTimes();
+        }
+        replay(switchService);
+
+        poller = new StatisticsPoller(switchService, executor, 2, new MockDebugCounterService());
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private void waitFor(int inFlight, int replies) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            if (poller.getInFlight() == inFlight && received.size() == replies) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testInFlightLimit() throws Exception {
+        StatisticsPoller.Job job = poller.start(OFStatsType.PORT, 60, handler);
+        for (int i = 0; i < SWITCHES; i++) {
+            poller.poll(job, DatapathId.of(i));
+        }
+        assertEquals(2, poller.getInFlight());
+        assertEquals(1, poller.getQueueLength());
+
+        /* Still pending, so not polled again */
+        poller.poll(job, DatapathId.of(0));
+        assertEquals(1, poller.getQueueLength());
+
+        futures.get(0).set(Collections.<OFStatsReply>emptyList());
+        waitFor(2, 1);
+        assertEquals(Collections.singletonList(DatapathId.of(0)), received);
+        assertEquals(2, poller.getInFlight());
+        assertEquals(0, poller.getQueueLength());
+
+        futures.get(1).set(Collections.<OFStatsReply>emptyList());
+        futures.get(2).set(Collections.<OFStatsReply>emptyList());
+        waitFor(0, 3);
+        assertEquals(0, poller.getInFlight());
+        assertEquals(3, received.size());
+        assertTrue(job.cancel());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        /* times out after half the interval */
+        StatisticsPoller.Job job = poller.start(OFStatsType.PORT, 1, handler);
+        poller.poll(job, DatapathId.of(0));
+        assertEquals(1, poller.getInFlight());
+        waitFor(0, 0);
+        assertEquals(0, poller.getInFlight());
+
+        /* a late reply is dropped */
+        futures.get(0).set(Collections.<OFStatsReply>emptyList());
+        Thread.sleep(100);
+        assertTrue(received.isEmpty());
+        job.cancel();
+    }
+
+    @Test
+    public void testOffsetWithinInterval() {
+        for (long dpid = 0; dpid < 1000; dpid++) {
+            long offset = StatisticsPoller.getOffsetMs(DatapathId.of(dpid), OFStatsType.PORT, 10000);
+            assertTrue(offset >= 0 && offset < 10000);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package net.floodlightcontroller.statistics;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class StatsTimeSeriesTest {
+    private static final long SEC = 1000;
+    private static final long MIN = 60 * SEC;
+    private static final long HOUR = 60 * MIN;
+    /* a whole hour, so that tier buckets line up with the samples */
+    private static final long T0 = 1000 * HOUR;
+
+    @Test
+    public void testDownsampling() {
+        StatsTimeSeries ts = new StatsTimeSeries(2, new int[] { 60, 60, 24 });
+        /* one sample every 10s for 3 minutes: 10, 20, ... */
+        for (int i = 0; i < 18; i++) {
+            ts.add(T0 + i * 10 * SEC, (i + 1) * 10, 1);
+        }
+        assertEquals(T0 + 170 * SEC, ts.getLastUpdated());
+
+        /* The 1s tier only reaches back 60s */
+        StatsTimeSeries.Range r = ts.query(T0 + 120 * SEC, T0 + 3 * MIN, 0);
+        assertEquals(SEC, r.getResolutionMs());
+        assertEquals(6, r.size());
+        assertEquals(T0 + 120 * SEC, r.getTime(0));
+        assertEquals(130, r.getValue(0, 0), 0);
+        assertEquals(1, r.getValue(0, 1), 0);
+
+        /* ...so going further back uses the minute tier */
+        r = ts.query(T0, T0 + 3 * MIN, 0);
+        assertEquals(MIN, r.getResolutionMs());
+        assertEquals(3, r.size());
+        assertEquals(T0, r.getTime(0));
+        assertEquals(35, r.getValue(0, 0), 0); /* average of 10..60 */
+        assertEquals(95, r.getValue(1, 0), 0);
+        assertEquals(155, r.getValue(2, 0), 0);
+
+        r = ts.query(T0, T0 + 3 * MIN, HOUR);
+        assertEquals(HOUR, r.getResolutionMs());
+        assertEquals(1, r.size());
+        assertEquals(95, r.getValue(0, 0), 0);
+    }
+
+    @Test
+    public void testRingWrapsAround() {
+        StatsTimeSeries ts = new StatsTimeSeries(1, new int[] { 5, 0, 0 });
+        for (int i = 0; i < 12; i++) {
+            ts.add(T0 + i * SEC, i);
+        }
+        StatsTimeSeries.Range r = ts.query(0, Long.MAX_VALUE, 0);
+        assertEquals(5, r.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(T0 + (7 + i) * SEC, r.getTime(i));
+            assertEquals(7 + i, r.getValue(i, 0), 0);
+        }
+
+        /* Too old to keep */
+        ts.add(T0, 100);
+        assertEquals(7, ts.query(0, Long.MAX_VALUE, 0).getValue(0, 0), 0);
+    }
+
+    @Test
+    public void testGapsAreSkipped() {
+        StatsTimeSeries ts = new StatsTimeSeries(1, new int[] { 10, 0, 0 });
+        ts.add(T0, 1);
+        ts.add(T0 + 5 * SEC, 2);
+        StatsTimeSeries.Range r = ts.query(T0, T0 + 10 * SEC, 0);
+        assertEquals(2, r.size());
+        assertEquals(T0 + 5 * SEC, r.getTime(1));
+    }
+
+    @Test
+    public void testEmpty() {
+        StatsTimeSeries ts = new StatsTimeSeries(1, new int[] { 10, 10, 0 });
+        assertEquals(0, ts.query(0, Long.MAX_VALUE, 0).size());
+        assertEquals(0, ts.query(0, Long.MAX_VALUE, HOUR).getResolutionMs());
+    }
+}
@@ -0,0 +1,83 @@
+package net.floodlightcontroller.topology;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.List;
+
+import net.floodlightcontroller.debugcounter.MockDebugCounterService;
+import net.floodlightcontroller.routing.Path;
+import net.floodlightcontroller.routing.PathId;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.projectfloodlight.openflow.types.DatapathId;
+
+public class PathCacheTest {
+    private PathCache cache;
+
+    @Before
+    public void setUp() {
+        MockDebugCounterService counters = new MockDebugCounterService();
+        cache = new PathCache(2,
+                counters.registerCounter("topology", "hit", ""),
+                counters.registerCounter("topology", "miss", ""),
+                counters.registerCounter("topology", "eviction", ""));
+    }
+
+    private static PathId id(long src, long dst) {
+        return new PathId(DatapathId.of(src), DatapathId.of(dst));
+    }
+
+    private static List<Path> paths(long src, long dst) {
+        return Collections.singletonList(new Path(DatapathId.of(src), DatapathId.of(dst)));
+    }
+
+    @Test
+    public void testEpoch() {
+        List<Path> p = paths(1, 2);
+        assertNull(cache.get(id(1, 2), 1));
+        cache.put(id(1, 2), 1, p);
+        assertSame(p, cache.get(id(1, 2), 1));
+        assertNull(cache.get(id(1, 2), 2));
+
+        /* an older instance does not replace the paths of a newer one */
+        List<Path> newer = paths(1, 2);
+        cache.put(id(1, 2), 2, newer);
+        cache.put(id(1, 2), 1, p);
+        assertSame(newer, cache.get(id(1, 2), 2));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() {
+        cache.put(id(1, 2), 1, paths(1, 2));
+        cache.put(id(1, 3), 1, paths(1, 3));
+        cache.get(id(1, 2), 1);
+        cache.put(id(1, 4), 1, paths(1, 4));
+        assertEquals(2, cache.size());
+        assertNull(cache.get(id(1, 3), 1));
+        assertEquals(paths(1, 2), cache.get(id(1, 2), 1));
+        assertEquals(paths(1, 4), cache.get(id(1, 4), 1));
+    }
+
+    /* an old instance computing after a newer one used the cache does not push its entries out */
+    @Test
+    public void testOlderInstanceDoesNotEvict() {
+        cache.put(id(1, 2), 2, paths(1, 2));
+        cache.put(id(1, 3), 2, paths(1, 3));
+        cache.put(id(1, 4), 1, paths(1, 4));
+        cache.put(id(1, 5), 1, paths(1, 5));
+        assertEquals(2, cache.size());
+        assertNull(cache.get(id(1, 4), 1));
+        assertEquals(paths(1, 2), cache.get(id(1, 2), 2));
+        assertEquals(paths(1, 3), cache.get(id(1, 3), 2));
+
+        /* nor once the newer one has only asked */
+        cache.get(id(1, 6), 3);
+        cache.put(id(1, 6), 2, paths(1, 6));
+        assertNull(cache.get(id(1, 6), 2));
+        assertEquals(paths(1, 2), cache.get(id(1, 2), 2));
+    }
+}
@@ -0,0 +1,165 @@
+package net.floodlightcontroller.topology;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import net.floodlightcontroller.core.types.NodePortTuple;
+import net.floodlightcontroller.linkdiscovery.Link;
+import net.floodlightcontroller.routing.BroadcastTree;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.projectfloodlight.openflow.types.DatapathId;
+import org.projectfloodlight.openflow.types.OFPort;
+import org.projectfloodlight.openflow.types.U64;
+
+public class TopologyGraphTest {
+    private Map<DatapathId, Set<Link>> linkDpidMap;
+    private Map<Link, Integer> linkCost;
+
+    private static DatapathId sw(long id) {
+        return DatapathId.of(id);
+    }
+
+    /* a link each way between a:pa and b:pb */
+    private void addLinks(long a, int pa, long b, int pb, int cost) {
+        Link ab = new Link(sw(a), OFPort.of(pa), sw(b), OFPort.of(pb), U64.ZERO);
+        Link ba = new Link(sw(b), OFPort.of(pb), sw(a), OFPort.of(pa), U64.ZERO);
+        for (Link l : new Link[] { ab, ba }) {
+            for (DatapathId s : new DatapathId[] { l.getSrc(), l.getDst() }) {
+                if (!linkDpidMap.containsKey(s)) {
+                    linkDpidMap.put(s, new HashSet<Link>());
+                }
+                linkDpidMap.get(s).add(l);
+            }
+            linkCost.put(l, cost);
+        }
+    }
+
+    /*
+     *  1 --1-- 2 --1-- 4
+     *  |               |
+     *  2               1
+     *  |               |
+     *  3 ------1------ 5
+     */
+    @Before
+    public void setUp() {
+        linkDpidMap = new HashMap<DatapathId, Set<Link>>();
+        linkCost = new HashMap<Link, Integer>();
+        addLinks(1, 1, 2, 1, 1);
+        addLinks(2, 2, 4, 1, 1);
+        addLinks(1, 2, 3, 1, 2);
+        addLinks(3, 2, 5, 1, 1);
+        addLinks(4, 2, 5, 2, 1);
+    }
+
+    @Test
+    public void testTree() {
+        BroadcastTree t = new TopologyGraph(linkDpidMap, linkCost).getTree(sw(4));
+        assertEquals(0, t.getCost(sw(4)));
+        assertNull(t.getTreeLink(sw(4)));
+        assertEquals(2, t.getCost(sw(1)));
+        assertEquals(sw(2), t.getTreeLink(sw(1)).getDst());
+        assertEquals(2, t.getCost(sw(3)));
+        assertEquals(sw(5), t.getTreeLink(sw(3)).getDst());
+    }
+
+    @Test
+    public void testTieBrokenByDpid() {
+        /* 1 reaches 4 through 2 or through 3 at the same cost */
+        linkDpidMap.clear();
+        linkCost.clear();
+        addLinks(1, 1, 3, 1, 1);
+        addLinks(1, 2, 2, 1, 1);
+        addLinks(2, 2, 4, 1, 1);
+        addLinks(3, 2, 4, 2, 1);
+        BroadcastTree t = new TopologyGraph(linkDpidMap, linkCost).getTree(sw(4));
+        assertEquals(2, t.getCost(sw(1)));
+        assertEquals(sw(2), t.getTreeLink(sw(1)).getDst());
+    }
+
+    @Test
+    public void testRemovedSwitchesAndPorts() {
+        TopologyGraph g = new TopologyGraph(linkDpidMap, linkCost);
+
+        BroadcastTree t = g.getTree(sw(4), Collections.singleton(sw(2)), null);
+        assertEquals(4, t.getCost(sw(1)));
+        assertEquals(sw(3), t.getTreeLink(sw(1)).getDst());
+
+        /* both directions of the link at a removed port are left out */
+        Set<NodePortTuple> ports = Collections.singleton(new NodePortTuple(sw(1), OFPort.of(1)));
+        t = g.getTree(sw(4), null, ports);
+        assertEquals(sw(3), t.getTreeLink(sw(1)).getDst());
+        t = g.getTree(sw(1), null, ports);
+        assertEquals(5, t.getCost(sw(2)));
+        assertEquals(sw(4), t.getTreeLink(sw(2)).getDst());
+
+        t = g.getTree(sw(4), Collections.singleton(sw(2)), Collections.singleton(new NodePortTuple(sw(3), OFPort.of(2))));
+        assertEquals(TopologyInstance.MAX_PATH_WEIGHT, t.getCost(sw(1)));
+        assertNull(t.getTreeLink(sw(1)));
+    }
+
+    /* trees on random meshes have the costs of a plain Bellman-Ford, and every tree link is on a shortest path */
+    @Test
+    public void testRandomMeshes() {
+        Random r = new Random(7);
+        for (int n : new int[] { 8, 20, 40 }) {
+            linkDpidMap.clear();
+            linkCost.clear();
+            int[] ports = new int[n + 1];
+            for (int i = 1; i <= n; i++) {
+                int j = i % n + 1;
+                addLinks(i, ++ports[i], j, ++ports[j], 1 + r.nextInt(20));
+            }
+            for (int i = 0; i < n; i++) {
+                int a = 1 + r.nextInt(n);
+                int b = 1 + r.nextInt(n);
+                if (a != b) {
+                    addLinks(a, ++ports[a], b, ++ports[b], 1 + r.nextInt(20));
+                }
+            }
+            TopologyGraph g = new TopologyGraph(linkDpidMap, linkCost);
+
+            for (DatapathId root : linkDpidMap.keySet()) {
+                Map<DatapathId, Integer> expected = bellmanFord(root);
+                BroadcastTree t = g.getTree(root);
+                for (DatapathId s : linkDpidMap.keySet()) {
+                    assertEquals(expected.get(s).intValue(), t.getCost(s));
+                    Link l = t.getTreeLink(s);
+                    if (s.equals(root)) {
+                        assertNull(l);
+                    } else {
+                        assertEquals(s, l.getSrc());
+                        assertEquals(t.getCost(s), t.getCost(l.getDst()) + linkCost.get(l));
+                    }
+                }
+            }
+        }
+    }
+
+    /* cost from every switch to root */
+    private Map<DatapathId, Integer> bellmanFord(DatapathId root) {
+        Map<DatapathId, Integer> cost = new HashMap<DatapathId, Integer>();
+        for (DatapathId s : linkDpidMap.keySet()) {
+            cost.put(s, TopologyInstance.MAX_PATH_WEIGHT);
+        }
+        cost.put(root, 0);
+        for (int i = 0; i < linkDpidMap.size(); i++) {
+            for (Map.Entry<Link, Integer> e : linkCost.entrySet()) {
+                int c = cost.get(e.getKey().getDst());
+                if (c < TopologyInstance.MAX_PATH_WEIGHT && c + e.getValue() < cost.get(e.getKey().getSrc())) {
+                    cost.put(e.getKey().getSrc(), c + e.getValue());
+                }
+            }
+        }
+        return cost;
+    }
+}
@@ -48,6 +48,9 @@ import java.util.Set;
 import static net.floodlightcontroller.routing.IRoutingService.PATH_METRIC.HOPCOUNT;
 import static net.floodlightcontroller.routing.IRoutingService.PATH_METRIC.LATENCY;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class TopologyInstanceTest {
@@ -933,4 +936,150 @@ public class TopologyInstanceTest {
         verifyRoute(r10, r10.size());
     }
     
+    private void assertSamePathCosts(Set<DatapathId> sws, TopologyInstance expected, TopologyInstance actual) {
+        for (DatapathId src : sws) {
+            for (DatapathId dst : sws) {
+                List<Path> e = expected.getPathsFast(src, dst, 3);
+                List<Path> a = actual.getPathsFast(src, dst, 3);
+                assertEquals(e.size(), a.size());
+                for (int i = 0; i < e.size(); i++) {
+                    assertEquals(e.get(i).getLatency(), a.get(i).getLatency());
+                    assertEquals(e.get(i).getHopCount(), a.get(i).getHopCount());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalPathUpdate() throws Exception {
+        /* a ring 1-2-3-4-5-1 with a chord 2-4, links both ways */
+        int [][] linkArray = {
+                {1, 1, 2, 1, DIRECT_LINK}, {2, 1, 1, 1, DIRECT_LINK},
+                {2, 2, 3, 1, DIRECT_LINK}, {3, 1, 2, 2, DIRECT_LINK},
+                {3, 2, 4, 1, DIRECT_LINK}, {4, 1, 3, 2, DIRECT_LINK},
+                {4, 2, 5, 1, DIRECT_LINK}, {5, 1, 4, 2, DIRECT_LINK},
+                {5, 2, 1, 2, DIRECT_LINK}, {1, 2, 5, 2, DIRECT_LINK},
+                {2, 3, 4, 3, DIRECT_LINK}, {4, 3, 2, 3, DIRECT_LINK},
+        };
+        int [] lat = {1, 1, 2, 2, 4, 4, 8, 8, 16, 16, 32, 32};
+        topologyManager.setPathMetric(LATENCY);
+        configureTopology(linkArray, lat);
+        Set<DatapathId> sws = topologyManager.getCurrentInstance().getSwitches();
+        assertEquals(5, sws.size());
+
+        /* take the chord away */
+        topologyManager.removeLink(DatapathId.of(2), OFPort.of(3), DatapathId.of(4), OFPort.of(3));
+        topologyManager.removeLink(DatapathId.of(4), OFPort.of(3), DatapathId.of(2), OFPort.of(3));
+        topologyManager.createNewInstance();
+        TopologyInstance incremental = topologyManager.getCurrentInstance();
+        topologyManager.createNewInstance("test", true);
+        assertSamePathCosts(sws, topologyManager.getCurrentInstance(), incremental);
+
+        /* and put it back, now the fastest link */
+        topologyManager.addOrUpdateLink(DatapathId.of(2), OFPort.of(3), DatapathId.of(4), OFPort.of(3),
+                U64.of(1), ILinkDiscovery.LinkType.DIRECT_LINK);
+        topologyManager.addOrUpdateLink(DatapathId.of(4), OFPort.of(3), DatapathId.of(2), OFPort.of(3),
+                U64.of(1), ILinkDiscovery.LinkType.DIRECT_LINK);
+        topologyManager.createNewInstance();
+        incremental = topologyManager.getCurrentInstance();
+        topologyManager.createNewInstance("test", true);
+        assertSamePathCosts(sws, topologyManager.getCurrentInstance(), incremental);
+        assertEquals(1, incremental.getPathsFast(DatapathId.of(2), DatapathId.of(4), 1).get(0).getHopCount());
+    }
+
+    @Test
+    public void testPathsOnDemand() throws Exception {
+        int [][] linkArray = {
+                {1, 1, 2, 1, DIRECT_LINK}, {2, 1, 1, 1, DIRECT_LINK},
+                {2, 2, 3, 1, DIRECT_LINK}, {3, 1, 2, 2, DIRECT_LINK},
+                {3, 2, 4, 1, DIRECT_LINK}, {4, 1, 3, 2, DIRECT_LINK},
+                {4, 2, 1, 2, DIRECT_LINK}, {1, 2, 4, 2, DIRECT_LINK},
+        };
+        int [] lat = {1, 1, 2, 2, 4, 4, 8, 8};
+        topologyManager.setPathMetric(LATENCY);
+        configureTopology(linkArray, lat);
+        TopologyInstance eager = topologyManager.getCurrentInstance();
+        Set<DatapathId> sws = eager.getSwitches();
+
+        topologyManager.setComputePathsOnDemand(2);
+        topologyManager.createNewInstance("test", true);
+        TopologyInstance onDemand = topologyManager.getCurrentInstance();
+        assertSamePathCosts(sws, eager, onDemand);
+        assertEquals(2, topologyManager.pathCache.size());
+        for (DatapathId src : sws) {
+            for (DatapathId dst : sws) {
+                assertEquals(eager.pathExists(src, dst), onDemand.pathExists(src, dst));
+            }
+        }
+
+        /* the same pair asked again comes from the cache */
+        List<Path> paths = onDemand.getPathsFast(DatapathId.of(1), DatapathId.of(3), 3);
+        assertSame(paths, onDemand.getPathsFast(DatapathId.of(1), DatapathId.of(3), 3));
+
+        /* a new instance does not see the paths of the old one */
+        topologyManager.createNewInstance("test", true);
+        assertNotSame(paths, topologyManager.getCurrentInstance().getPathsFast(DatapathId.of(1), DatapathId.of(3), 3));
+        /* while the old one still gets its own */
+        assertFalse(onDemand.getPathsFast(DatapathId.of(1), DatapathId.of(4), 3).isEmpty());
+    }
+
+    @Test
+    public void testParallelCompute() throws Exception {
+        int [][] linkArray = {
+                {1, 1, 2, 1, DIRECT_LINK}, {2, 1, 1, 1, DIRECT_LINK},
+                {2, 2, 3, 1, DIRECT_LINK}, {3, 1, 2, 2, DIRECT_LINK},
+                {3, 2, 4, 1, DIRECT_LINK}, {4, 1, 3, 2, DIRECT_LINK},
+                {4, 2, 5, 1, DIRECT_LINK}, {5, 1, 4, 2, DIRECT_LINK},
+                {5, 2, 1, 2, DIRECT_LINK}, {1, 2, 5, 2, DIRECT_LINK},
+                {2, 3, 4, 3, DIRECT_LINK}, {4, 3, 2, 3, DIRECT_LINK},
+        };
+        int [] lat = {1, 1, 2, 2, 4, 4, 8, 8, 16, 16, 32, 32};
+        topologyManager.setPathMetric(LATENCY);
+        TopologyManager.setComputeParallelism(1);
+        configureTopology(linkArray, lat);
+        TopologyInstance sequential = topologyManager.getCurrentInstance();
+        Set<DatapathId> sws = sequential.getSwitches();
+
+        try {
+            TopologyManager.setComputeParallelism(4);
+            topologyManager.createNewInstance("test", true);
+            TopologyInstance parallel = topologyManager.getCurrentInstance();
+            for (DatapathId src : sws) {
+                for (DatapathId dst : sws) {
+                    assertEquals(sequential.getPathsFast(src, dst, 3), parallel.getPathsFast(src, dst, 3));
+                }
+            }
+            assertSameReachability(sws, sequential, parallel);
+
+            /* an incremental update fans out the same way */
+            topologyManager.removeLink(DatapathId.of(2), OFPort.of(3), DatapathId.of(4), OFPort.of(3));
+            topologyManager.removeLink(DatapathId.of(4), OFPort.of(3), DatapathId.of(2), OFPort.of(3));
+            topologyManager.createNewInstance();
+            TopologyInstance incremental = topologyManager.getCurrentInstance();
+            TopologyManager.setComputeParallelism(1);
+            topologyManager.createNewInstance("test", true);
+            sequential = topologyManager.getCurrentInstance();
+            assertSamePathCosts(sws, sequential, incremental);
+            assertSameReachability(sws, sequential, incremental);
+
+            /* and so do the broadcast trees of an instance that computes paths on demand */
+            TopologyManager.setComputeParallelism(4);
+            topologyManager.setComputePathsOnDemand(100);
+            topologyManager.createNewInstance("test", true);
+            TopologyInstance onDemand = topologyManager.getCurrentInstance();
+            assertSamePathCosts(sws, sequential, onDemand);
+            assertSameReachability(sws, sequential, onDemand);
+        } finally {
+            TopologyManager.setComputeParallelism(1);
+        }
+    }
+
+    private void assertSameReachability(Set<DatapathId> sws, TopologyInstance expected,
+            TopologyInstance actual) {
+        for (DatapathId src : sws) {
+            for (DatapathId dst : sws) {
+                assertEquals(expected.pathExists(src, dst), actual.pathExists(src, dst));
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -27,8 +27,10 @@ import java.util.Map;
 import java.util.Set;
 
 import net.floodlightcontroller.core.IOFConnection;
+import net.floodlightcontroller.core.IOFStatsReplyListener;
 import net.floodlightcontroller.core.IOFSwitch;
 import net.floodlightcontroller.core.LogicalOFMessageCategory;
+import net.floodlightcontroller.core.OFMessagePriority;
 import net.floodlightcontroller.core.SwitchDescription;
 import net.floodlightcontroller.core.internal.OFConnection;
 import net.floodlightcontroller.core.internal.TableFeatures;
@@ -36,6 +38,7 @@ import net.floodlightcontroller.core.internal.TableFeatures;
 import org.projectfloodlight.openflow.protocol.OFActionType;
 import org.projectfloodlight.openflow.protocol.OFCapabilities;
 import org.projectfloodlight.openflow.protocol.OFControllerRole;
+import org.projectfloodlight.openflow.protocol.OFErrorMsg;
 import org.projectfloodlight.openflow.protocol.OFFactory;
 import org.projectfloodlight.openflow.protocol.OFMessage;
 import org.projectfloodlight.openflow.protocol.OFPortDesc;
@@ -214,6 +217,15 @@ public class OFMessageDamperMockSwitch implements IOFSwitch {
 		return Collections.emptyList();
 	}
 
+	@Override
+	public Collection<OFMessage> write(Iterable<OFMessage> msgList, OFMessagePriority priority) {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public void flush() {
+	}
+
 	@Override
 	public <R extends OFMessage> ListenableFuture<R> writeRequest(
 			OFRequest<R> request) {
@@ -228,6 +240,19 @@ public class OFMessageDamperMockSwitch implements IOFSwitch {
 		return null;
 	}
 
+	@Override
+	public <REPLY extends OFStatsReply> ListenableFuture<Void> streamStatsRequest(
+			OFStatsRequest<REPLY> request, IOFStatsReplyListener<REPLY> listener) {
+		// TODO Auto-generated method stub
+		return null;
+	}
+
+	@Override
+	public ListenableFuture<List<OFErrorMsg>> writeBatchWithBarrier(List<OFMessage> msgList) {
+		// TODO Auto-generated method stub
+		return null;
+	}
+
 	@Override
 	public SwitchStatus getStatus() {
 		// TODO Auto-generated method stub
@@ -0,0 +1,42 @@
+package net.floodlightcontroller.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TokenBucketTest {
+
+    @Test
+    public void testBurstThenRefill() {
+        TokenBucket b = new TokenBucket(10, 3);
+        long now = System.nanoTime();
+        assertTrue(b.tryAcquire(now));
+        assertTrue(b.tryAcquire(now));
+        assertTrue(b.tryAcquire(now));
+        assertFalse(b.tryAcquire(now));
+
+        /* 10/s means one token every 100ms */
+        now += TimeUnit.MILLISECONDS.toNanos(50);
+        assertFalse(b.tryAcquire(now));
+        now += TimeUnit.MILLISECONDS.toNanos(50);
+        assertTrue(b.tryAcquire(now));
+        assertFalse(b.tryAcquire(now));
+    }
+
+    @Test
+    public void testRefillCappedAtBurst() {
+        TokenBucket b = new TokenBucket(1000, 2);
+        long now = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        assertTrue(b.tryAcquire(now));
+        assertTrue(b.tryAcquire(now));
+        assertFalse(b.tryAcquire(now));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRate() {
+        new TokenBucket(0, 1);
+    }
+}